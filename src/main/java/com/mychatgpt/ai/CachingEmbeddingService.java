@@ -0,0 +1,217 @@
+package com.mychatgpt.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mychatgpt.config.EmbeddingConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * EmbeddingService에 content-addressed 캐시를 씌운 decorator.
+ *
+ * 캐시 키: (모델 이름, 텍스트의 SHA-256)
+ * - 같은 텍스트라도 모델이 다르면 벡터가 다르므로 모델 이름을 키에 포함
+ * - 디스크 캐시는 모델별로 파일을 분리 (embeddings-{model}.bin)
+ *
+ * 조회 순서: 메모리(Caffeine) → 디스크(memory-mapped 파일) → 임베딩 서버
+ * - 매주 같은 YouTrack export를 다시 올려도 변경되지 않은 청크는 임베딩 호출 없이 처리
+ * - 디스크 캐시는 재시작 후에도 유지됨. 크기는 embedding.cache.disk-max-size로 제한 (EmbeddingDiskStore 세대 교체)
+ */
+@Service
+@Primary
+@Slf4j
+public class CachingEmbeddingService implements EmbeddingService {
+
+    private final OllamaEmbeddingService delegate;
+    private final Cache<String, float[]> memoryCache;
+    private final EmbeddingDiskStore diskStore;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingEmbeddingService(OllamaEmbeddingService delegate, EmbeddingConfig embeddingConfig) {
+        this.delegate = delegate;
+        EmbeddingConfig.Cache cacheConfig = embeddingConfig.getCache();
+        this.memoryCache = Caffeine.newBuilder()
+                .maximumSize(cacheConfig.getMemoryMaxSize())
+                .build();
+        this.diskStore = cacheConfig.isDiskEnabled() ? openDiskStore(cacheConfig) : null;
+    }
+
+    private EmbeddingDiskStore openDiskStore(EmbeddingConfig.Cache cacheConfig) {
+        String dir = cacheConfig.getDir();
+        String fileName = "embeddings-" + delegate.getModelName().replaceAll("[^a-zA-Z0-9._-]", "_") + ".bin";
+        try {
+            return new EmbeddingDiskStore(Path.of(dir, fileName), delegate.getEmbeddingDimension(),
+                    cacheConfig.getDiskMaxSize().toBytes());
+        } catch (Exception e) {
+            log.warn("임베딩 디스크 캐시를 열 수 없어 메모리 캐시만 사용합니다: {} - {}", dir, e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (diskStore != null) {
+            try {
+                diskStore.close();
+            } catch (IOException e) {
+                log.warn("임베딩 디스크 캐시 종료 실패: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public float[] getEmbedding(String text) {
+        if (text == null || text.isBlank()) {
+            return delegate.getEmbedding(text);
+        }
+        byte[] hash = sha256(text);
+        float[] cached = lookup(hash);
+        if (cached != null) {
+            return cached;
+        }
+        misses.increment();
+        float[] embedding = delegate.getEmbedding(text);
+        store(hash, embedding);
+        return embedding;
+    }
+
+    /**
+     * 캐시에 없는 텍스트만 모아서 delegate의 배치 임베딩으로 한 번에 요청한다.
+     * 같은 배치 안에서 중복된 텍스트는 한 번만 임베딩한다.
+     */
+    @Override
+    public List<float[]> getEmbeddings(List<String> texts) {
+        List<float[]> results = new ArrayList<>(texts.size());
+        Map<String, List<Integer>> missIndexes = new LinkedHashMap<>();
+        Map<String, byte[]> missHashes = new LinkedHashMap<>();
+        List<String> missTexts = new ArrayList<>();
+
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            results.add(null);
+            if (text == null || text.isBlank()) {
+                results.set(i, delegate.getEmbedding(text));
+                continue;
+            }
+
+            byte[] hash = sha256(text);
+            float[] cached = lookup(hash);
+            if (cached != null) {
+                results.set(i, cached);
+                continue;
+            }
+
+            String key = HexFormat.of().formatHex(hash);
+            if (!missIndexes.containsKey(key)) {
+                missHashes.put(key, hash);
+                missTexts.add(text);
+            }
+            missIndexes.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+
+        if (!missTexts.isEmpty()) {
+            misses.add(missTexts.size());
+            List<float[]> embeddings = delegate.getEmbeddings(missTexts);
+            int j = 0;
+            for (Map.Entry<String, List<Integer>> entry : missIndexes.entrySet()) {
+                float[] embedding = embeddings.get(j++);
+                store(missHashes.get(entry.getKey()), embedding);
+                entry.getValue().forEach(idx -> results.set(idx, embedding));
+            }
+            log.debug("임베딩 캐시: {}건 중 {}건 미스", texts.size(), missTexts.size());
+        }
+
+        return results;
+    }
+
+    private float[] lookup(byte[] hash) {
+        String key = memoryKey(hash);
+        float[] cached = memoryCache.getIfPresent(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+        if (diskStore != null) {
+            cached = diskStore.get(hash);
+            if (cached != null) {
+                diskHits.increment();
+                memoryCache.put(key, cached);
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    private void store(byte[] hash, float[] embedding) {
+        memoryCache.put(memoryKey(hash), embedding);
+        if (diskStore != null) {
+            try {
+                diskStore.put(hash, embedding);
+            } catch (IOException e) {
+                log.warn("임베딩 디스크 캐시 저장 실패 (무시): {}", e.getMessage());
+            }
+        }
+    }
+
+    private String memoryKey(byte[] hash) {
+        return delegate.getModelName() + ":" + HexFormat.of().formatHex(hash);
+    }
+
+    private static byte[] sha256(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 캐시 적중/미스 통계를 반환한다.
+     */
+    public Map<String, Object> getStats() {
+        long memory = memoryHits.sum();
+        long disk = diskHits.sum();
+        long miss = misses.sum();
+        long total = memory + disk + miss;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("model", delegate.getModelName());
+        stats.put("memoryHits", memory);
+        stats.put("diskHits", disk);
+        stats.put("misses", miss);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (memory + disk) / total);
+        stats.put("memoryEntries", memoryCache.estimatedSize());
+        stats.put("diskEntries", diskStore != null ? diskStore.size() : 0);
+        stats.put("diskFileBytes", diskStore != null ? diskStore.fileBytes() : 0);
+        stats.put("diskMaxBytes", diskStore != null ? diskStore.maxBytes() : 0);
+        stats.put("diskRollovers", diskStore != null ? diskStore.rollovers() : 0);
+        return stats;
+    }
+
+    @Override
+    public int getEmbeddingDimension() {
+        return delegate.getEmbeddingDimension();
+    }
+
+    @Override
+    public String getModelName() {
+        return delegate.getModelName();
+    }
+}
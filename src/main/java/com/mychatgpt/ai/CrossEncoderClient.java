@@ -0,0 +1,101 @@
+package com.mychatgpt.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mychatgpt.config.SearchConfig;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 로컬 cross-encoder(bge-reranker 등) 서버로 (검색어, 청크) 쌍의 관련도를 매긴다.
+ *
+ * vLLM(--task score)과 같은 `/v1/rerank` API를 쓴다. 후보 전체를 요청 하나로 보내므로
+ * 서버 쪽에서 한 배치로 점수를 계산한다. 임베딩과 달리 질의마다 새로 계산해야 해서 캐시하지 않는다.
+ *
+ * search.rerank.cross-encoder.url이 비어 있으면 사용하지 않는다 (isEnabled() == false).
+ */
+@Component
+@Slf4j
+public class CrossEncoderClient {
+
+    private final SearchConfig.CrossEncoder config;
+    private final ObjectMapper objectMapper;
+    private final WebClient webClient;
+
+    public CrossEncoderClient(SearchConfig searchConfig, ObjectMapper objectMapper) {
+        this.config = searchConfig.getRerank().getCrossEncoder();
+        this.objectMapper = objectMapper;
+        HttpClient httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 1000);
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        if (isEnabled()) {
+            // 첫 요청이 이벤트 루프/DNS 리졸버 초기화에 시간 한도를 다 쓰지 않도록 미리 준비해 둔다
+            httpClient.warmup().block();
+            log.info("cross-encoder 재정렬 사용: {} ({})", config.getUrl(), config.getModel());
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.getUrl() != null && !config.getUrl().isBlank();
+    }
+
+    /**
+     * documents 각각의 관련도 점수를 입력 순서대로 돌려준다. timeout 안에 응답이 없으면 예외.
+     */
+    public double[] score(String query, List<String> documents, Duration timeout) {
+        List<String> texts = new ArrayList<>(documents.size());
+        for (String document : documents) {
+            String text = document != null ? document : "";
+            texts.add(text.length() <= config.getMaxChars() ? text : text.substring(0, config.getMaxChars()));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", config.getModel());
+        body.put("query", query);
+        body.put("documents", texts);
+
+        // 요청 준비(직렬화, 연결)까지 timeout 안에 들어가도록 호출 스레드가 아닌 곳에서 구독한다
+        String response = Mono.defer(() -> webClient.post()
+                        .uri(config.getUrl().replaceAll("/+$", "") + "/v1/rerank")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(body)
+                        .retrieve()
+                        .bodyToMono(String.class))
+                .subscribeOn(Schedulers.boundedElastic())
+                .block(timeout);
+
+        double[] scores = new double[documents.size()];
+        Arrays.fill(scores, Double.NaN);
+        try {
+            for (JsonNode result : objectMapper.readTree(response).path("results")) {
+                int index = result.path("index").asInt(-1);
+                if (index >= 0 && index < scores.length) {
+                    scores[index] = result.path("relevance_score").asDouble();
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("cross-encoder 응답을 읽지 못했습니다", e);
+        }
+        for (double score : scores) {
+            if (Double.isNaN(score)) {
+                throw new RuntimeException("cross-encoder 응답에 빠진 청크가 있습니다");
+            }
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,260 @@
+package com.mychatgpt.ai;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 임베딩 벡터를 memory-mapped 파일에 append-only로 저장하는 디스크 캐시.
+ *
+ * 파일 구조 (고정 길이 레코드):
+ * - [int magic][32바이트 SHA-256 해시][float x dimension]
+ * - magic은 레코드를 다 쓴 뒤 마지막에 기록하므로, 쓰는 도중 프로세스가 죽으면
+ *   해당 레코드는 magic이 없어 다음 기동 시 무시된다.
+ *
+ * 해시 → 슬롯 인덱스는 메모리에만 두고, 기동 시 파일을 한 번 스캔하여 재구성한다.
+ * 파일은 RECORDS_PER_SEGMENT 단위 세그먼트로 매핑하며, 공간이 부족하면 세그먼트를 추가로 매핑해 확장한다.
+ *
+ * 크기 제한: 파일 두 개(현재 세대, 이전 세대 {file}.prev)를 합쳐 maxBytes를 넘지 않는다.
+ * 현재 세대가 maxBytes의 절반에 차면 이전 세대를 지우고 현재 세대를 이전 세대로 돌린 뒤 빈 파일로 새로 시작한다.
+ * 이전 세대에서 찾은 벡터는 현재 세대로 옮겨 쓰므로, 계속 쓰이는 벡터는 남고 한 세대 동안 안 쓰인 벡터만 사라진다.
+ */
+@Slf4j
+public class EmbeddingDiskStore implements Closeable {
+
+    private static final int MAGIC = 0x454D4231; // "EMB1"
+    private static final int HASH_BYTES = 32;
+    private static final int RECORDS_PER_SEGMENT = 4096;
+
+    private final Path file;
+    private final Path previousFile;
+    private final int dimension;
+    private final int recordBytes;
+    private final long segmentBytes;
+    private final long maxBytes;
+    /** 세대 하나에 담는 최대 레코드 수 (세그먼트 단위) */
+    private final int maxRecords;
+    private volatile Generation current;
+    private volatile Generation previous;
+    private volatile int rollovers;
+
+    /**
+     * @param maxBytes 현재 세대와 이전 세대 파일을 합친 최대 크기. 세대마다 세그먼트 하나는 쓴다
+     */
+    public EmbeddingDiskStore(Path file, int dimension, long maxBytes) throws IOException {
+        this.file = file;
+        this.previousFile = file.resolveSibling(file.getFileName() + ".prev");
+        this.dimension = dimension;
+        this.recordBytes = Integer.BYTES + HASH_BYTES + dimension * Float.BYTES;
+        this.segmentBytes = (long) recordBytes * RECORDS_PER_SEGMENT;
+        this.maxBytes = maxBytes;
+        long segmentsPerGeneration = Math.max(1, maxBytes / 2 / segmentBytes);
+        this.maxRecords = (int) Math.min(segmentsPerGeneration * RECORDS_PER_SEGMENT,
+                Integer.MAX_VALUE / RECORDS_PER_SEGMENT * RECORDS_PER_SEGMENT);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.current = new Generation(file);
+        this.previous = Files.exists(previousFile) ? new Generation(previousFile) : null;
+        if (current.size >= maxRecords) {
+            // 설정한 크기를 줄였으면 바로 세대를 넘긴다
+            rollover();
+        }
+        log.info("임베딩 디스크 캐시 로드 완료: {} ({}건, 이전 세대 {}건, 최대 {}MB)",
+                file, current.size, previous != null ? previous.size : 0, maxBytes / (1024 * 1024));
+    }
+
+    /**
+     * 해시에 해당하는 벡터를 조회한다. 이전 세대에서 찾으면 현재 세대로 옮겨 쓴다.
+     *
+     * @return 저장된 벡터, 없으면 null
+     */
+    public float[] get(byte[] hash) {
+        String key = HexFormat.of().formatHex(hash);
+        float[] vector = current.get(key);
+        if (vector != null) {
+            return vector;
+        }
+        Generation old = previous;
+        vector = old != null ? old.get(key) : null;
+        if (vector != null) {
+            try {
+                put(hash, vector);
+            } catch (IOException e) {
+                log.warn("임베딩 디스크 캐시: 이전 세대 벡터 옮기기 실패 (무시): {}", e.getMessage());
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * 벡터를 현재 세대 파일 끝에 추가한다. 이미 존재하는 해시거나 차원이 다르면 무시한다.
+     */
+    public synchronized void put(byte[] hash, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            return;
+        }
+        String key = HexFormat.of().formatHex(hash);
+        if (current.index.containsKey(key)) {
+            return;
+        }
+        if (current.size >= maxRecords) {
+            rollover();
+        }
+        current.append(key, hash, vector);
+    }
+
+    /**
+     * 현재 세대를 이전 세대로 돌리고(기존 이전 세대는 삭제) 빈 현재 세대를 연다.
+     * 닫은 세대의 매핑은 GC될 때까지 유효하므로, 동시에 진행 중인 get()은 그대로 읽는다.
+     */
+    private synchronized void rollover() throws IOException {
+        Generation full = current;
+        full.close();
+        if (previous != null) {
+            previous.close();
+        }
+        Files.move(file, previousFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        previous = full;
+        current = new Generation(file);
+        rollovers++;
+        log.info("임베딩 디스크 캐시 세대 교체: {} (이전 세대 {}건)", file, full.size);
+    }
+
+    /**
+     * 현재 세대와 이전 세대의 레코드 수 (이전 세대에서 옮겨 쓴 벡터는 두 번 센다).
+     */
+    public int size() {
+        Generation old = previous;
+        return current.size + (old != null ? old.size : 0);
+    }
+
+    /**
+     * 두 세대 파일의 크기 합.
+     */
+    public long fileBytes() {
+        Generation old = previous;
+        return current.fileBytes() + (old != null ? old.fileBytes() : 0);
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public int rollovers() {
+        return rollovers;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        current.close();
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * 파일 하나(세대)의 매핑과 해시 → 슬롯 인덱스.
+     */
+    private final class Generation {
+
+        private final FileChannel channel;
+        private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+        private final Map<String, Integer> index = new ConcurrentHashMap<>();
+        private volatile int size;
+
+        private Generation(Path path) throws IOException {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            load();
+        }
+
+        private void load() throws IOException {
+            long fileSize = channel.size();
+            int segmentCount = (int) ((fileSize + segmentBytes - 1) / segmentBytes);
+            for (int i = 0; i < segmentCount; i++) {
+                mapSegment(i);
+            }
+
+            byte[] hash = new byte[HASH_BYTES];
+            int slot = 0;
+            while (slot < segmentCount * RECORDS_PER_SEGMENT) {
+                MappedByteBuffer segment = segments.get(slot / RECORDS_PER_SEGMENT);
+                int offset = (slot % RECORDS_PER_SEGMENT) * recordBytes;
+                if (segment.getInt(offset) != MAGIC) {
+                    break;
+                }
+                segment.get(offset + Integer.BYTES, hash);
+                index.put(HexFormat.of().formatHex(hash), slot);
+                slot++;
+            }
+            size = slot;
+        }
+
+        private void mapSegment(int segmentIndex) throws IOException {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segmentIndex * segmentBytes, segmentBytes));
+        }
+
+        private float[] get(String key) {
+            Integer slot = index.get(key);
+            if (slot == null) {
+                return null;
+            }
+            MappedByteBuffer segment = segments.get(slot / RECORDS_PER_SEGMENT);
+            int offset = (slot % RECORDS_PER_SEGMENT) * recordBytes + Integer.BYTES + HASH_BYTES;
+            float[] vector = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = segment.getFloat(offset + i * Float.BYTES);
+            }
+            return vector;
+        }
+
+        private void append(String key, byte[] hash, float[] vector) throws IOException {
+            int slot = size;
+            int segmentIndex = slot / RECORDS_PER_SEGMENT;
+            while (segments.size() <= segmentIndex) {
+                mapSegment(segments.size());
+            }
+            MappedByteBuffer segment = segments.get(segmentIndex);
+            int offset = (slot % RECORDS_PER_SEGMENT) * recordBytes;
+
+            segment.put(offset + Integer.BYTES, hash);
+            int vectorOffset = offset + Integer.BYTES + HASH_BYTES;
+            for (int i = 0; i < dimension; i++) {
+                segment.putFloat(vectorOffset + i * Float.BYTES, vector[i]);
+            }
+            segment.putInt(offset, MAGIC);
+
+            index.put(key, slot);
+            size++;
+        }
+
+        /**
+         * 매핑한 세그먼트 크기 합 (매핑하면서 파일이 그만큼 늘어난다).
+         */
+        private long fileBytes() {
+            return segments.size() * segmentBytes;
+        }
+
+        private void close() throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            channel.close();
+        }
+    }
+}
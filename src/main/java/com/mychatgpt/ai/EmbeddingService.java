@@ -1,5 +1,7 @@
 package com.mychatgpt.ai;
 
+import java.util.List;
+
 /**
  * 텍스트를 벡터 임베딩으로 변환하는 서비스 인터페이스.
  *
@@ -16,6 +18,15 @@ public interface EmbeddingService {
      */
     float[] getEmbedding(String text);
 
+    /**
+     * 여러 텍스트를 한 번에 벡터 임베딩으로 변환한다.
+     * 구현체는 설정된 배치 크기/토큰 한도 단위로 나누어 임베딩 서버를 호출한다.
+     *
+     * @param texts 임베딩할 텍스트 리스트
+     * @return 입력 순서와 동일한 순서의 임베딩 벡터 리스트
+     */
+    List<float[]> getEmbeddings(List<String> texts);
+
     /**
      * 임베딩 벡터의 차원 수를 반환한다.
      *
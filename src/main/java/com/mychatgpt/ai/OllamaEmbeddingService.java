@@ -1,10 +1,15 @@
 package com.mychatgpt.ai;
 
+import com.mychatgpt.config.EmbeddingConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -12,7 +17,11 @@ public class OllamaEmbeddingService implements EmbeddingService {
 
     private static final int EMBEDDING_DIMENSION = 1024;
 
+    /** 토큰 수 추정용 문자/토큰 비율 (bge-m3 토크나이저 기준 한국어·영어 혼합 텍스트의 대략적인 값) */
+    private static final int CHARS_PER_TOKEN = 2;
+
     private final EmbeddingModel embeddingModel;
+    private final EmbeddingConfig embeddingConfig;
 
     @Override
     public float[] getEmbedding(String text) {
@@ -27,6 +36,72 @@ public class OllamaEmbeddingService implements EmbeddingService {
         }
     }
 
+    /**
+     * 텍스트 리스트를 배치 단위로 임베딩한다.
+     *
+     * 배치 분할 기준:
+     * - maxBatchSize: 요청당 텍스트 수 상한
+     * - maxBatchTokens: 요청당 추정 토큰 수 상한 (긴 청크가 몰려 서버 한도를 넘지 않도록)
+     *
+     * 빈 텍스트는 서버로 보내지 않고 getEmbedding()과 동일하게 0 벡터로 채운다.
+     */
+    @Override
+    public List<float[]> getEmbeddings(List<String> texts) {
+        float[][] results = new float[texts.size()][];
+        List<Integer> pendingIndexes = new ArrayList<>();
+        List<String> pendingTexts = new ArrayList<>();
+        int pendingTokens = 0;
+
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.isBlank()) {
+                results[i] = new float[EMBEDDING_DIMENSION];
+                continue;
+            }
+
+            int tokens = estimateTokens(text);
+            boolean batchFull = pendingTexts.size() >= embeddingConfig.getMaxBatchSize()
+                    || pendingTokens + tokens > embeddingConfig.getMaxBatchTokens();
+            if (!pendingTexts.isEmpty() && batchFull) {
+                embedBatch(pendingIndexes, pendingTexts, results);
+                pendingIndexes.clear();
+                pendingTexts.clear();
+                pendingTokens = 0;
+            }
+
+            pendingIndexes.add(i);
+            pendingTexts.add(text);
+            pendingTokens += tokens;
+        }
+
+        if (!pendingTexts.isEmpty()) {
+            embedBatch(pendingIndexes, pendingTexts, results);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void embedBatch(List<Integer> indexes, List<String> texts, float[][] results) {
+        try {
+            List<float[]> embeddings = embeddingModel.embed(texts);
+            if (embeddings.size() != texts.size()) {
+                throw new IllegalStateException(
+                        "임베딩 결과 수 불일치: 요청 " + texts.size() + "건, 응답 " + embeddings.size() + "건");
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                results[indexes.get(i)] = embeddings.get(i);
+            }
+            log.debug("배치 임베딩 완료: {}건", texts.size());
+        } catch (Exception e) {
+            log.error("배치 임베딩 생성 실패 ({}건): {}", texts.size(), e.getMessage());
+            throw new RuntimeException("배치 임베딩 생성 실패", e);
+        }
+    }
+
+    private int estimateTokens(String text) {
+        return text.length() / CHARS_PER_TOKEN + 1;
+    }
+
     @Override
     public int getEmbeddingDimension() {
         return EMBEDDING_DIMENSION;
@@ -0,0 +1,123 @@
+package com.mychatgpt.ai;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mychatgpt.config.EmbeddingConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 검색어 임베딩 전용 캐시. 모든 벡터 검색 진입점(VectorDbService, KnowledgeBaseService)이 이걸 거친다.
+ *
+ * 채팅에서는 같은 검색어로 도구 호출과 REST 검색이 반복되는데, 문서용 CachingEmbeddingService를 거치면
+ * 한 번 쓰고 마는 검색어가 디스크 캐시에 계속 쌓인다. 그래서 검색어는 메모리에만, 크기와 유효 시간을 따로 두고 캐시한다.
+ *
+ * - 키: (모델 이름, 정규화한 검색어). 정규화는 NFKC + 공백 정리라 "배너  적용"과 " 배너 적용"은 같은 키.
+ *   임베딩도 정규화한 검색어로 계산하므로 같은 키는 항상 같은 벡터다
+ * - single-flight: 같은 검색어가 동시에 들어오면 먼저 온 요청만 임베딩 서버를 부르고 나머지는 그 결과를 기다린다
+ * - 실패한 요청은 캐시에 남기지 않는다 (기다리던 요청도 같은 예외를 받음)
+ */
+@Service
+@Slf4j
+public class QueryEmbeddingCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final OllamaEmbeddingService delegate;
+    private final AsyncCache<String, float[]> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    public QueryEmbeddingCache(OllamaEmbeddingService delegate, EmbeddingConfig embeddingConfig) {
+        this.delegate = delegate;
+        EmbeddingConfig.QueryCache config = embeddingConfig.getQueryCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfterAccess(config.getTtl())
+                .buildAsync();
+    }
+
+    /**
+     * 검색어의 임베딩. 캐시에 없으면 호출한 스레드에서 임베딩 서버를 부른다 (blocking).
+     */
+    public float[] get(String query) {
+        String text = normalize(query);
+        if (text.isEmpty()) {
+            return delegate.getEmbedding(text);
+        }
+        String key = delegate.getModelName() + '\u0000' + text;
+
+        CompletableFuture<float[]> loading = new CompletableFuture<>();
+        CompletableFuture<float[]> existing = cache.asMap().putIfAbsent(key, loading);
+        if (existing != null) {
+            if (existing.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        try {
+            float[] embedding = delegate.getEmbedding(text);
+            loadNanos.add(System.nanoTime() - start);
+            loading.complete(embedding);
+            return embedding;
+        } catch (RuntimeException e) {
+            failures.increment();
+            cache.asMap().remove(key, loading);
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(Normalizer.normalize(query, Normalizer.Form.NFKC)).replaceAll(" ").trim();
+    }
+
+    /**
+     * 적중률과 아낀 시간. savedMillis는 (적중 + 합류) × 평균 임베딩 시간으로 추정한 값이다.
+     */
+    public Map<String, Object> getStats() {
+        long hit = hits.sum();
+        long joined = coalesced.sum();
+        long miss = misses.sum();
+        long total = hit + joined + miss;
+        long loaded = miss - failures.sum();
+        double avgLoadMillis = loaded == 0 ? 0.0 : loadNanos.sum() / 1_000_000.0 / loaded;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("model", delegate.getModelName());
+        stats.put("entries", cache.synchronous().estimatedSize());
+        stats.put("hits", hit);
+        stats.put("coalesced", joined);
+        stats.put("misses", miss);
+        stats.put("failures", failures.sum());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (hit + joined) / total);
+        stats.put("avgEmbedMillis", avgLoadMillis);
+        stats.put("savedMillisPerSearch", total == 0 ? 0.0 : avgLoadMillis * (hit + joined) / total);
+        stats.put("savedMillis", (long) (avgLoadMillis * (hit + joined)));
+        return stats;
+    }
+}
@@ -16,7 +16,10 @@ public class CacheConfig {
         CaffeineCacheManager manager = new CaffeineCacheManager();
         manager.setCaffeine(Caffeine.newBuilder()
                 .expireAfterWrite(10, TimeUnit.MINUTES)
-                .maximumSize(500));
+                .maximumSize(500)
+                .recordStats());
+        // searchAllSourcesAsync(Mono)도 캐시할 수 있도록 (blocking 버전과 같은 항목을 같이 쓴다)
+        manager.setAsyncCacheMode(true);
         return manager;
     }
 }
\ No newline at end of file
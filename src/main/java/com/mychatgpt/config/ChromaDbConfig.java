@@ -4,6 +4,22 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
+/**
+ * ChromaDB 접속 설정.
+ *
+ * transport: ChromaTransport 설정
+ * - connectTimeout: TCP 연결 타임아웃
+ * - queryTimeout / writeTimeout: 요청 1회(시도 1번)의 응답 대기 한도. 검색은 짧게, ingest 쓰기는 길게
+ * - maxRetries / retryBackoff: 읽기 요청(검색/조회)의 재시도 횟수와 첫 대기 시간 (지수 증가 + jitter)
+ * - maxIdleTime: 유휴 커넥션 유지 시간. ChromaDB(uvicorn)의 keep-alive(5초)보다 짧아야
+ *   서버가 먼저 닫은 커넥션을 재사용하다 실패하는 일이 없다
+ * - query / ingest: 채팅 검색과 대량 ingest의 bulkhead. 각각 별도의 커넥션 풀을 쓴다
+ *   - maxConcurrent: 동시 요청 수 (= 커넥션 풀 크기)
+ *   - maxQueued: 대기할 수 있는 요청 수. 넘으면 즉시 거부
+ *   - maxWait: 대기열에서 기다릴 수 있는 최대 시간
+ */
 @Configuration
 @ConfigurationProperties(prefix = "chromadb")
 @Data
@@ -11,8 +27,37 @@ public class ChromaDbConfig {
     private String host;
     private int port;
     private String collectionName;
+    private Transport transport = new Transport();
 
     public String getBaseUrl() {
         return "http://" + host + ":" + port;
     }
+
+    @Data
+    public static class Transport {
+        private Duration connectTimeout = Duration.ofSeconds(3);
+        private Duration queryTimeout = Duration.ofSeconds(5);
+        private Duration writeTimeout = Duration.ofSeconds(60);
+        private int maxRetries = 2;
+        private Duration retryBackoff = Duration.ofMillis(100);
+        private Duration maxIdleTime = Duration.ofSeconds(4);
+        private Lane query = new Lane(16, 64, Duration.ofSeconds(2));
+        private Lane ingest = new Lane(4, 32, Duration.ofMinutes(2));
+    }
+
+    @Data
+    public static class Lane {
+        private int maxConcurrent;
+        private int maxQueued;
+        private Duration maxWait;
+
+        public Lane() {
+        }
+
+        public Lane(int maxConcurrent, int maxQueued, Duration maxWait) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            this.maxWait = maxWait;
+        }
+    }
 }
@@ -0,0 +1,22 @@
+package com.mychatgpt.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 벡터DB에 넣을 텍스트를 청크로 나누는 Chunker 설정.
+ *
+ * - maxTokens: 청크 하나의 최대 토큰 수 (헤더와 특수 토큰 포함). bge-m3 입력 한도(8192)보다 한참 작게 두어
+ *   한 청크가 한 가지 주제만 담도록 한다
+ * - overlapTokens: 이전 청크 끝에서 다음 청크 앞으로 이어 붙이는 토큰 수. 문장 단위로 채우므로 이보다 적을 수 있다
+ * - tokenizerPath: bge-m3의 HuggingFace tokenizer.json 경로. 파일이 없으면 문자 종류 기반 추정치로 센다
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chunking")
+@Data
+public class ChunkingConfig {
+    private int maxTokens = 512;
+    private int overlapTokens = 48;
+    private String tokenizerPath = "/app/models/bge-m3/tokenizer.json";
+}
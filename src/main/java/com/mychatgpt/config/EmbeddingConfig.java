@@ -0,0 +1,49 @@
+package com.mychatgpt.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 임베딩 서버(vLLM bge-m3) 배치 호출 설정.
+ *
+ * - maxBatchSize: 한 번의 임베딩 요청에 담는 최대 텍스트 수
+ * - maxBatchTokens: 한 번의 임베딩 요청에 담는 최대 토큰 수 (추정치 기준)
+ *
+ * 둘 중 하나라도 초과하면 다음 요청으로 분할된다.
+ *
+ * cache: 임베딩 캐시(CachingEmbeddingService) 설정
+ * - memoryMaxSize: 메모리(Caffeine) 캐시 최대 벡터 수
+ * - diskEnabled / dir: 재시작 후에도 유지되는 디스크 캐시 사용 여부와 저장 위치
+ * - diskMaxSize: 디스크 캐시 파일(현재 + 이전 세대)의 최대 크기. 넘으면 오래 안 쓴 벡터부터 버린다
+ *
+ * queryCache: 검색어 임베딩 캐시(QueryEmbeddingCache) 설정
+ * - maxSize: 메모리에 두는 최대 검색어 수
+ * - ttl: 마지막 사용 후 이 시간이 지나면 버림
+ */
+@Configuration
+@ConfigurationProperties(prefix = "embedding")
+@Data
+public class EmbeddingConfig {
+    private int maxBatchSize = 32;
+    private int maxBatchTokens = 16384;
+    private Cache cache = new Cache();
+    private QueryCache queryCache = new QueryCache();
+
+    @Data
+    public static class Cache {
+        private int memoryMaxSize = 10000;
+        private boolean diskEnabled = true;
+        private String dir = "/app/embedding-cache";
+        private DataSize diskMaxSize = DataSize.ofGigabytes(2);
+    }
+
+    @Data
+    public static class QueryCache {
+        private int maxSize = 2000;
+        private Duration ttl = Duration.ofHours(1);
+    }
+}
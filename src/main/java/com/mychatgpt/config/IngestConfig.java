@@ -0,0 +1,80 @@
+package com.mychatgpt.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * knowledge base ingest 파이프라인(IngestPipeline) 설정.
+ *
+ * - batchSize: prepare 단계가 한 번에 처리하는 항목(이슈/문서) 수
+ * - embedConcurrency: 동시에 임베딩 서버로 보내는 배치 수. 서버가 요청을 모아 GPU에서 처리하므로
+ *   1보다 크게 두면 prepare/write가 도는 동안에도 서버가 쉬지 않는다
+ * - queueCapacity: 임베딩을 마치고 write 단계를 기다릴 수 있는 배치 수. 가득 차면 앞 단계가 멈춘다 (backpressure)
+ * - writeBatchSize: write 단계가 벡터DB에 한 번에 저장하는 청크 수 (이 값이 찰 때까지 여러 배치를 모음)
+ * - parseConcurrency: Confluence HTML을 동시에 파싱하는 스레드 수. 0이면 CPU 코어 수
+ *
+ * jobs: 업로드/디렉토리 ingest를 실행하는 백그라운드 작업(IngestJobService) 설정
+ * - concurrency: 동시에 실행하는 작업 수. 작업마다 임베딩 서버와 벡터DB를 계속 사용하므로
+ *   작게 두어야 채팅 요청이 밀리지 않는다
+ * - queueCapacity: 실행을 기다릴 수 있는 작업 수. 넘으면 새 작업을 거부한다
+ * - progressSaveInterval: 진행 상황을 DB에 기록하는 최소 간격 (체크포인트는 바뀔 때마다 바로 기록)
+ * - resumeInterrupted: 서버 재시작으로 중단된 작업을 기동 후 체크포인트부터 다시 실행할지 여부
+ * - maxResumes: 같은 작업을 재개하는 최대 횟수 (매번 같은 곳에서 죽는 작업이 기동할 때마다 반복되지 않도록)
+ * - resumeWithin: 이보다 오래전에 등록된 중단 작업은 재개하지 않는다
+ * - stagingDir: 업로드 파일을 작업이 끝날 때까지 보관하는 디렉토리. 비어 있으면 시스템 임시 디렉토리.
+ *   업로드 작업을 재개하려면 재시작 후에도 남아 있는 경로(볼륨)여야 한다
+ *
+ * sync: 디렉토리를 감시하면서 바뀐 파일만 다시 ingest하는 동기화(DirectoryWatcher) 설정
+ * - directory: 감시할 디렉토리. 비어 있으면 감시하지 않는다 (POST /sync-directory로 직접 실행은 가능)
+ * - debounce: 마지막 변경 이벤트 후 이만큼 조용하면 동기화를 시작한다 (export 파일이 한꺼번에 복사되는 동안 기다림)
+ * - rescanInterval: 이벤트를 놓쳤을 때(네트워크 드라이브, 이벤트 overflow)를 대비해 디렉토리를 다시 훑는 주기
+ *
+ * retry: 저장에 실패한 항목을 다시 시도하는 재시도 대기열(IngestRetryService) 설정
+ * - pollInterval: 시도할 때가 된 항목을 확인하는 주기
+ * - initialBackoff / maxBackoff: n번째 실패 후 initialBackoff × 2^(n-1) (최대 maxBackoff) 뒤에 다시 시도한다
+ * - maxAttempts: 이만큼 실패하면 DEAD로 옮기고 더 시도하지 않는다 (POST /retry-queue/replay로 다시 넣을 수 있음)
+ * - batchSize: 한 번에 다시 저장하는 항목 수
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ingest")
+@Data
+public class IngestConfig {
+    private int batchSize = 50;
+    private int embedConcurrency = 4;
+    private int queueCapacity = 4;
+    private int writeBatchSize = 500;
+    private int parseConcurrency = 0;
+    private Jobs jobs = new Jobs();
+    private Sync sync = new Sync();
+    private Retry retry = new Retry();
+
+    @Data
+    public static class Jobs {
+        private int concurrency = 1;
+        private int queueCapacity = 8;
+        private Duration progressSaveInterval = Duration.ofSeconds(2);
+        private boolean resumeInterrupted = true;
+        private int maxResumes = 3;
+        private Duration resumeWithin = Duration.ofHours(24);
+        private String stagingDir = "";
+    }
+
+    @Data
+    public static class Sync {
+        private String directory = "";
+        private Duration debounce = Duration.ofSeconds(5);
+        private Duration rescanInterval = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Retry {
+        private Duration pollInterval = Duration.ofSeconds(30);
+        private Duration initialBackoff = Duration.ofMinutes(1);
+        private Duration maxBackoff = Duration.ofHours(1);
+        private int maxAttempts = 6;
+        private int batchSize = 20;
+    }
+}
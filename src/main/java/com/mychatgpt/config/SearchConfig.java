@@ -0,0 +1,79 @@
+package com.mychatgpt.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * knowledge base 검색(knowledgeBaseSearch 도구) 설정.
+ *
+ * keyword: 벡터 검색과 함께 쓰는 BM25 키워드 검색(KeywordSearchService)
+ * - enabled: false면 색인을 만들지 않고 벡터 검색만 사용
+ * - k1 / b: BM25 파라미터. k1은 같은 단어가 반복될 때 점수가 오르는 정도, b는 긴 청크를 깎는 정도
+ * - rrfK: reciprocal rank fusion 상수. 벡터/키워드 결과에서 r위인 청크는 1 / (rrfK + r)점을 받는다
+ * - candidateMultiplier: 벡터/키워드 검색에서 각각 (요청 결과 수 × 이 값)개를 가져와 합친 뒤 재정렬한다
+ *
+ * rerank: 합친 후보를 다시 정렬해 요청 수만큼 고르는 단계(RerankService)
+ * - enabled: false면 합친 순서 그대로 자른다
+ * - budget: 질의 하나의 재정렬에 쓸 수 있는 시간. 넘기면 합친 순서 그대로 돌려준다
+ * - vectorWeight / lexicalWeight / orderWeight: 관련도 = 벡터 유사도, 검색어 일치 비율, 합친 순위(0~1)의 가중합
+ * - mmrLambda: 관련도와 다양성의 비율 (1이면 관련도만, 낮을수록 이미 고른 청크와 비슷한 청크를 뒤로 미룸)
+ * - sameItemSimilarity: 같은 이슈/문서의 청크끼리는 내용이 달라도 최소 이만큼 비슷하다고 본다
+ * - crossEncoder.url: 로컬 cross-encoder 서버 주소 (비워 두면 사용하지 않음). 후보 전체를 한 번에 점수 매긴다
+ * - crossEncoder.maxChars: cross-encoder에 보내는 청크 하나의 최대 글자 수
+ *
+ * semanticCache: 표현만 다른 같은 질문에 검색 결과를 재사용하는 캐시(SemanticSearchCache)
+ * - enabled: false면 사용하지 않음
+ * - threshold: 저장된 검색어 임베딩과의 cosine 유사도가 이 값 이상이면 그 결과를 돌려준다
+ * - maxEntries / ttl: 최대 항목 수와 저장 후 유효 시간
+ */
+@Configuration
+@ConfigurationProperties(prefix = "search")
+@Data
+public class SearchConfig {
+    private Keyword keyword = new Keyword();
+    private Rerank rerank = new Rerank();
+    private SemanticCache semanticCache = new SemanticCache();
+
+    @Data
+    public static class Keyword {
+        private boolean enabled = true;
+        private float k1 = 1.2f;
+        private float b = 0.75f;
+        private int rrfK = 60;
+        private int candidateMultiplier = 2;
+        /** 기동 시 색인을 만들 때 벡터 저장소에서 한 번에 읽는 청크 수 */
+        private int loadPageSize = 1000;
+    }
+
+    @Data
+    public static class Rerank {
+        private boolean enabled = true;
+        private Duration budget = Duration.ofMillis(300);
+        private double vectorWeight = 0.5;
+        private double lexicalWeight = 0.3;
+        private double orderWeight = 0.2;
+        private double mmrLambda = 0.7;
+        private double sameItemSimilarity = 0.5;
+        private CrossEncoder crossEncoder = new CrossEncoder();
+    }
+
+    @Data
+    public static class CrossEncoder {
+        private String url = "";
+        private String model = "bge-reranker-v2-m3";
+        private int maxChars = 2000;
+        /** budget 중 cross-encoder가 쓸 수 있는 비율. 나머지는 실패했을 때 기본 점수 계산 + MMR에 남겨 둔다 */
+        private double budgetShare = 0.7;
+    }
+
+    @Data
+    public static class SemanticCache {
+        private boolean enabled = true;
+        private double threshold = 0.95;
+        private int maxEntries = 1000;
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+}
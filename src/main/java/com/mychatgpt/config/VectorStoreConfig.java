@@ -0,0 +1,62 @@
+package com.mychatgpt.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 벡터 저장소 백엔드 설정.
+ *
+ * - backend: chroma(기본값, 외부 ChromaDB 컨테이너), hnsw(프로세스 내장 HNSW 인덱스),
+ *   pgvector(기존 PostgreSQL의 pgvector 테이블)
+ * - dimension: 임베딩 차원 (bge-m3 = 1024)
+ *
+ * hnsw: 내장 인덱스 설정
+ * - dir: WAL / 벡터 파일 / 그래프 스냅샷 저장 위치
+ * - m / efConstruction / efSearch: HNSW 그래프 파라미터. m은 노드당 이웃 수,
+ *   ef 값이 클수록 정확도가 오르고 속도는 느려진다
+ * - exactSearchThreshold: 필터 조건에 맞는 문서 수가 이 값 이하면 그래프 대신 전수 비교
+ *   (특정 userId 문서처럼 매우 좁은 필터에서 그래프 탐색은 결과를 다 채우지 못할 수 있음)
+ * - snapshotInterval: 이 건수만큼 추가될 때마다 그래프 스냅샷 저장 (재기동 시 그래프 재구성 시간 단축)
+ * - compactDeletedRatio: 기동 시 삭제된 노드 비율이 이 값을 넘으면 WAL을 압축하고 그래프를 다시 만든다
+ * - searchMode: graph(HNSW 그래프 탐색) 또는 quantized(양자화 사본 전수 비교 + float 재계산, 그래프 없음)
+ * - quantization: quantized 모드의 양자화 방식. int8(float 대비 1/4) 또는 binary(1/32)
+ * - rescoreCandidates: quantized 모드에서 float 벡터로 다시 계산할 후보 수
+ *
+ * pgvector: PostgreSQL 설정
+ * - table: 문서 테이블 이름 (기동 시 없으면 생성)
+ * - m / efConstruction / efSearch: pgvector HNSW 인덱스 파라미터
+ * - insertBatchSize: multi-row INSERT 한 문장에 담는 행 수
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vectordb")
+@Data
+public class VectorStoreConfig {
+    private String backend = "chroma";
+    private int dimension = 1024;
+    private Hnsw hnsw = new Hnsw();
+    private PgVector pgvector = new PgVector();
+
+    @Data
+    public static class Hnsw {
+        private String dir = "/app/vector-index";
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 64;
+        private int exactSearchThreshold = 2000;
+        private int snapshotInterval = 10000;
+        private double compactDeletedRatio = 0.3;
+        private String searchMode = "graph";
+        private String quantization = "binary";
+        private int rescoreCandidates = 400;
+    }
+
+    @Data
+    public static class PgVector {
+        private String table = "vector_documents";
+        private int m = 16;
+        private int efConstruction = 64;
+        private int efSearch = 100;
+        private int insertBatchSize = 100;
+    }
+}
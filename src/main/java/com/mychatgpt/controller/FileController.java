@@ -2,6 +2,7 @@ package com.mychatgpt.controller;
 
 import com.mychatgpt.service.FileService;
 import com.mychatgpt.service.VectorDbService;
+import com.mychatgpt.text.Chunker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @RestController
 @RequestMapping("/api/files")
@@ -18,6 +20,7 @@ public class FileController {
 
     private final FileService fileService;
     private final VectorDbService vectorDbService;
+    private final Chunker chunker;
 
     /**
      * Upload a file and optionally ingest it into the vector DB.
@@ -30,28 +33,29 @@ public class FileController {
 
         try {
             String savedPath = fileService.saveFile(file);
-            String extractedText = fileService.extractText(savedPath);
 
             Map<String, Object> response = new java.util.HashMap<>();
             response.put("filePath", savedPath);
             response.put("originalFilename", file.getOriginalFilename());
-            response.put("textLength", extractedText.length());
 
-            if (ingest && !extractedText.isBlank()) {
-                // Split large text into chunks for better retrieval
-                var chunks = splitIntoChunks(extractedText, 1000);
-                var docIds = new java.util.ArrayList<String>();
-
-                for (String chunk : chunks) {
-                    String docId = vectorDbService.storeDocument(
-                            chunk, userId, file.getOriginalFilename(),
-                            Map.of("filename", file.getOriginalFilename())
-                    );
-                    docIds.add(docId);
-                }
+            if (ingest) {
+                // Stream extracted text into token-bounded chunks and store them batch by batch
+                AtomicLong textLength = new AtomicLong();
+                var docIds = vectorDbService.storeDocumentStream(
+                        sink -> {
+                            Chunker.Session chunks = chunker.open(sink);
+                            textLength.set(fileService.extractText(savedPath, chunks::append));
+                            chunks.finish();
+                        },
+                        userId, file.getOriginalFilename(),
+                        Map.of("filename", file.getOriginalFilename())
+                );
 
+                response.put("textLength", textLength.get());
                 response.put("vectorDbDocIds", docIds);
                 response.put("chunksStored", docIds.size());
+            } else {
+                response.put("textLength", fileService.extractText(savedPath, text -> { }));
             }
 
             return ResponseEntity.ok(response);
@@ -62,17 +66,4 @@ public class FileController {
                     .body(Map.of("error", "파일 업로드 실패: " + e.getMessage()));
         }
     }
-
-    private java.util.List<String> splitIntoChunks(String text, int chunkSize) {
-        java.util.List<String> chunks = new java.util.ArrayList<>();
-        int overlap = 200;
-
-        for (int i = 0; i < text.length(); i += chunkSize - overlap) {
-            int end = Math.min(i + chunkSize, text.length());
-            chunks.add(text.substring(i, end));
-            if (end == text.length()) break;
-        }
-
-        return chunks;
-    }
 }
@@ -1,16 +1,26 @@
 package com.mychatgpt.controller;
 
 import com.mychatgpt.dto.YouTrackIssueDto;
+import com.mychatgpt.entity.IngestJob;
+import com.mychatgpt.service.IngestJobService;
+import com.mychatgpt.service.IngestRetryService;
+import com.mychatgpt.service.KeywordSearchService;
 import com.mychatgpt.service.KnowledgeBaseService;
+import com.mychatgpt.service.RerankService;
 import com.mychatgpt.vectordb.VectorSearchResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
 
+import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Knowledge Base 관리 API (YouTrack + Confluence).
@@ -21,9 +31,20 @@ import java.util.Map;
  *   일괄 처리하며, 문서 ID를 벡터DB 키로 사용하여 upsert(업데이트) 지원.
  *
  * API 설계:
- * - POST /api/knowledge-base/upload            → xlsx 파일 업로드 & 일괄 저장
- * - POST /api/knowledge-base/ingest-directory  → 디렉토리 경로에서 HTML+XLSX 일괄 저장
- * - POST /api/knowledge-base/ingest-html       → 디렉토리 경로에서 HTML만 일괄 저장
+ * - POST /api/knowledge-base/upload            → xlsx 파일 업로드 & 일괄 저장 (백그라운드 작업)
+ * - POST /api/knowledge-base/upload-html       → HTML 파일 업로드 & 일괄 저장 (백그라운드 작업)
+ * - POST /api/knowledge-base/upload-html-zip   → Confluence space export ZIP 업로드 & 일괄 저장 (백그라운드 작업)
+ * - POST /api/knowledge-base/ingest-directory  → 디렉토리 경로에서 HTML+XLSX 일괄 저장 (백그라운드 작업)
+ * - POST /api/knowledge-base/ingest-html       → 디렉토리 경로에서 HTML만 일괄 저장 (백그라운드 작업)
+ * - POST /api/knowledge-base/sync-directory    → 디렉토리에서 바뀐 파일만 저장/삭제 (백그라운드 작업)
+ * - GET  /api/knowledge-base/jobs              → 최근 ingest 작업 목록
+ * - GET  /api/knowledge-base/jobs/{jobId}      → ingest 작업 진행 상황/결과
+ * - POST /api/knowledge-base/jobs/{jobId}/cancel → ingest 작업 취소
+ * - GET  /api/knowledge-base/retry-queue       → 저장 실패 항목 재시도 대기열 상태 / DEAD 목록
+ * - POST /api/knowledge-base/retry-queue/replay → DEAD 항목을 다시 재시도 대기열에 넣음
+ * - GET  /api/knowledge-base/keyword-index     → 키워드(BM25) 색인 상태
+ * - POST /api/knowledge-base/keyword-index/rebuild → 키워드 색인을 벡터DB에서 다시 만듦
+ * - GET  /api/knowledge-base/rerank           → 검색 결과 재정렬 단계 상태
  * - PUT  /api/knowledge-base/issues            → 단건 이슈 upsert (JSON body)
  * - GET  /api/knowledge-base/search            → knowledge base 검색 (YouTrack)
  * - GET  /api/knowledge-base/search/confluence → Confluence 검색
@@ -31,6 +52,9 @@ import java.util.Map;
  * - DELETE /api/knowledge-base/issues/{id}     → 단건 삭제
  * - DELETE /api/knowledge-base/all             → YouTrack 전체 삭제
  * - DELETE /api/knowledge-base/confluence/all  → Confluence 전체 삭제
+ *
+ * 일괄 저장 API는 몇 분씩 걸릴 수 있으므로 작업을 등록하고 202 Accepted와 jobId를 바로 반환한다.
+ * 처리 결과는 GET /jobs/{jobId}의 result로 확인한다.
  */
 @RestController
 @RequestMapping("/api/knowledge-base")
@@ -39,6 +63,10 @@ import java.util.Map;
 public class KnowledgeBaseController {
 
     private final KnowledgeBaseService knowledgeBaseService;
+    private final IngestJobService ingestJobService;
+    private final IngestRetryService ingestRetryService;
+    private final KeywordSearchService keywordSearchService;
+    private final RerankService rerankService;
 
     /**
      * YouTrack export xlsx 파일을 업로드하여 벡터DB에 저장한다.
@@ -49,10 +77,16 @@ public class KnowledgeBaseController {
      * 사용 예시:
      *   curl -X POST http://localhost:8080/api/knowledge-base/upload \
      *        -F "file=@youtrack_export.xlsx"
+     *   → {"jobId": "...", "status": "QUEUED", ...}
+     *   curl http://localhost:8080/api/knowledge-base/jobs/{jobId}
+     *
+     * 내용이 바뀌지 않은 이슈는 임베딩/저장을 건너뛴다.
+     * 전체 export를 올릴 때 removeMissing=true를 주면 export에 없는 기존 이슈를 삭제한다.
      */
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> uploadYouTrackExcel(
-            @RequestParam("file") MultipartFile file) {
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "removeMissing", defaultValue = "false") boolean removeMissing) {
 
         // 파일 확장자 검증
         String originalFilename = file.getOriginalFilename();
@@ -64,12 +98,11 @@ public class KnowledgeBaseController {
         }
 
         try {
-            Map<String, Object> result = knowledgeBaseService.ingestYouTrackExcel(file);
-            return ResponseEntity.ok(result);
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            return accepted(ingestJobService.submitYouTrackUpload(file, removeMissing));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
-            log.error("YouTrack xlsx 처리 실패", e);
+            log.error("YouTrack xlsx 작업 등록 실패", e);
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", "파일 처리 중 오류 발생: " + e.getMessage()));
         }
@@ -114,18 +147,19 @@ public class KnowledgeBaseController {
      *
      * source="youtrack" 필터를 자동 적용하므로,
      * 다른 source(conversation, manual 등)의 데이터는 검색 결과에 포함되지 않는다.
+     *
+     * 검색 API는 Mono를 반환하므로 ChromaDB 응답을 기다리는 동안 서블릿 스레드를 점유하지 않는다.
      */
     @GetMapping("/search")
-    public ResponseEntity<List<VectorSearchResult>> search(
+    public Mono<ResponseEntity<List<VectorSearchResult>>> search(
             @RequestParam String query,
             @RequestParam(defaultValue = "5") int nResults) {
 
         if (query.isBlank()) {
-            return ResponseEntity.badRequest().build();
+            return Mono.just(ResponseEntity.badRequest().build());
         }
 
-        List<VectorSearchResult> results = knowledgeBaseService.searchKnowledgeBase(query, nResults);
-        return ResponseEntity.ok(results);
+        return knowledgeBaseService.searchKnowledgeBaseAsync(query, nResults).map(ResponseEntity::ok);
     }
 
     /**
@@ -165,6 +199,8 @@ public class KnowledgeBaseController {
      * 쉘 스크립트로 디렉토리 일괄 업로드:
      *   find /path/to/html -name "*.html" | xargs -I {} curl -X POST \
      *        http://localhost:8080/api/knowledge-base/upload-html -F "files=@{}"
+     *
+     * multipart 요청 크기 제한(50MB)이 있으므로 space 전체는 /upload-html-zip으로 올린다.
      */
     @PostMapping("/upload-html")
     public ResponseEntity<Map<String, Object>> uploadConfluenceHtml(
@@ -175,15 +211,48 @@ public class KnowledgeBaseController {
         }
 
         try {
-            Map<String, Object> result = knowledgeBaseService.ingestConfluenceHtmlFiles(files);
-            return ResponseEntity.ok(result);
+            return accepted(ingestJobService.submitConfluenceUpload(files));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
-            log.error("Confluence HTML 업로드 처리 실패", e);
+            log.error("Confluence HTML 업로드 작업 등록 실패", e);
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", "HTML 처리 중 오류 발생: " + e.getMessage()));
         }
     }
 
+    /**
+     * Confluence space export ZIP을 업로드하여 벡터DB에 저장한다.
+     *
+     * multipart가 아니라 요청 본문에 ZIP을 그대로 보낸다. 본문은 메모리에 올리지 않고 파일로 흘려 쓰므로
+     * multipart 크기 제한 없이 수 GB짜리 export도 올릴 수 있다. 작업은 압축을 디스크에 풀지 않고
+     * ZIP 항목을 차례로 읽으며 HTML 페이지만 파싱한다 (첨부파일/이미지는 건너뜀).
+     *
+     * 사용 예시:
+     *   curl -X POST "http://localhost:8080/api/knowledge-base/upload-html-zip?name=IT.zip" \
+     *        -H "Content-Type: application/zip" --data-binary @IT.zip
+     *
+     * removeMissing=true면 ZIP에 없는 기존 Confluence 문서를 삭제한다 (모든 space를 담은 export일 때만 사용).
+     */
+    @PostMapping(value = "/upload-html-zip",
+            consumes = {"application/zip", "application/x-zip-compressed", "application/octet-stream"})
+    public ResponseEntity<Map<String, Object>> uploadConfluenceZip(
+            InputStream body,
+            @RequestParam(value = "name", defaultValue = "confluence-export.zip") String name,
+            @RequestParam(value = "removeMissing", defaultValue = "false") boolean removeMissing) {
+        try {
+            return accepted(ingestJobService.submitConfluenceZip(body, name, removeMissing));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Confluence ZIP 업로드 작업 등록 실패: {}", name, e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "ZIP 처리 중 오류 발생: " + e.getMessage()));
+        }
+    }
+
     /**
      * 지정된 디렉토리에서 HTML 파일들을 읽어 벡터DB에 저장한다.
      *
@@ -200,15 +269,17 @@ public class KnowledgeBaseController {
      */
     @PostMapping("/ingest-html")
     public ResponseEntity<Map<String, Object>> ingestHtmlFromDirectory(
-            @RequestParam("path") String directoryPath) {
+            @RequestParam("path") String directoryPath,
+            @RequestParam(value = "removeMissing", defaultValue = "false") boolean removeMissing) {
 
         try {
-            Map<String, Object> result = knowledgeBaseService.ingestConfluenceHtmlFromDirectory(directoryPath);
-            return ResponseEntity.ok(result);
+            return accepted(ingestJobService.submitConfluenceDirectory(directoryPath, removeMissing));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
-            log.error("HTML 디렉토리 처리 실패: {}", directoryPath, e);
+            log.error("HTML 디렉토리 작업 등록 실패: {}", directoryPath, e);
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", "디렉토리 처리 중 오류 발생: " + e.getMessage()));
         }
@@ -226,50 +297,195 @@ public class KnowledgeBaseController {
      */
     @PostMapping("/ingest-directory")
     public ResponseEntity<Map<String, Object>> ingestFromDirectory(
-            @RequestParam("path") String directoryPath) {
+            @RequestParam("path") String directoryPath,
+            @RequestParam(value = "removeMissing", defaultValue = "false") boolean removeMissing) {
 
         try {
-            Map<String, Object> result = knowledgeBaseService.ingestFromDirectory(directoryPath);
-            return ResponseEntity.ok(result);
+            return accepted(ingestJobService.submitDirectory(directoryPath, removeMissing));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
-            log.error("디렉토리 통합 처리 실패: {}", directoryPath, e);
+            log.error("디렉토리 통합 작업 등록 실패: {}", directoryPath, e);
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", "디렉토리 처리 중 오류 발생: " + e.getMessage()));
         }
     }
 
+    /**
+     * 디렉토리를 지난 동기화 때의 파일 manifest(경로, 크기, 수정 시각, 해시)와 비교해서
+     * 추가/변경된 XLSX·HTML만 다시 저장하고, 삭제된 파일의 항목은 벡터DB에서 지운다.
+     *
+     * 같은 export를 다시 받아 덮어쓴 경우 바뀐 파일 수에 비례하는 시간만 걸린다.
+     * ingest.sync.directory를 설정하면 이 동기화가 파일 변경 시 자동으로 실행된다.
+     *
+     * 사용 예시:
+     *   curl -X POST "http://localhost:8080/api/knowledge-base/sync-directory?path=/data/export"
+     */
+    @PostMapping("/sync-directory")
+    public ResponseEntity<Map<String, Object>> syncDirectory(@RequestParam("path") String directoryPath) {
+        try {
+            return accepted(ingestJobService.submitDirectorySync(directoryPath));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("디렉토리 동기화 작업 등록 실패: {}", directoryPath, e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "디렉토리 동기화 중 오류 발생: " + e.getMessage()));
+        }
+    }
+
+    // ========== 백그라운드 ingest 작업 ==========
+
+    /**
+     * 최근 ingest 작업 목록 (최신순 50건)과 작업 실행기 상태.
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<Map<String, Object>> listJobs() {
+        return ResponseEntity.ok(Map.of(
+                "jobs", ingestJobService.listJobs(),
+                "executor", ingestJobService.getStats()
+        ));
+    }
+
+    /**
+     * ingest 작업의 진행 상황을 조회한다.
+     *
+     * status: QUEUED → RUNNING → SUCCEEDED / FAILED / CANCELLED (서버 재시작으로 끊기면 INTERRUPTED)
+     * 진행 중에는 batchesDone, itemsDone, itemsFailed, itemsPerSec, etaSeconds가 갱신되고,
+     * 끝나면 result에 처리 결과 요약(추가/변경/미변경/삭제/실패 건수 등)이 들어간다.
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String jobId) {
+        return ingestJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "작업을 찾을 수 없습니다: " + jobId)));
+    }
+
+    /**
+     * ingest 작업을 취소한다. 실행 중인 작업은 이미 시작한 배치까지 저장한 뒤 멈추며,
+     * removeMissing 삭제는 수행하지 않는다.
+     */
+    @PostMapping("/jobs/{jobId}/cancel")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable String jobId) {
+        try {
+            return ingestJobService.cancel(jobId)
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(Map.of("error", "작업을 찾을 수 없습니다: " + jobId)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // ========== 재시도 대기열 ==========
+
+    /**
+     * 저장에 실패한 항목의 재시도 대기열 상태.
+     *
+     * pending: 다시 시도할 항목 수 (due: 그중 시도할 때가 된 항목), dead: maxAttempts번 실패해서 멈춘 항목 수.
+     * deadItems에 최근 DEAD 항목 100건(ID, 시도 횟수, 마지막 오류)을 함께 반환한다.
+     */
+    @GetMapping("/retry-queue")
+    public ResponseEntity<Map<String, Object>> getRetryQueue() {
+        Map<String, Object> body = new LinkedHashMap<>(ingestRetryService.getStats());
+        body.put("deadItems", ingestRetryService.listDead());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * DEAD 항목을 재시도 대기열에 다시 넣고 바로 재시도를 시작한다 (임베딩 서버 장애를 복구한 뒤 등).
+     * ids를 주지 않으면 모든 DEAD 항목(source를 주면 그 source만)을 다시 넣는다.
+     *
+     * 사용 예시:
+     *   curl -X POST "http://localhost:8080/api/knowledge-base/retry-queue/replay"
+     *   curl -X POST "http://localhost:8080/api/knowledge-base/retry-queue/replay?source=youtrack&ids=PATALK-1246"
+     */
+    @PostMapping("/retry-queue/replay")
+    public ResponseEntity<Map<String, Object>> replayRetryQueue(
+            @RequestParam(value = "source", required = false) String source,
+            @RequestParam(value = "ids", required = false) List<String> ids) {
+        int replayed = ingestRetryService.replayDead(source, ids);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("replayed", replayed);
+        body.put("message", replayed + "건을 재시도 대기열에 다시 넣었습니다.");
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * knowledgeBaseSearch 도구가 벡터 검색과 함께 쓰는 키워드(BM25) 색인의 상태.
+     *
+     * ready가 false면 색인을 만드는 중이라 벡터 검색만 쓰고 있다.
+     * avgSearchMicros는 색인 조회 시간만 잰 평균이다 (본문을 벡터DB에서 가져오는 시간 제외).
+     */
+    @GetMapping("/keyword-index")
+    public ResponseEntity<Map<String, Object>> getKeywordIndex() {
+        return ResponseEntity.ok(keywordSearchService.getStats());
+    }
+
+    /**
+     * 키워드 색인을 비우고 벡터DB의 knowledge base 청크로 다시 만든다 (백그라운드).
+     * 색인은 ingest/삭제 때마다 같이 고쳐지므로 보통은 필요 없고, 벡터DB를 직접 고쳤을 때 사용한다.
+     */
+    @PostMapping("/keyword-index/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildKeywordIndex() {
+        keywordSearchService.rebuild();
+        return ResponseEntity.accepted().body(keywordSearchService.getStats());
+    }
+
+    /**
+     * knowledgeBaseSearch 도구의 재정렬 단계 상태.
+     *
+     * budgetExceeded는 시간 한도를 넘겨 합친 순서 그대로 돌려준 횟수,
+     * crossEncoderFailures는 cross-encoder가 실패해 기본 점수로 대신한 횟수다.
+     */
+    @GetMapping("/rerank")
+    public ResponseEntity<Map<String, Object>> getRerank() {
+        return ResponseEntity.ok(rerankService.getStats());
+    }
+
+    private static ResponseEntity<Map<String, Object>> accepted(IngestJob job) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", job.getJobId());
+        body.put("type", job.getType());
+        body.put("target", job.getTarget());
+        body.put("status", job.getStatus());
+        body.put("statusUrl", "/api/knowledge-base/jobs/" + job.getJobId());
+        return ResponseEntity.accepted().body(body);
+    }
+
     /**
      * Confluence knowledge base에서 유사 문서를 검색한다.
      */
     @GetMapping("/search/confluence")
-    public ResponseEntity<List<VectorSearchResult>> searchConfluence(
+    public Mono<ResponseEntity<List<VectorSearchResult>>> searchConfluence(
             @RequestParam String query,
             @RequestParam(defaultValue = "5") int nResults) {
 
         if (query.isBlank()) {
-            return ResponseEntity.badRequest().build();
+            return Mono.just(ResponseEntity.badRequest().build());
         }
 
-        List<VectorSearchResult> results = knowledgeBaseService.searchConfluenceKnowledgeBase(query, nResults);
-        return ResponseEntity.ok(results);
+        return knowledgeBaseService.searchConfluenceKnowledgeBaseAsync(query, nResults).map(ResponseEntity::ok);
     }
 
     /**
      * 모든 knowledge base (YouTrack + Confluence)에서 유사 문서를 검색한다.
      */
     @GetMapping("/search/all")
-    public ResponseEntity<List<VectorSearchResult>> searchAll(
+    public Mono<ResponseEntity<List<VectorSearchResult>>> searchAll(
             @RequestParam String query,
             @RequestParam(defaultValue = "5") int nResults) {
 
         if (query.isBlank()) {
-            return ResponseEntity.badRequest().build();
+            return Mono.just(ResponseEntity.badRequest().build());
         }
 
-        List<VectorSearchResult> results = knowledgeBaseService.searchAllKnowledgeBase(query, nResults);
-        return ResponseEntity.ok(results);
+        return knowledgeBaseService.searchAllKnowledgeBaseAsync(query, nResults).map(ResponseEntity::ok);
     }
 
     /**
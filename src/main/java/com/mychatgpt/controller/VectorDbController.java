@@ -1,10 +1,17 @@
 package com.mychatgpt.controller;
 
+import com.mychatgpt.ai.CachingEmbeddingService;
+import com.mychatgpt.ai.QueryEmbeddingCache;
+import com.mychatgpt.service.SearchCacheScopes;
+import com.mychatgpt.service.SemanticSearchCache;
 import com.mychatgpt.service.VectorDbService;
+import com.mychatgpt.vectordb.ChromaTransport;
 import com.mychatgpt.vectordb.VectorSearchResult;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
@@ -15,6 +22,11 @@ import java.util.Map;
 public class VectorDbController {
 
     private final VectorDbService vectorDbService;
+    private final CachingEmbeddingService cachingEmbeddingService;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final SearchCacheScopes searchCacheScopes;
+    private final SemanticSearchCache semanticSearchCache;
+    private final ObjectProvider<ChromaTransport> chromaTransport;
 
     /**
      * Manually add data to the vector DB.
@@ -37,17 +49,33 @@ public class VectorDbController {
      * Search the vector DB.
      */
     @PostMapping("/search")
-    public ResponseEntity<List<VectorSearchResult>> search(@RequestBody Map<String, String> request) {
+    public Mono<ResponseEntity<List<VectorSearchResult>>> search(@RequestBody Map<String, String> request) {
         String query = request.get("query");
         String userId = request.get("userId");
         int nResults = Integer.parseInt(request.getOrDefault("nResults", "5"));
 
         if (query == null || userId == null) {
-            return ResponseEntity.badRequest().build();
+            return Mono.just(ResponseEntity.badRequest().build());
         }
 
-        List<VectorSearchResult> results = vectorDbService.searchRelevantContext(query, userId, nResults);
-        return ResponseEntity.ok(results);
+        return vectorDbService.searchRelevantContextAsync(query, userId, nResults).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Search the user's data and the knowledge base at once.
+     * The two queries are sent concurrently and merged by distance.
+     */
+    @PostMapping("/search/all")
+    public Mono<ResponseEntity<List<VectorSearchResult>>> searchAll(@RequestBody Map<String, String> request) {
+        String query = request.get("query");
+        String userId = request.get("userId");
+        int nResults = Integer.parseInt(request.getOrDefault("nResults", "5"));
+
+        if (query == null) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        return vectorDbService.searchAllSourcesAsync(query, userId, nResults).map(ResponseEntity::ok);
     }
 
     /**
@@ -73,4 +101,72 @@ public class VectorDbController {
         vectorDbService.deleteUserDocuments(userId);
         return ResponseEntity.ok(Map.of("message", "사용자의 모든 문서가 삭제되었습니다.", "userId", userId));
     }
+
+    /**
+     * Measure search latency of the configured vector store backend (vectordb.backend).
+     * Run the same request against each backend loaded with the same corpus to compare them.
+     *
+     * Example:
+     *   curl -X POST http://localhost:8080/api/vectordb/benchmark \
+     *        -H "Content-Type: application/json" \
+     *        -d '{"queries": ["로그인 오류", "배포 절차"], "nResults": 5, "rounds": 20}'
+     */
+    @PostMapping("/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmark(@RequestBody Map<String, Object> request) {
+        @SuppressWarnings("unchecked")
+        List<String> queries = (List<String>) request.get("queries");
+        if (queries == null || queries.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "queries는 필수입니다."));
+        }
+        int nResults = ((Number) request.getOrDefault("nResults", 5)).intValue();
+        int rounds = ((Number) request.getOrDefault("rounds", 10)).intValue();
+        String source = (String) request.get("source");
+
+        return ResponseEntity.ok(vectorDbService.benchmarkSearch(queries, nResults, rounds, source));
+    }
+
+    /**
+     * Embedding cache hit/miss statistics.
+     */
+    @GetMapping("/embedding-cache/stats")
+    public ResponseEntity<Map<String, Object>> getEmbeddingCacheStats() {
+        return ResponseEntity.ok(cachingEmbeddingService.getStats());
+    }
+
+    /**
+     * Query embedding cache statistics: hit rate and the embedding time saved per search.
+     */
+    @GetMapping("/query-embedding-cache/stats")
+    public ResponseEntity<Map<String, Object>> getQueryEmbeddingCacheStats() {
+        return ResponseEntity.ok(queryEmbeddingCache.getStats());
+    }
+
+    /**
+     * Search result cache (searchAllSources) hit rate and per-scope generations.
+     */
+    @GetMapping("/search-cache/stats")
+    public ResponseEntity<Map<String, Object>> getSearchCacheStats() {
+        return ResponseEntity.ok(searchCacheScopes.getStats());
+    }
+
+    /**
+     * Semantic result cache hit rate and the distribution of best-match similarity (for tuning the threshold).
+     */
+    @GetMapping("/semantic-cache/stats")
+    public ResponseEntity<Map<String, Object>> getSemanticCacheStats() {
+        return ResponseEntity.ok(semanticSearchCache.getStats());
+    }
+
+    /**
+     * ChromaDB transport statistics per lane (query / ingest):
+     * bulkhead active/queued/rejected, request/timeout/retry counters and connection pool usage.
+     */
+    @GetMapping("/transport/stats")
+    public ResponseEntity<Map<String, Object>> getTransportStats() {
+        ChromaTransport transport = chromaTransport.getIfAvailable();
+        if (transport == null) {
+            return ResponseEntity.ok(Map.of("message", "ChromaDB 백엔드가 아닙니다 (vectordb.backend)."));
+        }
+        return ResponseEntity.ok(transport.getStats());
+    }
 }
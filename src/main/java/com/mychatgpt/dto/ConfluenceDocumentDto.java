@@ -1,11 +1,11 @@
 package com.mychatgpt.dto;
 
+import com.mychatgpt.text.Chunker;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -49,11 +49,10 @@ public class ConfluenceDocumentDto {
      * - breadcrumb은 문서의 카테고리/위치 정보를 담고 있어 검색 맥락에 도움
      * - 본문은 이미 HTML에서 텍스트만 추출된 상태
      * - 제목과 breadcrumb을 함께 포함해 "API 문서" 검색 시 관련 문서를 쉽게 찾도록 함
+     *
+     * 본문이 길면 Chunker가 토큰 예산에 맞춰 문장 단위로 나누고, 모든 청크에 ID/제목/경로 헤더를 붙인다.
      */
-    private static final int CHUNK_SIZE = 1000;
-    private static final int CHUNK_OVERLAP = 200;
-
-    public List<String> toVectorChunks() {
+    public List<String> toVectorChunks(Chunker chunker) {
         StringBuilder headerSb = new StringBuilder();
         headerSb.append("[문서 ID] ").append(id).append("\n");
         headerSb.append("[제목] ").append(title).append("\n");
@@ -65,18 +64,6 @@ public class ConfluenceDocumentDto {
                 ? "[내용]\n" + content.strip() + "\n"
                 : "";
 
-        int effectiveSize = CHUNK_SIZE - header.length();
-
-        if (fullContent.length() <= effectiveSize)
-            return List.of(header + fullContent);
-
-        List<String> chunks = new ArrayList<>();
-        int start = 0;
-        while (start < fullContent.length()) {
-            int end = Math.min(start + effectiveSize, fullContent.length());
-            chunks.add(header + fullContent.substring(start, end));
-            start += effectiveSize - CHUNK_OVERLAP;
-        }
-        return chunks;
+        return chunker.chunk(header, fullContent);
     }
 }
@@ -1,11 +1,12 @@
 package com.mychatgpt.dto;
 
+import com.mychatgpt.text.Chunker;
+import com.mychatgpt.text.TextNormalizer;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -61,32 +62,18 @@ public class YouTrackIssueDto {
      * - "[제목]", "[본문]" 등의 태그로 구분하면 AI가 응답 시 어디까지가 요청이고
      *   어디부터가 처리 결과인지 구별 가능
      * - 비정형 텍스트보다 정형화된 구조가 임베딩 품질과 검색 정확도를 높임
+     *
+     * 본문이 길면 Chunker가 토큰 예산에 맞춰 문장 단위로 나누고, 모든 청크에 ID/제목 헤더를 붙인다.
      */
-    private static final int CHUNK_SIZE = 1000;
-    private static final int CHUNK_OVERLAP = 200;
-
-    public List<String> toVectorChunks() {
+    public List<String> toVectorChunks(Chunker chunker) {
         String header = "[이슈 ID] " + id + "\n[제목] " + title + "\n";
 
         StringBuilder body = new StringBuilder();
         if (this.body != null && !this.body.isBlank())
-            body.append("[본문]\n").append(this.body.strip()).append("\n");
+            body.append("[본문]\n").append(TextNormalizer.PLAIN.normalize(this.body)).append("\n");
         if (comments != null && !comments.isBlank())
-            body.append("[댓글]\n").append(comments.strip()).append("\n");
-
-        String fullContent = body.toString();
-        int effectiveSize = CHUNK_SIZE - header.length();
-
-        if (fullContent.length() <= effectiveSize)
-            return List.of(header + fullContent);
+            body.append("[댓글]\n").append(TextNormalizer.PLAIN.normalize(comments)).append("\n");
 
-        List<String> chunks = new ArrayList<>();
-        int start = 0;
-        while (start < fullContent.length()) {
-            int end = Math.min(start + effectiveSize, fullContent.length());
-            chunks.add(header + fullContent.substring(start, end));
-            start += effectiveSize - CHUNK_OVERLAP;
-        }
-        return chunks;
+        return chunker.chunk(header, body.toString());
     }
 }
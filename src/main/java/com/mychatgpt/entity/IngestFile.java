@@ -0,0 +1,69 @@
+package com.mychatgpt.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 동기화 디렉토리(DirectorySyncService)에 있는 export 파일 한 개의 manifest.
+ *
+ * 크기와 수정 시각이 그대로면 파일을 읽지 않고 미변경으로 본다.
+ * 둘 중 하나가 바뀌었을 때만 내용 해시를 다시 계산해서, 해시도 바뀌었으면 그 파일만 다시 ingest한다.
+ * itemIds는 이 파일에서 나온 knowledge base 항목 ID로, 파일이 삭제되면 이 항목들을 벡터DB에서 지운다.
+ *
+ * ingest에 실패하면 그때의 크기/수정 시각을 failedSize/failedLastModified에 남기고, 파일이 다시 바뀔 때까지 건너뛴다.
+ * 한 번도 ingest에 성공하지 못한 파일은 contentHash가 빈 문자열이다.
+ */
+@Entity
+@Table(name = "ingest_files",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"directory", "path"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestFile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 1000)
+    private String directory; // 동기화 디렉토리 절대 경로
+
+    @Column(nullable = false, length = 1000)
+    private String path; // directory 기준 상대 경로
+
+    @Column(name = "file_type", nullable = false)
+    private String fileType; // xlsx, html
+
+    @Column(name = "file_size")
+    private long size;
+
+    @Column(name = "last_modified")
+    private long lastModified; // epoch millis
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "item_ids", columnDefinition = "TEXT")
+    private String itemIds; // 줄바꿈으로 구분한 이슈/문서 ID
+
+    @Column(name = "failed_size")
+    private Long failedSize; // 마지막으로 ingest에 실패한 파일의 크기 (성공하면 null)
+
+    @Column(name = "failed_last_modified")
+    private Long failedLastModified;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "synced_at")
+    private LocalDateTime syncedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        syncedAt = LocalDateTime.now();
+    }
+}
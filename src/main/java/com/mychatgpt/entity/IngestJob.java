@@ -0,0 +1,103 @@
+package com.mychatgpt.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 백그라운드 knowledge base ingest 작업 한 건.
+ *
+ * 진행 상황을 주기적으로 기록해 두므로 서버가 재시작되어도 마지막 진행 상황과 결과를 조회할 수 있다.
+ * 재시작 시 QUEUED/RUNNING으로 남아 있던 작업은 INTERRUPTED로 바뀐다.
+ *
+ * params에는 작업을 다시 만들 때 필요한 입력(디렉토리 경로, 업로드 임시 파일 등)을,
+ * checkpoint에는 파이프라인 실행별로 저장을 마친 항목 수를 기록한다.
+ * 중단된 작업은 다음 기동 때 같은 jobId로 checkpoint 다음 항목부터 재개된다.
+ */
+@Entity
+@Table(name = "ingest_jobs", indexes = @Index(columnList = "created_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", unique = true, nullable = false)
+    private String jobId;
+
+    @Column(nullable = false)
+    private String type; // youtrack-upload, confluence-upload, confluence-directory, directory, directory-sync
+
+    @Column(length = 1000)
+    private String target; // 업로드 파일명 또는 디렉토리 경로
+
+    @Column(nullable = false)
+    private String status; // QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED, INTERRUPTED
+
+    @Column(name = "cancel_requested")
+    private boolean cancelRequested;
+
+    @Column(name = "phase")
+    private String phase;
+
+    @Column(name = "batches_done")
+    private long batchesDone;
+
+    @Column(name = "items_done")
+    private long itemsDone;
+
+    @Column(name = "items_failed")
+    private long itemsFailed;
+
+    @Column(name = "items_expected")
+    private long itemsExpected;
+
+    @Column(name = "items_per_sec")
+    private double itemsPerSec;
+
+    @Column(name = "eta_seconds")
+    private Long etaSeconds;
+
+    @Column(name = "params", columnDefinition = "TEXT")
+    private String params; // 작업 입력 (JSON)
+
+    @Column(name = "checkpoint", columnDefinition = "TEXT")
+    private String checkpoint; // 파이프라인 실행별 저장 완료 항목 수 (JSON)
+
+    @Column(name = "resume_count")
+    private int resumeCount;
+
+    @Column(name = "result", columnDefinition = "TEXT")
+    private String result; // 완료 시 처리 결과 요약 (JSON)
+
+    @Column(name = "error", columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,69 @@
+package com.mychatgpt.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 저장에 실패해서 다시 시도할 knowledge base 항목 (IngestRetryQueue).
+ *
+ * payload에는 실패한 이슈/문서 DTO를 그대로 JSON으로 넣어 두므로 원본 파일이 없어도 다시 저장할 수 있다.
+ * PENDING은 nextAttemptAt이 지나면 IngestRetryService가 다시 시도하고,
+ * maxAttempts번 실패하면 DEAD가 되어 POST /retry-queue/replay로 다시 넣기 전까지 시도하지 않는다.
+ */
+@Entity
+@Table(name = "ingest_retry_items",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"source", "item_id"}),
+        indexes = @Index(columnList = "status, next_attempt_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestRetryItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String source; // youtrack, confluence
+
+    @Column(name = "item_id", nullable = false)
+    private String itemId; // 이슈 ID 또는 문서 ID
+
+    @Column(nullable = false, length = 16)
+    private String status; // PENDING, DEAD
+
+    @Column(nullable = false)
+    private int attempts; // 재시도한 횟수 (대기열에 들어온 뒤 실패한 횟수)
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "origin")
+    private String origin; // 처음 실패한 ingest (예: "YouTrack(export.xlsx)")
+
+    @Column(name = "payload", columnDefinition = "TEXT", nullable = false)
+    private String payload; // 항목 DTO (JSON)
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
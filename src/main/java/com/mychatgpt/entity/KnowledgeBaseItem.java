@@ -0,0 +1,51 @@
+package com.mychatgpt.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Knowledge base에 저장된 항목(YouTrack 이슈, Confluence 문서) 한 건의 manifest.
+ *
+ * 벡터DB에 마지막으로 저장한 내용의 해시를 기록해 두고,
+ * 다음 ingest 때 해시가 같으면 청킹/임베딩/저장을 건너뛴다.
+ * store는 저장한 벡터 저장소(VectorStore.storeId)로, 백엔드를 바꾸면 예전 저장소 기준의 행은 기동 시 지운다.
+ */
+@Entity
+@Table(name = "knowledge_base_items",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"source", "item_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnowledgeBaseItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String source; // youtrack, confluence
+
+    @Column(name = "item_id", nullable = false)
+    private String itemId;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "vector_store", length = 1000)
+    private String store; // chroma:http://host:8000/collection, hnsw:/app/vector-index, pgvector:table
+
+    @Column(name = "chunk_count")
+    private int chunkCount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
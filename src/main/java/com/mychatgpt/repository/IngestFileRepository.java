@@ -0,0 +1,17 @@
+package com.mychatgpt.repository;
+
+import com.mychatgpt.entity.IngestFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface IngestFileRepository extends JpaRepository<IngestFile, Long> {
+
+    List<IngestFile> findByDirectory(String directory);
+
+    @Transactional
+    void deleteByFileType(String fileType);
+}
@@ -0,0 +1,31 @@
+package com.mychatgpt.repository;
+
+import com.mychatgpt.entity.IngestJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IngestJobRepository extends JpaRepository<IngestJob, Long> {
+
+    Optional<IngestJob> findByJobId(String jobId);
+
+    List<IngestJob> findTop50ByOrderByCreatedAtDesc();
+
+    List<IngestJob> findByStatusAndParamsIsNotNullOrderByCreatedAt(String status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IngestJob j SET j.status = :status, j.error = :error, j.finishedAt = :now, j.updatedAt = :now " +
+            "WHERE j.status IN :from")
+    int markAll(@Param("from") Collection<String> from, @Param("status") String status,
+                @Param("error") String error, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,54 @@
+package com.mychatgpt.repository;
+
+import com.mychatgpt.entity.IngestRetryItem;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface IngestRetryItemRepository extends JpaRepository<IngestRetryItem, Long> {
+
+    List<IngestRetryItem> findBySourceAndItemIdIn(String source, Collection<String> itemIds);
+
+    List<IngestRetryItem> findByStatusAndItemIdIn(String status, Collection<String> itemIds);
+
+    List<IngestRetryItem> findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+            String status, LocalDateTime now, Pageable pageable);
+
+    List<IngestRetryItem> findTop100ByStatusOrderByUpdatedAtDesc(String status);
+
+    long countByStatus(String status);
+
+    long countByStatusAndNextAttemptAtLessThanEqual(String status, LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IngestRetryItem r WHERE r.source = :source AND r.itemId IN :itemIds")
+    int deleteBySourceAndItemIdIn(@Param("source") String source, @Param("itemIds") Collection<String> itemIds);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IngestRetryItem r WHERE r.source = :source")
+    int deleteBySource(@Param("source") String source);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IngestRetryItem r SET r.status = :to, r.attempts = 0, r.nextAttemptAt = :now, r.updatedAt = :now " +
+            "WHERE r.status = :from")
+    int requeueAll(@Param("from") String from, @Param("to") String to, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IngestRetryItem r SET r.status = :to, r.attempts = 0, r.nextAttemptAt = :now, r.updatedAt = :now " +
+            "WHERE r.status = :from AND r.source = :source")
+    int requeueAllBySource(@Param("from") String from, @Param("to") String to, @Param("source") String source,
+                           @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,40 @@
+package com.mychatgpt.repository;
+
+import com.mychatgpt.entity.KnowledgeBaseItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface KnowledgeBaseItemRepository extends JpaRepository<KnowledgeBaseItem, Long> {
+
+    List<KnowledgeBaseItem> findBySourceAndItemIdIn(String source, Collection<String> itemIds);
+
+    @Query("SELECT k.itemId FROM KnowledgeBaseItem k WHERE k.source = :source")
+    List<String> findItemIdsBySource(@Param("source") String source);
+
+    @Transactional
+    void deleteBySourceAndItemIdIn(String source, Collection<String> itemIds);
+
+    @Transactional
+    void deleteBySource(String source);
+
+    /**
+     * store 컬럼이 생기기 전의 행은 지금 저장소의 것으로 본다.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE KnowledgeBaseItem k SET k.store = :store WHERE k.store IS NULL")
+    int assignStore(@Param("store") String store);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM KnowledgeBaseItem k WHERE k.store <> :store")
+    int deleteByStoreNot(@Param("store") String store);
+}
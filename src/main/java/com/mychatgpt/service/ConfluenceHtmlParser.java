@@ -1,21 +1,51 @@
 package com.mychatgpt.service;
 
+import com.mychatgpt.config.IngestConfig;
 import com.mychatgpt.dto.ConfluenceDocumentDto;
+import com.mychatgpt.text.TextNormalizer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.stereotype.Component;
-
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 /**
  * Confluence에서 export된 HTML 파일을 파싱하여 ConfluenceDocumentDto로 변환하는 컴포넌트.
@@ -31,6 +61,10 @@ import java.util.stream.Collectors;
  * - <ol id="breadcrumbs">: 경로 정보
  * - <div id="main-content" class="wiki-content group">: 실제 콘텐츠
  * - <div class="page-metadata">: 작성자, 수정일 정보
+ *
+ * 디렉토리 ingest는 하위 폴더까지 재귀적으로 찾고, 파일들을 병렬로 파싱하면서 끝난 문서부터
+ * 바로 ingest 파이프라인으로 넘긴다 (DocumentStream). 전체 문서를 리스트로 모으지 않는다.
+ * space export ZIP은 압축을 풀지 않고 ZipInputStream으로 항목을 차례로 읽어 같은 방식으로 파싱한다.
  */
 @Component
 @Slf4j
@@ -42,9 +76,35 @@ public class ConfluenceHtmlParser {
     /** 순수 숫자 파일명 패턴 (예: "70451688.html" → "70451688") */
     private static final Pattern NUMERIC_ID_PATTERN = Pattern.compile("^(\\d+)\\.html$");
 
+    /** 숫자 ID가 없는 파일명에서 ID로 쓸 수 없는 문자 */
+    private static final Pattern NON_ID_CHAR_PATTERN = Pattern.compile("[^a-zA-Z0-9가-힣-_]");
+
+    /** page-metadata의 작성자/수정일 패턴 */
+    private static final Pattern CREATED_BY_PATTERN = Pattern.compile("Created by\\s+(.+?)(?:,|$)");
+    private static final Pattern LAST_MODIFIED_PATTERN = Pattern.compile("last modified on\\s+(.+)$");
+    private static final Pattern CREATED_ON_PATTERN = Pattern.compile("on\\s+(\\d+월\\s+\\d+,\\s+\\d+)");
+
     /** 최소 콘텐츠 길이 (너무 짧은 문서는 의미 없음) */
     private static final int MIN_CONTENT_LENGTH = 50;
 
+    /** ZIP 안의 HTML 한 페이지 최대 크기. 넘으면 건너뛴다 (압축 폭탄이나 잘못 들어간 파일이 메모리를 채우지 않도록) */
+    private static final int MAX_ZIP_ENTRY_BYTES = 64 * 1024 * 1024;
+
+    /** Jsoup 파싱은 CPU 작업이므로 코어 수만큼의 전용 스레드에서 실행한다 (여러 ingest 작업이 함께 사용) */
+    private final int parseConcurrency;
+    private final Scheduler parseScheduler;
+
+    public ConfluenceHtmlParser(IngestConfig ingestConfig) {
+        int configured = ingestConfig.getParseConcurrency();
+        this.parseConcurrency = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        this.parseScheduler = Schedulers.newParallel("confluence-parse", parseConcurrency, true);
+    }
+
+    @PreDestroy
+    public void close() {
+        parseScheduler.dispose();
+    }
+
     /**
      * HTML 문자열을 파싱하여 DTO로 변환한다.
      * MultipartFile 업로드 시 사용.
@@ -69,6 +129,24 @@ public class ConfluenceHtmlParser {
         return doParse(doc, file.getName());
     }
 
+    /**
+     * 파싱할 HTML 한 건. 파일이면 파싱 스레드에서 읽고, ZIP 항목이면 미리 읽어 둔 바이트를 파싱한다.
+     *
+     * @param location 로그용 경로 (파일 경로 또는 ZIP 안의 경로)
+     */
+    private record Page(String location, String fileName, File file, byte[] content) {
+
+        static Page of(File file) {
+            return new Page(file.getPath(), file.getName(), file, null);
+        }
+
+        Document load() throws IOException {
+            return file != null
+                    ? Jsoup.parse(file, StandardCharsets.UTF_8.name())
+                    : Jsoup.parse(new ByteArrayInputStream(content), StandardCharsets.UTF_8.name(), "");
+        }
+    }
+
     private ConfluenceDocumentDto doParse(Document doc, String fileName) {
         // ID 추출
         String id = extractId(fileName);
@@ -110,43 +188,274 @@ public class ConfluenceHtmlParser {
     }
 
     /**
-     * 디렉토리 내 모든 HTML 파일을 파싱한다.
+     * 디렉토리와 모든 하위 디렉토리의 HTML 파일을 찾아 병렬로 파싱하는 스트림을 연다.
+     * 파일 목록만 먼저 만들고(경로만 메모리에 둠) 파싱은 스트림을 읽는 만큼 진행된다.
      *
-     * @param directory HTML 파일들이 있는 디렉토리
-     * @return 파싱된 DTO 리스트 (유효하지 않은 파일은 제외)
+     * @param directory Confluence export 디렉토리 (space별 하위 폴더가 있어도 됨)
      */
-    public List<ConfluenceDocumentDto> parseDirectory(File directory) throws IOException {
+    public DocumentStream openDirectory(File directory) throws IOException {
         if (!directory.isDirectory()) {
             throw new IllegalArgumentException("유효한 디렉토리가 아닙니다: " + directory.getPath());
         }
 
-        File[] htmlFiles = directory.listFiles((dir, name) ->
-                name.toLowerCase().endsWith(".html") && !name.equals("index.html"));
+        List<File> htmlFiles = new ArrayList<>();
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && isHtmlPage(file.getFileName().toString())) {
+                    htmlFiles.add(file.toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("읽을 수 없는 경로 건너뜀: {} - {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
 
-        if (htmlFiles == null || htmlFiles.length == 0) {
+        if (htmlFiles.isEmpty()) {
             log.warn("HTML 파일이 없습니다: {}", directory.getPath());
-            return new ArrayList<>();
+        }
+        htmlFiles.sort(null);
+        return new DocumentStream(htmlFiles);
+    }
+
+    /**
+     * 주어진 파일들 중 HTML 페이지를 병렬로 파싱하는 스트림을 연다 (업로드된 파일용).
+     */
+    public DocumentStream open(List<File> files) {
+        return new DocumentStream(files.stream()
+                .filter(file -> isHtmlPage(file.getName()))
+                .toList());
+    }
+
+    /**
+     * Confluence space export ZIP의 HTML 페이지를 압축을 풀지 않고 차례로 읽으며 병렬로 파싱하는 스트림을 연다.
+     *
+     * ZipInputStream으로 앞에서부터 한 항목씩 읽으므로 디스크에 풀지 않고,
+     * 메모리에는 파싱 중이거나 대기 중인 몇 페이지만 올라간다. 첨부파일/이미지 항목은 읽지 않고 건너뛴다.
+     * HTML 페이지 수는 ZIP 끝의 목록(central directory)에서 미리 센다 (진행률 계산용, 읽을 수 없으면 0).
+     */
+    public DocumentStream openZip(File zip) {
+        return new DocumentStream(countZipPages(zip), zipPages(zip), () -> "ConfluenceZip|"
+                + zip.getAbsolutePath() + "|" + zip.length() + "|" + zip.lastModified());
+    }
+
+    private static int countZipPages(File zip) {
+        try (ZipFile zipFile = new ZipFile(zip, StandardCharsets.UTF_8)) {
+            return (int) zipFile.stream()
+                    .filter(entry -> !entry.isDirectory() && isHtmlPage(entryFileName(entry)))
+                    .count();
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("ZIP 목록을 읽을 수 없어 페이지 수를 모릅니다: {} - {}", zip.getName(), e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * ZIP 항목을 앞에서부터 읽어 HTML 페이지만 내보낸다. 요청받은 만큼만 읽는다 (Flux.generate).
+     */
+    private static Flux<Page> zipPages(File zip) {
+        return Flux.generate(
+                () -> new ZipInputStream(new BufferedInputStream(new FileInputStream(zip)), StandardCharsets.UTF_8),
+                (ZipInputStream in, SynchronousSink<Page> sink) -> {
+                    try {
+                        ZipEntry entry;
+                        while ((entry = in.getNextEntry()) != null) {
+                            String fileName = entryFileName(entry);
+                            if (entry.isDirectory() || !isHtmlPage(fileName)) {
+                                continue;
+                            }
+                            byte[] content = readEntry(in);
+                            if (content == null) {
+                                log.warn("ZIP 항목이 너무 커서 건너뜀 ({}MB 초과): {}",
+                                        MAX_ZIP_ENTRY_BYTES / 1024 / 1024, entry.getName());
+                                continue;
+                            }
+                            sink.next(new Page(entry.getName(), fileName, null, content));
+                            return in;
+                        }
+                        sink.complete();
+                    } catch (IOException e) {
+                        sink.error(e);
+                    } catch (IllegalArgumentException e) {
+                        // UTF-8이 아닌 파일명 (Confluence가 만든 export가 아니라 다른 도구로 다시 압축한 경우)
+                        sink.error(new IOException("ZIP 파일명을 UTF-8로 읽을 수 없습니다: " + e.getMessage(), e));
+                    }
+                    return in;
+                },
+                in -> {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        log.warn("ZIP 스트림 닫기 실패: {}", e.getMessage());
+                    }
+                });
+    }
+
+    private static String entryFileName(ZipEntry entry) {
+        String name = entry.getName();
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 현재 항목을 끝까지 읽는다. MAX_ZIP_ENTRY_BYTES를 넘으면 나머지는 버리고 null을 반환한다.
+     */
+    private static byte[] readEntry(ZipInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out.size() + read > MAX_ZIP_ENTRY_BYTES) {
+                in.closeEntry();
+                return null;
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 파일을 파싱하면 나올 문서 ID. 파일명에서 추출하므로 파일을 읽지 않는다.
+     */
+    public String documentIdOf(File file) {
+        return extractId(file.getName());
+    }
+
+    /**
+     * index.html은 space 목차라서 제외한다.
+     */
+    static boolean isHtmlPage(String fileName) {
+        return fileName.toLowerCase().endsWith(".html") && !fileName.equals("index.html");
+    }
+
+    /**
+     * HTML 페이지(파일 또는 ZIP 항목)를 parseConcurrency개 스레드에서 병렬로 파싱해 벡터DB에 저장할 만한 문서만 반환하는 스트림.
+     *
+     * - 파일 순서대로 반환한다. 병렬로 파싱하되 앞 파일이 끝날 때까지 뒤 파일의 결과는 잠깐 붙잡아 둔다
+     *   (실행마다 순서가 같아야 중단된 작업을 체크포인트부터 재개할 수 있음)
+     * - 읽는 쪽이 가져간 만큼만 파싱을 진행하므로 메모리에는 동시 파싱 수 + 버퍼만큼의 문서만 올라간다
+     * - 파싱 실패/유효하지 않은 문서는 건너뛰고 개수만 센다
+     * - 같은 문서 ID(같은 페이지가 여러 폴더에 export된 경우)는 파일 순서상 먼저 나온 하나만 반환한다
+     *
+     * 한 번만 순회할 수 있으며 반드시 close()해야 한다 (try-with-resources 사용).
+     * 끝까지 읽기 전에 close()하면 남은 파싱을 취소한다.
+     */
+    public final class DocumentStream implements Iterable<ConfluenceDocumentDto>, Closeable {
+
+        private final int fileCount;
+        private final Supplier<String> checkpointKey;
+        private final Stream<ConfluenceDocumentDto> documents;
+        private final Set<String> seenIds = new HashSet<>();
+        private final AtomicInteger parsed = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger duplicates = new AtomicInteger();
+
+        private DocumentStream(int fileCount, Flux<Page> pages, Supplier<String> checkpointKey) {
+            this.fileCount = fileCount;
+            this.checkpointKey = checkpointKey;
+            this.documents = pages
+                    .flatMapSequential(page -> Mono.fromCallable(() -> parseForVectorDb(page))
+                            .subscribeOn(parseScheduler), parseConcurrency, 1)
+                    .filter(this::firstOfId)
+                    .toStream(parseConcurrency * 2);
+        }
+
+        private DocumentStream(List<File> files) {
+            this(files.size(), Flux.fromIterable(files).map(Page::of), () -> fingerprint(files));
+        }
+
+        /**
+         * 파싱 대상 HTML 파일 수 (ZIP이면 목록에서 센 HTML 항목 수).
+         */
+        public int getFileCount() {
+            return fileCount;
         }
 
-        List<ConfluenceDocumentDto> documents = new ArrayList<>();
-        int skippedCount = 0;
+        /**
+         * 입력의 지문. 파일이 하나라도 바뀌면 문서 순서가 달라질 수 있으므로
+         * 이전 실행의 체크포인트를 쓰지 않도록 키가 달라진다.
+         */
+        public String getCheckpointKey() {
+            return checkpointKey.get();
+        }
 
-        for (File file : htmlFiles) {
+        /**
+         * 파일 목록(경로, 크기, 수정 시각)의 SHA-256.
+         */
+        private static String fingerprint(List<File> files) {
             try {
-                ConfluenceDocumentDto dto = parse(file);
-                if (dto != null) {
-                    documents.add(dto);
-                } else {
-                    skippedCount++;
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (File file : files) {
+                    digest.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update(Long.toString(file.length()).getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update(Long.toString(file.lastModified()).getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
                 }
+                return "Confluence|" + HexFormat.of().formatHex(digest.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * 지금까지 파싱에 성공한 문서 수 (유효성 검사에서 걸러진 문서 포함).
+         */
+        public int getParsedCount() {
+            return parsed.get();
+        }
+
+        @Override
+        public Iterator<ConfluenceDocumentDto> iterator() {
+            return documents.iterator();
+        }
+
+        @Override
+        public void close() {
+            documents.close();
+            log.info("HTML 파싱 완료: 파일 {}개 중 {}개 파싱, {}개 스킵, 중복 ID {}개",
+                    fileCount, parsed.get(), skipped.get(), duplicates.get());
+        }
+
+        /**
+         * @return 저장할 문서, 또는 건너뛸 문서면 null (Mono.fromCallable이 빈 결과로 처리)
+         */
+        private ConfluenceDocumentDto parseForVectorDb(Page page) {
+            ConfluenceDocumentDto dto;
+            try {
+                dto = doParse(page.load(), page.fileName());
             } catch (Exception e) {
-                log.error("파일 파싱 실패: {}", file.getName(), e);
-                skippedCount++;
+                log.error("파일 파싱 실패: {}", page.location(), e);
+                skipped.incrementAndGet();
+                return null;
             }
+            if (dto == null) {
+                skipped.incrementAndGet();
+                return null;
+            }
+            parsed.incrementAndGet();
+            if (!isValidForVectorDb(dto)) {
+                skipped.incrementAndGet();
+                return null;
+            }
+            return dto;
         }
 
-        log.info("HTML 파싱 완료: {}개 성공, {}개 스킵", documents.size(), skippedCount);
-        return documents;
+        /**
+         * 파일 순서대로 한 건씩 호출된다 (flatMapSequential 이후).
+         */
+        private boolean firstOfId(ConfluenceDocumentDto dto) {
+            if (seenIds.add(dto.getId())) {
+                return true;
+            }
+            log.warn("중복 문서 ID 건너뜀: {} ({})", dto.getId(), dto.getFileName());
+            duplicates.incrementAndGet();
+            return false;
+        }
     }
 
     /**
@@ -168,8 +477,8 @@ public class ConfluenceHtmlParser {
         }
 
         // 확장자 제거 후 전체를 ID로 사용 (특수문자는 하이픈으로 치환)
-        String baseName = fileName.replaceFirst("\\.html$", "");
-        String cleanId = baseName.replaceAll("[^a-zA-Z0-9가-힣-_]", "-");
+        String baseName = fileName.endsWith(".html") ? fileName.substring(0, fileName.length() - 5) : fileName;
+        String cleanId = NON_ID_CHAR_PATTERN.matcher(baseName).replaceAll("-");
         return "confluence-" + cleanId;
     }
 
@@ -253,41 +562,8 @@ public class ConfluenceHtmlParser {
         // HTML을 텍스트로 변환
         String text = contentDiv.text();
 
-        // 정제 작업
-        text = refineText(text);
-
-        return text;
-    }
-
-    /**
-     * 텍스트를 정제한다.
-     * - 과도한 공백 제거
-     * - 불필요한 특수문자 정리
-     * - 의미 없는 반복 패턴 제거
-     */
-    private String refineText(String text) {
-        if (text == null) return null;
-
-        // 여러 개의 공백을 하나로
-        text = text.replaceAll("\\s+", " ");
-
-        // 여러 개의 줄바꿈을 하나로
-        text = text.replaceAll("(\\r?\\n)+", "\n");
-
-        // 앞뒤 공백 제거
-        text = text.trim();
-
-        // 빈 괄호 제거
-        text = text.replaceAll("\\(\\s*\\)", "");
-        text = text.replaceAll("\\[\\s*\\]", "");
-
-        // 연속된 특수문자 정리
-        text = text.replaceAll("[-=_]{3,}", "---");
-
-        // "Document generated by Confluence" 같은 푸터 텍스트 제거
-        text = text.replaceAll("Document generated by Confluence.*$", "");
-
-        return text.trim();
+        // 정제 작업 (공백/빈 괄호/구분선/푸터를 한 번에 정리)
+        return TextNormalizer.CONFLUENCE.normalize(text);
     }
 
     /**
@@ -303,9 +579,7 @@ public class ConfluenceHtmlParser {
         }
 
         // "Created by [작성자]" 패턴에서 추출
-        String text = metadata.text();
-        Pattern pattern = Pattern.compile("Created by\\s+(.+?)(?:,|$)");
-        Matcher matcher = pattern.matcher(text);
+        Matcher matcher = CREATED_BY_PATTERN.matcher(metadata.text());
         if (matcher.find()) {
             return matcher.group(1).trim();
         }
@@ -322,15 +596,13 @@ public class ConfluenceHtmlParser {
 
         String text = metadata.text();
         // "last modified on 11월 27, 2023" 패턴
-        Pattern pattern = Pattern.compile("last modified on\\s+(.+)$");
-        Matcher matcher = pattern.matcher(text);
+        Matcher matcher = LAST_MODIFIED_PATTERN.matcher(text);
         if (matcher.find()) {
             return matcher.group(1).trim();
         }
 
         // "Created ... on [날짜]" 패턴
-        pattern = Pattern.compile("on\\s+(\\d+월\\s+\\d+,\\s+\\d+)");
-        matcher = pattern.matcher(text);
+        matcher = CREATED_ON_PATTERN.matcher(text);
         if (matcher.find()) {
             return matcher.group(1).trim();
         }
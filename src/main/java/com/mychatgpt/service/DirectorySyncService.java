@@ -0,0 +1,364 @@
+package com.mychatgpt.service;
+
+import com.mychatgpt.entity.IngestFile;
+import com.mychatgpt.repository.IngestFileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+/**
+ * export 디렉토리를 파일 단위 manifest(ingest_files)와 비교해서 바뀐 파일만 다시 ingest하는 동기화.
+ *
+ * 디렉토리 ingest(ingestFromDirectory)는 항목 해시 덕분에 바뀌지 않은 항목의 임베딩은 건너뛰지만,
+ * 모든 파일을 다시 읽고 파싱하고 청킹해야 해서 space 전체 크기에 비례하는 시간이 든다.
+ * 동기화는 파일 크기/수정 시각으로 먼저 거르고 바뀐 파일만 읽으므로 바뀐 양에 비례한다.
+ *
+ * 1. 디렉토리(하위 폴더 포함)의 .xlsx와 Confluence HTML 페이지 목록과 크기/수정 시각을 읽는다
+ * 2. manifest와 크기/수정 시각이 같으면 미변경. 다르면 SHA-256을 계산해서 내용도 같으면 manifest만 갱신(touched)
+ * 3. 추가/변경된 HTML은 한 번에, xlsx는 파일마다 ingest하고 성공한 파일의 manifest를 기록한다
+ *    (실패한 파일은 그때의 크기/수정 시각만 남기고, 파일이 다시 바뀔 때까지 건너뛴다.
+ *    항상 실패하는 파일 때문에 hasChanges가 계속 true가 되어 동기화 작업이 반복되지 않도록)
+ * 4. 삭제된 파일, 변경된 xlsx에서 빠진 항목 중 다른 파일에서도 나오지 않는 항목을 벡터DB에서 삭제한다
+ *
+ * 같은 디렉토리에 대한 동기화는 IngestJobService 작업으로 한 번에 하나씩 실행된다고 가정한다.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DirectorySyncService {
+
+    private static final String TYPE_XLSX = "xlsx";
+    private static final String TYPE_HTML = "html";
+
+    private final KnowledgeBaseService knowledgeBaseService;
+    private final ConfluenceHtmlParser confluenceParser;
+    private final IngestFileRepository fileRepository;
+
+    /**
+     * 디렉토리에서 찾은 export 파일 하나. path는 디렉토리 기준 상대 경로('/' 구분).
+     */
+    private record Snapshot(String path, File file, String type, long size, long lastModified) {
+    }
+
+    /**
+     * 디렉토리를 동기화한다.
+     *
+     * @param directoryPath export 디렉토리
+     * @param progress      진행 상황 보고 및 취소 확인 대상
+     * @return 파일 단위 변경 내역과 ingest/삭제 결과
+     */
+    public Map<String, Object> sync(String directoryPath, IngestProgress progress) throws IOException {
+        Path root = root(directoryPath);
+        String directory = root.toString();
+        long start = System.nanoTime();
+        progress.setPhase("변경 파일 확인");
+
+        Map<String, Snapshot> current = scan(root);
+        Map<String, IngestFile> manifest = new HashMap<>();
+        fileRepository.findByDirectory(directory).forEach(row -> manifest.put(row.getPath(), row));
+
+        List<Snapshot> changed = new ArrayList<>();
+        Map<String, String> hashes = new HashMap<>();
+        List<IngestFile> touched = new ArrayList<>();
+        int unchanged = 0;
+        int skippedFailures = 0;
+        int added = 0;
+        long hashedBytes = 0;
+        for (Snapshot snapshot : current.values()) {
+            IngestFile row = manifest.get(snapshot.path());
+            if (row != null && isUnchanged(row, snapshot)) {
+                unchanged++;
+                continue;
+            }
+            if (row != null && isKnownFailure(row, snapshot)) {
+                skippedFailures++;
+                continue;
+            }
+            progress.throwIfCancelled();
+            String hash = sha256(snapshot.file());
+            hashedBytes += snapshot.size();
+            if (row != null && hash.equals(row.getContentHash())) {
+                // 다시 복사되었거나 touch만 된 파일: 내용이 같으므로 ingest하지 않는다
+                row.setSize(snapshot.size());
+                row.setLastModified(snapshot.lastModified());
+                row.setFailedSize(null);
+                row.setFailedLastModified(null);
+                row.setLastError(null);
+                touched.add(row);
+                continue;
+            }
+            if (row == null || row.getContentHash().isEmpty()) {
+                added++;
+            }
+            hashes.put(snapshot.path(), hash);
+            changed.add(snapshot);
+        }
+        fileRepository.saveAll(touched);
+        List<IngestFile> removed = manifest.values().stream()
+                .filter(row -> !current.containsKey(row.getPath()))
+                .toList();
+        long scanMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("동기화 대상 확인: {} (파일 {}개, 미변경 {}, 내용 동일 {}, 실패 후 미변경 {}, 추가 {}, 변경 {}, 삭제 {}, {}ms)",
+                directory, current.size(), unchanged, touched.size(), skippedFailures, added, changed.size() - added,
+                removed.size(), scanMs);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("directory", directory);
+        result.put("files", current.size());
+        result.put("unchanged", unchanged);
+        result.put("touched", touched.size());
+        result.put("skippedFailures", skippedFailures);
+        result.put("added", added);
+        result.put("changed", changed.size() - added);
+        result.put("removed", removed.size());
+        result.put("hashedBytes", hashedBytes);
+        result.put("scanMs", scanMs);
+
+        // 동기화가 끝난 뒤의 manifest와, 교체/삭제되어 더 이상 어떤 파일에서도 안 나올 수 있는 항목 ID
+        Map<String, IngestFile> synced = new HashMap<>(manifest);
+        Map<String, Set<String>> retiredIds = Map.of(TYPE_XLSX, new HashSet<>(), TYPE_HTML, new HashSet<>());
+
+        // 경로 순으로 넘겨야 작업이 중단됐다가 재개될 때 같은 순서(같은 체크포인트 키)로 다시 처리된다
+        List<Snapshot> changedHtml = changed.stream()
+                .filter(s -> TYPE_HTML.equals(s.type()))
+                .sorted(Comparator.comparing(Snapshot::path))
+                .toList();
+        if (!changedHtml.isEmpty()) {
+            Map<String, Object> htmlResult = knowledgeBaseService.ingestConfluenceHtmlFiles(
+                    changedHtml.stream().map(Snapshot::file).toList(), progress);
+            result.put("htmlResult", htmlResult);
+
+            Collection<?> failedIds = (Collection<?>) htmlResult.getOrDefault("failedIds", List.of());
+            List<IngestFile> rows = new ArrayList<>();
+            for (Snapshot snapshot : changedHtml) {
+                String documentId = confluenceParser.documentIdOf(snapshot.file());
+                if (failedIds.contains(documentId)) {
+                    rows.add(recordFailure(directory, snapshot, manifest.get(snapshot.path()), "문서 ingest 실패"));
+                    continue;
+                }
+                rows.add(record(directory, snapshot, hashes.get(snapshot.path()), List.of(documentId),
+                        synced, retiredIds.get(TYPE_HTML)));
+            }
+            fileRepository.saveAll(rows);
+        }
+
+        List<Map<String, Object>> xlsxResults = new ArrayList<>();
+        for (Snapshot snapshot : changed) {
+            if (!TYPE_XLSX.equals(snapshot.type())) {
+                continue;
+            }
+            Set<String> issueIds = new HashSet<>();
+            try {
+                Map<String, Object> xlsxResult = knowledgeBaseService.ingestYouTrackExcelFromFile(
+                        snapshot.file(), issueIds, progress);
+                xlsxResults.add(xlsxResult);
+                int failCount = ((Number) xlsxResult.getOrDefault("failCount", 0)).intValue();
+                if (failCount > 0) {
+                    fileRepository.save(recordFailure(directory, snapshot, manifest.get(snapshot.path()),
+                            "항목 " + failCount + "건 ingest 실패"));
+                    continue;
+                }
+                fileRepository.save(record(directory, snapshot, hashes.get(snapshot.path()), issueIds,
+                        synced, retiredIds.get(TYPE_XLSX)));
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("XLSX 동기화 실패: {}", snapshot.path(), e);
+                xlsxResults.add(Map.of("file", snapshot.path(), "error", String.valueOf(e.getMessage())));
+                fileRepository.save(recordFailure(directory, snapshot, manifest.get(snapshot.path()),
+                        String.valueOf(e.getMessage())));
+            }
+        }
+        if (!xlsxResults.isEmpty()) {
+            result.put("xlsxResults", xlsxResults);
+        }
+
+        progress.throwIfCancelled();
+        progress.setPhase("삭제된 항목 정리");
+        for (IngestFile row : removed) {
+            retiredIds.get(row.getFileType()).addAll(itemIdsOf(row));
+            synced.remove(row.getPath());
+        }
+        List<String> deletedDocuments = orphans(TYPE_HTML, retiredIds, synced);
+        List<String> deletedIssues = orphans(TYPE_XLSX, retiredIds, synced);
+        if (!deletedDocuments.isEmpty()) {
+            knowledgeBaseService.deleteConfluenceDocuments(deletedDocuments);
+        }
+        if (!deletedIssues.isEmpty()) {
+            knowledgeBaseService.deleteYouTrackIssues(deletedIssues);
+        }
+        fileRepository.deleteAll(removed);
+        result.put("deletedDocuments", deletedDocuments.size());
+        result.put("deletedIssues", deletedIssues.size());
+
+        log.info("디렉토리 동기화 완료: {} ({}ms)", directory, (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * manifest와 파일 목록(크기/수정 시각)만 비교해서 동기화할 것이 있는지 본다. 파일 내용은 읽지 않는다.
+     */
+    public boolean hasChanges(String directoryPath) throws IOException {
+        Path root = root(directoryPath);
+        Map<String, Snapshot> current = scan(root);
+        List<IngestFile> rows = fileRepository.findByDirectory(root.toString());
+        if (rows.size() != current.size()) {
+            return true;
+        }
+        for (IngestFile row : rows) {
+            Snapshot snapshot = current.get(row.getPath());
+            if (snapshot == null || !(isUnchanged(row, snapshot) || isKnownFailure(row, snapshot))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUnchanged(IngestFile row, Snapshot snapshot) {
+        return row.getSize() == snapshot.size() && row.getLastModified() == snapshot.lastModified();
+    }
+
+    /**
+     * 지난번에 ingest에 실패한 그대로인 파일인지 (크기/수정 시각이 실패 때와 같음).
+     */
+    private static boolean isKnownFailure(IngestFile row, Snapshot snapshot) {
+        return row.getFailedSize() != null && row.getFailedSize() == snapshot.size()
+                && row.getFailedLastModified() != null && row.getFailedLastModified() == snapshot.lastModified();
+    }
+
+    private Path root(String directoryPath) {
+        return knowledgeBaseService.requireDirectory(directoryPath).toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * 하위 폴더까지 .xlsx와 Confluence HTML 페이지를 찾는다. 파일은 열지 않고 속성만 읽는다.
+     * 엑셀이 열려 있을 때 생기는 잠금 파일(~$*.xlsx)은 제외한다.
+     */
+    private Map<String, Snapshot> scan(Path root) throws IOException {
+        Map<String, Snapshot> snapshots = new HashMap<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String name = file.getFileName().toString();
+                String type = null;
+                if (name.toLowerCase().endsWith(".xlsx") && !name.startsWith("~$")) {
+                    type = TYPE_XLSX;
+                } else if (ConfluenceHtmlParser.isHtmlPage(name)) {
+                    type = TYPE_HTML;
+                }
+                if (type != null) {
+                    String path = root.relativize(file).toString().replace(File.separatorChar, '/');
+                    snapshots.put(path, new Snapshot(path, file.toFile(), type, attrs.size(),
+                            attrs.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("읽을 수 없는 경로 건너뜀: {} - {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return snapshots;
+    }
+
+    /**
+     * ingest에 성공한 파일의 manifest 행을 만든다. 기존 행이 있으면 그 행의 항목 ID를 retiredIds에 넣는다.
+     */
+    private IngestFile record(String directory, Snapshot snapshot, String hash, Collection<String> itemIds,
+                              Map<String, IngestFile> synced, Set<String> retiredIds) {
+        IngestFile row = synced.get(snapshot.path());
+        if (row == null) {
+            row = new IngestFile();
+            row.setDirectory(directory);
+            row.setPath(snapshot.path());
+        } else {
+            retiredIds.addAll(itemIdsOf(row));
+        }
+        row.setFileType(snapshot.type());
+        row.setSize(snapshot.size());
+        row.setLastModified(snapshot.lastModified());
+        row.setContentHash(hash);
+        row.setItemIds(String.join("\n", new TreeSet<>(itemIds)));
+        row.setFailedSize(null);
+        row.setFailedLastModified(null);
+        row.setLastError(null);
+        synced.put(snapshot.path(), row);
+        return row;
+    }
+
+    /**
+     * ingest에 실패한 파일의 크기/수정 시각을 기록한다. 기존 행의 내용(해시, 항목 ID)은 마지막 성공 그대로 둔다.
+     * 처음 보는 파일이면 항목 없이 contentHash가 빈 행을 만든다.
+     */
+    private static IngestFile recordFailure(String directory, Snapshot snapshot, IngestFile existing, String error) {
+        IngestFile row = existing;
+        if (row == null) {
+            row = new IngestFile();
+            row.setDirectory(directory);
+            row.setPath(snapshot.path());
+            row.setFileType(snapshot.type());
+            row.setSize(-1);
+            row.setLastModified(-1);
+            row.setContentHash("");
+            row.setItemIds("");
+        }
+        row.setFailedSize(snapshot.size());
+        row.setFailedLastModified(snapshot.lastModified());
+        row.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        log.warn("ingest 실패 파일 기록 (바뀔 때까지 건너뜀): {} - {}", snapshot.path(), error);
+        return row;
+    }
+
+    /**
+     * retiredIds 중 동기화 후에도 남아 있는 같은 종류 파일 어디에서도 나오지 않는 항목 ID.
+     */
+    private static List<String> orphans(String type, Map<String, Set<String>> retiredIds,
+                                        Map<String, IngestFile> synced) {
+        Set<String> candidates = retiredIds.get(type);
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        Set<String> live = new HashSet<>();
+        synced.values().stream()
+                .filter(row -> type.equals(row.getFileType()))
+                .forEach(row -> live.addAll(itemIdsOf(row)));
+        return candidates.stream().filter(id -> !live.contains(id)).sorted().toList();
+    }
+
+    private static List<String> itemIdsOf(IngestFile row) {
+        String itemIds = row.getItemIds();
+        return itemIds == null || itemIds.isEmpty() ? List.of() : List.of(itemIds.split("\n"));
+    }
+
+    private static String sha256(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
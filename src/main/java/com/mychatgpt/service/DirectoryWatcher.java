@@ -0,0 +1,195 @@
+package com.mychatgpt.service;
+
+import com.mychatgpt.config.IngestConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * ingest.sync.directory를 감시하다가 파일이 바뀌면 디렉토리 동기화 작업(directory-sync)을 등록한다.
+ *
+ * - WatchService로 디렉토리와 모든 하위 디렉토리의 생성/수정/삭제 이벤트를 받는다 (새로 생긴 폴더도 등록)
+ * - export를 통째로 복사하면 이벤트가 수천 개 오므로, 마지막 이벤트 후 debounce만큼 조용해지면 한 번만 동기화한다
+ * - 이벤트를 놓칠 수 있으므로(overflow, 네트워크 드라이브) rescanInterval마다, 그리고 시작할 때 한 번 다시 확인한다
+ * - 동기화 전에 파일 목록을 manifest와 비교해서 바뀐 것이 없으면 작업을 만들지 않는다
+ * - 이전 동기화 작업이 아직 끝나지 않았으면 끝난 뒤에 다시 확인한다 (같은 디렉토리를 동시에 동기화하지 않음)
+ */
+@Component
+@Slf4j
+public class DirectoryWatcher {
+
+    /** 변경 이벤트가 계속 와도 동기화를 미루는 최대 횟수 (debounce 기준) */
+    private static final int MAX_DEBOUNCE_ROUNDS = 12;
+
+    private final IngestJobService jobService;
+    private final DirectorySyncService syncService;
+    private final IngestConfig.Sync config;
+
+    private ScheduledExecutorService scheduler;
+    private WatchService watchService;
+    private String directory;
+    private ScheduledFuture<?> pending;
+    private long firstRequestNanos;
+    private volatile String lastJobId;
+
+    public DirectoryWatcher(IngestJobService jobService, DirectorySyncService syncService, IngestConfig ingestConfig) {
+        this.jobService = jobService;
+        this.syncService = syncService;
+        this.config = ingestConfig.getSync();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (config.getDirectory() == null || config.getDirectory().isBlank()) {
+            return;
+        }
+        Path root = Path.of(config.getDirectory()).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            log.warn("동기화 디렉토리가 없어 감시하지 않습니다: {}", root);
+            return;
+        }
+        directory = root.toString();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ingest-sync-"));
+
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            registerTree(root);
+            Thread watchThread = new Thread(this::watchLoop, "ingest-sync-watch");
+            watchThread.setDaemon(true);
+            watchThread.start();
+        } catch (IOException e) {
+            log.warn("디렉토리 감시를 시작하지 못해 주기적 재검사만 합니다: {} - {}", root, e.getMessage());
+        }
+
+        // 서버가 꺼져 있는 동안 바뀐 파일을 반영하도록 시작하자마자 한 번 확인한다
+        long interval = config.getRescanInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> requestSync("정기 재검사"), 0, interval, TimeUnit.MILLISECONDS);
+        log.info("동기화 디렉토리 감시 시작: {} (debounce {}, 재검사 {})",
+                directory, config.getDebounce(), config.getRescanInterval());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("WatchService 종료 실패: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("감시할 수 없는 경로 건너뜀: {} - {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                // OVERFLOW면 어떤 파일이 바뀌었는지 모르지만 동기화가 디렉토리 전체를 비교하므로 그대로 진행한다
+                if (event.kind() == ENTRY_CREATE && event.context() instanceof Path name) {
+                    Path child = dir.resolve(name);
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        try {
+                            registerTree(child);
+                        } catch (IOException e) {
+                            log.warn("새 디렉토리 감시 등록 실패: {} - {}", child, e.getMessage());
+                        }
+                    }
+                }
+            }
+            key.reset();
+            requestSync("파일 변경");
+        }
+    }
+
+    /**
+     * debounce 뒤에 동기화를 확인한다. 그 전에 다시 호출되면 대기 시간을 처음부터 다시 센다.
+     * 다만 이벤트가 끊이지 않아도 첫 요청 후 debounce × MAX_DEBOUNCE_ROUNDS가 지나면 더 미루지 않는다.
+     */
+    private synchronized void requestSync(String reason) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long debounceNanos = config.getDebounce().toNanos();
+        if (pending != null && !pending.isDone()) {
+            if (now - firstRequestNanos >= debounceNanos * MAX_DEBOUNCE_ROUNDS) {
+                return;
+            }
+            pending.cancel(false);
+        } else {
+            firstRequestNanos = now;
+        }
+        pending = scheduler.schedule(() -> runSync(reason), debounceNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void runSync(String reason) {
+        synchronized (this) {
+            pending = null;
+        }
+        try {
+            if (lastJobId != null && jobService.isActive(lastJobId)) {
+                requestSync(reason);
+                return;
+            }
+            if (!syncService.hasChanges(directory)) {
+                log.debug("동기화할 변경 없음 ({}): {}", reason, directory);
+                return;
+            }
+            lastJobId = jobService.submitDirectorySync(directory).getJobId();
+            log.info("디렉토리 동기화 작업 등록 ({}): {}", reason, lastJobId);
+        } catch (RejectedExecutionException e) {
+            log.warn("ingest 작업 대기열이 가득 차서 동기화를 미룹니다: {}", e.getMessage());
+            requestSync(reason);
+        } catch (Exception e) {
+            log.error("디렉토리 동기화 확인 실패: {}", directory, e);
+        }
+    }
+}
@@ -1,18 +1,26 @@
 package com.mychatgpt.service;
 
+import com.mychatgpt.text.TextNormalizer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tika.Tika;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -50,6 +58,7 @@ public class FileService {
 
     /**
      * Extract text content from a file using Apache Tika.
+     * 추출한 텍스트는 TextNormalizer.PLAIN으로 공백/구분선을 정리한다 (줄 구조는 유지).
      */
     public String extractText(String filePath) throws IOException {
         Path path = Paths.get(filePath);
@@ -59,19 +68,159 @@ public class FileService {
 
         try {
             String content = tika.parseToString(path);
-            return content.trim();
+            return TextNormalizer.PLAIN.normalize(content);
         } catch (Exception e) {
             log.error("Failed to extract text from file: {}", filePath, e);
             throw new IOException("파일에서 텍스트를 추출할 수 없습니다: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 파일을 Tika로 파싱하면서 나오는 텍스트를 줄 단위로 정리해서 바로 consumer에 넘긴다.
+     *
+     * parseToString은 전체 텍스트를 String 하나로 만들고 기본 10만 자에서 잘라 버린다.
+     * 여기서는 SAX ContentHandler(BodyContentHandler)가 받은 글자를 LineNormalizingWriter로 흘려보내므로
+     * 큰 PDF도 텍스트 전체를 메모리에 올리지 않고 끝까지 읽는다.
+     * consumer가 받는 조각을 이어 붙이면 extractText(filePath)의 결과와 같다.
+     * consumer가 던진 예외(임베딩, 벡터DB 저장 실패 등)는 추출 실패로 바꾸지 않고 그대로 던진다.
+     *
+     * @return consumer에 넘긴 글자 수
+     */
+    public long extractText(String filePath, Consumer<String> consumer) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            throw new IOException("파일을 찾을 수 없습니다: " + filePath);
+        }
+
+        LineNormalizingWriter writer = new LineNormalizingWriter(consumer);
+        Metadata metadata = new Metadata();
+        ParseContext context = new ParseContext();
+        // 압축 파일, 첨부 문서 등 안에 든 문서도 parseToString처럼 같이 파싱한다
+        context.set(Parser.class, tika.getParser());
+        try (InputStream in = TikaInputStream.get(path, metadata)) {
+            tika.getParser().parse(in, new BodyContentHandler(writer), metadata, context);
+            writer.close();
+            return writer.getLength();
+        } catch (Exception e) {
+            // 파서가 SAXException/TikaException으로 감쌌을 수 있어서 원인을 따라가며 찾는다
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof ConsumerException consumerFailure) {
+                    throw consumerFailure.getCause();
+                }
+            }
+            log.error("Failed to extract text from file: {}", filePath, e);
+            throw new IOException("파일에서 텍스트를 추출할 수 없습니다: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * consumer가 던진 예외를 파서 예외와 구분하기 위한 표시.
+     */
+    private static final class ConsumerException extends RuntimeException {
+
+        ConsumerException(RuntimeException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
+        }
+    }
+
+    /**
+     * 받은 글자를 모았다가 내용이 있는 줄이 끝날 때마다 그 앞까지를 TextNormalizer.PLAIN으로 정리해 넘기는 Writer.
+     *
+     * PLAIN은 줄을 넘어가는 규칙이 공백 정리뿐이라서, 줄바꿈이 든 공백에서 자르고 잘린 공백 대신
+     * 줄바꿈 수에 맞는 구분자("\n" 또는 "\n\n")를 다음 조각 앞에 붙이면 전체를 한 번에 정리한 것과 같다.
+     */
+    private static final class LineNormalizingWriter extends Writer {
+
+        private static final int FLUSH_CHARS = 8192;
+
+        private final Consumer<String> consumer;
+        private final StringBuilder buffer = new StringBuilder();
+        /** 마지막으로 넘긴 조각 뒤에 이어지는 줄바꿈 수 (다음 조각 앞에 붙일 구분자) */
+        private int pendingLineBreaks;
+        private long length;
+
+        LineNormalizingWriter(Consumer<String> consumer) {
+            this.consumer = consumer;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int count) {
+            buffer.append(chars, offset, count);
+            if (buffer.length() >= FLUSH_CHARS) {
+                int cut = lastLineStart();
+                if (cut > 0) {
+                    emit(buffer.substring(0, cut));
+                    buffer.delete(0, cut);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            emit(buffer.toString());
+            buffer.setLength(0);
+        }
+
+        private void emit(String raw) {
+            String text = TextNormalizer.PLAIN.normalize(raw);
+            if (!text.isEmpty()) {
+                String separator = length == 0 ? "" : pendingLineBreaks > 1 ? "\n\n" : "\n";
+                try {
+                    consumer.accept(separator + text);
+                } catch (RuntimeException e) {
+                    throw new ConsumerException(e);
+                }
+                length += separator.length() + text.length();
+                pendingLineBreaks = 0;
+            }
+            for (int i = raw.length() - 1; i >= 0 && isSpace(raw.charAt(i)); i--) {
+                if (raw.charAt(i) == '\n') {
+                    pendingLineBreaks++;
+                }
+            }
+        }
+
+        /**
+         * 줄바꿈이 든 공백 뒤에서 내용이 시작되는 마지막 위치, 없으면 0.
+         */
+        private int lastLineStart() {
+            for (int i = buffer.length() - 1; i > 0; i--) {
+                if (isSpace(buffer.charAt(i)) || !isSpace(buffer.charAt(i - 1))) {
+                    continue;
+                }
+                for (int j = i - 1; j >= 0 && isSpace(buffer.charAt(j)); j--) {
+                    if (buffer.charAt(j) == '\n') {
+                        return i;
+                    }
+                }
+            }
+            return 0;
+        }
+
+        private static boolean isSpace(char c) {
+            return Character.isWhitespace(c) || c == '\u00A0';
+        }
+    }
+
     /**
      * Extract text from a MultipartFile directly.
      */
     public String extractText(MultipartFile file) throws IOException {
         try (InputStream inputStream = file.getInputStream()) {
-            return tika.parseToString(inputStream);
+            return TextNormalizer.PLAIN.normalize(tika.parseToString(inputStream));
         } catch (Exception e) {
             log.error("Failed to extract text from uploaded file", e);
             throw new IOException("파일에서 텍스트를 추출할 수 없습니다: " + e.getMessage(), e);
@@ -0,0 +1,682 @@
+package com.mychatgpt.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mychatgpt.config.IngestConfig;
+import com.mychatgpt.entity.IngestJob;
+import com.mychatgpt.repository.IngestJobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * knowledge base ingest(업로드/디렉토리)를 백그라운드 작업으로 실행하는 서비스.
+ *
+ * 수천 건을 임베딩하는 ingest는 몇 분씩 걸려서 요청 스레드를 붙잡고 있으면 프록시 타임아웃에 걸린다.
+ * 요청은 작업을 등록하고 jobId만 바로 돌려주며, 클라이언트는 GET /api/knowledge-base/jobs/{jobId}로
+ * 진행 상황(처리한 배치/항목 수, 초당 처리량, ETA, 실패 건수)을 조회한다.
+ *
+ * - 작업은 ingest.jobs.concurrency 크기의 전용 스레드 풀에서 실행되고, 대기열(queueCapacity)이 차면 거부된다
+ * - 진행 상황은 progressSaveInterval 간격으로 ingest_jobs 테이블에 기록된다
+ * - 취소하면 대기 중인 작업은 바로 취소되고, 실행 중인 작업은 이미 시작한 배치까지 저장한 뒤 멈춘다
+ * - 서버가 재시작되면 QUEUED/RUNNING으로 남아 있던 작업은 INTERRUPTED로 표시된다
+ *
+ * 중단된 작업 재개:
+ * - 작업 입력(디렉토리 경로, 업로드 파일 위치)은 params에, 파이프라인 체크포인트는 checkpoint에 기록한다.
+ *   체크포인트는 배치가 저장될 때마다 바로 기록한다 (진행 상황은 progressSaveInterval 간격)
+ * - 기동이 끝나면 INTERRUPTED 작업을 같은 jobId로 다시 대기열에 넣고, 체크포인트 다음 항목부터 처리한다.
+ *   resumeWithin보다 오래되었거나 maxResumes번 재개한 작업, 입력이 사라진 작업은 재개하지 않는다
+ * - 업로드 파일은 INTERRUPTED로 끝난 작업이면 지우지 않고 남겨 둔다 (ingest.jobs.staging-dir)
+ */
+@Service
+@Slf4j
+public class IngestJobService {
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_SUCCEEDED = "SUCCEEDED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+    public static final String STATUS_INTERRUPTED = "INTERRUPTED";
+
+    private static final String DEFAULT_ZIP_NAME = "confluence-export.zip";
+
+    private final KnowledgeBaseService knowledgeBaseService;
+    private final DirectorySyncService directorySyncService;
+    private final IngestJobRepository jobRepository;
+    private final IngestConfig.Jobs config;
+    private final ThreadPoolExecutor executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** 이 서버에서 대기/실행 중인 작업 */
+    private final Map<String, LiveJob> liveJobs = new ConcurrentHashMap<>();
+    private volatile boolean shuttingDown;
+
+    public IngestJobService(KnowledgeBaseService knowledgeBaseService, DirectorySyncService directorySyncService,
+                            IngestJobRepository jobRepository, IngestConfig ingestConfig) {
+        this.knowledgeBaseService = knowledgeBaseService;
+        this.directorySyncService = directorySyncService;
+        this.jobRepository = jobRepository;
+        this.config = ingestConfig.getJobs();
+        this.executor = new ThreadPoolExecutor(config.getConcurrency(), config.getConcurrency(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                new CustomizableThreadFactory("ingest-job-"));
+    }
+
+    /**
+     * 작업 본문. 진행 상황을 progress로 보고하고 처리 결과 요약을 반환한다.
+     */
+    @FunctionalInterface
+    private interface JobTask {
+        Map<String, Object> run(IngestProgress progress) throws Exception;
+    }
+
+    @PostConstruct
+    void markInterruptedJobs() {
+        int count = jobRepository.markAll(List.of(STATUS_QUEUED, STATUS_RUNNING), STATUS_INTERRUPTED,
+                "서버 재시작으로 중단되었습니다.", LocalDateTime.now());
+        if (count > 0) {
+            log.warn("이전 실행에서 끝나지 않은 ingest 작업 {}건을 INTERRUPTED로 표시", count);
+        }
+    }
+
+    /**
+     * 중단된 작업을 체크포인트부터 다시 실행한다. 재개하지 않는 작업은 params를 지워 다음 기동 때 다시 보지 않게 하고
+     * 남겨 둔 업로드 파일을 정리한다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(config.getResumeWithin());
+        for (IngestJob job : jobRepository.findByStatusAndParamsIsNotNullOrderByCreatedAt(STATUS_INTERRUPTED)) {
+            Map<String, Object> params = readParams(job);
+            String reason;
+            if (!config.isResumeInterrupted()) {
+                reason = "자동 재개가 꺼져 있습니다.";
+            } else if (job.isCancelRequested()) {
+                reason = "취소가 요청된 작업입니다.";
+            } else if (job.getCreatedAt() != null && job.getCreatedAt().isBefore(cutoff)) {
+                reason = "재개 기한(" + config.getResumeWithin() + ")이 지났습니다.";
+            } else if (job.getResumeCount() >= config.getMaxResumes()) {
+                reason = "재개 횟수(" + config.getMaxResumes() + "회)를 모두 사용했습니다.";
+            } else {
+                try {
+                    resume(job, params);
+                    continue;
+                } catch (RejectedExecutionException e) {
+                    // enqueue가 이미 FAILED로 기록하고 업로드 파일을 지웠다
+                    continue;
+                } catch (IllegalStateException e) {
+                    reason = e.getMessage();
+                }
+            }
+            log.info("중단된 ingest 작업을 재개하지 않음: {} - {}", job.getJobId(), reason);
+            job.setError((job.getError() == null ? "" : job.getError() + " ") + "재개하지 않음: " + reason);
+            job.setParams(null);
+            jobRepository.save(job);
+            deleteStagingDir(stagingDir(params));
+        }
+    }
+
+    private void resume(IngestJob job, Map<String, Object> params) {
+        JobTask task = taskFor(job.getType(), params);
+        Map<String, Long> checkpoint = readCheckpoint(job);
+        job.setStatus(STATUS_QUEUED);
+        job.setResumeCount(job.getResumeCount() + 1);
+        job.setError(null);
+        job.setFinishedAt(null);
+        job = jobRepository.save(job);
+        log.info("중단된 ingest 작업 재개: {} ({} {}, {}번째 재개, 체크포인트 {})", job.getJobId(), job.getType(),
+                job.getTarget(), job.getResumeCount(), checkpoint.values());
+        enqueue(job, task, stagingDir(params), checkpoint);
+    }
+
+    // ========== 작업 등록 ==========
+
+    public IngestJob submitYouTrackUpload(MultipartFile file, boolean removeMissing) throws IOException {
+        Path stagingDir = createStagingDir();
+        File staged;
+        try {
+            staged = stage(file, stagingDir);
+        } catch (IOException | RuntimeException e) {
+            deleteStagingDir(stagingDir);
+            throw e;
+        }
+        return submit("youtrack-upload", staged.getName(), Map.of(
+                "stagingDir", stagingDir.toString(),
+                "file", staged.getPath(),
+                "removeMissing", removeMissing));
+    }
+
+    public IngestJob submitConfluenceUpload(List<MultipartFile> files) throws IOException {
+        Path stagingDir = createStagingDir();
+        List<File> staged = new ArrayList<>();
+        try {
+            // 같은 이름의 파일이 여러 개 올라와도 덮어쓰지 않도록 파일마다 하위 디렉토리에 둔다 (문서 ID가 파일명에서 나옴)
+            for (int i = 0; i < files.size(); i++) {
+                staged.add(stage(files.get(i), Files.createDirectory(stagingDir.resolve(String.valueOf(i)))));
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteStagingDir(stagingDir);
+            throw e;
+        }
+        return submit("confluence-upload", files.size() + " files", Map.of(
+                "stagingDir", stagingDir.toString(),
+                "files", staged.stream().map(File::getPath).toList()));
+    }
+
+    /**
+     * Confluence space export ZIP을 요청 본문에서 그대로 받아 저장하고 ingest 작업을 등록한다.
+     * 본문을 8KB씩 파일로 흘려 쓰므로 크기 제한이 없고 메모리를 쓰지 않는다. 압축은 작업이 읽으면서 푼다.
+     *
+     * @param body     요청 본문 (ZIP 바이트)
+     * @param fileName 저장할 파일명 (결과 표시용). 경로는 떼어 내고, 파일명이 남지 않으면 confluence-export.zip
+     * @throws IllegalArgumentException 본문이 ZIP이 아닌 경우
+     */
+    public IngestJob submitConfluenceZip(InputStream body, String fileName, boolean removeMissing)
+            throws IOException {
+        Path stagingDir = createStagingDir();
+        Path staged = stagingDir.resolve(baseName(fileName, DEFAULT_ZIP_NAME));
+        long size;
+        try {
+            size = Files.copy(body, staged);
+            if (!isZip(staged)) {
+                throw new IllegalArgumentException("ZIP 파일이 아닙니다: " + fileName);
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteStagingDir(stagingDir);
+            throw e;
+        }
+        log.info("Confluence ZIP 수신: {} ({}MB)", fileName, size / 1024 / 1024);
+        return submit("confluence-zip-upload", staged.getFileName().toString(), Map.of(
+                "stagingDir", stagingDir.toString(),
+                "file", staged.toString(),
+                "removeMissing", removeMissing));
+    }
+
+    /**
+     * ZIP 로컬 파일 헤더 시그니처(PK\3\4)로 시작하는지.
+     */
+    private static boolean isZip(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] header = in.readNBytes(4);
+            return header.length == 4 && header[0] == 'P' && header[1] == 'K' && header[2] == 3 && header[3] == 4;
+        }
+    }
+
+    public IngestJob submitConfluenceDirectory(String directoryPath, boolean removeMissing) {
+        knowledgeBaseService.requireDirectory(directoryPath);
+        return submit("confluence-directory", directoryPath,
+                Map.of("directory", directoryPath, "removeMissing", removeMissing));
+    }
+
+    public IngestJob submitDirectory(String directoryPath, boolean removeMissing) {
+        knowledgeBaseService.requireDirectory(directoryPath);
+        return submit("directory", directoryPath, Map.of("directory", directoryPath, "removeMissing", removeMissing));
+    }
+
+    /**
+     * 디렉토리를 파일 manifest와 비교해서 바뀐 파일만 ingest하고, 삭제된 파일의 항목을 지운다.
+     */
+    public IngestJob submitDirectorySync(String directoryPath) {
+        knowledgeBaseService.requireDirectory(directoryPath);
+        return submit("directory-sync", directoryPath, Map.of("directory", directoryPath));
+    }
+
+    /**
+     * 작업 종류와 입력으로 작업 본문을 만든다. 처음 등록할 때와 재개할 때 같은 방법으로 만든다.
+     *
+     * @throws IllegalStateException 입력 파일/디렉토리가 없어진 경우
+     */
+    private JobTask taskFor(String type, Map<String, Object> params) {
+        boolean removeMissing = Boolean.TRUE.equals(params.get("removeMissing"));
+        switch (type) {
+            case "youtrack-upload" -> {
+                File file = requireInput(params.get("file"));
+                return progress -> knowledgeBaseService.ingestYouTrackExcel(file, removeMissing, progress);
+            }
+            case "confluence-upload" -> {
+                if (!(params.get("files") instanceof List<?> paths)) {
+                    throw new IllegalStateException("작업 입력에 업로드 파일 목록이 없습니다.");
+                }
+                List<File> files = paths.stream().map(IngestJobService::requireInput).toList();
+                return progress -> knowledgeBaseService.ingestConfluenceHtmlFiles(files, progress);
+            }
+            case "confluence-zip-upload" -> {
+                File zip = requireInput(params.get("file"));
+                return progress -> knowledgeBaseService.ingestConfluenceZip(zip, removeMissing, progress);
+            }
+            case "confluence-directory" -> {
+                String directory = requireInput(params.get("directory")).getPath();
+                return progress -> knowledgeBaseService.ingestConfluenceHtmlFromDirectory(directory, removeMissing,
+                        progress);
+            }
+            case "directory" -> {
+                String directory = requireInput(params.get("directory")).getPath();
+                return progress -> knowledgeBaseService.ingestFromDirectory(directory, removeMissing, progress);
+            }
+            case "directory-sync" -> {
+                String directory = requireInput(params.get("directory")).getPath();
+                return progress -> directorySyncService.sync(directory, progress);
+            }
+            default -> throw new IllegalStateException("알 수 없는 작업 종류입니다: " + type);
+        }
+    }
+
+    private static File requireInput(Object path) {
+        if (!(path instanceof String name)) {
+            throw new IllegalStateException("작업 입력에 파일 경로가 없습니다.");
+        }
+        File file = new File(name);
+        if (!file.exists()) {
+            throw new IllegalStateException("작업 입력을 찾을 수 없습니다: " + file.getPath());
+        }
+        return file;
+    }
+
+    /**
+     * 작업을 QUEUED로 저장하고 실행 대기열에 넣는다.
+     *
+     * @param params 작업 입력. stagingDir가 있으면 작업이 끝날 때 삭제한다 (INTERRUPTED로 끝나면 재개를 위해 남김)
+     * @throws RejectedExecutionException 대기열이 가득 찬 경우
+     */
+    private IngestJob submit(String type, String target, Map<String, Object> params) {
+        JobTask task = taskFor(type, params);
+        IngestJob job = new IngestJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setType(type);
+        job.setTarget(target);
+        job.setStatus(STATUS_QUEUED);
+        try {
+            job.setParams(objectMapper.writeValueAsString(params));
+        } catch (JsonProcessingException e) {
+            log.warn("ingest 작업 입력 직렬화 실패 (재개 불가): {}", e.getMessage());
+        }
+        job = jobRepository.save(job);
+
+        enqueue(job, task, stagingDir(params), Map.of());
+        log.info("ingest 작업 등록: {} ({} {})", job.getJobId(), type, target);
+        return job;
+    }
+
+    /**
+     * @param resumeFrom 재개하는 작업이면 이전 실행의 체크포인트
+     */
+    private void enqueue(IngestJob job, JobTask task, Path stagingDir, Map<String, Long> resumeFrom) {
+        LiveJob live = new LiveJob(job, resumeFrom, stagingDir);
+        liveJobs.put(job.getJobId(), live);
+        try {
+            live.future = executor.submit(() -> execute(live, task));
+        } catch (RejectedExecutionException e) {
+            liveJobs.remove(job.getJobId());
+            deleteStagingDir(stagingDir);
+            finish(live, STATUS_FAILED, null, "작업 대기열이 가득 찼습니다.");
+            throw new RejectedExecutionException("실행 대기 중인 ingest 작업이 너무 많습니다 (최대 "
+                    + config.getQueueCapacity() + "건). 잠시 후 다시 시도하세요.", e);
+        }
+    }
+
+    private void execute(LiveJob live, JobTask task) {
+        try {
+            synchronized (live) {
+                // 대기 중에 취소됐지만 cancel()이 대기열에서 빼기 전에 꺼내진 작업.
+                // 서버 종료(shutdown()이 모든 작업을 취소) 중이면 대기만 하던 작업이므로 INTERRUPTED로 남겨
+                // 업로드 파일을 지우지 않고 다음 기동 때 재개되게 한다 (사용자가 취소한 작업은 재개하지 않는다)
+                if (live.progress.isCancelled()) {
+                    finish(live, shuttingDown ? STATUS_INTERRUPTED : STATUS_CANCELLED, null,
+                            shuttingDown ? "서버 종료로 중단되었습니다." : null);
+                    return;
+                }
+                live.started = true;
+                live.progress.start();
+                live.job.setStatus(STATUS_RUNNING);
+                if (live.job.getStartedAt() == null) {
+                    live.job.setStartedAt(LocalDateTime.now());
+                }
+                live.job = jobRepository.save(live.job);
+            }
+            log.info("ingest 작업 시작: {} ({} {})", live.job.getJobId(), live.job.getType(), live.job.getTarget());
+
+            Map<String, Object> result = task.run(live.progress);
+            finish(live, STATUS_SUCCEEDED, result, null);
+        } catch (CancellationException e) {
+            // 서버 종료로 멈춘 작업은 사용자가 취소한 것과 구분한다
+            finish(live, shuttingDown ? STATUS_INTERRUPTED : STATUS_CANCELLED, null,
+                    shuttingDown ? "서버 종료로 중단되었습니다." : null);
+        } catch (Exception e) {
+            log.error("ingest 작업 실패: {}", live.job.getJobId(), e);
+            finish(live, STATUS_FAILED, null, e.getMessage());
+        } finally {
+            liveJobs.remove(live.job.getJobId());
+            if (!STATUS_INTERRUPTED.equals(live.job.getStatus())) {
+                deleteStagingDir(live.stagingDir);
+            }
+        }
+    }
+
+    // ========== 조회 / 취소 ==========
+
+    /**
+     * 작업이 이 서버에서 아직 대기 중이거나 실행 중인지.
+     */
+    public boolean isActive(String jobId) {
+        return liveJobs.containsKey(jobId);
+    }
+
+    /**
+     * 작업 상태. 이 서버에서 실행 중인 작업은 DB에 기록되기 전의 최신 진행 상황을 반환한다.
+     */
+    public Optional<Map<String, Object>> getJob(String jobId) {
+        LiveJob live = liveJobs.get(jobId);
+        if (live != null) {
+            return Optional.of(liveView(live));
+        }
+        return jobRepository.findByJobId(jobId).map(this::toMap);
+    }
+
+    /**
+     * 최근 작업 50건 (최신순).
+     */
+    public List<Map<String, Object>> listJobs() {
+        return jobRepository.findTop50ByOrderByCreatedAtDesc().stream()
+                .map(job -> {
+                    LiveJob live = liveJobs.get(job.getJobId());
+                    return live != null ? liveView(live) : toMap(job);
+                })
+                .toList();
+    }
+
+    private Map<String, Object> liveView(LiveJob live) {
+        synchronized (live) {
+            copyProgress(live);
+            return toMap(live.job);
+        }
+    }
+
+    /**
+     * 작업 취소를 요청한다. 대기 중이면 바로 취소되고, 실행 중이면 진행 중인 배치를 저장한 뒤 멈춘다.
+     *
+     * @return 취소 요청 후 작업 상태. 작업이 없으면 empty
+     * @throws IllegalStateException 이미 끝났거나 이 서버에서 실행 중인 작업이 아닌 경우
+     */
+    public Optional<Map<String, Object>> cancel(String jobId) {
+        LiveJob live = liveJobs.get(jobId);
+        if (live == null) {
+            return jobRepository.findByJobId(jobId).map(job -> {
+                throw new IllegalStateException("이미 종료된 작업입니다: " + job.getStatus());
+            });
+        }
+
+        live.progress.cancel();
+        boolean removedFromQueue = false;
+        synchronized (live) {
+            live.job.setCancelRequested(true);
+            live.job = jobRepository.save(live.job);
+            // 아직 시작하지 않았으면 대기열에서 빼서 자리를 비운다. 이미 시작한 작업은 파이프라인이
+            // progress.throwIfCancelled()로 스스로 멈추고, 대기열에서 빼지 못했으면 execute()가 CANCELLED로 끝낸다
+            if (!live.started && live.future instanceof Runnable queued && executor.remove(queued)) {
+                removedFromQueue = true;
+                finish(live, STATUS_CANCELLED, null, null);
+            }
+        }
+        if (removedFromQueue) {
+            liveJobs.remove(jobId);
+            deleteStagingDir(live.stagingDir);
+        }
+        log.info("ingest 작업 취소 요청: {}", jobId);
+        return getJob(jobId);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("concurrency", config.getConcurrency());
+        stats.put("queueCapacity", config.getQueueCapacity());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        liveJobs.values().forEach(live -> live.progress.cancel());
+        executor.shutdown();
+        try {
+            // 실행 중인 배치가 저장될 시간을 준다. 그래도 남은 작업은 다음 기동 때 INTERRUPTED로 표시된다
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ========== 내부 ==========
+
+    /**
+     * 이 서버에서 대기/실행 중인 작업. job 엔티티 갱신과 저장은 live 객체로 동기화한다.
+     */
+    private final class LiveJob {
+        IngestJob job;
+        final IngestProgress progress;
+        /** 작업이 끝나면 지울 업로드 파일 위치 (없으면 null) */
+        final Path stagingDir;
+        volatile Future<?> future;
+        /** execute()가 실행을 시작했는지. live로 동기화한다 */
+        boolean started;
+        long lastSavedNanos = System.nanoTime();
+        long savedCheckpointVersion;
+
+        LiveJob(IngestJob job, Map<String, Long> resumeFrom, Path stagingDir) {
+            this.job = job;
+            this.progress = new IngestProgress(this::onProgress, resumeFrom);
+            this.stagingDir = stagingDir;
+        }
+
+        /**
+         * 배치가 저장/실패할 때마다 호출된다. DB 기록은 progressSaveInterval 간격으로만 하되,
+         * 체크포인트가 바뀌었으면 바로 기록한다 (재개할 때 이미 저장한 배치를 다시 처리하지 않도록).
+         */
+        private void onProgress() {
+            synchronized (this) {
+                long now = System.nanoTime();
+                long checkpointVersion = progress.getCheckpointVersion();
+                if (checkpointVersion == savedCheckpointVersion
+                        && now - lastSavedNanos < config.getProgressSaveInterval().toNanos()) {
+                    return;
+                }
+                lastSavedNanos = now;
+                savedCheckpointVersion = checkpointVersion;
+                copyProgress(this);
+                try {
+                    job = jobRepository.save(job);
+                } catch (Exception e) {
+                    log.warn("ingest 작업 진행 상황 저장 실패 (무시): {} - {}", job.getJobId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void finish(LiveJob live, String status, Map<String, Object> result, String error) {
+        synchronized (live) {
+            copyProgress(live);
+            live.job.setStatus(status);
+            live.job.setEtaSeconds(null);
+            live.job.setFinishedAt(LocalDateTime.now());
+            live.job.setError(error);
+            if (result != null) {
+                try {
+                    live.job.setResult(objectMapper.writeValueAsString(result));
+                } catch (JsonProcessingException e) {
+                    log.warn("ingest 작업 결과 직렬화 실패: {}", e.getMessage());
+                }
+            }
+            live.job = jobRepository.save(live.job);
+        }
+        log.info("ingest 작업 종료: {} {} (배치 {}, 항목 {}, 실패 {})", live.job.getJobId(), status,
+                live.job.getBatchesDone(), live.job.getItemsDone(), live.job.getItemsFailed());
+    }
+
+    private void copyProgress(LiveJob live) {
+        IngestProgress progress = live.progress;
+        IngestJob job = live.job;
+        Map<String, Long> checkpoints = progress.getCheckpoints();
+        if (!checkpoints.isEmpty()) {
+            try {
+                job.setCheckpoint(objectMapper.writeValueAsString(checkpoints));
+            } catch (JsonProcessingException e) {
+                log.warn("ingest 작업 체크포인트 직렬화 실패: {}", e.getMessage());
+            }
+        }
+        job.setPhase(progress.getPhase());
+        job.setBatchesDone(progress.getBatchesDone());
+        job.setItemsDone(progress.getItemsDone());
+        job.setItemsFailed(progress.getItemsFailed());
+        job.setItemsExpected(progress.getItemsExpected());
+        if (STATUS_RUNNING.equals(job.getStatus())) {
+            job.setItemsPerSec(progress.getItemsPerSec());
+            job.setEtaSeconds(progress.getEtaSeconds());
+        }
+    }
+
+    private Map<String, Object> toMap(IngestJob job) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", job.getJobId());
+        map.put("type", job.getType());
+        map.put("target", job.getTarget());
+        map.put("status", job.getStatus());
+        map.put("cancelRequested", job.isCancelRequested());
+        map.put("phase", job.getPhase());
+        map.put("batchesDone", job.getBatchesDone());
+        map.put("itemsDone", job.getItemsDone());
+        map.put("itemsFailed", job.getItemsFailed());
+        map.put("itemsExpected", job.getItemsExpected() == 0 ? null : job.getItemsExpected());
+        map.put("itemsPerSec", job.getItemsPerSec());
+        map.put("etaSeconds", job.getEtaSeconds());
+        if (job.getResumeCount() > 0) {
+            map.put("resumeCount", job.getResumeCount());
+        }
+        map.put("createdAt", job.getCreatedAt());
+        map.put("startedAt", job.getStartedAt());
+        map.put("finishedAt", job.getFinishedAt());
+        if (job.getError() != null) {
+            map.put("error", job.getError());
+        }
+        if (job.getResult() != null) {
+            try {
+                map.put("result", objectMapper.readValue(job.getResult(), new TypeReference<Map<String, Object>>() {
+                }));
+            } catch (JsonProcessingException e) {
+                map.put("result", job.getResult());
+            }
+        }
+        return map;
+    }
+
+    private Map<String, Object> readParams(IngestJob job) {
+        try {
+            return objectMapper.readValue(job.getParams(), new TypeReference<Map<String, Object>>() {
+            });
+        } catch (JsonProcessingException e) {
+            log.warn("ingest 작업 입력을 읽을 수 없습니다: {} - {}", job.getJobId(), e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private Map<String, Long> readCheckpoint(IngestJob job) {
+        if (job.getCheckpoint() == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(job.getCheckpoint(), new TypeReference<Map<String, Long>>() {
+            });
+        } catch (JsonProcessingException e) {
+            log.warn("ingest 작업 체크포인트를 읽을 수 없어 처음부터 다시 실행합니다: {} - {}", job.getJobId(), e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static Path stagingDir(Map<String, Object> params) {
+        Object dir = params.get("stagingDir");
+        return dir == null ? null : Path.of((String) dir);
+    }
+
+    /**
+     * 업로드 파일을 보관할 작업별 디렉토리. ingest.jobs.staging-dir가 비어 있으면 시스템 임시 디렉토리에 만든다.
+     */
+    private Path createStagingDir() throws IOException {
+        if (config.getStagingDir() == null || config.getStagingDir().isBlank()) {
+            return Files.createTempDirectory("ingest-job-");
+        }
+        Path base = Files.createDirectories(Path.of(config.getStagingDir()));
+        return Files.createTempDirectory(base, "ingest-job-");
+    }
+
+    /**
+     * 업로드 파일을 원래 파일명으로 임시 디렉토리에 옮긴다.
+     * 요청이 끝나면 MultipartFile의 임시 파일이 지워지므로 작업을 등록하기 전에 옮겨 둬야 한다.
+     */
+    private static File stage(MultipartFile file, Path dir) throws IOException {
+        Path target = dir.resolve(baseName(file.getOriginalFilename(), "upload"));
+        file.transferTo(target);
+        return target.toFile();
+    }
+
+    /**
+     * 클라이언트가 보낸 파일명에서 경로를 떼어 낸 파일명.
+     * 비었거나 "/", "..", 잘못된 경로처럼 파일명이 남지 않으면 fallback을 쓴다 (임시 디렉토리 밖에 쓰지 않도록).
+     */
+    private static String baseName(String name, String fallback) {
+        if (name == null || name.isBlank()) {
+            return fallback;
+        }
+        Path fileName;
+        try {
+            fileName = Paths.get(name).getFileName();
+        } catch (InvalidPathException e) {
+            return fallback;
+        }
+        String baseName = fileName == null ? "" : fileName.toString().strip();
+        return baseName.isEmpty() || baseName.equals(".") || baseName.equals("..") ? fallback : baseName;
+    }
+
+    private static void deleteStagingDir(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            FileSystemUtils.deleteRecursively(dir);
+        } catch (IOException e) {
+            log.warn("업로드 임시 디렉토리 삭제 실패: {}", dir);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.mychatgpt.service;
+
+import com.mychatgpt.config.IngestConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * knowledge base ingest를 단계별로 겹쳐서 실행하는 파이프라인.
+ *
+ *   항목 → [prepare] → [embed × embedConcurrency] → (대기열 queueCapacity) → [write] → 벡터DB
+ *
+ * - prepare: 청킹 + manifest 비교. 배치 순서대로 하나씩 실행
+ * - embed: 임베딩 서버 호출. 여러 배치를 동시에 보낸다
+ * - write: 임베딩이 끝난 배치를 writeBatchSize 청크까지 모아서 한 번에 저장. 한 번에 하나씩 실행
+ *
+ * 기존에는 한 배치의 prepare → embed → write가 끝나야 다음 배치를 시작했기 때문에
+ * 임베딩 서버와 벡터DB가 번갈아 쉬었다. 파이프라인에서는 write 중에도 다음 배치들이 임베딩된다.
+ *
+ * 각 단계는 다음 단계가 요청한 만큼만 만들어 내므로(backpressure), write가 느리면 embed/prepare가 멈춘다.
+ * 메모리에 올라가는 배치 수는 embedConcurrency + queueCapacity + write 대기분으로 제한된다.
+ *
+ * 한 배치의 단계가 실패하면 그 배치만 onFailure로 알리고 이후 단계를 건너뛴다.
+ * onFailure가 예외를 던지면(실패 항목을 재시도 대기열에 넣지 못함) 파이프라인 전체가 그 예외로 끝난다.
+ *
+ * 체크포인트: 배치는 입력 순서대로 write에 도착하므로, 저장(또는 실패 처리)을 마칠 때마다
+ * "앞에서부터 몇 건까지 끝났는지"를 checkpointKey로 IngestProgress에 기록한다.
+ * 재개된 작업에서는 같은 키로 실행하면 그만큼을 prepare 전에 건너뛴다 (Stages.skipped로 알림).
+ * 실패한 배치는 onFailure가 정상 반환한 뒤에만 지나가므로, onFailure가 던지면 체크포인트는 그 앞에 머문다.
+ * 입력 순서가 실행마다 같아야 하므로, 순서가 보장되지 않는 입력은 checkpointKey를 null로 넘긴다.
+ *
+ * 진행 상황은 IngestProgress로 보고한다. 취소되면 새 배치를 만들지 않고,
+ * 이미 prepare/embed에 들어간 배치는 끝까지 저장한 뒤 반환한다 (manifest와 벡터DB가 어긋나지 않도록).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IngestPipeline {
+
+    private final IngestConfig config;
+
+    /**
+     * 파이프라인의 각 단계에서 실행할 작업. B는 prepare가 만든 배치 상태 (청크, 임베딩 등).
+     */
+    public interface Stages<T, B> {
+
+        B prepare(List<T> items);
+
+        void embed(B batch);
+
+        /**
+         * 임베딩이 끝난 여러 배치를 한 번에 저장한다. 예외가 나면 전달된 배치 전체가 실패로 처리된다.
+         */
+        void write(List<B> batches);
+
+        /**
+         * 배치에서 임베딩/저장할 청크 수 (통계와 write 묶음 크기 계산에 사용).
+         */
+        int chunkCount(B batch);
+
+        /**
+         * 이전 실행의 체크포인트보다 앞이라 건너뛴 항목 (전체 ID 집계 등에 사용).
+         */
+        default void skipped(T item) {
+        }
+    }
+
+    /**
+     * 파이프라인을 끝까지 실행하고 단계별 처리량을 반환한다.
+     *
+     * @param checkpointKey 이 실행의 체크포인트 키 (입력이 같으면 같은 값). null이면 체크포인트를 남기지 않는다
+     * @param onFailure 실패한 배치의 원본 항목과 예외. 여러 스레드에서 호출될 수 있다.
+     *                  실패 항목을 보관하지 못했으면 예외를 던져 체크포인트가 그 배치를 지나지 않게 한다
+     * @param progress  저장/실패한 배치를 보고하고 취소 여부를 확인할 대상
+     */
+    public <T, B> Map<String, Object> run(String label, String checkpointKey, Iterable<T> items,
+                                          Stages<T, B> stages, BiConsumer<List<T>, Exception> onFailure,
+                                          IngestProgress progress) {
+        StageStats prepareStats = new StageStats();
+        StageStats embedStats = new StageStats();
+        StageStats writeStats = new StageStats();
+        BiConsumer<List<T>, Exception> failureHandler = (batch, e) -> {
+            onFailure.accept(batch, e);
+            progress.onFailed(batch.size());
+        };
+        long resumeFrom = progress.resumeOffset(checkpointKey);
+        Writer<T, B> writer = new Writer<>(label, stages, failureHandler, writeStats, config.getWriteBatchSize(),
+                progress, checkpointKey, resumeFrom);
+        AtomicLong position = new AtomicLong();
+        long start = System.nanoTime();
+        if (resumeFrom > 0) {
+            log.info("{} 체크포인트에서 재개: 앞의 {}건 건너뜀", label, resumeFrom);
+            progress.onResumed(resumeFrom);
+        }
+
+        Flux.fromIterable(items)
+                .filter(item -> {
+                    if (position.getAndIncrement() < resumeFrom) {
+                        stages.skipped(item);
+                        return false;
+                    }
+                    return true;
+                })
+                .buffer(config.getBatchSize())
+                .takeWhile(batch -> !progress.isCancelled())
+                .concatMap(batch -> Mono.fromCallable(() -> prepare(label, batch, stages, failureHandler, prepareStats))
+                        .subscribeOn(Schedulers.boundedElastic()), 1)
+                .flatMapSequential(unit -> Mono.fromCallable(() -> embed(label, unit, stages, failureHandler, embedStats))
+                        .subscribeOn(Schedulers.boundedElastic()), config.getEmbedConcurrency())
+                .concatMap(unit -> Mono.fromRunnable(() -> writer.offer(unit))
+                        .subscribeOn(Schedulers.boundedElastic()), config.getQueueCapacity())
+                .then(Mono.fromRunnable(writer::flush).subscribeOn(Schedulers.boundedElastic()))
+                .block();
+
+        long wallNanos = System.nanoTime() - start;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("wallMs", wallNanos / 1_000_000);
+        report.put("itemsPerSec", perSecond(prepareStats.items.get(), wallNanos));
+        report.put("prepare", prepareStats.toMap());
+        report.put("embed", embedStats.toMap());
+        report.put("write", writeStats.toMap());
+        if (resumeFrom > 0) {
+            report.put("resumedFrom", Math.min(resumeFrom, position.get()));
+        }
+        if (progress.isCancelled()) {
+            report.put("cancelled", true);
+        }
+        log.info("{} 파이프라인 완료: {}", label, report);
+        return report;
+    }
+
+    /**
+     * prepare 결과와 원본 항목. 실패한 배치는 batch가 null이다.
+     */
+    private record Unit<T, B>(List<T> items, B batch) {
+    }
+
+    private <T, B> Unit<T, B> prepare(String label, List<T> items, Stages<T, B> stages,
+                                      BiConsumer<List<T>, Exception> onFailure, StageStats stats) {
+        long start = System.nanoTime();
+        try {
+            B batch = stages.prepare(items);
+            stats.record(items.size(), stages.chunkCount(batch), start);
+            return new Unit<>(items, batch);
+        } catch (Exception e) {
+            log.error("{} prepare 실패 ({}건): {}", label, items.size(), e.getMessage());
+            onFailure.accept(items, e);
+            return new Unit<>(items, null);
+        }
+    }
+
+    private <T, B> Unit<T, B> embed(String label, Unit<T, B> unit, Stages<T, B> stages,
+                                    BiConsumer<List<T>, Exception> onFailure, StageStats stats) {
+        if (unit.batch() == null) {
+            return unit;
+        }
+        long start = System.nanoTime();
+        try {
+            stages.embed(unit.batch());
+            stats.record(unit.items().size(), stages.chunkCount(unit.batch()), start);
+            return unit;
+        } catch (Exception e) {
+            log.error("{} 임베딩 실패 ({}건): {}", label, unit.items().size(), e.getMessage());
+            onFailure.accept(unit.items(), e);
+            return new Unit<>(unit.items(), null);
+        }
+    }
+
+    /**
+     * 임베딩이 끝난 배치를 writeBatchSize 청크까지 모았다가 한 번에 저장한다.
+     * concatMap으로 한 번에 하나의 offer만 실행되므로 별도 동기화가 필요 없다.
+     *
+     * offered는 write에 도착한 항목 수(실패한 배치 포함)로, 대기 중인 배치가 없을 때의 offered가
+     * 체크포인트가 된다. 실패한 배치는 onFailure에서 재시도 대기열로 넘어가므로 끝난 것으로 센다.
+     * onFailure가 던지면 checkpoint()까지 가지 않고 예외가 파이프라인 밖으로 나간다.
+     */
+    private static final class Writer<T, B> {
+        private final String label;
+        private final Stages<T, B> stages;
+        private final BiConsumer<List<T>, Exception> onFailure;
+        private final StageStats stats;
+        private final int writeBatchSize;
+        private final IngestProgress progress;
+        private final String checkpointKey;
+        private final List<Unit<T, B>> pending = new ArrayList<>();
+        private int pendingChunks;
+        private long offered;
+
+        Writer(String label, Stages<T, B> stages, BiConsumer<List<T>, Exception> onFailure, StageStats stats,
+               int writeBatchSize, IngestProgress progress, String checkpointKey, long resumeFrom) {
+            this.label = label;
+            this.stages = stages;
+            this.onFailure = onFailure;
+            this.stats = stats;
+            this.writeBatchSize = writeBatchSize;
+            this.progress = progress;
+            this.checkpointKey = checkpointKey;
+            this.offered = resumeFrom;
+        }
+
+        void offer(Unit<T, B> unit) {
+            offered += unit.items().size();
+            if (unit.batch() == null) {
+                if (pending.isEmpty()) {
+                    progress.checkpoint(checkpointKey, offered);
+                }
+                return;
+            }
+            pending.add(unit);
+            pendingChunks += stages.chunkCount(unit.batch());
+            if (pendingChunks >= writeBatchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            int items = pending.stream().mapToInt(unit -> unit.items().size()).sum();
+            try {
+                stages.write(pending.stream().map(Unit::batch).toList());
+                stats.record(items, pendingChunks, start);
+                progress.checkpoint(checkpointKey, offered);
+                progress.onWritten(pending.size(), items);
+            } catch (Exception e) {
+                log.error("{} 저장 실패 ({}건): {}", label, items, e.getMessage());
+                pending.forEach(unit -> onFailure.accept(unit.items(), e));
+                progress.checkpoint(checkpointKey, offered);
+            }
+            pending.clear();
+            pendingChunks = 0;
+        }
+    }
+
+    /**
+     * 단계별 누적 통계. busyMs는 그 단계에서 실제로 작업한 시간의 합이다 (동시 실행분은 겹쳐서 더해짐).
+     */
+    private static final class StageStats {
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong items = new AtomicLong();
+        final AtomicLong chunks = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+
+        void record(int itemCount, int chunkCount, long startNanos) {
+            batches.incrementAndGet();
+            items.addAndGet(itemCount);
+            chunks.addAndGet(chunkCount);
+            busyNanos.addAndGet(System.nanoTime() - startNanos);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("batches", batches.get());
+            map.put("items", items.get());
+            map.put("chunks", chunks.get());
+            map.put("busyMs", busyNanos.get() / 1_000_000);
+            map.put("chunksPerBusySec", perSecond(chunks.get(), busyNanos.get()));
+            return map;
+        }
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos == 0 ? 0.0 : Math.round(count * 1e10 / nanos) / 10.0;
+    }
+}
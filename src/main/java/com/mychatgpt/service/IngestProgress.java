@@ -0,0 +1,181 @@
+package com.mychatgpt.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ingest 작업 한 건의 진행 상황과 취소 플래그.
+ *
+ * IngestPipeline이 배치를 저장하거나 실패할 때마다 갱신하고, 취소되면 새 배치를 시작하지 않는다.
+ * 한 작업에서 파이프라인을 여러 번 돌리면(디렉토리 ingest의 xlsx 여러 개 + HTML) 값이 누적된다.
+ *
+ * itemsExpected는 미리 알 수 있는 만큼만 더해지므로(xlsx는 시트 크기, HTML은 파싱한 문서 수)
+ * ETA는 지금까지 알려진 항목 기준이다.
+ *
+ * 체크포인트: IngestPipeline은 실행마다 checkpointKey(입력 파일 목록의 지문 포함) 아래에
+ * 앞에서부터 처리를 마친 항목 수(저장 또는 재시도 대기열로 보낸 항목)를 기록한다.
+ * 중단된 작업을 재개할 때 이전 체크포인트를 resumeFrom으로 넘기면 같은 키의 실행은 그만큼 건너뛰고 시작한다.
+ */
+public class IngestProgress {
+
+    private final Runnable onChange;
+    private final LongAdder batchesDone = new LongAdder();
+    private final LongAdder itemsDone = new LongAdder();
+    private final LongAdder itemsFailed = new LongAdder();
+    private final AtomicLong itemsExpected = new AtomicLong();
+    private volatile long startNanos;
+    private volatile String phase;
+    private volatile boolean cancelled;
+    private final Map<String, Long> resumeFrom;
+    private final Map<String, Long> checkpoints = new ConcurrentHashMap<>();
+    private final AtomicLong checkpointVersion = new AtomicLong();
+
+    /**
+     * @param onChange 배치가 저장/실패하거나 체크포인트가 바뀔 때마다 호출된다 (여러 스레드에서 호출될 수 있다)
+     */
+    public IngestProgress(Runnable onChange) {
+        this(onChange, Map.of());
+    }
+
+    /**
+     * @param resumeFrom 이전 실행에서 저장해 둔 체크포인트 (checkpointKey → 처리를 마친 항목 수)
+     */
+    public IngestProgress(Runnable onChange, Map<String, Long> resumeFrom) {
+        this.onChange = onChange;
+        this.resumeFrom = Map.copyOf(resumeFrom);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 진행 상황을 따로 보고하지 않는 호출용.
+     */
+    public static IngestProgress none() {
+        return new IngestProgress(() -> {
+        });
+    }
+
+    /**
+     * 작업이 실제로 시작된 시점부터 처리 속도를 계산한다 (대기열에 있던 시간 제외).
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void addExpected(long items) {
+        if (items > 0) {
+            itemsExpected.addAndGet(items);
+        }
+    }
+
+    void onWritten(int batches, int items) {
+        batchesDone.add(batches);
+        itemsDone.add(items);
+        onChange.run();
+    }
+
+    /**
+     * 재개할 때 이전 실행에서 이미 처리해서 건너뛴 항목. 처리 속도와 ETA에 섞이지 않도록 예상 건수에서 뺀다.
+     */
+    void onResumed(long items) {
+        if (items > 0) {
+            itemsExpected.addAndGet(-items);
+        }
+    }
+
+    void onFailed(int items) {
+        itemsFailed.add(items);
+        onChange.run();
+    }
+
+    /**
+     * 이 키로 실행하는 파이프라인이 건너뛸 항목 수 (재개가 아니거나 키가 null이면 0).
+     */
+    public long resumeOffset(String checkpointKey) {
+        return checkpointKey == null ? 0 : resumeFrom.getOrDefault(checkpointKey, 0L);
+    }
+
+    void checkpoint(String checkpointKey, long committedItems) {
+        if (checkpointKey == null) {
+            return;
+        }
+        checkpoints.put(checkpointKey, committedItems);
+        checkpointVersion.incrementAndGet();
+        onChange.run();
+    }
+
+    /**
+     * 저장할 체크포인트. 이번 실행에서 아직 다시 돌지 않은 이전 체크포인트도 유지한다.
+     */
+    public Map<String, Long> getCheckpoints() {
+        Map<String, Long> merged = new HashMap<>(resumeFrom);
+        merged.putAll(checkpoints);
+        return merged;
+    }
+
+    /**
+     * 체크포인트가 바뀔 때마다 증가한다 (바뀌었을 때만 바로 저장하기 위한 값).
+     */
+    public long getCheckpointVersion() {
+        return checkpointVersion.get();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("ingest 작업이 취소되었습니다.");
+        }
+    }
+
+    public long getBatchesDone() {
+        return batchesDone.sum();
+    }
+
+    public long getItemsDone() {
+        return itemsDone.sum();
+    }
+
+    public long getItemsFailed() {
+        return itemsFailed.sum();
+    }
+
+    public long getItemsExpected() {
+        return itemsExpected.get();
+    }
+
+    public double getItemsPerSec() {
+        long nanos = System.nanoTime() - startNanos;
+        long processed = getItemsDone() + getItemsFailed();
+        return nanos <= 0 ? 0.0 : Math.round(processed * 1e10 / nanos) / 10.0;
+    }
+
+    /**
+     * 남은 예상 시간(초). 전체 항목 수를 모르거나 아직 처리한 항목이 없으면 null.
+     */
+    public Long getEtaSeconds() {
+        long remaining = getItemsExpected() - getItemsDone() - getItemsFailed();
+        double rate = getItemsPerSec();
+        if (getItemsExpected() == 0 || rate == 0.0) {
+            return null;
+        }
+        return Math.max(0, Math.round(remaining / rate));
+    }
+}
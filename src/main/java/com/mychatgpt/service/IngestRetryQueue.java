@@ -0,0 +1,229 @@
+package com.mychatgpt.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mychatgpt.config.IngestConfig;
+import com.mychatgpt.entity.IngestRetryItem;
+import com.mychatgpt.repository.IngestRetryItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * 저장에 실패한 knowledge base 항목을 DB(ingest_retry_items)에 보관하는 재시도 대기열.
+ *
+ * 기존에는 실패한 배치의 ID가 응답의 failedIds에만 남아서, 같은 파일을 다시 올리기 전까지 저장되지 않았다.
+ * 여기서는 항목 DTO를 JSON으로 보관해 두고 IngestRetryService가 backoff 간격으로 다시 저장한다.
+ *
+ * - 같은 항목이 다시 실패하면 한 행을 갱신한다 (새 ingest에서 실패했으면 payload와 시도 횟수를 새로 시작)
+ * - 항목이 어디서든 저장/삭제되면 KnowledgeBaseService가 대기열에서 지운다
+ * - n번째 실패 후 initialBackoff × 2^(n-1)에 ±20% 흔들림을 더한 시각(최대 maxBackoff)에 다시 시도한다.
+ *   임베딩 서버가 잠깐 내려갔을 때 실패한 항목이 한꺼번에 몰려 다시 실패하지 않도록 흩어 놓는다
+ * - maxAttempts번 실패하면 DEAD로 옮긴다. replay로 PENDING에 다시 넣을 수 있다
+ */
+@Component
+@Slf4j
+public class IngestRetryQueue {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_DEAD = "DEAD";
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final IngestRetryItemRepository repository;
+    private final IngestConfig.Retry config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public IngestRetryQueue(IngestRetryItemRepository repository, IngestConfig ingestConfig) {
+        this.repository = repository;
+        this.config = ingestConfig.getRetry();
+    }
+
+    /**
+     * 실패한 항목들을 대기열에 넣는다. 대기열에 넣지 못해도 예외를 던지지 않는다 (ingest는 계속 진행).
+     *
+     * @return 대기열에 넣은 항목 수
+     */
+    public <T> int enqueue(String source, List<T> items, Function<T, String> idFn, String origin, Exception error) {
+        try {
+            Map<String, IngestRetryItem> existing = new HashMap<>();
+            repository.findBySourceAndItemIdIn(source, items.stream().map(idFn).toList())
+                    .forEach(row -> existing.put(row.getItemId(), row));
+
+            LocalDateTime next = LocalDateTime.now().plus(backoff(1));
+            List<IngestRetryItem> rows = new ArrayList<>();
+            for (T item : items) {
+                String itemId = idFn.apply(item);
+                IngestRetryItem row = existing.getOrDefault(itemId, new IngestRetryItem());
+                row.setSource(source);
+                row.setItemId(itemId);
+                row.setStatus(STATUS_PENDING);
+                row.setAttempts(0);
+                row.setNextAttemptAt(next);
+                row.setLastError(message(error));
+                row.setOrigin(origin);
+                row.setPayload(objectMapper.writeValueAsString(item));
+                rows.add(row);
+            }
+            repository.saveAll(rows);
+            log.info("재시도 대기열에 {} 항목 {}건 추가 ({})", source, rows.size(), origin);
+            return rows.size();
+        } catch (Exception e) {
+            log.error("재시도 대기열 추가 실패: {} {}건 - {}", source, items.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 저장/삭제가 끝난 항목을 대기열에서 지운다.
+     */
+    public void remove(String source, Collection<String> itemIds) {
+        if (!itemIds.isEmpty()) {
+            repository.deleteBySourceAndItemIdIn(source, itemIds);
+        }
+    }
+
+    public void removeAll(String source) {
+        repository.deleteBySource(source);
+    }
+
+    /**
+     * 다시 시도할 때가 된 PENDING 항목 (오래 기다린 순).
+     */
+    public List<IngestRetryItem> findDue(int limit) {
+        return repository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                STATUS_PENDING, LocalDateTime.now(), PageRequest.of(0, limit));
+    }
+
+    public <T> T readPayload(IngestRetryItem item, Class<T> type) throws JsonProcessingException {
+        return objectMapper.readValue(item.getPayload(), type);
+    }
+
+    /**
+     * 재시도가 실패한 항목의 시도 횟수를 올리고 다음 시도 시각을 정한다. maxAttempts에 닿으면 DEAD로 옮긴다.
+     *
+     * @return 이번에 DEAD가 된 항목 수
+     */
+    public int markFailed(List<IngestRetryItem> items, String error) {
+        int dead = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (IngestRetryItem item : items) {
+            item.setAttempts(item.getAttempts() + 1);
+            item.setLastError(truncate(error));
+            if (item.getAttempts() >= config.getMaxAttempts()) {
+                item.setStatus(STATUS_DEAD);
+                item.setNextAttemptAt(null);
+                dead++;
+                log.warn("재시도 {}회 실패로 DEAD 처리: {} {} - {}", item.getAttempts(), item.getSource(),
+                        item.getItemId(), error);
+            } else {
+                item.setNextAttemptAt(now.plus(backoff(item.getAttempts() + 1)));
+            }
+        }
+        repository.saveAll(items);
+        return dead;
+    }
+
+    /**
+     * 읽을 수 없는 payload처럼 다시 시도해도 소용없는 항목은 바로 DEAD로 옮긴다.
+     */
+    public void markDead(IngestRetryItem item, String error) {
+        item.setStatus(STATUS_DEAD);
+        item.setNextAttemptAt(null);
+        item.setLastError(truncate(error));
+        repository.save(item);
+    }
+
+    /**
+     * DEAD 항목을 PENDING으로 되돌려 바로 다시 시도하게 한다.
+     *
+     * @param source  null이면 모든 source
+     * @param itemIds 비어 있으면 (source의) 모든 DEAD 항목
+     * @return 되돌린 항목 수
+     */
+    public int replay(String source, Collection<String> itemIds) {
+        LocalDateTime now = LocalDateTime.now();
+        if (itemIds == null || itemIds.isEmpty()) {
+            return source == null
+                    ? repository.requeueAll(STATUS_DEAD, STATUS_PENDING, now)
+                    : repository.requeueAllBySource(STATUS_DEAD, STATUS_PENDING, source, now);
+        }
+        List<IngestRetryItem> rows = repository.findByStatusAndItemIdIn(STATUS_DEAD, itemIds).stream()
+                .filter(row -> source == null || source.equals(row.getSource()))
+                .toList();
+        for (IngestRetryItem row : rows) {
+            row.setStatus(STATUS_PENDING);
+            row.setAttempts(0);
+            row.setNextAttemptAt(now);
+        }
+        repository.saveAll(rows);
+        return rows.size();
+    }
+
+    public long countPending() {
+        return repository.countByStatus(STATUS_PENDING);
+    }
+
+    public long countDue() {
+        return repository.countByStatusAndNextAttemptAtLessThanEqual(STATUS_PENDING, LocalDateTime.now());
+    }
+
+    public long countDead() {
+        return repository.countByStatus(STATUS_DEAD);
+    }
+
+    /**
+     * 최근 DEAD가 된 항목 100건 (payload 제외).
+     */
+    public List<Map<String, Object>> listDead() {
+        return repository.findTop100ByStatusOrderByUpdatedAtDesc(STATUS_DEAD).stream()
+                .map(row -> {
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    map.put("source", row.getSource());
+                    map.put("itemId", row.getItemId());
+                    map.put("attempts", row.getAttempts());
+                    map.put("origin", row.getOrigin());
+                    map.put("lastError", row.getLastError());
+                    map.put("createdAt", row.getCreatedAt());
+                    map.put("updatedAt", row.getUpdatedAt());
+                    return map;
+                })
+                .toList();
+    }
+
+    /**
+     * attempt번째 시도 전의 대기 시간: initialBackoff × 2^(attempt-1), 최대 maxBackoff, ±20% 흔들림.
+     */
+    private Duration backoff(int attempt) {
+        long initial = config.getInitialBackoff().toMillis();
+        long max = config.getMaxBackoff().toMillis();
+        long millis = initial << Math.min(attempt - 1, 30);
+        if (millis <= 0 || millis > max) {
+            millis = max;
+        }
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Duration.ofMillis(Math.round(millis * jitter));
+    }
+
+    private static String message(Exception e) {
+        return truncate(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+    }
+
+    private static String truncate(String text) {
+        if (text == null || text.length() <= MAX_ERROR_LENGTH) {
+            return text;
+        }
+        return text.substring(0, MAX_ERROR_LENGTH);
+    }
+}
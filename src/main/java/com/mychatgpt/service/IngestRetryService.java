@@ -0,0 +1,225 @@
+package com.mychatgpt.service;
+
+import com.mychatgpt.config.IngestConfig;
+import com.mychatgpt.dto.ConfluenceDocumentDto;
+import com.mychatgpt.dto.YouTrackIssueDto;
+import com.mychatgpt.entity.IngestRetryItem;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 재시도 대기열(IngestRetryQueue)에서 다시 시도할 때가 된 항목을 꺼내 다시 저장하는 작업자.
+ *
+ * - pollInterval마다 시도할 때가 된 항목을 batchSize개씩 꺼내 source별로 한 번에 저장한다
+ * - 묶음 저장이 실패하면 항목을 한 건씩 다시 시도해서, 문제 있는 항목 하나 때문에 나머지가 같이 밀리지 않게 한다
+ * - 실패한 항목은 backoff 뒤로 미뤄지고, maxAttempts번 실패하면 DEAD가 된다
+ * - 한 번에 하나의 스레드에서만 실행된다 (replay 직후의 즉시 실행도 같은 스레드에 넣는다)
+ */
+@Service
+@Slf4j
+public class IngestRetryService {
+
+    private final KnowledgeBaseService knowledgeBaseService;
+    private final IngestRetryQueue retryQueue;
+    private final IngestConfig.Retry config;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ingest-retry-"));
+
+    private volatile Map<String, Object> lastRun;
+
+    public IngestRetryService(KnowledgeBaseService knowledgeBaseService, IngestRetryQueue retryQueue,
+                              IngestConfig ingestConfig) {
+        this.knowledgeBaseService = knowledgeBaseService;
+        this.retryQueue = retryQueue;
+        this.config = ingestConfig.getRetry();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long interval = config.getPollInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void poll() {
+        try {
+            processDue();
+        } catch (Exception e) {
+            log.error("재시도 대기열 처리 실패", e);
+        }
+    }
+
+    /**
+     * 시도할 때가 된 항목을 모두 다시 저장해 본다.
+     *
+     * @return 이번 실행 결과 (시도/성공/실패/DEAD 건수)
+     */
+    Map<String, Object> processDue() {
+        int attempted = 0;
+        int recovered = 0;
+        int failed = 0;
+        int dead = 0;
+        long start = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            // 실패한 항목은 nextAttemptAt이 뒤로 밀리고 성공한 항목은 지워지므로 같은 항목을 다시 꺼내지 않는다
+            List<IngestRetryItem> due = retryQueue.findDue(config.getBatchSize());
+            if (due.isEmpty()) {
+                break;
+            }
+            Map<String, List<IngestRetryItem>> bySource = due.stream()
+                    .collect(Collectors.groupingBy(IngestRetryItem::getSource, LinkedHashMap::new, Collectors.toList()));
+            for (Map.Entry<String, List<IngestRetryItem>> entry : bySource.entrySet()) {
+                RetryOutcome outcome = retry(entry.getKey(), entry.getValue());
+                attempted += entry.getValue().size();
+                recovered += outcome.recovered;
+                failed += outcome.failed;
+                dead += outcome.dead;
+            }
+            if (due.size() < config.getBatchSize()) {
+                break;
+            }
+        }
+
+        if (attempted == 0) {
+            return Map.of();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("finishedAt", LocalDateTime.now());
+        result.put("attempted", attempted);
+        result.put("recovered", recovered);
+        result.put("failed", failed);
+        result.put("dead", dead);
+        result.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+        lastRun = result;
+        log.info("재시도 대기열 처리: {}", result);
+        return result;
+    }
+
+    private static final class RetryOutcome {
+        int recovered;
+        int failed;
+        int dead;
+    }
+
+    /**
+     * 같은 source의 항목들을 한 번에 저장한다. 실패하면 한 건씩 다시 시도한다.
+     */
+    private RetryOutcome retry(String source, List<IngestRetryItem> items) {
+        RetryOutcome outcome = new RetryOutcome();
+        Class<?> payloadType = switch (source) {
+            case KnowledgeBaseService.SOURCE_YOUTRACK -> YouTrackIssueDto.class;
+            case KnowledgeBaseService.SOURCE_CONFLUENCE -> ConfluenceDocumentDto.class;
+            default -> null;
+        };
+
+        // payload를 읽을 수 없으면(모르는 source, DTO 변경) 다시 시도해도 소용없으므로 바로 DEAD로 옮긴다
+        List<IngestRetryItem> readable = new ArrayList<>();
+        List<Object> payloads = new ArrayList<>();
+        for (IngestRetryItem item : items) {
+            try {
+                if (payloadType == null) {
+                    throw new IllegalArgumentException("알 수 없는 source입니다: " + source);
+                }
+                payloads.add(retryQueue.readPayload(item, payloadType));
+                readable.add(item);
+            } catch (Exception e) {
+                log.warn("재시도 항목을 읽을 수 없어 DEAD 처리: {} {} - {}", source, item.getItemId(), e.getMessage());
+                retryQueue.markDead(item, "payload를 읽을 수 없습니다: " + e.getMessage());
+                outcome.dead++;
+            }
+        }
+        if (payloads.isEmpty()) {
+            return outcome;
+        }
+
+        try {
+            upsert(source, payloads);
+            outcome.recovered += payloads.size();
+            return outcome;
+        } catch (Exception e) {
+            if (payloads.size() == 1) {
+                outcome.failed++;
+                outcome.dead += retryQueue.markFailed(readable, message(e));
+                return outcome;
+            }
+            log.warn("재시도 묶음 저장 실패, 한 건씩 다시 시도: {} {}건 - {}", source, payloads.size(), e.getMessage());
+        }
+
+        for (int i = 0; i < readable.size(); i++) {
+            try {
+                upsert(source, List.of(payloads.get(i)));
+                outcome.recovered++;
+            } catch (Exception e) {
+                outcome.failed++;
+                outcome.dead += retryQueue.markFailed(List.of(readable.get(i)), message(e));
+            }
+        }
+        return outcome;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void upsert(String source, List<Object> payloads) {
+        if (KnowledgeBaseService.SOURCE_YOUTRACK.equals(source)) {
+            knowledgeBaseService.retryYouTrackIssues((List<YouTrackIssueDto>) (List<?>) payloads);
+        } else {
+            knowledgeBaseService.retryConfluenceDocuments((List<ConfluenceDocumentDto>) (List<?>) payloads);
+        }
+    }
+
+    /**
+     * DEAD 항목을 다시 대기열에 넣고 바로 처리를 시작한다.
+     *
+     * @param source  null이면 모든 source
+     * @param itemIds 비어 있으면 모든 DEAD 항목
+     * @return 다시 넣은 항목 수
+     */
+    public int replayDead(String source, Collection<String> itemIds) {
+        int replayed = retryQueue.replay(source, itemIds);
+        if (replayed > 0) {
+            log.info("DEAD 항목 {}건을 재시도 대기열에 다시 넣음 (source={}, ids={})",
+                    replayed, source, itemIds == null || itemIds.isEmpty() ? "전체" : itemIds.size() + "건");
+            scheduler.execute(this::poll);
+        }
+        return replayed;
+    }
+
+    /**
+     * 최근 DEAD가 된 항목 100건.
+     */
+    public List<Map<String, Object>> listDead() {
+        return retryQueue.listDead();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", retryQueue.countPending());
+        stats.put("due", retryQueue.countDue());
+        stats.put("dead", retryQueue.countDead());
+        stats.put("maxAttempts", config.getMaxAttempts());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    private static String message(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+}
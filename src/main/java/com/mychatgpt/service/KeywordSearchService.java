@@ -0,0 +1,269 @@
+package com.mychatgpt.service;
+
+import com.mychatgpt.config.SearchConfig;
+import com.mychatgpt.vectordb.Bm25Index;
+import com.mychatgpt.vectordb.VectorSearchResult;
+import com.mychatgpt.vectordb.VectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * knowledge base 청크의 BM25 키워드 검색과 벡터 검색 결과 합치기(RRF).
+ *
+ * - 색인(Bm25Index)은 메모리에만 있다. 기동하면 벡터 저장소에서 YouTrack/Confluence 청크를 loadPageSize개씩
+ *   나눠 읽어 다시 만든다 (만드는 동안은 키워드 검색 없이 벡터 검색만 쓴다)
+ * - KnowledgeBaseService가 청크를 저장/삭제할 때마다 색인도 같이 고친다.
+ *   색인을 만드는 동안 바뀐 항목은 벡터 저장소에서 읽은 옛 내용으로 덮어쓰지 않는다
+ * - 키워드 검색 결과의 본문/메타데이터는 벡터 저장소에서 ID로 가져온다.
+ *   벡터 검색에 나오지 않은 청크는 거리를 알 수 없으므로 distance를 NaN으로 둔다
+ */
+@Service
+@Slf4j
+public class KeywordSearchService {
+
+    private static final Map<String, String> ID_FIELDS = Map.of(
+            KnowledgeBaseService.SOURCE_YOUTRACK, "issueId",
+            KnowledgeBaseService.SOURCE_CONFLUENCE, "documentId");
+
+    private final VectorStore vectorStore;
+    private final SearchConfig.Keyword config;
+    private final Bm25Index index;
+
+    private volatile boolean ready;
+    /** 색인을 만드는 동안 바뀐 항목 (source + itemId). 만들고 있지 않으면 null */
+    private Set<String> changedWhileLoading;
+    /** 색인을 만드는 동안 있었던 저장/삭제 횟수 */
+    private long writesWhileLoading;
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+
+    public KeywordSearchService(VectorStore vectorStore, SearchConfig searchConfig) {
+        this.vectorStore = vectorStore;
+        this.config = searchConfig.getKeyword();
+        this.index = new Bm25Index(config.getK1(), config.getB());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (config.isEnabled()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 색인을 비우고 벡터 저장소의 knowledge base 청크로 백그라운드에서 다시 만든다.
+     */
+    public synchronized void rebuild() {
+        if (changedWhileLoading != null) {
+            log.info("키워드 색인을 이미 만들고 있습니다");
+            return;
+        }
+        ready = false;
+        index.clear();
+        changedWhileLoading = new HashSet<>();
+        Thread loader = new Thread(this::load, "keyword-index-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        int chunks = 0;
+        try {
+            for (Map.Entry<String, String> source : ID_FIELDS.entrySet()) {
+                chunks += loadSource(source.getKey(), source.getValue());
+            }
+            ready = true;
+            log.info("키워드 색인 생성 완료: 청크 {}개, {}ms {}", chunks, System.currentTimeMillis() - start, index.getStats());
+        } catch (Exception e) {
+            log.error("키워드 색인 생성 실패 (벡터 검색만 사용합니다)", e);
+        } finally {
+            synchronized (this) {
+                changedWhileLoading = null;
+            }
+        }
+    }
+
+    /**
+     * source의 청크를 한 페이지씩 읽어 색인한다 (전체를 한 번에 메모리에 올리지 않도록).
+     *
+     * offset으로 나눠 읽으므로 읽는 도중 삭제가 있으면 뒤 페이지가 당겨져 일부 청크를 건너뛸 수 있다.
+     * 그런 경우 한 번 더 읽는다 (같은 청크 ID는 교체되므로 다시 넣어도 된다).
+     *
+     * @return 색인한 청크 수
+     */
+    private int loadSource(String source, String idField) {
+        int pageSize = Math.max(1, config.getLoadPageSize());
+        int chunks = 0;
+        for (int pass = 1; ; pass++) {
+            // 다시 읽을 때는 같은 청크를 교체하므로 이번 패스에서 넣은 수만 센다
+            chunks = 0;
+            long writesBefore;
+            synchronized (this) {
+                writesBefore = writesWhileLoading;
+            }
+            for (int offset = 0; ; offset += pageSize) {
+                List<VectorSearchResult> page = vectorStore.scanByMetadataFilter(Map.of("source", source), offset, pageSize);
+                for (VectorSearchResult document : page) {
+                    String itemId = document.getMetadata() != null ? document.getMetadata().get(idField) : null;
+                    if (itemId == null) {
+                        continue;
+                    }
+                    synchronized (this) {
+                        if (!changedWhileLoading.contains(source + '\u0000')
+                                && !changedWhileLoading.contains(source + '\u0000' + itemId)) {
+                            index.add(document.getId(), source, itemId, document.getDocument());
+                            chunks++;
+                        }
+                    }
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+            synchronized (this) {
+                if (writesWhileLoading == writesBefore || pass >= 3) {
+                    return chunks;
+                }
+            }
+            log.info("키워드 색인을 만드는 동안 {} 청크가 바뀌어 다시 읽습니다", source);
+        }
+    }
+
+    /**
+     * 저장한 청크를 색인한다.
+     *
+     * @param idField 메타데이터에서 항목 ID를 담은 필드 (issueId, documentId)
+     */
+    public synchronized void index(String source, String idField, List<String> ids, List<String> documents,
+                                   List<Map<String, String>> metadatas) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            String itemId = metadatas.get(i).get(idField);
+            markChanged(source, itemId);
+            index.add(ids.get(i), source, itemId, documents.get(i));
+        }
+    }
+
+    /**
+     * 항목들의 청크를 색인에서 지운다.
+     */
+    public synchronized void removeItems(String source, Collection<String> itemIds) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        itemIds.forEach(itemId -> markChanged(source, itemId));
+        index.removeItems(source, itemIds);
+    }
+
+    public synchronized void removeSource(String source) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        // 색인을 만드는 중이면 그 source는 더 읽어 넣지 않는다 (빈 itemId = source 전체)
+        markChanged(source, "");
+        index.removeSource(source);
+    }
+
+    private void markChanged(String source, String itemId) {
+        if (changedWhileLoading != null) {
+            changedWhileLoading.add(source + '\u0000' + itemId);
+            writesWhileLoading++;
+        }
+    }
+
+    /**
+     * 벡터 검색과 키워드 검색에서 각각 가져올 후보 수. 키워드 검색을 쓰지 않으면 limit 그대로.
+     */
+    public int candidates(int limit) {
+        return config.isEnabled() ? limit * Math.max(1, config.getCandidateMultiplier()) : limit;
+    }
+
+    /**
+     * BM25로 청크를 찾고 본문/메타데이터를 벡터 저장소에서 채운다. 색인이 준비되지 않았으면 빈 목록.
+     *
+     * @param source null이면 YouTrack + Confluence
+     * @return BM25 점수 순. distance는 NaN
+     */
+    public List<VectorSearchResult> search(String query, int limit, String source) {
+        if (!ready) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        List<Bm25Index.Hit> hits = index.search(query, limit, source);
+        searches.incrementAndGet();
+        searchNanos.addAndGet(System.nanoTime() - start);
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, VectorSearchResult> byId = new HashMap<>();
+        vectorStore.getByIds(hits.stream().map(Bm25Index.Hit::chunkId).toList())
+                .forEach(result -> byId.put(result.getId(), result));
+        List<VectorSearchResult> results = new ArrayList<>();
+        for (Bm25Index.Hit hit : hits) {
+            VectorSearchResult result = byId.get(hit.chunkId());
+            if (result != null) {
+                result.setDistance(Double.NaN);
+                results.add(result);
+            }
+        }
+        log.info("[KeywordSearch] query='{}', source={} → {}건 ({}us)",
+                query, source, results.size(), (System.nanoTime() - start) / 1000);
+        return results;
+    }
+
+    /**
+     * 벡터 검색 결과와 키워드 검색 결과를 reciprocal rank fusion으로 합친다.
+     *
+     * 두 목록의 점수 척도(cosine distance, BM25)가 달라서 점수를 더하지 않고 순위만 쓴다.
+     * 양쪽에 모두 나온 청크는 점수가 더해져 앞으로 오고, 이때는 벡터 검색 결과(거리가 있는 쪽)를 남긴다.
+     *
+     * @return RRF 점수 순으로 최대 limit개
+     */
+    public List<VectorSearchResult> fuse(List<VectorSearchResult> vectorResults,
+                                         List<VectorSearchResult> keywordResults, int limit) {
+        if (keywordResults.isEmpty()) {
+            return vectorResults.size() <= limit ? vectorResults : vectorResults.subList(0, limit);
+        }
+        Map<String, VectorSearchResult> results = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        for (List<VectorSearchResult> ranking : List.of(vectorResults, keywordResults)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                VectorSearchResult result = ranking.get(rank);
+                results.putIfAbsent(result.getId(), result);
+                scores.merge(result.getId(), 1.0 / (config.getRrfK() + rank + 1), Double::sum);
+            }
+        }
+        return results.values().stream()
+                .sorted((a, b) -> Double.compare(scores.get(b.getId()), scores.get(a.getId())))
+                .limit(limit)
+                .toList();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("ready", ready);
+        stats.putAll(index.getStats());
+        long count = searches.get();
+        stats.put("searches", count);
+        stats.put("avgSearchMicros", count == 0 ? 0 : searchNanos.get() / count / 1000);
+        return stats;
+    }
+}
@@ -1,26 +1,31 @@
 package com.mychatgpt.service;
 
 import com.mychatgpt.ai.EmbeddingService;
+import com.mychatgpt.ai.QueryEmbeddingCache;
+import com.mychatgpt.config.IngestConfig;
 import com.mychatgpt.dto.ConfluenceDocumentDto;
 import com.mychatgpt.dto.YouTrackIssueDto;
-import com.mychatgpt.vectordb.ChromaDbClient;
+import com.mychatgpt.entity.KnowledgeBaseItem;
+import com.mychatgpt.repository.IngestFileRepository;
+import com.mychatgpt.repository.KnowledgeBaseItemRepository;
+import com.mychatgpt.text.Chunker;
 import com.mychatgpt.vectordb.VectorSearchResult;
+import com.mychatgpt.vectordb.VectorStore;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.DateUtil;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
 
 /**
  * YouTrack 이슈를 벡터DB에 knowledge base로 저장/업데이트하는 서비스.
@@ -41,8 +46,22 @@ import java.util.*;
  *
  * 배치 처리를 사용하는 이유:
  * - 1987건의 이슈를 한 건씩 처리하면 1987번의 HTTP 요청 + 1987번의 임베딩 API 호출 발생
- * - BATCH_SIZE(50건) 단위로 묶어서 처리하면 네트워크 오버헤드가 약 1/50로 감소
+ * - ingest.batch-size(기본 50건) 단위로 묶어서 처리하면 네트워크 오버헤드가 약 1/50로 감소
  * - ChromaDB의 upsert API가 배열 입력을 지원하므로 한 번의 요청으로 여러 문서 처리 가능
+ * - 배치들은 IngestPipeline에서 prepare → embed → write 단계로 겹쳐서 처리된다
+ *
+ * 증분(incremental) ingest:
+ * - 항목별로 청크 텍스트 + 메타데이터의 SHA-256 해시를 knowledge_base_items 테이블에 기록
+ * - 다음 ingest 때 해시가 같으면 삭제/임베딩/저장을 모두 건너뜀 (unchanged)
+ * - removeMissing=true면 전체 export에 없는 항목을 벡터DB와 manifest에서 삭제 (removed)
+ *
+ * 키워드 검색:
+ * - 청크를 저장/삭제할 때마다 KeywordSearchService의 BM25 색인도 같이 고친다
+ * - 같은 때에 그 source의 검색 캐시 세대 번호(SearchCacheScopes)도 올려서 캐시된 searchAllSources 결과를 무효화한다
+ *
+ * 실패와 재개:
+ * - 저장에 실패한 배치의 항목은 IngestRetryQueue에 넣어 두고 IngestRetryService가 backoff 간격으로 다시 저장한다
+ * - 파이프라인은 저장을 마칠 때마다 입력 파일별 체크포인트를 남기므로, 중단된 작업은 그 다음 항목부터 재개된다
  */
 @Service
 @RequiredArgsConstructor
@@ -51,123 +70,96 @@ public class KnowledgeBaseService {
 
     private final YouTrackExcelParser excelParser;
     private final ConfluenceHtmlParser confluenceParser;
-    private final ChromaDbClient chromaDbClient;
+    private final VectorStore vectorStore;
     private final EmbeddingService embeddingService;
-
-    /** ChromaDB에 한 번에 보내는 문서 수. 너무 크면 요청 크기 제한에 걸릴 수 있음 */
-    private static final int BATCH_SIZE = 50;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final KnowledgeBaseItemRepository itemRepository;
+    private final IngestFileRepository fileRepository;
+    private final IngestPipeline ingestPipeline;
+    private final IngestConfig ingestConfig;
+    private final Chunker chunker;
+    private final IngestRetryQueue retryQueue;
+    private final KeywordSearchService keywordSearchService;
+    private final SearchCacheScopes searchCacheScopes;
 
     /** 벡터DB metadata의 source 값 — knowledge base 데이터를 다른 데이터와 구분하는 키 */
-    private static final String SOURCE_YOUTRACK = "youtrack";
-    private static final String SOURCE_CONFLUENCE = "confluence";
+    public static final String SOURCE_YOUTRACK = "youtrack";
+    public static final String SOURCE_CONFLUENCE = "confluence";
+
+    /**
+     * manifest(knowledge_base_items)는 해시가 같으면 저장을 건너뛰므로, 벡터DB 백엔드나 컬렉션을 바꾼 뒤에는
+     * 예전 저장소 기준의 행이 남아 있으면 새 저장소가 빈 채로 "미변경"이 된다. 기동 시 다른 저장소의 행을 지우고,
+     * 파일 manifest(ingest_files)도 지워서 동기화 디렉토리의 파일을 다시 읽게 한다.
+     */
+    @PostConstruct
+    void dropManifestOfOtherStores() {
+        String store = vectorStore.storeId();
+        int assigned = itemRepository.assignStore(store);
+        if (assigned > 0) {
+            log.info("저장소가 기록되지 않은 manifest {}건을 현재 저장소({})의 것으로 표시", assigned, store);
+        }
+        int removed = itemRepository.deleteByStoreNot(store);
+        if (removed > 0) {
+            fileRepository.deleteAllInBatch();
+            log.warn("벡터 저장소가 바뀌어 이전 저장소의 manifest {}건과 파일 manifest를 지움: 현재 {} (다음 ingest 때 다시 저장됨)",
+                    removed, store);
+        }
+    }
 
     /**
      * xlsx 파일을 파싱하여 벡터DB에 일괄 upsert한다.
      *
-     * @param file 업로드된 YouTrack export xlsx
-     * @return 처리 결과 요약 (총 건수, 성공/실패 건수)
-     */
-    public Map<String, Object> ingestYouTrackExcel(MultipartFile file) throws IOException {
-        List<YouTrackIssueDto> issues = excelParser.parse(file);
-
-        int totalCount = issues.size();
-        int successCount = 0;
-        int failCount = 0;
-        List<String> failedIds = new ArrayList<>();
-
-        // BATCH_SIZE 단위로 나누어 처리
-        for (int i = 0; i < issues.size(); i += BATCH_SIZE) {
-            int end = Math.min(i + BATCH_SIZE, issues.size());
-            List<YouTrackIssueDto> batch = issues.subList(i, end);
-
-            try {
-                upsertBatch(batch);
-                successCount += batch.size();
-                log.info("배치 처리 완료: {}/{}", Math.min(i + BATCH_SIZE, totalCount), totalCount);
-            } catch (Exception e) {
-                log.error("배치 처리 실패 (index {}-{}): {}", i, end - 1, e.getMessage());
-                failCount += batch.size();
-                batch.forEach(issue -> failedIds.add(issue.getId()));
-            }
+     * @param file          업로드된 YouTrack export xlsx (IngestJobService가 임시 디렉토리에 옮겨 둔 파일)
+     * @param removeMissing true면 이번 export에 없는 기존 이슈를 삭제 (전체 export를 올릴 때 사용)
+     * @param progress      진행 상황 보고 및 취소 확인 대상
+     * @return 처리 결과 요약 (총 건수, 추가/변경/미변경/삭제/실패 건수)
+     */
+    public Map<String, Object> ingestYouTrackExcel(File file, boolean removeMissing, IngestProgress progress)
+            throws IOException {
+        // 파싱한 이슈를 리스트로 모으지 않고 한 건씩 파이프라인으로 흘려보낸다
+        IngestStats stats;
+        try (YouTrackExcelParser.IssueReader issues = excelParser.open(file)) {
+            progress.addExpected(issues.getEstimatedCount());
+            stats = processInPipeline("YouTrack", checkpointKey(file), SOURCE_YOUTRACK, "issueId", issues,
+                    YouTrackIssueDto::getId, this::prepareIssues, progress);
+        }
+        if (removeMissing) {
+            stats.removed = removeMissingItems(SOURCE_YOUTRACK, "issueId", stats.seenIds);
         }
 
         Map<String, Object> result = new LinkedHashMap<>();
-        result.put("totalParsed", totalCount);
-        result.put("successCount", successCount);
-        result.put("failCount", failCount);
-        if (!failedIds.isEmpty()) {
-            result.put("failedIds", failedIds);
-        }
-        result.put("message", String.format("YouTrack 이슈 %d건 중 %d건 저장 완료", totalCount, successCount));
+        result.put("totalParsed", stats.total);
+        stats.putInto(result);
+        result.put("message", String.format("YouTrack 이슈 %d건 중 %d건 저장 완료 (추가 %d, 변경 %d, 미변경 %d, 삭제 %d)",
+                stats.total, stats.successCount(), stats.added, stats.updated, stats.unchanged, stats.removed));
 
         return result;
     }
 
     /**
      * 단일 이슈를 벡터DB에 upsert한다.
-     * API를 통한 개별 이슈 업데이트 시 사용.
+     * API를 통한 개별 이슈 업데이트 시 사용. 내용이 바뀌지 않았으면 아무것도 하지 않는다.
      */
     public void upsertSingleIssue(YouTrackIssueDto issue) {
-        // 기존 청크 삭제 (재업로드 시 orphan 방지)
-        try {
-            chromaDbClient.deleteByFilter(Map.of("issueId", issue.getId()));
-        } catch (Exception e) {
-            log.warn("기존 청크 삭제 실패 (무시): {} - {}", issue.getId(), e.getMessage());
-        }
-
-        List<String> chunks = issue.toVectorChunks();
-        List<String> ids = new ArrayList<>();
-        List<float[]> embeddings = new ArrayList<>();
-        List<String> documents = new ArrayList<>();
-        List<Map<String, String>> metadatas = new ArrayList<>();
-
-        for (int i = 0; i < chunks.size(); i++) {
-            String chunk = chunks.get(i);
-            ids.add(issue.getId() + "-" + i);
-            embeddings.add(embeddingService.getEmbedding(chunk));
-            documents.add(chunk);
-            metadatas.add(buildChunkMetadata(issue, i, chunks.size()));
-        }
-
-        chromaDbClient.addDocuments(ids, embeddings, documents, metadatas);
-        log.info("이슈 upsert 완료: {} ({}개 청크)", issue.getId(), chunks.size());
+        IngestStats stats = upsertItems(SOURCE_YOUTRACK, "issueId", prepareIssues(List.of(issue)));
+        log.info("이슈 upsert 완료: {} (추가 {}, 변경 {}, 미변경 {})",
+                issue.getId(), stats.added, stats.updated, stats.unchanged);
     }
 
     /**
-     * 배치 단위로 이슈를 벡터DB에 upsert한다.
+     * 이슈를 청크와 청크별 메타데이터로 변환한다.
      */
-    private void upsertBatch(List<YouTrackIssueDto> batch) {
-        List<String> ids = new ArrayList<>();
-        List<float[]> embeddings = new ArrayList<>();
-        List<String> documents = new ArrayList<>();
-        List<Map<String, String>> metadatas = new ArrayList<>();
-
+    private List<PreparedItem> prepareIssues(List<YouTrackIssueDto> batch) {
+        List<PreparedItem> items = new ArrayList<>();
         for (YouTrackIssueDto issue : batch) {
-            // 기존 청크 삭제 (재업로드 시 orphan 방지)
-            try {
-                chromaDbClient.deleteByFilter(Map.of("issueId", issue.getId()));
-            } catch (Exception e) {
-                log.warn("기존 청크 삭제 실패 (무시): {} - {}", issue.getId(), e.getMessage());
-            }
-
-            List<String> chunks = issue.toVectorChunks();
-            if (chunks.isEmpty()) {
-                log.warn("빈 청크 건너뜀: {}", issue.getId());
-                continue;
-            }
-
+            List<String> chunks = issue.toVectorChunks(chunker);
+            List<Map<String, String>> metadatas = new ArrayList<>();
             for (int i = 0; i < chunks.size(); i++) {
-                String chunk = chunks.get(i);
-                ids.add(issue.getId() + "-" + i);
-                embeddings.add(embeddingService.getEmbedding(chunk));
-                documents.add(chunk);
                 metadatas.add(buildChunkMetadata(issue, i, chunks.size()));
             }
+            items.add(new PreparedItem(issue.getId(), chunks, metadatas));
         }
-
-        if (!ids.isEmpty()) {
-            chromaDbClient.addDocuments(ids, embeddings, documents, metadatas);
-        }
+        return items;
     }
 
     /**
@@ -202,7 +194,11 @@ public class KnowledgeBaseService {
      * 청킹으로 인해 여러 청크가 존재할 수 있으므로 issueId 메타데이터로 필터 삭제.
      */
     public void deleteIssue(String issueId) {
-        chromaDbClient.deleteByFilter(Map.of("issueId", issueId));
+        vectorStore.deleteByFilter(Map.of("issueId", issueId));
+        keywordSearchService.removeItems(SOURCE_YOUTRACK, List.of(issueId));
+        searchCacheScopes.knowledgeBaseChanged(SOURCE_YOUTRACK);
+        itemRepository.deleteBySourceAndItemIdIn(SOURCE_YOUTRACK, List.of(issueId));
+        retryQueue.remove(SOURCE_YOUTRACK, List.of(issueId));
         log.info("Knowledge base 이슈 삭제: {}", issueId);
     }
 
@@ -211,7 +207,13 @@ public class KnowledgeBaseService {
      * source="youtrack" 메타데이터로 필터링하여 다른 데이터는 보존.
      */
     public void deleteAllYouTrackData() {
-        chromaDbClient.deleteByFilter(Map.of("source", SOURCE_YOUTRACK));
+        vectorStore.deleteByFilter(Map.of("source", SOURCE_YOUTRACK));
+        keywordSearchService.removeSource(SOURCE_YOUTRACK);
+        searchCacheScopes.knowledgeBaseChanged(SOURCE_YOUTRACK);
+        itemRepository.deleteBySource(SOURCE_YOUTRACK);
+        retryQueue.removeAll(SOURCE_YOUTRACK);
+        // 동기화 디렉토리의 xlsx를 다음 동기화 때 다시 ingest하도록 파일 manifest도 비운다
+        fileRepository.deleteByFileType("xlsx");
         log.info("모든 YouTrack knowledge base 데이터 삭제 완료");
     }
 
@@ -220,12 +222,12 @@ public class KnowledgeBaseService {
      * source="youtrack"으로 필터링하여 knowledge base 데이터만 대상으로 검색.
      */
     public List<VectorSearchResult> searchKnowledgeBase(String query, int nResults) {
+        return searchKnowledgeBaseAsync(query, nResults).block();
+    }
+
+    public Mono<List<VectorSearchResult>> searchKnowledgeBaseAsync(String query, int nResults) {
         log.info("[KBSearch] YouTrack 검색: query='{}', nResults={}", query, nResults);
-        float[] queryEmbedding = embeddingService.getEmbedding(query);
-        Map<String, String> filter = Map.of("source", SOURCE_YOUTRACK);
-        List<VectorSearchResult> results = chromaDbClient.query(queryEmbedding, nResults, filter);
-        logSearchResults("YouTrack", results);
-        return results;
+        return searchAsync("YouTrack", query, nResults, Map.of("source", SOURCE_YOUTRACK));
     }
 
     // ========== Confluence 문서 처리 ==========
@@ -233,190 +235,130 @@ public class KnowledgeBaseService {
     /**
      * HTTP로 업로드된 HTML 파일들을 파싱하여 벡터DB에 일괄 upsert한다.
      *
-     * @param files 업로드된 HTML MultipartFile 리스트
+     * @param files    업로드된 HTML 파일 (IngestJobService가 원래 파일명 그대로 임시 디렉토리에 옮겨 둔 파일)
+     * @param progress 진행 상황 보고 및 취소 확인 대상
      * @return 처리 결과 요약
      */
-    public Map<String, Object> ingestConfluenceHtmlFiles(List<MultipartFile> files) throws IOException {
-        List<ConfluenceDocumentDto> documents = new ArrayList<>();
-        int skippedCount = 0;
-
-        for (MultipartFile file : files) {
-            String fileName = file.getOriginalFilename();
-            if (fileName == null || !fileName.toLowerCase().endsWith(".html") || fileName.equals("index.html")) {
-                skippedCount++;
-                continue;
-            }
-
-            try {
-                String htmlContent = new String(file.getBytes(), java.nio.charset.StandardCharsets.UTF_8);
-                ConfluenceDocumentDto dto = confluenceParser.parseHtmlContent(htmlContent, fileName);
-                if (dto != null && confluenceParser.isValidForVectorDb(dto)) {
-                    documents.add(dto);
-                } else {
-                    skippedCount++;
-                }
-            } catch (Exception e) {
-                log.error("HTML 파일 파싱 실패: {}", fileName, e);
-                skippedCount++;
-            }
+    public Map<String, Object> ingestConfluenceHtmlFiles(List<File> files, IngestProgress progress) {
+        // 파일들을 병렬로 파싱하면서 끝난 문서부터 파이프라인으로 넘긴다
+        IngestStats stats;
+        try (ConfluenceHtmlParser.DocumentStream documents = confluenceParser.open(files)) {
+            progress.addExpected(documents.getFileCount());
+            stats = processInPipeline("Confluence 업로드", documents.getCheckpointKey(), SOURCE_CONFLUENCE,
+                    "documentId", documents,
+                    ConfluenceDocumentDto::getId, this::prepareConfluenceDocuments, progress);
         }
 
-        log.info("HTML 업로드 파싱 완료: {}개 유효, {}개 스킵", documents.size(), skippedCount);
-
-        int totalCount = documents.size();
-        int successCount = 0;
-        int failCount = 0;
-        List<String> failedIds = new ArrayList<>();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalFiles", files.size());
+        result.put("validDocuments", stats.total);
+        result.put("skipped", files.size() - stats.total);
+        stats.putInto(result);
+        result.put("message", String.format("Confluence HTML %d건 중 %d건 저장 완료 (추가 %d, 변경 %d, 미변경 %d)",
+                stats.total, stats.successCount(), stats.added, stats.updated, stats.unchanged));
 
-        for (int i = 0; i < documents.size(); i += BATCH_SIZE) {
-            int end = Math.min(i + BATCH_SIZE, documents.size());
-            List<ConfluenceDocumentDto> batch = documents.subList(i, end);
+        return result;
+    }
 
-            try {
-                upsertConfluenceBatch(batch);
-                successCount += batch.size();
-                log.info("Confluence 업로드 배치 처리 완료: {}/{}", Math.min(i + BATCH_SIZE, totalCount), totalCount);
-            } catch (Exception e) {
-                log.error("Confluence 업로드 배치 처리 실패 (index {}-{}): {}", i, end - 1, e.getMessage());
-                failCount += batch.size();
-                batch.forEach(doc -> failedIds.add(doc.getId()));
-            }
+    /**
+     * Confluence space export ZIP의 HTML 페이지를 압축을 풀지 않고 읽어 벡터DB에 일괄 upsert한다.
+     *
+     * @param zip           업로드된 export ZIP (IngestJobService가 요청 본문을 그대로 저장해 둔 파일)
+     * @param removeMissing true면 이 ZIP에 없는 기존 Confluence 문서를 삭제 (전체 export일 때 사용)
+     * @param progress      진행 상황 보고 및 취소 확인 대상
+     * @return 처리 결과 요약
+     */
+    public Map<String, Object> ingestConfluenceZip(File zip, boolean removeMissing, IngestProgress progress) {
+        IngestStats stats;
+        int fileCount;
+        int parsedCount;
+        try (ConfluenceHtmlParser.DocumentStream documents = confluenceParser.openZip(zip)) {
+            fileCount = documents.getFileCount();
+            progress.addExpected(fileCount);
+            stats = processInPipeline("Confluence ZIP", documents.getCheckpointKey(), SOURCE_CONFLUENCE,
+                    "documentId", documents, ConfluenceDocumentDto::getId, this::prepareConfluenceDocuments,
+                    progress);
+            parsedCount = documents.getParsedCount();
+        }
+        if (removeMissing) {
+            stats.removed = removeMissingItems(SOURCE_CONFLUENCE, "documentId", stats.seenIds);
         }
 
         Map<String, Object> result = new LinkedHashMap<>();
-        result.put("totalFiles", files.size());
-        result.put("validDocuments", totalCount);
-        result.put("skipped", skippedCount);
-        result.put("successCount", successCount);
-        result.put("failCount", failCount);
-        if (!failedIds.isEmpty()) {
-            result.put("failedIds", failedIds);
-        }
-        result.put("message", String.format("Confluence HTML %d건 중 %d건 저장 완료", totalCount, successCount));
+        result.put("zip", zip.getName());
+        result.put("totalFiles", fileCount);
+        result.put("totalParsed", parsedCount);
+        result.put("validDocuments", stats.total);
+        stats.putInto(result);
+        result.put("message", String.format("Confluence ZIP 문서 %d건 중 %d건 저장 완료 (추가 %d, 변경 %d, 미변경 %d, 삭제 %d)",
+                stats.total, stats.successCount(), stats.added, stats.updated, stats.unchanged, stats.removed));
 
         return result;
     }
 
     /**
-     * 지정된 디렉토리에서 모든 HTML 파일을 파싱하여 벡터DB에 일괄 upsert한다.
+     * 지정된 디렉토리(하위 디렉토리 포함)에서 모든 HTML 파일을 파싱하여 벡터DB에 일괄 upsert한다.
      *
      * @param directoryPath HTML 파일들이 있는 디렉토리 경로
-     * @return 처리 결과 요약 (총 건수, 성공/실패 건수)
+     * @param removeMissing true면 이 디렉토리에 없는 기존 Confluence 문서를 삭제 (space 전체 export일 때 사용)
+     * @param progress      진행 상황 보고 및 취소 확인 대상
+     * @return 처리 결과 요약 (총 건수, 추가/변경/미변경/삭제/실패 건수)
      */
-    public Map<String, Object> ingestConfluenceHtmlFromDirectory(String directoryPath) throws IOException {
-        File directory = new File(directoryPath);
-        if (!directory.exists() || !directory.isDirectory()) {
-            throw new IllegalArgumentException("유효한 디렉토리 경로가 아닙니다: " + directoryPath);
+    public Map<String, Object> ingestConfluenceHtmlFromDirectory(String directoryPath, boolean removeMissing,
+                                                                 IngestProgress progress) throws IOException {
+        File directory = requireDirectory(directoryPath);
+
+        // 하위 폴더까지 찾은 HTML을 병렬로 파싱하면서 끝난 문서부터 파이프라인으로 넘긴다
+        IngestStats stats;
+        int fileCount;
+        int parsedCount;
+        try (ConfluenceHtmlParser.DocumentStream documents = confluenceParser.openDirectory(directory)) {
+            fileCount = documents.getFileCount();
+            progress.addExpected(fileCount);
+            stats = processInPipeline("Confluence", documents.getCheckpointKey(), SOURCE_CONFLUENCE,
+                    "documentId", documents,
+                    ConfluenceDocumentDto::getId, this::prepareConfluenceDocuments, progress);
+            parsedCount = documents.getParsedCount();
         }
-
-        List<ConfluenceDocumentDto> documents = confluenceParser.parseDirectory(directory);
-
-        // 유효성 검증으로 필터링
-        List<ConfluenceDocumentDto> validDocuments = documents.stream()
-                .filter(confluenceParser::isValidForVectorDb)
-                .toList();
-
-        log.info("전체 파싱: {}건, 유효한 문서: {}건", documents.size(), validDocuments.size());
-
-        int totalCount = validDocuments.size();
-        int successCount = 0;
-        int failCount = 0;
-        List<String> failedIds = new ArrayList<>();
-
-        // BATCH_SIZE 단위로 나누어 처리
-        for (int i = 0; i < validDocuments.size(); i += BATCH_SIZE) {
-            int end = Math.min(i + BATCH_SIZE, validDocuments.size());
-            List<ConfluenceDocumentDto> batch = validDocuments.subList(i, end);
-
-            try {
-                upsertConfluenceBatch(batch);
-                successCount += batch.size();
-                log.info("Confluence 배치 처리 완료: {}/{}", Math.min(i + BATCH_SIZE, totalCount), totalCount);
-            } catch (Exception e) {
-                log.error("Confluence 배치 처리 실패 (index {}-{}): {}", i, end - 1, e.getMessage());
-                failCount += batch.size();
-                batch.forEach(doc -> failedIds.add(doc.getId()));
-            }
+        if (removeMissing) {
+            stats.removed = removeMissingItems(SOURCE_CONFLUENCE, "documentId", stats.seenIds);
         }
 
         Map<String, Object> result = new LinkedHashMap<>();
         result.put("directory", directoryPath);
-        result.put("totalParsed", documents.size());
-        result.put("validDocuments", validDocuments.size());
-        result.put("successCount", successCount);
-        result.put("failCount", failCount);
-        if (!failedIds.isEmpty()) {
-            result.put("failedIds", failedIds);
-        }
-        result.put("message", String.format("Confluence 문서 %d건 중 %d건 저장 완료", totalCount, successCount));
+        result.put("totalFiles", fileCount);
+        result.put("totalParsed", parsedCount);
+        result.put("validDocuments", stats.total);
+        stats.putInto(result);
+        result.put("message", String.format("Confluence 문서 %d건 중 %d건 저장 완료 (추가 %d, 변경 %d, 미변경 %d, 삭제 %d)",
+                stats.total, stats.successCount(), stats.added, stats.updated, stats.unchanged, stats.removed));
 
         return result;
     }
 
     /**
-     * 단일 Confluence 문서를 벡터DB에 upsert한다.
+     * 단일 Confluence 문서를 벡터DB에 upsert한다. 내용이 바뀌지 않았으면 아무것도 하지 않는다.
      */
     public void upsertSingleConfluenceDocument(ConfluenceDocumentDto document) {
-        // 기존 청크 삭제 (재업로드 시 orphan 방지)
-        try {
-            chromaDbClient.deleteByFilter(Map.of("documentId", document.getId()));
-        } catch (Exception e) {
-            log.warn("기존 청크 삭제 실패 (무시): {} - {}", document.getId(), e.getMessage());
-        }
-
-        List<String> chunks = document.toVectorChunks();
-        List<String> ids = new ArrayList<>();
-        List<float[]> embeddings = new ArrayList<>();
-        List<String> documents = new ArrayList<>();
-        List<Map<String, String>> metadatas = new ArrayList<>();
-
-        for (int i = 0; i < chunks.size(); i++) {
-            String chunk = chunks.get(i);
-            ids.add(document.getId() + "-" + i);
-            embeddings.add(embeddingService.getEmbedding(chunk));
-            documents.add(chunk);
-            metadatas.add(buildConfluenceChunkMetadata(document, i, chunks.size()));
-        }
-
-        chromaDbClient.addDocuments(ids, embeddings, documents, metadatas);
-        log.info("Confluence 문서 upsert 완료: {} ({}개 청크)", document.getId(), chunks.size());
+        IngestStats stats = upsertItems(SOURCE_CONFLUENCE, "documentId", prepareConfluenceDocuments(List.of(document)));
+        log.info("Confluence 문서 upsert 완료: {} (추가 {}, 변경 {}, 미변경 {})",
+                document.getId(), stats.added, stats.updated, stats.unchanged);
     }
 
     /**
-     * 배치 단위로 Confluence 문서를 벡터DB에 upsert한다.
+     * Confluence 문서를 청크와 청크별 메타데이터로 변환한다.
      */
-    private void upsertConfluenceBatch(List<ConfluenceDocumentDto> batch) {
-        List<String> ids = new ArrayList<>();
-        List<float[]> embeddings = new ArrayList<>();
-        List<String> documents = new ArrayList<>();
-        List<Map<String, String>> metadatas = new ArrayList<>();
-
+    private List<PreparedItem> prepareConfluenceDocuments(List<ConfluenceDocumentDto> batch) {
+        List<PreparedItem> items = new ArrayList<>();
         for (ConfluenceDocumentDto doc : batch) {
-            // 기존 청크 삭제 (재업로드 시 orphan 방지)
-            try {
-                chromaDbClient.deleteByFilter(Map.of("documentId", doc.getId()));
-            } catch (Exception e) {
-                log.warn("기존 청크 삭제 실패 (무시): {} - {}", doc.getId(), e.getMessage());
-            }
-
-            List<String> chunks = doc.toVectorChunks();
-            if (chunks.isEmpty()) {
-                log.warn("빈 문서 건너뜀: {}", doc.getId());
-                continue;
-            }
-
+            List<String> chunks = doc.toVectorChunks(chunker);
+            List<Map<String, String>> metadatas = new ArrayList<>();
             for (int i = 0; i < chunks.size(); i++) {
-                String chunk = chunks.get(i);
-                ids.add(doc.getId() + "-" + i);
-                embeddings.add(embeddingService.getEmbedding(chunk));
-                documents.add(chunk);
                 metadatas.add(buildConfluenceChunkMetadata(doc, i, chunks.size()));
             }
+            items.add(new PreparedItem(doc.getId(), chunks, metadatas));
         }
-
-        if (!ids.isEmpty()) {
-            chromaDbClient.addDocuments(ids, embeddings, documents, metadatas);
-        }
+        return items;
     }
 
     /**
@@ -440,12 +382,12 @@ public class KnowledgeBaseService {
      * Confluence knowledge base에서 유사 문서를 검색한다.
      */
     public List<VectorSearchResult> searchConfluenceKnowledgeBase(String query, int nResults) {
+        return searchConfluenceKnowledgeBaseAsync(query, nResults).block();
+    }
+
+    public Mono<List<VectorSearchResult>> searchConfluenceKnowledgeBaseAsync(String query, int nResults) {
         log.info("[KBSearch] Confluence 검색: query='{}', nResults={}", query, nResults);
-        float[] queryEmbedding = embeddingService.getEmbedding(query);
-        Map<String, String> filter = Map.of("source", SOURCE_CONFLUENCE);
-        List<VectorSearchResult> results = chromaDbClient.query(queryEmbedding, nResults, filter);
-        logSearchResults("Confluence", results);
-        return results;
+        return searchAsync("Confluence", query, nResults, Map.of("source", SOURCE_CONFLUENCE));
     }
 
     /**
@@ -453,12 +395,25 @@ public class KnowledgeBaseService {
      * (YouTrack + Confluence 통합 검색)
      */
     public List<VectorSearchResult> searchAllKnowledgeBase(String query, int nResults) {
+        return searchAllKnowledgeBaseAsync(query, nResults).block();
+    }
+
+    public Mono<List<VectorSearchResult>> searchAllKnowledgeBaseAsync(String query, int nResults) {
         log.info("[KBSearch] 전체(YouTrack+Confluence) 검색: query='{}', nResults={}", query, nResults);
-        float[] queryEmbedding = embeddingService.getEmbedding(query);
         // 필터 없이 전체 검색
-        List<VectorSearchResult> results = chromaDbClient.query(queryEmbedding, nResults, null);
-        logSearchResults("All", results);
-        return results;
+        return searchAsync("All", query, nResults, null);
+    }
+
+    /**
+     * 쿼리 임베딩(blocking, QueryEmbeddingCache) → 벡터 검색(non-blocking) 순으로 실행한다.
+     * 임베딩 호출은 boundedElastic 스케줄러에서 실행하여 요청 스레드를 붙잡지 않는다.
+     */
+    private Mono<List<VectorSearchResult>> searchAsync(String searchType, String query, int nResults,
+                                                       Map<String, String> filter) {
+        return Mono.fromCallable(() -> queryEmbeddingCache.get(query))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(queryEmbedding -> vectorStore.queryAsync(queryEmbedding, nResults, filter))
+                .doOnNext(results -> logSearchResults(searchType, results));
     }
 
     /**
@@ -466,7 +421,11 @@ public class KnowledgeBaseService {
      * 청킹으로 인해 여러 청크가 존재할 수 있으므로 documentId 메타데이터로 필터 삭제.
      */
     public void deleteConfluenceDocument(String documentId) {
-        chromaDbClient.deleteByFilter(Map.of("documentId", documentId));
+        vectorStore.deleteByFilter(Map.of("documentId", documentId));
+        keywordSearchService.removeItems(SOURCE_CONFLUENCE, List.of(documentId));
+        searchCacheScopes.knowledgeBaseChanged(SOURCE_CONFLUENCE);
+        itemRepository.deleteBySourceAndItemIdIn(SOURCE_CONFLUENCE, List.of(documentId));
+        retryQueue.remove(SOURCE_CONFLUENCE, List.of(documentId));
         log.info("Confluence 문서 삭제: {}", documentId);
     }
 
@@ -474,7 +433,12 @@ public class KnowledgeBaseService {
      * 모든 Confluence knowledge base 데이터를 삭제한다.
      */
     public void deleteAllConfluenceData() {
-        chromaDbClient.deleteByFilter(Map.of("source", SOURCE_CONFLUENCE));
+        vectorStore.deleteByFilter(Map.of("source", SOURCE_CONFLUENCE));
+        keywordSearchService.removeSource(SOURCE_CONFLUENCE);
+        searchCacheScopes.knowledgeBaseChanged(SOURCE_CONFLUENCE);
+        itemRepository.deleteBySource(SOURCE_CONFLUENCE);
+        retryQueue.removeAll(SOURCE_CONFLUENCE);
+        fileRepository.deleteByFileType("html");
         log.info("모든 Confluence knowledge base 데이터 삭제 완료");
     }
 
@@ -498,167 +462,504 @@ public class KnowledgeBaseService {
         }
     }
 
-    // ========== 디렉토리 기반 통합 Ingest (XLSX + HTML) ==========
+    // ========== 공통: 배치 처리 / 증분 upsert ==========
 
     /**
-     * 지정된 디렉토리에서 XLSX와 HTML 파일을 모두 읽어 벡터DB에 저장한다.
+     * 청킹과 메타데이터 구성을 마친 항목 한 건.
+     */
+    private record PreparedItem(String id, List<String> chunks, List<Map<String, String>> metadatas) {
+    }
+
+    /**
+     * ingest 결과 집계.
+     * - added: manifest에 없던 신규 항목
+     * - updated: 해시가 바뀌어 다시 임베딩한 항목
+     * - unchanged: 해시가 같아 건너뛴 항목
+     * - removed: 전체 export에 없어서 삭제한 항목
+     * - resumed: 재개한 작업에서 이전 실행이 이미 처리해서 건너뛴 항목
+     * - retryQueued: 저장에 실패해서 재시도 대기열에 넣은 항목 (failedIds 중 대기열에 들어간 수)
+     * - pipeline: IngestPipeline 단계별 처리량
      *
-     * @param directoryPath 파일들이 있는 디렉토리 경로
-     * @return 처리 결과 요약
+     * total / seenIds는 파이프라인에 들어온 항목 수와 ID (스트리밍 입력은 미리 크기를 알 수 없으므로 여기서 센다).
      */
-    public Map<String, Object> ingestFromDirectory(String directoryPath) throws IOException {
-        File directory = new File(directoryPath);
-        if (!directory.exists() || !directory.isDirectory()) {
-            throw new IllegalArgumentException("유효한 디렉토리 경로가 아닙니다: " + directoryPath);
+    private static class IngestStats {
+        int total;
+        final Set<String> seenIds = new HashSet<>();
+        int added;
+        int updated;
+        int unchanged;
+        int removed;
+        int resumed;
+        int failCount;
+        int retryQueued;
+        final List<String> failedIds = new ArrayList<>();
+        Map<String, Object> pipeline;
+
+        int successCount() {
+            return added + updated + unchanged;
         }
 
-        Map<String, Object> result = new LinkedHashMap<>();
-        result.put("directory", directoryPath);
+        void merge(IngestStats other) {
+            added += other.added;
+            updated += other.updated;
+            unchanged += other.unchanged;
+        }
 
-        // XLSX 파일 처리
-        File[] xlsxFiles = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(".xlsx"));
-        if (xlsxFiles != null && xlsxFiles.length > 0) {
-            log.info("XLSX 파일 {}개 발견", xlsxFiles.length);
-            List<Map<String, Object>> xlsxResults = new ArrayList<>();
-            for (File xlsxFile : xlsxFiles) {
-                try {
-                    Map<String, Object> xlsxResult = ingestYouTrackExcelFromFile(xlsxFile);
-                    xlsxResults.add(xlsxResult);
-                } catch (Exception e) {
-                    log.error("XLSX 처리 실패: {}", xlsxFile.getName(), e);
-                    xlsxResults.add(Map.of("file", xlsxFile.getName(), "error", e.getMessage()));
-                }
+        void putInto(Map<String, Object> result) {
+            result.put("successCount", successCount());
+            result.put("added", added);
+            result.put("updated", updated);
+            result.put("unchanged", unchanged);
+            result.put("removed", removed);
+            result.put("failCount", failCount);
+            if (!failedIds.isEmpty()) {
+                result.put("failedIds", failedIds);
+                result.put("retryQueued", retryQueued);
+            }
+            if (resumed > 0) {
+                result.put("resumed", resumed);
+            }
+            if (pipeline != null) {
+                result.put("pipeline", pipeline);
             }
-            result.put("xlsxResults", xlsxResults);
         }
+    }
 
-        // HTML 파일 처리
-        Map<String, Object> htmlResult = ingestConfluenceHtmlFromDirectory(directoryPath);
-        result.put("htmlResult", htmlResult);
-
-        return result;
+    /**
+     * manifest와 비교한 결과와, 변경/신규 항목의 청크. embedChanges가 embeddings를 채운다.
+     */
+    private static class ChangeSet {
+        final IngestStats stats = new IngestStats();
+        final Map<String, KnowledgeBaseItem> existing = new HashMap<>();
+        final Map<String, String> hashes = new HashMap<>();
+        final List<PreparedItem> changed = new ArrayList<>();
+        final List<String> itemIds = new ArrayList<>();
+        final List<String> ids = new ArrayList<>();
+        /** ids의 각 청크가 속한 항목 ID */
+        final List<String> chunkItemIds = new ArrayList<>();
+        final List<String> documents = new ArrayList<>();
+        final List<Map<String, String>> metadatas = new ArrayList<>();
+        List<float[]> embeddings = List.of();
     }
 
     /**
-     * XLSX 파일을 직접 파일 경로로 처리한다.
+     * 항목들을 IngestPipeline으로 처리한다.
+     * prepare(청킹 + manifest 비교) → embed(동시 실행) → write(여러 배치를 묶어 저장 + manifest 갱신).
+     * 실패한 배치는 건너뛰고 해당 ID를 기록한 뒤 재시도 대기열에 넣는다.
+     *
+     * checkpointKey가 있으면 저장을 마칠 때마다 체크포인트를 남기고, 재개된 작업이면 체크포인트까지의 항목을
+     * 건너뛴다. 건너뛴 항목도 total/seenIds에는 넣어서 removeMissing이 이들을 지우지 않게 한다.
+     *
+     * 작업이 취소되면 이미 시작한 배치까지만 저장하고 CancellationException을 던진다.
+     * 호출한 쪽의 removeMissing 삭제도 함께 건너뛰게 된다 (일부만 본 상태로 삭제하면 안 되므로).
      */
-    public Map<String, Object> ingestYouTrackExcelFromFile(File file) throws IOException {
-        // File을 MultipartFile처럼 처리하기 위해 직접 파싱
-        try (FileInputStream is = new FileInputStream(file);
-             XSSFWorkbook workbook = new XSSFWorkbook(is)) {
+    private <T> IngestStats processInPipeline(String label, String checkpointKey, String source, String idField,
+                                              Iterable<T> items, Function<T, String> idFn,
+                                              Function<List<T>, List<PreparedItem>> prepareFn,
+                                              IngestProgress progress) {
+        IngestStats stats = new IngestStats();
+        progress.setPhase(label);
+
+        IngestPipeline.Stages<T, ChangeSet> stages = new IngestPipeline.Stages<>() {
+            @Override
+            public ChangeSet prepare(List<T> batch) {
+                synchronized (stats) {
+                    stats.total += batch.size();
+                    batch.forEach(item -> stats.seenIds.add(idFn.apply(item)));
+                }
+                return diffAgainstManifest(source, prepareFn.apply(batch));
+            }
+
+            @Override
+            public void embed(ChangeSet changes) {
+                embedChanges(changes);
+            }
 
-            Sheet sheet = workbook.getSheetAt(0);
-            Map<String, Integer> headerMap = buildHeaderMap(sheet.getRow(0));
-            validateRequiredHeaders(headerMap);
+            @Override
+            public void write(List<ChangeSet> batches) {
+                writeChanges(source, idField, batches);
+                synchronized (stats) {
+                    batches.forEach(changes -> stats.merge(changes.stats));
+                }
+                log.info("{} 저장 완료: 누적 {}/{}", label, stats.successCount(), stats.total);
+            }
+
+            @Override
+            public int chunkCount(ChangeSet changes) {
+                return changes.ids.size();
+            }
+
+            @Override
+            public void skipped(T item) {
+                synchronized (stats) {
+                    stats.total++;
+                    stats.resumed++;
+                    stats.seenIds.add(idFn.apply(item));
+                }
+            }
+        };
+
+        stats.pipeline = ingestPipeline.run(label, checkpointKey, items, stages, (batch, e) -> {
+            int queued = retryQueue.enqueue(source, batch, idFn, label, e);
+            synchronized (stats) {
+                stats.failCount += batch.size();
+                stats.retryQueued += queued;
+                batch.forEach(item -> stats.failedIds.add(idFn.apply(item)));
+            }
+            if (queued < batch.size()) {
+                // 재시도 대기열에도 없는 항목을 체크포인트가 지나가면 재개해도 다시 읽지 않으므로 작업을 여기서 멈춘다
+                throw new IllegalStateException(
+                        label + " 실패 항목 " + batch.size() + "건을 재시도 대기열에 넣지 못해 중단합니다: " + e.getMessage(), e);
+            }
+        }, progress);
+        progress.throwIfCancelled();
+        return stats;
+    }
+
+    /**
+     * 준비된 항목들을 manifest의 해시와 비교하여 변경된 항목만 벡터DB에 반영한다 (파이프라인 없이 바로 실행).
+     */
+    private IngestStats upsertItems(String source, String idField, List<PreparedItem> items) {
+        ChangeSet changes = diffAgainstManifest(source, items);
+        embedChanges(changes);
+        writeChanges(source, idField, List.of(changes));
+        return changes.stats;
+    }
 
-            List<YouTrackIssueDto> issues = new ArrayList<>();
+    /**
+     * 0. 같은 ID가 여러 번 있으면 마지막 것만 남김 (xlsx 중복 행, bulk PUT 등. 같은 청크 ID/manifest 행이 두 번 저장되지 않도록)
+     * 1. 항목별 해시 계산 → manifest 조회
+     * 2. 해시가 같은 항목은 건너뜀
+     * 3. 변경/신규 항목의 청크 id/본문/메타데이터를 모음
+     */
+    private ChangeSet diffAgainstManifest(String source, List<PreparedItem> items) {
+        ChangeSet changes = new ChangeSet();
 
-            for (int rowIdx = 1; rowIdx <= sheet.getLastRowNum(); rowIdx++) {
-                Row row = sheet.getRow(rowIdx);
-                if (row == null) continue;
+        Map<String, PreparedItem> unique = new LinkedHashMap<>();
+        for (PreparedItem item : items) {
+            unique.put(item.id(), item);
+        }
+        if (unique.size() < items.size()) {
+            log.warn("{} 배치에 중복 ID {}건, 마지막 항목만 저장", source, items.size() - unique.size());
+        }
 
-                String id = getCellValue(row, headerMap.get("ID"));
-                if (id == null || id.isBlank()) continue;
+        itemRepository.findBySourceAndItemIdIn(source, new ArrayList<>(unique.keySet()))
+                .forEach(item -> changes.existing.put(item.getItemId(), item));
 
-                YouTrackIssueDto dto = YouTrackIssueDto.builder()
-                        .id(id.strip())
-                        .title(getCellValue(row, headerMap.get("제목")))
-                        .body(getCellValue(row, headerMap.get("본문")))
-                        .comments(getCellValue(row, headerMap.get("댓글목록")))
-                        .priority(getCellValue(row, headerMap.get("Priority")))
-                        .stage(getCellValue(row, headerMap.get("Stage")))
-                        .requester(getCellValue(row, headerMap.get("업무 요청자")))
-                        .assignee(getCellValue(row, headerMap.get("Assignee")))
-                        .createdDate(getCellValue(row, headerMap.get("생성일")))
-                        .build();
+        for (PreparedItem item : unique.values()) {
+            changes.itemIds.add(item.id());
+            String hash = contentHash(item);
+            KnowledgeBaseItem manifest = changes.existing.get(item.id());
+            if (manifest != null && hash.equals(manifest.getContentHash())) {
+                changes.stats.unchanged++;
+                continue;
+            }
+            if (manifest == null) {
+                changes.stats.added++;
+            } else {
+                changes.stats.updated++;
+            }
+            changes.hashes.put(item.id(), hash);
+            changes.changed.add(item);
+        }
 
-                issues.add(dto);
+        for (PreparedItem item : changes.changed) {
+            if (item.chunks().isEmpty()) {
+                log.warn("빈 청크 건너뜀: {}", item.id());
+                continue;
             }
+            for (int i = 0; i < item.chunks().size(); i++) {
+                changes.ids.add(item.id() + "-" + i);
+                changes.chunkItemIds.add(item.id());
+                changes.documents.add(item.chunks().get(i));
+                Map<String, String> metadata = new LinkedHashMap<>(item.metadatas().get(i));
+                metadata.put("contentHash", changes.hashes.get(item.id()));
+                changes.metadatas.add(metadata);
+            }
+        }
+        return changes;
+    }
 
-            return processYouTrackIssues(issues, file.getName());
+    /**
+     * 청크마다 임베딩 서버를 호출하지 않고 배치 전체 청크를 묶어서 임베딩
+     */
+    private void embedChanges(ChangeSet changes) {
+        if (!changes.documents.isEmpty()) {
+            changes.embeddings = embeddingService.getEmbeddings(changes.documents);
         }
     }
 
-    private Map<String, Integer> buildHeaderMap(Row headerRow) {
-        Map<String, Integer> map = new LinkedHashMap<>();
-        if (headerRow == null) {
-            throw new IllegalArgumentException("xlsx 파일에 헤더 행이 없습니다.");
+    /**
+     * 4. 변경/신규 항목의 기존 청크를 $in 조건으로 한 번에 삭제 (재업로드 시 orphan 방지)
+     * 5. 새 청크를 한 번에 저장
+     * 6. 삭제와 저장이 모두 끝난 뒤 manifest 갱신 (둘 중 하나라도 실패하면 manifest가 갱신되지 않아 다음 ingest 때 재시도됨)
+     * 7. 미변경 항목을 포함해 배치의 모든 항목을 재시도 대기열에서 지움 (이제 벡터DB가 최신이므로)
+     *
+     * 삭제를 임베딩 이후로 미뤄서, 임베딩이 실패해도 기존 청크는 남아 있다.
+     * 같은 항목이 묶인 배치 여럿에서 바뀌었으면 마지막 배치의 것만 저장한다.
+     */
+    private void writeChanges(String source, String idField, List<ChangeSet> batches) {
+        // 뒤 배치부터 보면서 각 항목을 처음 만난(= 마지막) 배치에만 남긴다
+        Map<String, ChangeSet> owners = new HashMap<>();
+        for (int b = batches.size() - 1; b >= 0; b--) {
+            ChangeSet changes = batches.get(b);
+            changes.changed.forEach(item -> owners.putIfAbsent(item.id(), changes));
         }
-        for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-            Cell cell = headerRow.getCell(i);
-            if (cell != null) {
-                String headerName = cell.getStringCellValue().strip();
-                if (!headerName.isBlank()) {
-                    map.put(headerName, i);
+
+        List<String> itemIds = new ArrayList<>();
+        List<String> changedIds = new ArrayList<>();
+        List<PreparedItem> changedItems = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        List<float[]> embeddings = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        List<Map<String, String>> metadatas = new ArrayList<>();
+        for (ChangeSet changes : batches) {
+            itemIds.addAll(changes.itemIds);
+            for (PreparedItem item : changes.changed) {
+                if (owners.get(item.id()) == changes) {
+                    changedIds.add(item.id());
+                    changedItems.add(item);
+                }
+            }
+            for (int i = 0; i < changes.ids.size(); i++) {
+                if (owners.get(changes.chunkItemIds.get(i)) == changes) {
+                    ids.add(changes.ids.get(i));
+                    embeddings.add(changes.embeddings.get(i));
+                    documents.add(changes.documents.get(i));
+                    metadatas.add(changes.metadatas.get(i));
                 }
             }
         }
-        return map;
+
+        if (changedIds.isEmpty()) {
+            retryQueue.remove(source, itemIds);
+            return;
+        }
+
+        // 기존 청크 삭제 (재업로드 시 orphan 방지) - 항목마다 삭제 요청을 보내지 않고 $in 조건으로 한 번에 삭제.
+        // 실패하면 그대로 던진다: addDocuments는 이미 있는 청크 ID를 건너뛰므로 옛 청크가 남은 채 manifest만
+        // 새 해시로 바뀌면 다음 ingest부터 미변경으로 보여 고쳐지지 않는다. 배치는 재시도 대기열로 간다
+        vectorStore.deleteByMetadataIn(idField, changedIds);
+        keywordSearchService.removeItems(source, changedIds);
+        searchCacheScopes.knowledgeBaseChanged(source);
+
+        if (!ids.isEmpty()) {
+            vectorStore.addDocuments(ids, embeddings, documents, metadatas);
+            keywordSearchService.index(source, idField, ids, documents, metadatas);
+            searchCacheScopes.knowledgeBaseChanged(source);
+        }
+
+        // prepare 때 manifest에 없던 항목은 그 사이 다른 배치가 먼저 저장했을 수 있어서 다시 조회한다
+        Map<String, KnowledgeBaseItem> existing = new HashMap<>();
+        List<String> unseen = new ArrayList<>();
+        for (PreparedItem item : changedItems) {
+            KnowledgeBaseItem manifest = owners.get(item.id()).existing.get(item.id());
+            if (manifest != null) {
+                existing.put(item.id(), manifest);
+            } else {
+                unseen.add(item.id());
+            }
+        }
+        if (!unseen.isEmpty()) {
+            itemRepository.findBySourceAndItemIdIn(source, unseen)
+                    .forEach(manifest -> existing.put(manifest.getItemId(), manifest));
+        }
+
+        List<KnowledgeBaseItem> manifests = new ArrayList<>();
+        for (PreparedItem item : changedItems) {
+            KnowledgeBaseItem manifest = existing.getOrDefault(item.id(), new KnowledgeBaseItem());
+            manifest.setSource(source);
+            manifest.setItemId(item.id());
+            manifest.setContentHash(owners.get(item.id()).hashes.get(item.id()));
+            manifest.setStore(vectorStore.storeId());
+            manifest.setChunkCount(item.chunks().size());
+            manifests.add(manifest);
+        }
+        itemRepository.saveAll(manifests);
+        retryQueue.remove(source, itemIds);
     }
 
-    private void validateRequiredHeaders(Map<String, Integer> headerMap) {
-        List<String> required = List.of("ID", "제목");
-        List<String> missing = required.stream()
-                .filter(h -> !headerMap.containsKey(h))
+    /**
+     * manifest에는 있지만 이번 전체 export에 없는 항목을 벡터DB와 manifest에서 삭제한다.
+     *
+     * @return 삭제한 항목 수
+     */
+    private int removeMissingItems(String source, String idField, Set<String> presentIds) {
+        List<String> missing = itemRepository.findItemIdsBySource(source).stream()
+                .filter(id -> !presentIds.contains(id))
                 .toList();
+        removeItems(source, idField, missing);
+
         if (!missing.isEmpty()) {
-            throw new IllegalArgumentException("필수 컬럼이 누락되었습니다: " + missing);
+            log.info("export에 없는 {} 항목 {}건 삭제", source, missing.size());
         }
+        return missing.size();
     }
 
-    private String getCellValue(Row row, Integer colIndex) {
-        if (colIndex == null) return null;
-        Cell cell = row.getCell(colIndex);
-        if (cell == null) return null;
+    /**
+     * 항목들을 batchSize 단위로 벡터DB와 manifest에서 삭제한다.
+     */
+    private void removeItems(String source, String idField, List<String> itemIds) {
+        int batchSize = ingestConfig.getBatchSize();
+        for (int i = 0; i < itemIds.size(); i += batchSize) {
+            List<String> batch = itemIds.subList(i, Math.min(i + batchSize, itemIds.size()));
+            vectorStore.deleteByMetadataIn(idField, batch);
+            keywordSearchService.removeItems(source, batch);
+            searchCacheScopes.knowledgeBaseChanged(source);
+            itemRepository.deleteBySourceAndItemIdIn(source, batch);
+            retryQueue.remove(source, batch);
+        }
+    }
 
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue();
-            case NUMERIC -> {
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    yield cell.getLocalDateTimeCellValue().toString();
-                }
-                double val = cell.getNumericCellValue();
-                if (val == Math.floor(val)) {
-                    yield String.valueOf((long) val);
+    /**
+     * 여러 YouTrack 이슈를 한 번에 삭제한다 (동기화 디렉토리에서 xlsx가 삭제/변경된 경우).
+     */
+    public void deleteYouTrackIssues(Collection<String> issueIds) {
+        removeItems(SOURCE_YOUTRACK, "issueId", List.copyOf(issueIds));
+    }
+
+    /**
+     * 여러 Confluence 문서를 한 번에 삭제한다 (동기화 디렉토리에서 HTML이 삭제된 경우).
+     */
+    public void deleteConfluenceDocuments(Collection<String> documentIds) {
+        removeItems(SOURCE_CONFLUENCE, "documentId", List.copyOf(documentIds));
+    }
+
+    /**
+     * 재시도 대기열의 이슈들을 한 번에 다시 저장한다 (IngestRetryService).
+     * 성공하면 writeChanges가 대기열에서 지우고, 실패하면 예외를 그대로 던진다.
+     */
+    public void retryYouTrackIssues(List<YouTrackIssueDto> issues) {
+        upsertItems(SOURCE_YOUTRACK, "issueId", prepareIssues(issues));
+    }
+
+    /**
+     * 재시도 대기열의 Confluence 문서들을 한 번에 다시 저장한다 (IngestRetryService).
+     */
+    public void retryConfluenceDocuments(List<ConfluenceDocumentDto> documents) {
+        upsertItems(SOURCE_CONFLUENCE, "documentId", prepareConfluenceDocuments(documents));
+    }
+
+    /**
+     * 청크 텍스트와 메타데이터(source, 제목, 상태, 담당자 등)를 합친 SHA-256 해시.
+     * 메타데이터도 포함하므로 본문이 같아도 상태/담당자가 바뀌면 변경으로 판단한다.
+     */
+    private static String contentHash(PreparedItem item) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < item.chunks().size(); i++) {
+                digest.update(item.chunks().get(i).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                for (Map.Entry<String, String> entry : item.metadatas().get(i).entrySet()) {
+                    digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) '=');
+                    digest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
                 }
-                yield String.valueOf(val);
             }
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            case FORMULA -> cell.getCachedFormulaResultType() == CellType.STRING
-                    ? cell.getStringCellValue()
-                    : String.valueOf(cell.getNumericCellValue());
-            default -> null;
-        };
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    private Map<String, Object> processYouTrackIssues(List<YouTrackIssueDto> issues, String fileName) {
-        int totalCount = issues.size();
-        int successCount = 0;
-        int failCount = 0;
-        List<String> failedIds = new ArrayList<>();
+    // ========== 디렉토리 기반 통합 Ingest (XLSX + HTML) ==========
 
-        for (int i = 0; i < issues.size(); i += BATCH_SIZE) {
-            int end = Math.min(i + BATCH_SIZE, issues.size());
-            List<YouTrackIssueDto> batch = issues.subList(i, end);
+    /**
+     * 서버 디스크의 디렉토리 경로를 검증한다. 백그라운드 작업을 등록하기 전에도 호출해서
+     * 잘못된 경로는 작업 ID를 받기 전에 400으로 돌려준다.
+     */
+    public File requireDirectory(String directoryPath) {
+        File directory = new File(directoryPath);
+        if (!directory.exists() || !directory.isDirectory()) {
+            throw new IllegalArgumentException("유효한 디렉토리 경로가 아닙니다: " + directoryPath);
+        }
+        return directory;
+    }
 
-            try {
-                upsertBatch(batch);
-                successCount += batch.size();
-            } catch (Exception e) {
-                log.error("배치 처리 실패: {}", e.getMessage());
-                failCount += batch.size();
-                batch.forEach(issue -> failedIds.add(issue.getId()));
+    /**
+     * 지정된 디렉토리에서 XLSX와 HTML 파일을 모두 읽어 벡터DB에 저장한다.
+     *
+     * @param directoryPath 파일들이 있는 디렉토리 경로
+     * @param removeMissing true면 디렉토리 내 XLSX/HTML 어디에도 없는 기존 항목을 삭제
+     * @param progress      진행 상황 보고 및 취소 확인 대상 (xlsx와 HTML 처리량이 누적된다)
+     * @return 처리 결과 요약
+     */
+    public Map<String, Object> ingestFromDirectory(String directoryPath, boolean removeMissing,
+                                                   IngestProgress progress) throws IOException {
+        File directory = requireDirectory(directoryPath);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("directory", directoryPath);
+
+        // XLSX 파일 처리 - 여러 xlsx에 나뉘어 있을 수 있으므로 삭제 판단은 모든 파일을 처리한 뒤 한 번에
+        File[] xlsxFiles = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(".xlsx"));
+        if (xlsxFiles != null && xlsxFiles.length > 0) {
+            log.info("XLSX 파일 {}개 발견", xlsxFiles.length);
+            List<Map<String, Object>> xlsxResults = new ArrayList<>();
+            Set<String> presentIssueIds = new HashSet<>();
+            boolean allParsed = true;
+            for (File xlsxFile : xlsxFiles) {
+                try (YouTrackExcelParser.IssueReader issues = excelParser.open(xlsxFile)) {
+                    progress.addExpected(issues.getEstimatedCount());
+                    xlsxResults.add(processYouTrackIssues(issues, xlsxFile.getName(), checkpointKey(xlsxFile),
+                            presentIssueIds, progress));
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    log.error("XLSX 처리 실패: {}", xlsxFile.getName(), e);
+                    xlsxResults.add(Map.of("file", xlsxFile.getName(), "error", e.getMessage()));
+                    allParsed = false;
+                }
+            }
+            result.put("xlsxResults", xlsxResults);
+
+            // 읽지 못한 xlsx가 있으면 그 안의 이슈까지 삭제될 수 있으므로 삭제를 건너뜀
+            if (removeMissing && allParsed) {
+                result.put("xlsxRemoved", removeMissingItems(SOURCE_YOUTRACK, "issueId", presentIssueIds));
             }
         }
 
+        // HTML 파일 처리
+        Map<String, Object> htmlResult = ingestConfluenceHtmlFromDirectory(directoryPath, removeMissing, progress);
+        result.put("htmlResult", htmlResult);
+
+        return result;
+    }
+
+    /**
+     * XLSX 파일 하나를 처리한다. 삭제 판단은 하지 않고, 파일에 있던 이슈 ID를 issueIds에 담아 돌려준다
+     * (DirectorySyncService가 파일별 manifest에 기록).
+     */
+    public Map<String, Object> ingestYouTrackExcelFromFile(File file, Set<String> issueIds, IngestProgress progress)
+            throws IOException {
+        try (YouTrackExcelParser.IssueReader issues = excelParser.open(file)) {
+            progress.addExpected(issues.getEstimatedCount());
+            return processYouTrackIssues(issues, file.getName(), checkpointKey(file), issueIds, progress);
+        }
+    }
+
+    /**
+     * xlsx 한 파일의 체크포인트 키. 파일이 바뀌면(크기, 수정 시각) 이전 체크포인트를 쓰지 않는다.
+     */
+    private static String checkpointKey(File xlsxFile) {
+        return "YouTrack|" + xlsxFile.getAbsolutePath() + "|" + xlsxFile.length() + "|" + xlsxFile.lastModified();
+    }
+
+    /**
+     * @param presentIssueIds 처리한 이슈 ID를 추가할 집합 (removeMissing 판단용)
+     */
+    private Map<String, Object> processYouTrackIssues(Iterable<YouTrackIssueDto> issues, String fileName,
+                                                      String checkpointKey, Set<String> presentIssueIds,
+                                                      IngestProgress progress) {
+        IngestStats stats = processInPipeline("YouTrack(" + fileName + ")", checkpointKey, SOURCE_YOUTRACK,
+                "issueId", issues, YouTrackIssueDto::getId, this::prepareIssues, progress);
+        presentIssueIds.addAll(stats.seenIds);
+
         Map<String, Object> result = new LinkedHashMap<>();
         result.put("file", fileName);
-        result.put("totalParsed", totalCount);
-        result.put("successCount", successCount);
-        result.put("failCount", failCount);
-        if (!failedIds.isEmpty()) {
-            result.put("failedIds", failedIds);
-        }
+        result.put("totalParsed", stats.total);
+        stats.putInto(result);
         return result;
     }
 }
@@ -0,0 +1,268 @@
+package com.mychatgpt.service;
+
+import com.mychatgpt.ai.CrossEncoderClient;
+import com.mychatgpt.config.SearchConfig;
+import com.mychatgpt.text.NgramAnalyzer;
+import com.mychatgpt.vectordb.VectorSearchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * knowledge base 검색 후보를 다시 정렬해 요청 수만큼 고른다 (CPU만 사용).
+ *
+ * 관련도:
+ * - 기본: 벡터 유사도(1 - distance), 검색어 색인어(NgramAnalyzer)가 청크 본문/제목에 나오는 비율,
+ *   입력 순위(1위 1 ~ 꼴찌 1/n)의 가중합. 키워드 검색으로만 찾은 청크(distance NaN)는 후보 중 가장 낮은 벡터 유사도를 쓴다.
+ *   벡터 유사도는 후보끼리 차이가 작아서(0.65~0.8) 후보 안에서 0~1로 늘리지 않는다. 늘리면 잡음 수준의 차이가 순위를 정한다
+ * - cross-encoder를 설정하면 그 점수를 관련도로 쓴다. 실패하거나 시간 안에 끝나지 않으면 기본 관련도로 대신한다.
+ *   cross-encoder는 budget × crossEncoder.budgetShare까지만 기다린다 (멈춰도 기본 관련도 + MMR을 마칠 수 있게)
+ *
+ * 고르기: MMR. 관련도가 높으면서 이미 고른 청크와 덜 비슷한(색인어 Jaccard, 같은 이슈/문서면 최소
+ * sameItemSimilarity) 청크를 하나씩 고른다. 같은 문서의 비슷한 청크가 결과를 다 차지하지 않게 한다.
+ *
+ * 질의 하나에 budget 넘게 쓰지 않는다. 넘기면 입력 순서(벡터 + 키워드 합친 순위) 그대로 자른다.
+ */
+@Service
+@Slf4j
+public class RerankService {
+
+    private static final Map<String, String> ID_FIELDS = Map.of(
+            KnowledgeBaseService.SOURCE_YOUTRACK, "issueId",
+            KnowledgeBaseService.SOURCE_CONFLUENCE, "documentId");
+
+    private final SearchConfig.Rerank config;
+    private final CrossEncoderClient crossEncoder;
+
+    private final AtomicLong reranks = new AtomicLong();
+    private final AtomicLong rerankNanos = new AtomicLong();
+    private final AtomicLong crossEncoderFailures = new AtomicLong();
+    private final AtomicLong budgetExceeded = new AtomicLong();
+
+    public RerankService(SearchConfig searchConfig, CrossEncoderClient crossEncoder) {
+        this.config = searchConfig.getRerank();
+        this.crossEncoder = crossEncoder;
+    }
+
+    /**
+     * results를 다시 정렬해 최대 limit개를 돌려준다.
+     *
+     * @param results 후보 (벡터/키워드 검색을 합친 순위 순)
+     */
+    public List<VectorSearchResult> rerank(String query, List<VectorSearchResult> results, int limit) {
+        List<VectorSearchResult> fallback = results.size() <= limit ? results : results.subList(0, limit);
+        if (!config.isEnabled() || results.size() <= 1) {
+            return fallback;
+        }
+        long start = System.nanoTime();
+        long deadline = start + config.getBudget().toNanos();
+        try {
+            List<VectorSearchResult> reranked = select(query, results, limit, deadline);
+            if (reranked == null) {
+                budgetExceeded.incrementAndGet();
+                log.warn("[Rerank] 시간 초과({}), 입력 순서 사용: query='{}', 후보 {}건",
+                        config.getBudget(), query, results.size());
+                return fallback;
+            }
+            return reranked;
+        } catch (Exception e) {
+            log.warn("[Rerank] 재정렬 실패, 입력 순서 사용: {}", e.toString());
+            return fallback;
+        } finally {
+            reranks.incrementAndGet();
+            rerankNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return deadline을 넘기면 null
+     */
+    private List<VectorSearchResult> select(String query, List<VectorSearchResult> results, int limit, long deadline) {
+        int n = results.size();
+        Set<String> queryTerms = terms(query);
+        List<Set<String>> docTerms = new ArrayList<>(n);
+        for (VectorSearchResult result : results) {
+            Set<String> terms = terms(result.getDocument());
+            if (result.getMetadata() != null) {
+                NgramAnalyzer.analyze(result.getMetadata().get("title"), terms::add);
+            }
+            docTerms.add(terms);
+        }
+        if (System.nanoTime() > deadline) {
+            return null;
+        }
+
+        double[] relevance = crossEncoderRelevance(query, results, deadline);
+        if (relevance == null) {
+            relevance = heuristicRelevance(queryTerms, results, docTerms);
+        }
+
+        // MMR: 후보 수가 수십 개라 O(limit × n) 비교로 충분하다
+        double lambda = config.getMmrLambda();
+        double[] maxSimilarity = new double[n];
+        boolean[] selected = new boolean[n];
+        List<VectorSearchResult> picked = new ArrayList<>(Math.min(limit, n));
+        int last = -1;
+        while (picked.size() < Math.min(limit, n)) {
+            if (System.nanoTime() > deadline) {
+                return null;
+            }
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (selected[i]) {
+                    continue;
+                }
+                if (last >= 0) {
+                    maxSimilarity[i] = Math.max(maxSimilarity[i],
+                            similarity(results.get(i), docTerms.get(i), results.get(last), docTerms.get(last)));
+                }
+                double score = lambda * relevance[i] - (1 - lambda) * maxSimilarity[i];
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            selected[best] = true;
+            picked.add(results.get(best));
+            last = best;
+        }
+        return picked;
+    }
+
+    /**
+     * cross-encoder 점수를 0~1로 맞춘 관련도. 설정되지 않았거나 실패/시간 초과면 null.
+     */
+    private double[] crossEncoderRelevance(String query, List<VectorSearchResult> results, long deadline) {
+        if (!crossEncoder.isEnabled()) {
+            return null;
+        }
+        long reserve = (long) (config.getBudget().toNanos() * (1 - config.getCrossEncoder().getBudgetShare()));
+        long remaining = deadline - reserve - System.nanoTime();
+        if (remaining <= 0) {
+            return null;
+        }
+        try {
+            double[] scores = crossEncoder.score(query,
+                    results.stream().map(VectorSearchResult::getDocument).toList(), Duration.ofNanos(remaining));
+            return normalize(scores);
+        } catch (Exception e) {
+            crossEncoderFailures.incrementAndGet();
+            log.warn("[Rerank] cross-encoder 실패, 기본 점수 사용: {}", e.toString());
+            return null;
+        }
+    }
+
+    private double[] heuristicRelevance(Set<String> queryTerms, List<VectorSearchResult> results,
+                                        List<Set<String>> docTerms) {
+        int n = results.size();
+        double minSimilarity = Double.NaN;
+        for (VectorSearchResult result : results) {
+            if (!Double.isNaN(result.getDistance())) {
+                double similarity = 1.0 - result.getDistance();
+                minSimilarity = Double.isNaN(minSimilarity) ? similarity : Math.min(minSimilarity, similarity);
+            }
+        }
+        double[] vector = new double[n];
+        double[] lexical = new double[n];
+        double[] order = new double[n];
+        for (int i = 0; i < n; i++) {
+            double distance = results.get(i).getDistance();
+            vector[i] = Double.isNaN(distance) ? (Double.isNaN(minSimilarity) ? 0 : minSimilarity) : 1.0 - distance;
+            if (!queryTerms.isEmpty()) {
+                int matched = 0;
+                for (String term : queryTerms) {
+                    if (docTerms.get(i).contains(term)) {
+                        matched++;
+                    }
+                }
+                lexical[i] = (double) matched / queryTerms.size();
+            }
+            order[i] = 1.0 - (double) i / n;
+        }
+        double[] relevance = new double[n];
+        for (int i = 0; i < n; i++) {
+            relevance[i] = config.getVectorWeight() * vector[i]
+                    + config.getLexicalWeight() * lexical[i]
+                    + config.getOrderWeight() * order[i];
+        }
+        return relevance;
+    }
+
+    /**
+     * 두 청크의 비슷한 정도 (색인어 Jaccard). 같은 이슈/문서의 청크면 최소 sameItemSimilarity.
+     */
+    private double similarity(VectorSearchResult a, Set<String> aTerms, VectorSearchResult b, Set<String> bTerms) {
+        double similarity = 0;
+        if (!aTerms.isEmpty() && !bTerms.isEmpty()) {
+            Set<String> smaller = aTerms.size() <= bTerms.size() ? aTerms : bTerms;
+            Set<String> larger = smaller == aTerms ? bTerms : aTerms;
+            int common = 0;
+            for (String term : smaller) {
+                if (larger.contains(term)) {
+                    common++;
+                }
+            }
+            similarity = (double) common / (aTerms.size() + bTerms.size() - common);
+        }
+        String aItem = itemKey(a);
+        if (aItem != null && aItem.equals(itemKey(b))) {
+            similarity = Math.max(similarity, config.getSameItemSimilarity());
+        }
+        return similarity;
+    }
+
+    private static String itemKey(VectorSearchResult result) {
+        Map<String, String> metadata = result.getMetadata();
+        if (metadata == null || metadata.get("source") == null) {
+            return null;
+        }
+        String idField = ID_FIELDS.get(metadata.get("source"));
+        String itemId = idField != null ? metadata.get(idField) : null;
+        return itemId != null ? metadata.get("source") + '\u0000' + itemId : null;
+    }
+
+    private static Set<String> terms(String text) {
+        Set<String> terms = new HashSet<>();
+        NgramAnalyzer.analyze(text, terms::add);
+        return terms;
+    }
+
+    /**
+     * 후보 안에서 0~1로 맞춘다. 모두 같으면 모두 1.
+     */
+    private static double[] normalize(double[] values) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double[] normalized = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            normalized[i] = max > min ? (values[i] - min) / (max - min) : 1.0;
+        }
+        return normalized;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("crossEncoder", crossEncoder.isEnabled());
+        stats.put("budgetMillis", config.getBudget().toMillis());
+        long count = reranks.get();
+        stats.put("reranks", count);
+        stats.put("avgRerankMicros", count == 0 ? 0 : rerankNanos.get() / count / 1000);
+        stats.put("budgetExceeded", budgetExceeded.get());
+        stats.put("crossEncoderFailures", crossEncoderFailures.get());
+        return stats;
+    }
+}
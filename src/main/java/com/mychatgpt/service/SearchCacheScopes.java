@@ -0,0 +1,116 @@
+package com.mychatgpt.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * vectorSearch 캐시(searchAllSources 결과)의 범위별 세대 번호.
+ *
+ * 캐시 키에 결과가 의존하는 범위들의 세대 번호를 넣고, 저장/삭제할 때는 그 범위의 번호만 올린다.
+ * 번호가 바뀐 키는 다시 조회되지 않고 캐시 TTL/크기 제한으로 밀려난다.
+ * 예전처럼 캐시 전체를 비우지 않으므로 한 사용자의 대화가 저장돼도 다른 사용자의 캐시는 그대로 쓴다.
+ *
+ * 범위:
+ * - user:{userId}: 사용자 개인 데이터 (업로드 문서, 대화)
+ * - kb:{source}: knowledge base의 source (youtrack, confluence)
+ * - 전체: 문서 ID로만 지워서 어느 범위인지 모를 때 (모든 키가 바뀜)
+ */
+@Component("searchCacheScopes")
+public class SearchCacheScopes {
+
+    public static final String CACHE_NAME = "vectorSearch";
+
+    private final CacheManager cacheManager;
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public SearchCacheScopes(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public void userChanged(String userId) {
+        bump("user:" + userId);
+    }
+
+    public void knowledgeBaseChanged(String source) {
+        bump("kb:" + source);
+    }
+
+    /**
+     * 어느 범위의 데이터가 바뀌었는지 모를 때 (ID 목록, 세션 단위 삭제 등).
+     */
+    public void allChanged() {
+        globalGeneration.incrementAndGet();
+    }
+
+    private void bump(String scope) {
+        generations.computeIfAbsent(scope, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private long generation(String scope) {
+        AtomicLong generation = generations.get(scope);
+        return generation != null ? generation.get() : 0;
+    }
+
+    /**
+     * searchAllSources의 캐시 키. knowledge base(YouTrack + Confluence)와 그 사용자의 세대 번호를 포함한다.
+     */
+    public String allSourcesKey(String query, String userId, int nResults) {
+        return query + '_' + userId + '_' + nResults + '@'
+                + stamp(userId, KnowledgeBaseService.SOURCE_YOUTRACK, KnowledgeBaseService.SOURCE_CONFLUENCE);
+    }
+
+    /**
+     * knowledge base 검색의 세대 번호. source가 null이면 YouTrack + Confluence.
+     */
+    public String knowledgeBaseStamp(String source) {
+        return source != null ? stamp(null, source)
+                : stamp(null, KnowledgeBaseService.SOURCE_YOUTRACK, KnowledgeBaseService.SOURCE_CONFLUENCE);
+    }
+
+    /**
+     * 결과가 의존하는 범위들의 현재 세대 번호를 이어 붙인 값. 저장해 둔 값과 다르면 그 사이에 데이터가 바뀐 것이다.
+     *
+     * @param userId  사용자 개인 데이터 범위 (없으면 null)
+     * @param sources knowledge base source 범위
+     */
+    public String stamp(String userId, String... sources) {
+        StringBuilder stamp = new StringBuilder().append(globalGeneration.get());
+        for (String source : sources) {
+            stamp.append('.').append(generation("kb:" + source));
+        }
+        if (userId != null && !userId.isBlank()) {
+            stamp.append('.').append(generation("user:" + userId));
+        }
+        return stamp.toString();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            CacheStats cacheStats = nativeCache.stats();
+            stats.put("entries", nativeCache.estimatedSize());
+            stats.put("hits", cacheStats.hitCount());
+            stats.put("misses", cacheStats.missCount());
+            stats.put("hitRate", cacheStats.hitRate());
+        }
+        stats.put("globalGeneration", globalGeneration.get());
+        Map<String, Long> knowledgeBase = new LinkedHashMap<>();
+        generations.forEach((scope, generation) -> {
+            if (scope.startsWith("kb:")) {
+                knowledgeBase.put(scope.substring(3), generation.get());
+            }
+        });
+        stats.put("knowledgeBaseGenerations", knowledgeBase);
+        stats.put("userScopes", generations.keySet().stream().filter(scope -> scope.startsWith("user:")).count());
+        return stats;
+    }
+}
@@ -0,0 +1,220 @@
+package com.mychatgpt.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mychatgpt.config.SearchConfig;
+import com.mychatgpt.text.NgramAnalyzer;
+import com.mychatgpt.vectordb.VectorSearchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 표현만 다른 같은 질문("로그인 오류", "로그인이 안돼요")에 검색 결과를 재사용하는 캐시.
+ *
+ * 최근 검색어의 임베딩과 결과를 메모리에 두고, 새 검색어의 임베딩과 cosine 유사도가 threshold 이상인
+ * 항목이 있으면 벡터 검색 없이 그 결과를 돌려준다. 항목 수가 maxEntries(기본 1000)로 작아서
+ * 근사 인덱스 없이 정규화한 벡터를 내적으로 전부 비교한다 (1024차원 × 1000개 ≈ 1ms 이하).
+ *
+ * - 범위(scope): 검색 종류, 사용자, source, 결과 수를 이어 붙인 문자열. 같은 범위의 항목끼리만 비교한다
+ *   (다른 사용자의 개인 데이터 검색 결과를 돌려주지 않도록)
+ * - 세대 번호(stamp): 저장할 때의 SearchCacheScopes 세대 번호. 그 사이 해당 범위에 저장/삭제가 있었으면 쓰지 않고 지운다
+ * - 정확히 일치해야 하는 말(exactTerms): 검색어의 영문/숫자 색인어(NgramAnalyzer). 에러 코드, API 이름, 버전만 다른
+ *   검색어("ERR_1001 로그인 오류", "ERR_1002 로그인 오류")는 임베딩이 거의 같아도 결과가 달라야 하므로 이 집합이 같은 항목만 쓴다
+ * - 유효 시간(ttl)이 지나거나 maxEntries를 넘으면 Caffeine이 밀어낸다
+ *
+ * threshold를 정할 수 있도록 조회마다 가장 가까운 항목의 유사도 분포(bestSimilarity)를 남긴다.
+ */
+@Service
+@Slf4j
+public class SemanticSearchCache {
+
+    /** bestSimilarity 분포의 구간 하한 */
+    private static final double[] BUCKETS = {0.80, 0.85, 0.90, 0.93, 0.95, 0.97, 0.99};
+
+    private record Entry(String scope, String stamp, Set<String> exactTerms, float[] vector,
+                         List<VectorSearchResult> results) {
+    }
+
+    private final SearchConfig.SemanticCache config;
+    private final Cache<Long, Entry> entries;
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleEntries = new LongAdder();
+    private final LongAdder exactTermMismatches = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+    private final LongAdder belowBuckets = new LongAdder();
+    private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+
+    public SemanticSearchCache(SearchConfig searchConfig) {
+        this.config = searchConfig.getSemanticCache();
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(config.getMaxEntries())
+                .expireAfterWrite(config.getTtl())
+                .build();
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 비슷한 검색어의 결과가 있으면 그것을, 없으면 search를 실행해 결과를 저장하고 돌려준다.
+     *
+     * @param stamp 검색 직전의 SearchCacheScopes 세대 번호
+     */
+    public Mono<List<VectorSearchResult>> getOrSearch(String scope, String stamp, String query, float[] embedding,
+                                                      Supplier<Mono<List<VectorSearchResult>>> search) {
+        List<VectorSearchResult> cached = get(scope, stamp, query, embedding);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return search.get().doOnNext(results -> put(scope, stamp, query, embedding, results));
+    }
+
+    /**
+     * @return 같은 범위에서 영문/숫자 색인어가 같고 threshold 이상으로 가까운 검색어의 결과. 없으면 null
+     */
+    public List<VectorSearchResult> get(String scope, String stamp, String query, float[] embedding) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        float[] vector = unit(embedding);
+        if (vector == null) {
+            return null;
+        }
+        Set<String> exactTerms = NgramAnalyzer.wordTerms(query);
+        long start = System.nanoTime();
+        Entry best = null;
+        double bestSimilarity = -1;
+        for (Map.Entry<Long, Entry> candidate : entries.asMap().entrySet()) {
+            Entry entry = candidate.getValue();
+            if (!entry.scope().equals(scope)) {
+                continue;
+            }
+            if (!entry.stamp().equals(stamp)) {
+                // 저장한 뒤 그 범위의 데이터가 바뀌었다
+                entries.invalidate(candidate.getKey());
+                staleEntries.increment();
+                continue;
+            }
+            double similarity = dot(vector, entry.vector());
+            if (!entry.exactTerms().equals(exactTerms)) {
+                if (similarity >= config.getThreshold()) {
+                    // 임베딩으로는 같은 질문이지만 에러 코드/API 이름 등이 다르다
+                    exactTermMismatches.increment();
+                }
+                continue;
+            }
+            if (similarity > bestSimilarity) {
+                bestSimilarity = similarity;
+                best = entry;
+            }
+        }
+        lookupNanos.add(System.nanoTime() - start);
+        if (best != null) {
+            recordSimilarity(bestSimilarity);
+        }
+
+        if (best != null && bestSimilarity >= config.getThreshold()) {
+            hits.increment();
+            log.info("[SemanticCache] 적중: scope={}, 유사도 {}", scope, String.format("%.4f", bestSimilarity));
+            return best.results();
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String scope, String stamp, String query, float[] embedding, List<VectorSearchResult> results) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        float[] vector = unit(embedding);
+        if (vector != null) {
+            entries.put(nextId.incrementAndGet(), new Entry(scope, stamp, NgramAnalyzer.wordTerms(query), vector,
+                    List.copyOf(results)));
+        }
+    }
+
+    private void recordSimilarity(double similarity) {
+        for (int i = BUCKETS.length - 1; i >= 0; i--) {
+            if (similarity >= BUCKETS[i]) {
+                buckets[i].increment();
+                return;
+            }
+        }
+        belowBuckets.increment();
+    }
+
+    /**
+     * 길이 1로 정규화한 복사본 (내적 = cosine). 0 벡터면 null.
+     */
+    private static float[] unit(float[] embedding) {
+        if (embedding == null) {
+            return null;
+        }
+        double norm = 0;
+        for (float value : embedding) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        float[] unit = new float[embedding.length];
+        for (int i = 0; i < embedding.length; i++) {
+            unit[i] = embedding[i] * scale;
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 적중률과 가장 가까운 항목의 유사도 분포.
+     * bestSimilarity에서 threshold 바로 아래 구간이 많으면 threshold를 내릴지 검토한다
+     * (그 구간의 검색어 쌍이 정말 같은 질문인지 로그로 확인한 뒤에).
+     */
+    public Map<String, Object> getStats() {
+        long hit = hits.sum();
+        long miss = misses.sum();
+        long total = hit + miss;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("threshold", config.getThreshold());
+        stats.put("entries", entries.estimatedSize());
+        stats.put("hits", hit);
+        stats.put("misses", miss);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hit / total);
+        stats.put("staleEntries", staleEntries.sum());
+        stats.put("exactTermMismatches", exactTermMismatches.sum());
+        stats.put("avgLookupMicros", total == 0 ? 0 : lookupNanos.sum() / total / 1000);
+        Map<String, Long> similarity = new LinkedHashMap<>();
+        similarity.put(String.format("<%.2f", BUCKETS[0]), belowBuckets.sum());
+        for (int i = 0; i < BUCKETS.length; i++) {
+            double upper = i + 1 < BUCKETS.length ? BUCKETS[i + 1] : 1.0;
+            similarity.put(String.format("%.2f-%.2f", BUCKETS[i], upper), buckets[i].sum());
+        }
+        stats.put("bestSimilarity", similarity);
+        return stats;
+    }
+}
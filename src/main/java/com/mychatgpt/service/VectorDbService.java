@@ -1,33 +1,41 @@
 package com.mychatgpt.service;
 
 import com.mychatgpt.ai.EmbeddingService;
-import com.mychatgpt.vectordb.ChromaDbClient;
+import com.mychatgpt.ai.QueryEmbeddingCache;
+import com.mychatgpt.config.IngestConfig;
 import com.mychatgpt.vectordb.VectorSearchResult;
+import com.mychatgpt.vectordb.VectorStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class VectorDbService {
 
-    private final ChromaDbClient chromaDbClient;
+    private final VectorStore vectorStore;
     private final EmbeddingService embeddingService;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final IngestConfig ingestConfig;
+    private final SearchCacheScopes searchCacheScopes;
+    private final SemanticSearchCache semanticSearchCache;
 
     /**
      * Store a document in the vector DB.
      */
-    @CacheEvict(value = "vectorSearch", allEntries = true)
     public String storeDocument(String content, String userId, String source, Map<String, String> extraMetadata) {
         String docId = UUID.randomUUID().toString();
         float[] embedding = embeddingService.getEmbedding(content);
@@ -39,21 +47,125 @@ public class VectorDbService {
             metadata.putAll(extraMetadata);
         }
 
-        chromaDbClient.addDocuments(
+        vectorStore.addDocuments(
                 List.of(docId),
                 List.of(embedding),
                 List.of(content),
                 List.of(metadata)
         );
 
+        searchCacheScopes.userChanged(userId);
+
         log.info("Stored document {} for user {} from source {}", docId, userId, source);
         return docId;
     }
 
+    /**
+     * Store multiple documents (e.g. chunks of one uploaded file) in the vector DB.
+     * All chunks are embedded in batches and written with a single add request.
+     */
+    public List<String> storeDocuments(List<String> contents, String userId, String source,
+                                       Map<String, String> extraMetadata) {
+        if (contents.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> docIds = new ArrayList<>();
+        List<Map<String, String>> metadatas = new ArrayList<>();
+        for (int i = 0; i < contents.size(); i++) {
+            docIds.add(UUID.randomUUID().toString());
+
+            Map<String, String> metadata = new HashMap<>();
+            metadata.put("userId", userId);
+            metadata.put("source", source);
+            if (extraMetadata != null) {
+                metadata.putAll(extraMetadata);
+            }
+            metadatas.add(metadata);
+        }
+
+        List<float[]> embeddings = embeddingService.getEmbeddings(contents);
+        vectorStore.addDocuments(docIds, embeddings, contents, metadatas);
+        searchCacheScopes.userChanged(userId);
+
+        log.info("Stored {} documents for user {} from source {}", docIds.size(), userId, source);
+        return docIds;
+    }
+
+    /**
+     * 청크를 만드는 작업(파일 파싱 + 청킹)이 sink로 넘기는 청크를 받아 저장한다.
+     */
+    @FunctionalInterface
+    public interface ChunkSource {
+        void produce(Consumer<String> sink) throws Exception;
+    }
+
+    /**
+     * 큰 파일처럼 청크가 많은 문서를 만들어지는 대로 ingest.write-batch-size개씩 임베딩해서 저장한다.
+     *
+     * - 파싱이 끝나기를 기다려 모든 청크를 모으지 않으므로 메모리에는 한 배치만 올라간다
+     * - 임베딩 요청은 EmbeddingService가 배치 안에서 다시 묶고, 벡터DB add는 배치마다 한 번
+     * - 검색 캐시(사용자 범위)는 배치마다가 아니라 모두 저장한 뒤 한 번만 무효화한다
+     * - 중간에 실패하면 이미 저장한 청크를 지우고 예외를 던진다 (한 파일의 앞부분만 검색되지 않도록)
+     *
+     * @return 저장한 문서 ID (청크 순서)
+     */
+    public List<String> storeDocumentStream(ChunkSource chunks, String userId, String source,
+                                            Map<String, String> extraMetadata) throws Exception {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("userId", userId);
+        metadata.put("source", source);
+        if (extraMetadata != null) {
+            metadata.putAll(extraMetadata);
+        }
+
+        int batchSize = ingestConfig.getWriteBatchSize();
+        List<String> docIds = new ArrayList<>();
+        List<String> batch = new ArrayList<>(batchSize);
+        try {
+            chunks.produce(chunk -> {
+                batch.add(chunk);
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch, metadata, docIds);
+                }
+            });
+            writeBatch(batch, metadata, docIds);
+        } catch (Exception e) {
+            if (!docIds.isEmpty()) {
+                log.warn("문서 저장 중 실패해서 이미 저장한 {}개 청크를 지웁니다: {}", docIds.size(), source);
+                try {
+                    vectorStore.deleteByIds(docIds);
+                } catch (Exception deleteError) {
+                    log.error("저장한 청크 삭제 실패 ({}개): {}", docIds.size(), deleteError.getMessage());
+                }
+            }
+            throw e;
+        }
+        searchCacheScopes.userChanged(userId);
+
+        log.info("Stored {} documents for user {} from source {}", docIds.size(), userId, source);
+        return docIds;
+    }
+
+    private void writeBatch(List<String> batch, Map<String, String> metadata, List<String> docIds) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(batch.size());
+        List<Map<String, String>> metadatas = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            ids.add(UUID.randomUUID().toString());
+            metadatas.add(new HashMap<>(metadata));
+        }
+        List<float[]> embeddings = embeddingService.getEmbeddings(batch);
+        vectorStore.addDocuments(ids, embeddings, new ArrayList<>(batch), metadatas);
+        docIds.addAll(ids);
+        batch.clear();
+    }
+
     /**
      * Store a conversation turn in the vector DB for context retrieval.
      */
-    @CacheEvict(value = "vectorSearch", allEntries = true)
     public void storeConversation(String sessionId, String userId, String role, String content) {
         String docId = "conv_" + UUID.randomUUID().toString();
         float[] embedding = embeddingService.getEmbedding(content);
@@ -65,24 +177,30 @@ public class VectorDbService {
                 "source", "conversation"
         );
 
-        chromaDbClient.addDocuments(
+        vectorStore.addDocuments(
                 List.of(docId),
                 List.of(embedding),
                 List.of("[" + role + "] " + content),
                 List.of(metadata)
         );
+        searchCacheScopes.userChanged(userId);
     }
 
     /**
      * Search for relevant context from the vector DB (user's personal data only).
      */
     public List<VectorSearchResult> searchRelevantContext(String query, String userId, int nResults) {
+        return searchRelevantContextAsync(query, userId, nResults).block();
+    }
+
+    public Mono<List<VectorSearchResult>> searchRelevantContextAsync(String query, String userId, int nResults) {
         log.info("[VectorSearch] 개인 컨텍스트 검색: query='{}', userId={}, nResults={}", query, userId, nResults);
-        float[] queryEmbedding = embeddingService.getEmbedding(query);
         Map<String, String> filter = Map.of("userId", userId);
-        List<VectorSearchResult> results = chromaDbClient.query(queryEmbedding, nResults, filter);
-        logSearchResults(results);
-        return results;
+        return embedAsync(query)
+                .flatMap(queryEmbedding -> semanticSearchCache.getOrSearch(
+                        "user|" + userId + "|" + nResults, searchCacheScopes.stamp(userId), query, queryEmbedding,
+                        () -> vectorStore.queryAsync(queryEmbedding, nResults, filter)))
+                .doOnNext(this::logSearchResults);
     }
 
     /**
@@ -92,7 +210,7 @@ public class VectorDbService {
     public List<VectorSearchResult> searchByIssueId(String issueId) {
         log.info("[VectorSearch] 이슈 ID 정확 검색: issueId={}", issueId);
         Map<String, String> filter = Map.of("issueId", issueId);
-        List<VectorSearchResult> results = chromaDbClient.getByMetadataFilter(filter, 10);
+        List<VectorSearchResult> results = vectorStore.getByMetadataFilter(filter, 10);
         logSearchResults(results);
         return results;
     }
@@ -107,12 +225,17 @@ public class VectorDbService {
      * @return 검색 결과 리스트
      */
     public List<VectorSearchResult> searchKnowledgeBase(String query, int nResults, String source) {
+        return searchKnowledgeBaseAsync(query, nResults, source).block();
+    }
+
+    public Mono<List<VectorSearchResult>> searchKnowledgeBaseAsync(String query, int nResults, String source) {
         log.info("[VectorSearch] 지식베이스 검색: query='{}', source={}, nResults={}", query, source, nResults);
-        float[] queryEmbedding = embeddingService.getEmbedding(query);
         Map<String, String> filter = source != null ? Map.of("source", source) : null;
-        List<VectorSearchResult> results = chromaDbClient.query(queryEmbedding, nResults, filter);
-        logSearchResults(results);
-        return results;
+        return embedAsync(query)
+                .flatMap(queryEmbedding -> semanticSearchCache.getOrSearch(
+                        "kb|" + source + "|" + nResults, searchCacheScopes.knowledgeBaseStamp(source), query, queryEmbedding,
+                        () -> vectorStore.queryAsync(queryEmbedding, nResults, filter)))
+                .doOnNext(this::logSearchResults);
     }
 
     /**
@@ -123,61 +246,150 @@ public class VectorDbService {
      * @param userId    사용자 ID (사용자 개인 데이터 검색용)
      * @param nResults  각 소스별 반환할 결과 수
      * @return 통합 검색 결과 리스트
+     *
+     * 결과는 vectorSearch 캐시에 남는다. 키에 knowledge base와 그 사용자의 세대 번호가 들어 있어서
+     * 해당 범위에 저장/삭제가 있을 때만 다시 검색한다 (SearchCacheScopes).
      */
-    @Cacheable(value = "vectorSearch", key = "#query + '_' + #userId + '_' + #nResults")
+    @Cacheable(value = SearchCacheScopes.CACHE_NAME, key = "@searchCacheScopes.allSourcesKey(#query, #userId, #nResults)")
     public List<VectorSearchResult> searchAllSources(String query, String userId, int nResults) {
+        return searchAllSourcesAsync(query, userId, nResults).block();
+    }
+
+    /**
+     * searchAllSources의 non-blocking 버전.
+     * knowledge base 쿼리와 사용자 데이터 쿼리는 서로 독립적이므로 동시에 보내고 결과를 합친다.
+     * → 검색 지연이 (q1 + q2)가 아니라 max(q1, q2)가 된다.
+     * 캐시 키는 searchAllSources와 같아서 두 메서드가 캐시된 결과를 같이 쓴다.
+     * 표현만 다른 비슷한 검색어는 SemanticSearchCache가 벡터 검색 없이 돌려준다 (개인 컨텍스트, knowledge base 검색도 같음).
+     */
+    @Cacheable(value = SearchCacheScopes.CACHE_NAME, key = "@searchCacheScopes.allSourcesKey(#query, #userId, #nResults)")
+    public Mono<List<VectorSearchResult>> searchAllSourcesAsync(String query, String userId, int nResults) {
         log.info("[VectorSearch] 전체 소스 검색: query='{}', userId={}, nResults={}", query, userId, nResults);
-        float[] queryEmbedding = embeddingService.getEmbedding(query);
-        List<VectorSearchResult> allResults = new ArrayList<>();
+        return embedAsync(query).flatMap(queryEmbedding -> semanticSearchCache.getOrSearch(
+                "all|" + userId + "|" + nResults,
+                searchCacheScopes.stamp(userId, KnowledgeBaseService.SOURCE_YOUTRACK, KnowledgeBaseService.SOURCE_CONFLUENCE),
+                query, queryEmbedding, () -> queryAllSources(queryEmbedding, userId, nResults)));
+    }
 
+    private Mono<List<VectorSearchResult>> queryAllSources(float[] queryEmbedding, String userId, int nResults) {
         // 1. Search knowledge base (YouTrack + Confluence) - no userId filter
-        List<VectorSearchResult> kbResults = chromaDbClient.query(queryEmbedding, nResults, null);
-        // Filter to only include youtrack and confluence sources
-        kbResults.stream()
-                .filter(r -> r.getMetadata() != null)
-                .filter(r -> {
-                    String src = r.getMetadata().get("source");
-                    return "youtrack".equals(src) || "confluence".equals(src);
-                })
-                .forEach(allResults::add);
+        Mono<List<VectorSearchResult>> kbQuery = vectorStore.queryAsync(queryEmbedding, nResults, null);
 
         // 2. Search user's personal data (userId filter)
-        if (userId != null && !userId.isBlank()) {
-            Map<String, String> userFilter = Map.of("userId", userId);
-            List<VectorSearchResult> userResults = chromaDbClient.query(queryEmbedding, nResults, userFilter);
-            allResults.addAll(userResults);
+        Mono<List<VectorSearchResult>> userQuery = (userId != null && !userId.isBlank())
+                ? vectorStore.queryAsync(queryEmbedding, nResults, Map.of("userId", userId))
+                : Mono.just(List.of());
+
+        return Mono.zip(kbQuery, userQuery).map(tuple -> {
+            List<VectorSearchResult> allResults = new ArrayList<>();
+            // Filter to only include youtrack and confluence sources
+            tuple.getT1().stream()
+                    .filter(r -> r.getMetadata() != null)
+                    .filter(r -> {
+                        String src = r.getMetadata().get("source");
+                        return "youtrack".equals(src) || "confluence".equals(src);
+                    })
+                    .forEach(allResults::add);
+            allResults.addAll(tuple.getT2());
+
+            // Sort by distance (lower is better) and limit total results
+            List<VectorSearchResult> finalResults = allResults.stream()
+                    .sorted(Comparator.comparingDouble(VectorSearchResult::getDistance))
+                    .limit(nResults * 2L)  // Return up to 2x nResults for comprehensive context
+                    .toList();
+
+            log.info("[VectorSearch] 전체 소스 검색 완료: {}건 반환", finalResults.size());
+            logSearchResults(finalResults);
+            return finalResults;
+        });
+    }
+
+    /**
+     * 현재 벡터 저장소 백엔드의 검색 지연을 측정한다.
+     *
+     * 쿼리 임베딩은 측정 전에 한 번만 계산하므로 순수하게 저장소 검색 시간만 잰다.
+     * 같은 코퍼스를 백엔드별(vectordb.backend)로 넣은 뒤 같은 쿼리로 실행하면 백엔드끼리 비교할 수 있다.
+     * topIds(첫 라운드의 결과 ID)를 비교하면 근사 검색(HNSW)의 결과 차이도 확인 가능.
+     *
+     * @param queries  측정할 쿼리 목록
+     * @param nResults 쿼리당 결과 수
+     * @param rounds   쿼리 목록 반복 횟수 (첫 라운드는 워밍업으로 통계에서 제외)
+     * @param source   source 메타데이터 필터 (null이면 필터 없음)
+     */
+    public Map<String, Object> benchmarkSearch(List<String> queries, int nResults, int rounds, String source) {
+        Map<String, String> filter = source != null ? Map.of("source", source) : null;
+        List<float[]> embeddings = embeddingService.getEmbeddings(queries);
+
+        List<Long> latencies = new ArrayList<>();
+        Map<String, List<String>> topIds = new LinkedHashMap<>();
+        for (int round = 0; round < rounds + 1; round++) {
+            for (int i = 0; i < queries.size(); i++) {
+                long start = System.nanoTime();
+                List<VectorSearchResult> results = vectorStore.query(embeddings.get(i), nResults, filter);
+                long elapsed = System.nanoTime() - start;
+                if (round == 0) {
+                    topIds.put(queries.get(i), results.stream().map(VectorSearchResult::getId).toList());
+                } else {
+                    latencies.add(elapsed);
+                }
+            }
+        }
+        latencies.sort(null);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("store", vectorStore.getClass().getSimpleName());
+        result.put("queries", queries.size());
+        result.put("rounds", rounds);
+        result.put("nResults", nResults);
+        result.put("filter", filter);
+        if (!latencies.isEmpty()) {
+            result.put("avgMs", latencies.stream().mapToLong(Long::longValue).average().orElse(0) / 1_000_000.0);
+            result.put("p50Ms", percentile(latencies, 0.50));
+            result.put("p95Ms", percentile(latencies, 0.95));
+            result.put("p99Ms", percentile(latencies, 0.99));
+            result.put("maxMs", latencies.get(latencies.size() - 1) / 1_000_000.0);
         }
+        result.put("topIds", topIds);
+        log.info("[VectorSearch] 벤치마크 완료: store={}, {}회, p50={}ms, p95={}ms", result.get("store"),
+                latencies.size(), result.get("p50Ms"), result.get("p95Ms"));
+        return result;
+    }
 
-        // Sort by distance (lower is better) and limit total results
-        List<VectorSearchResult> finalResults = allResults.stream()
-                .sorted(Comparator.comparingDouble(VectorSearchResult::getDistance))
-                .limit(nResults * 2L)  // Return up to 2x nResults for comprehensive context
-                .toList();
+    private static double percentile(List<Long> sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))) / 1_000_000.0;
+    }
 
-        log.info("[VectorSearch] 전체 소스 검색 완료: {}건 반환", finalResults.size());
-        logSearchResults(finalResults);
-        return finalResults;
+    /**
+     * 검색어 임베딩 (QueryEmbeddingCache). 임베딩 호출은 blocking이므로 boundedElastic 스케줄러에서 실행한다.
+     */
+    private Mono<float[]> embedAsync(String query) {
+        return Mono.fromCallable(() -> queryEmbeddingCache.get(query))
+                .subscribeOn(Schedulers.boundedElastic());
     }
 
     /**
      * Delete documents by IDs.
      */
     public void deleteDocuments(List<String> ids) {
-        chromaDbClient.deleteByIds(ids);
+        vectorStore.deleteByIds(ids);
+        searchCacheScopes.allChanged();
     }
 
     /**
      * Delete all documents for a user.
      */
     public void deleteUserDocuments(String userId) {
-        chromaDbClient.deleteByFilter(Map.of("userId", userId));
+        vectorStore.deleteByFilter(Map.of("userId", userId));
+        searchCacheScopes.userChanged(userId);
     }
 
     /**
      * Delete all conversation data for a session.
      */
     public void deleteSessionVectors(String sessionId) {
-        chromaDbClient.deleteByFilter(Map.of("sessionId", sessionId));
+        vectorStore.deleteByFilter(Map.of("sessionId", sessionId));
+        searchCacheScopes.allChanged();
     }
 
     private void logSearchResults(List<VectorSearchResult> results) {
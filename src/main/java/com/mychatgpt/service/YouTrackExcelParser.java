@@ -2,17 +2,36 @@ package com.mychatgpt.service;
 
 import com.mychatgpt.dto.YouTrackIssueDto;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
- * YouTrack에서 export된 xlsx 파일을 파싱하여 YouTrackIssueDto 리스트로 변환하는 컴포넌트.
+ * YouTrack에서 export된 xlsx 파일을 파싱하여 YouTrackIssueDto로 변환하는 컴포넌트.
  *
  * 왜 Apache POI를 사용하는가 (기존 Tika 대신):
  * - Tika: 파일 전체를 하나의 plain text로 추출. 셀 경계가 사라져서 어떤 값이 "ID"이고
@@ -23,120 +42,460 @@ import java.util.*;
  * 헤더 기반 동적 매핑을 사용하는 이유:
  * - YouTrack export의 컬럼 순서가 변경되더라도 정상 동작
  * - 헤더명으로 매핑하므로 컬럼 인덱스 하드코딩 불필요
+ *
+ * 스트리밍 파싱을 사용하는 이유:
+ * - XSSFWorkbook은 시트 전체를 셀 객체 트리로 메모리에 올린다. 긴 댓글 컬럼이 있는 export는
+ *   파일 크기의 몇 배에서 수십 배의 heap을 쓴다
+ * - 여기서는 XSSFReader로 시트 XML을 직접 열고 행 단위로 읽는다. 이슈는 한 건씩 IssueReader로 꺼내 간다
+ * - 본문/댓글 같은 문자열은 셀이 아니라 공유 문자열 표(sharedStrings.xml)에 들어 있어서, 표를 그대로
+ *   메모리에 올리면 결국 export 전체 텍스트가 heap에 남는다. 표는 임시 파일로 풀어 두고
+ *   문자열마다 파일 offset만 메모리에 둔다 (문자열당 8바이트)
+ * - zip은 파일로 열어서(random access) 압축 해제된 시트 전체를 메모리에 두지 않는다
  */
 @Component
 @Slf4j
 public class YouTrackExcelParser {
 
+    private static final String COLUMN_ID = "ID";
+    private static final String SHARED_STRINGS_CONTENT_TYPE =
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml";
+
+    /**
+     * 서버 디스크의 xlsx 파일을 스트리밍으로 연다.
+     * 업로드된 파일은 IngestJobService가 임시 디렉토리에 옮겨 둔 뒤 이 메서드로 연다.
+     */
+    public IssueReader open(File file) throws IOException {
+        return new IssueReader(file);
+    }
+
     /**
-     * xlsx 파일을 파싱하여 이슈 목록을 반환한다.
-     *
-     * @param file MultipartFile로 업로드된 xlsx 파일
-     * @return 파싱된 이슈 DTO 리스트
-     * @throws IOException 파일 읽기 실패 시
+     * 첫 번째 시트의 데이터 행을 한 건씩 YouTrackIssueDto로 반환하는 iterator.
+     * 반드시 close()해야 한다 (try-with-resources 사용).
      */
-    public List<YouTrackIssueDto> parse(MultipartFile file) throws IOException {
-        try (InputStream is = file.getInputStream();
-             Workbook workbook = new XSSFWorkbook(is)) {
+    public static final class IssueReader implements Iterator<YouTrackIssueDto>, Iterable<YouTrackIssueDto>,
+            Closeable {
+
+        private final OPCPackage pkg;
+        private final SharedStringsFile sharedStrings;
+        private final StylesTable styles;
+        private final InputStream sheetStream;
+        private final XMLStreamReader xml;
+        private final Map<String, Integer> headerMap;
+        private YouTrackIssueDto next;
+        private boolean finished;
+        private int count;
+        private int lastRowNumber;
+        private int estimatedCount = -1;
+
+        private IssueReader(File file) throws IOException {
+            try {
+                this.pkg = OPCPackage.open(file, PackageAccess.READ);
+            } catch (Exception e) {
+                throw new IOException("xlsx 파일을 열 수 없습니다: " + e.getMessage(), e);
+            }
+            try {
+                XSSFReader reader = new XSSFReader(pkg);
+                this.sharedStrings = SharedStringsFile.load(pkg, reader);
+                this.styles = reader.getStylesTable();
+                Iterator<InputStream> sheets = reader.getSheetsData();
+                if (!sheets.hasNext()) {
+                    throw new IllegalArgumentException("xlsx 파일에 시트가 없습니다.");
+                }
+                this.sheetStream = sheets.next();
+                this.xml = XMLHelper.newXMLInputFactory().createXMLStreamReader(sheetStream);
+                this.headerMap = readHeader();
+                validateRequiredHeaders(headerMap);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            } catch (OpenXML4JException | XMLStreamException e) {
+                close();
+                throw new IOException("xlsx 파일 읽기 실패: " + e.getMessage(), e);
+            }
+        }
 
-            Sheet sheet = workbook.getSheetAt(0);
-            Map<String, Integer> headerMap = buildHeaderMap(sheet.getRow(0));
+        /**
+         * 지금까지 반환한 이슈 수.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * 시트의 dimension(예: A1:M2001)으로 추정한 데이터 행 수. 헤더를 제외하며, 시트에 dimension이 없으면 -1.
+         * ID가 빈 행도 포함하므로 실제 이슈 수보다 클 수 있다 (진행률/ETA 표시용).
+         */
+        public int getEstimatedCount() {
+            return estimatedCount;
+        }
 
-            validateRequiredHeaders(headerMap);
+        @Override
+        public Iterator<YouTrackIssueDto> iterator() {
+            return this;
+        }
 
-            List<YouTrackIssueDto> issues = new ArrayList<>();
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                next = readNextIssue();
+                finished = next == null;
+            }
+            return next != null;
+        }
 
-            // 데이터 행은 1번(0-based)부터 시작
-            for (int rowIdx = 1; rowIdx <= sheet.getLastRowNum(); rowIdx++) {
-                Row row = sheet.getRow(rowIdx);
-                if (row == null) continue;
+        @Override
+        public YouTrackIssueDto next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            YouTrackIssueDto issue = next;
+            next = null;
+            count++;
+            return issue;
+        }
 
-                String id = getCellValue(row, headerMap.get("ID"));
-                if (id == null || id.isBlank()) {
-                    log.warn("Row {} 에 ID가 없어 건너뜀", rowIdx + 1);
-                    continue;
+        @Override
+        public void close() {
+            try {
+                if (xml != null) {
+                    xml.close();
+                }
+                if (sheetStream != null) {
+                    sheetStream.close();
                 }
+            } catch (XMLStreamException | IOException e) {
+                log.debug("xlsx 시트 스트림 닫기 실패 (무시): {}", e.getMessage());
+            }
+            if (sharedStrings != null) {
+                sharedStrings.close();
+            }
+            if (pkg != null) {
+                pkg.revert();
+            }
+            if (finished) {
+                log.info("YouTrack xlsx 파싱 완료: {}건", count);
+            }
+        }
 
-                YouTrackIssueDto dto = YouTrackIssueDto.builder()
-                        .id(id.strip())
-                        .title(getCellValue(row, headerMap.get("제목")))
-                        .body(getCellValue(row, headerMap.get("본문")))
-                        .comments(getCellValue(row, headerMap.get("댓글목록")))
-                        .priority(getCellValue(row, headerMap.get("Priority")))
-                        .stage(getCellValue(row, headerMap.get("Stage")))
-                        .requester(getCellValue(row, headerMap.get("업무 요청자")))
-                        .assignee(getCellValue(row, headerMap.get("Assignee")))
-                        .createdDate(getCellValue(row, headerMap.get("생성일")))
-                        .build();
+        /**
+         * 헤더 행(첫 번째 행)을 읽어서 {컬럼명 → 컬럼인덱스} 맵을 생성.
+         * 컬럼 순서가 바뀌어도 이름으로 찾기 때문에 안전하다.
+         */
+        private Map<String, Integer> readHeader() throws XMLStreamException {
+            Row header = readRow();
+            if (header == null || header.number != 1) {
+                throw new IllegalArgumentException("xlsx 파일에 헤더 행이 없습니다.");
+            }
+            Map<String, Integer> map = new LinkedHashMap<>();
+            header.values.forEach((col, value) -> {
+                String headerName = value.strip();
+                if (!headerName.isBlank()) {
+                    map.put(headerName, col);
+                }
+            });
+            log.debug("헤더 매핑: {}", map);
+            return map;
+        }
 
-                issues.add(dto);
+        private YouTrackIssueDto readNextIssue() {
+            try {
+                Row row;
+                while ((row = readRow()) != null) {
+                    String id = row.get(headerMap.get(COLUMN_ID));
+                    if (id == null || id.isBlank()) {
+                        log.warn("Row {} 에 ID가 없어 건너뜀", row.number);
+                        continue;
+                    }
+                    return YouTrackIssueDto.builder()
+                            .id(id.strip())
+                            .title(row.get(headerMap.get("제목")))
+                            .body(row.get(headerMap.get("본문")))
+                            .comments(row.get(headerMap.get("댓글목록")))
+                            .priority(row.get(headerMap.get("Priority")))
+                            .stage(row.get(headerMap.get("Stage")))
+                            .requester(row.get(headerMap.get("업무 요청자")))
+                            .assignee(row.get(headerMap.get("Assignee")))
+                            .createdDate(row.get(headerMap.get("생성일")))
+                            .build();
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException("xlsx 시트 읽기 실패: " + e.getMessage(), e);
             }
+        }
 
-            log.info("YouTrack xlsx 파싱 완료: {}건", issues.size());
-            return issues;
+        /**
+         * 다음 <row> 요소를 읽는다. 시트 데이터가 끝나면 null.
+         */
+        private Row readRow() throws XMLStreamException {
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+                    return readRowBody();
+                }
+                if (event == XMLStreamConstants.START_ELEMENT && "dimension".equals(xml.getLocalName())) {
+                    estimatedCount = parseDimensionRows(xml.getAttributeValue(null, "ref")) - 1;
+                }
+                if (event == XMLStreamConstants.END_ELEMENT && "sheetData".equals(xml.getLocalName())) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private Row readRowBody() throws XMLStreamException {
+            // r 속성은 생략될 수 있다 (생략 시 직전 행 + 1)
+            String r = xml.getAttributeValue(null, "r");
+            lastRowNumber = r != null ? Integer.parseInt(r) : lastRowNumber + 1;
+            Row row = new Row(lastRowNumber);
+            int column = -1;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT && "c".equals(xml.getLocalName())) {
+                    String ref = xml.getAttributeValue(null, "r");
+                    column = ref != null ? columnIndex(ref) : column + 1;
+                    String value = readCell();
+                    if (value != null) {
+                        row.values.put(column, value);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+                    break;
+                }
+            }
+            return row;
+        }
+
+        /**
+         * <c> 요소 하나를 읽어 문자열 값으로 변환한다. 타입별 변환은 기존 XSSFWorkbook 기반 파서와 동일하다.
+         * - s: 공유 문자열 표 조회 / inlineStr: 셀 안의 텍스트 / str: 수식의 문자열 결과
+         * - 숫자: 날짜 서식이면 LocalDateTime, 정수면 소수점 제거
+         */
+        private String readCell() throws XMLStreamException {
+            String type = xml.getAttributeValue(null, "t");
+            String styleIndex = xml.getAttributeValue(null, "s");
+            String value = null;
+            StringBuilder inline = null;
+            boolean formula = false;
+            int phoneticDepth = 0;
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "v" -> value = xml.getElementText();
+                        case "f" -> formula = true;
+                        case "rPh" -> phoneticDepth++;
+                        case "t" -> {
+                            String text = xml.getElementText();
+                            if (phoneticDepth == 0) {
+                                inline = inline == null ? new StringBuilder(text) : inline.append(text);
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if ("rPh".equals(name)) {
+                        phoneticDepth--;
+                    } else if ("c".equals(name)) {
+                        break;
+                    }
+                }
+            }
+
+            if (type == null) {
+                type = "n";
+            }
+            return switch (type) {
+                case "s" -> value == null ? null : sharedStrings.get(Integer.parseInt(value.trim()));
+                case "inlineStr" -> inline == null ? null : inline.toString();
+                case "str" -> value;
+                case "b" -> value == null ? null : String.valueOf("1".equals(value.trim()));
+                case "n" -> value == null || value.isBlank() ? null : numericValue(value, styleIndex, formula);
+                default -> null;
+            };
+        }
+
+        private String numericValue(String raw, String styleIndex, boolean formula) {
+            double val = Double.parseDouble(raw);
+            if (formula) {
+                return String.valueOf(val);
+            }
+            if (styleIndex != null && DateUtil.isValidExcelDate(val)) {
+                XSSFCellStyle style = styles.getStyleAt(Integer.parseInt(styleIndex));
+                if (style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString())) {
+                    return DateUtil.getLocalDateTime(val).toString();
+                }
+            }
+            // 정수인 경우 소수점 제거
+            if (val == Math.floor(val)) {
+                return String.valueOf((long) val);
+            }
+            return String.valueOf(val);
         }
     }
 
     /**
-     * 헤더 행(첫 번째 행)을 읽어서 {컬럼명 → 컬럼인덱스} 맵을 생성.
-     * 컬럼 순서가 바뀌어도 이름으로 찾기 때문에 안전하다.
+     * 공유 문자열 표를 UTF-8로 임시 파일에 풀어 두고 인덱스로 조회한다.
+     * 메모리에는 문자열별 시작 offset만 둔다. 시트는 행 순서대로 읽으므로 조회도 대부분 파일 앞에서 뒤로 진행된다.
      */
-    private Map<String, Integer> buildHeaderMap(Row headerRow) {
-        Map<String, Integer> map = new LinkedHashMap<>();
-        if (headerRow == null) {
-            throw new IllegalArgumentException("xlsx 파일에 헤더 행이 없습니다.");
-        }
-        for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-            Cell cell = headerRow.getCell(i);
-            if (cell != null) {
-                String headerName = cell.getStringCellValue().strip();
-                if (!headerName.isBlank()) {
-                    map.put(headerName, i);
+    private static final class SharedStringsFile implements Closeable {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final long[] offsets;
+        private final int count;
+
+        private SharedStringsFile(Path file, long[] offsets, int count) throws IOException {
+            this.file = file;
+            this.offsets = offsets;
+            this.count = count;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        }
+
+        static SharedStringsFile load(OPCPackage pkg, XSSFReader reader) throws IOException, XMLStreamException {
+            Path file = Files.createTempFile("youtrack-sst-", ".bin");
+            long[] offsets = new long[1024];
+            int count = 0;
+            try {
+                if (!pkg.getPartsByContentType(SHARED_STRINGS_CONTENT_TYPE).isEmpty()) {
+                    try (InputStream in = reader.getSharedStringsData();
+                         OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+                        XMLStreamReader xml = XMLHelper.newXMLInputFactory().createXMLStreamReader(in);
+                        long position = 0;
+                        StringBuilder text = new StringBuilder();
+                        int phoneticDepth = 0;
+                        while (xml.hasNext()) {
+                            int event = xml.next();
+                            if (event == XMLStreamConstants.START_ELEMENT) {
+                                switch (xml.getLocalName()) {
+                                    case "si" -> text.setLength(0);
+                                    case "rPh" -> phoneticDepth++;
+                                    case "t" -> {
+                                        String part = xml.getElementText();
+                                        if (phoneticDepth == 0) {
+                                            text.append(part);
+                                        }
+                                    }
+                                    default -> {
+                                    }
+                                }
+                            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                                String name = xml.getLocalName();
+                                if ("rPh".equals(name)) {
+                                    phoneticDepth--;
+                                } else if ("si".equals(name)) {
+                                    if (count + 1 >= offsets.length) {
+                                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                                    }
+                                    byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+                                    out.write(bytes);
+                                    offsets[count++] = position;
+                                    position += bytes.length;
+                                    offsets[count] = position;
+                                }
+                            }
+                        }
+                        xml.close();
+                    }
                 }
+                return new SharedStringsFile(file, offsets, count);
+            } catch (IOException | XMLStreamException | RuntimeException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            } catch (InvalidFormatException e) {
+                Files.deleteIfExists(file);
+                throw new IOException("공유 문자열 표 읽기 실패: " + e.getMessage(), e);
+            }
+        }
+
+        String get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IllegalArgumentException("공유 문자열 인덱스 범위 초과: " + index);
+            }
+            long start = offsets[index];
+            ByteBuffer buffer = ByteBuffer.allocate((int) (offsets[index + 1] - start));
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        throw new IOException("공유 문자열 파일이 잘렸습니다");
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("공유 문자열 읽기 실패: " + e.getMessage(), e);
+            }
+            return new String(buffer.array(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("공유 문자열 임시 파일 삭제 실패: {}", file);
             }
         }
-        log.debug("헤더 매핑: {}", map);
-        return map;
     }
 
-    private void validateRequiredHeaders(Map<String, Integer> headerMap) {
-        List<String> required = List.of("ID", "제목");
-        List<String> missing = required.stream()
-                .filter(h -> !headerMap.containsKey(h))
-                .toList();
-        if (!missing.isEmpty()) {
-            throw new IllegalArgumentException("필수 컬럼이 누락되었습니다: " + missing);
+    /**
+     * 행 번호와 {컬럼인덱스 → 값}. 값이 없는 셀은 담지 않는다.
+     */
+    private static final class Row {
+        final int number;
+        final Map<Integer, String> values = new HashMap<>();
+
+        Row(int number) {
+            this.number = number;
+        }
+
+        String get(Integer column) {
+            return column == null ? null : values.get(column);
         }
     }
 
     /**
-     * 셀의 값을 String으로 안전하게 추출한다.
-     * 숫자, 날짜, boolean 등 다양한 타입에 대응.
+     * "AB12" 같은 셀 참조에서 0-based 컬럼 인덱스를 구한다.
      */
-    private String getCellValue(Row row, Integer colIndex) {
-        if (colIndex == null) return null;
+    private static int columnIndex(String cellRef) {
+        int column = 0;
+        for (int i = 0; i < cellRef.length(); i++) {
+            char c = cellRef.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
 
-        Cell cell = row.getCell(colIndex);
-        if (cell == null) return null;
+    /**
+     * "A1:M2001" 같은 dimension 참조에서 마지막 행 번호를 구한다. 알 수 없으면 0.
+     */
+    private static int parseDimensionRows(String ref) {
+        if (ref == null) {
+            return 0;
+        }
+        String last = ref.substring(ref.indexOf(':') + 1);
+        int digits = 0;
+        while (digits < last.length() && !Character.isDigit(last.charAt(digits))) {
+            digits++;
+        }
+        try {
+            return Integer.parseInt(last.substring(digits));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue();
-            case NUMERIC -> {
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    yield cell.getLocalDateTimeCellValue().toString();
-                }
-                // 정수인 경우 소수점 제거
-                double val = cell.getNumericCellValue();
-                if (val == Math.floor(val)) {
-                    yield String.valueOf((long) val);
-                }
-                yield String.valueOf(val);
-            }
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            case FORMULA -> cell.getCachedFormulaResultType() == CellType.STRING
-                    ? cell.getStringCellValue()
-                    : String.valueOf(cell.getNumericCellValue());
-            default -> null;
-        };
+    private static void validateRequiredHeaders(Map<String, Integer> headerMap) {
+        List<String> required = List.of(COLUMN_ID, "제목");
+        List<String> missing = required.stream()
+                .filter(h -> !headerMap.containsKey(h))
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("필수 컬럼이 누락되었습니다: " + missing);
+        }
     }
 }
@@ -0,0 +1,428 @@
+package com.mychatgpt.text;
+
+import com.mychatgpt.config.ChunkingConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 벡터DB에 넣을 텍스트를 임베딩 모델 토큰 기준으로 청크로 나눈다.
+ *
+ * 기존에는 YouTrack, Confluence, 파일 업로드가 각자 1000자 창을 200자씩 겹쳐 잘랐다.
+ * 글자 수로 자르면 문장과 어절 중간이 끊기고, 한국어/영어 비율에 따라 토큰 수가 제각각이며,
+ * 20%씩 겹치는 만큼 청크(임베딩 호출, 저장 벡터)가 늘어난다.
+ *
+ * 여기서는
+ * - 본문을 문장 단위로 나눈다 (줄바꿈, 또는 . ! ? 뒤에 공백이 오는 곳)
+ * - 문장을 순서대로 maxTokens까지 채워 청크 하나를 만든다. 헤더는 매 청크 앞에 붙고 예산에서 뺀다
+ * - 다음 청크는 이전 청크의 마지막 문장들을 overlapTokens 이내로 다시 포함해서 시작한다
+ * - 한 문장이 예산보다 길면 어절(공백) 단위로, 어절 하나가 예산보다 길면(URL, base64 등) 글자 단위로 자른다
+ *
+ * 토큰 수는 bge-m3 tokenizer.json이 있으면 그 어휘로 세고, 없으면 EstimatingTokenCounter로 추정한다.
+ */
+@Component
+@Slf4j
+public class Chunker {
+
+    /** 청크마다 붙는 <s>, </s> */
+    private static final int SPECIAL_TOKENS = 2;
+
+    private final TokenCounter counter;
+    private final int maxTokens;
+    private final int overlapTokens;
+
+    public Chunker(ChunkingConfig config) {
+        this(loadCounter(config.getTokenizerPath()), config.getMaxTokens(), config.getOverlapTokens());
+    }
+
+    public Chunker(TokenCounter counter, int maxTokens, int overlapTokens) {
+        if (maxTokens <= SPECIAL_TOKENS || overlapTokens < 0 || overlapTokens >= maxTokens) {
+            throw new IllegalArgumentException("청크 토큰 설정이 잘못되었습니다: maxTokens=" + maxTokens
+                    + ", overlapTokens=" + overlapTokens);
+        }
+        this.counter = counter;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+    }
+
+    private static TokenCounter loadCounter(String tokenizerPath) {
+        if (tokenizerPath == null || tokenizerPath.isBlank() || !Files.isRegularFile(Path.of(tokenizerPath))) {
+            log.warn("tokenizer.json이 없어 토큰 수를 추정치로 계산합니다: {}", tokenizerPath);
+            return EstimatingTokenCounter.INSTANCE;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            UnigramTokenizer tokenizer = UnigramTokenizer.load(Path.of(tokenizerPath));
+            log.info("토크나이저 로드 완료: {} (어휘 {}개, {}ms)",
+                    tokenizerPath, tokenizer.getVocabSize(), System.currentTimeMillis() - start);
+            return tokenizer;
+        } catch (Exception e) {
+            log.warn("토크나이저 로드 실패, 추정치로 계산합니다: {} ({})", tokenizerPath, e.getMessage());
+            return EstimatingTokenCounter.INSTANCE;
+        }
+    }
+
+    public TokenCounter getCounter() {
+        return counter;
+    }
+
+    /**
+     * 헤더 없이 본문만 나눈다.
+     */
+    public List<String> chunk(String text) {
+        return chunk("", text);
+    }
+
+    /**
+     * body를 청크로 나누고 각 청크 앞에 header를 붙인다.
+     * body가 비어 있으면 header만 담은 청크 하나를 반환한다 (둘 다 비어 있으면 빈 리스트).
+     */
+    public List<String> chunk(String header, String body) {
+        String head = header == null ? "" : header;
+        if (body == null || body.isBlank()) {
+            return head.isBlank() ? List.of() : List.of(head);
+        }
+
+        // 제목이 아주 긴 경우에도 본문이 들어갈 자리는 남긴다
+        int budget = Math.max(maxTokens - SPECIAL_TOKENS - counter.count(head), maxTokens / 4);
+        List<Segment> segments = split(body, budget);
+        int total = segments.stream().mapToInt(Segment::tokens).sum();
+        if (total <= budget) {
+            return List.of(head + body);
+        }
+
+        List<String> chunks = new ArrayList<>();
+        for (Span span : pack(segments, budget)) {
+            chunks.add(head + body.substring(segments.get(span.first()).start(), segments.get(span.last()).end()).strip());
+        }
+        return chunks;
+    }
+
+    /**
+     * 텍스트를 조각조각 받아서 청크가 확정되는 대로 sink에 넘기는 Session을 연다 (헤더 없음, 파일 업로드).
+     */
+    public Session open(Consumer<String> sink) {
+        return new Session(sink);
+    }
+
+    /**
+     * 파서가 내보내는 텍스트를 전부 모으지 않고 청크로 나누는 세션.
+     *
+     * 받은 텍스트가 flushChars(maxTokens × 8 글자)만큼 쌓이면 뒤에 올 텍스트와 상관없이 문장 구간이 정해지는 곳
+     * (마지막 줄 또는 문장의 시작)까지 나눠서 마지막 청크를 뺀 나머지를 sink로 넘긴다.
+     * 마지막 청크의 문장 구간은 다시 나누지 않고 그대로 두었다가 다음 텍스트의 문장 구간과 이어서 채운다.
+     * 그래서 문장 구간과 청크 경계가 전체 텍스트를 한 번에 chunk(text)한 것과 같다.
+     *
+     * 줄바꿈도 문장 끝도 없이 flushChars의 4배를 넘으면 (메모리 상한) 예산보다 긴 그 문장을 어절 단위로 나눈 구간 중
+     * 마지막 것만 남기고 확정한다. 남긴 곳부터는 chunk(text)가 그 문장을 나누던 방식(어절 단위)을 이어서 쓴다.
+     *
+     * 한 스레드에서만 쓴다. 마지막에 반드시 finish()를 호출해야 남은 청크가 넘어간다.
+     */
+    public final class Session {
+
+        /** 이만큼 쌓일 때마다 확정된 청크를 내보낸다 */
+        private final int flushChars = maxTokens * 8;
+        private final int budget = maxTokens - SPECIAL_TOKENS;
+
+        private final Consumer<String> sink;
+        private final StringBuilder buffer = new StringBuilder();
+        /** buffer[0, splitEnd)의 문장 구간 중 아직 넘기지 않은 마지막 청크의 것들 */
+        private final List<Segment> segments = new ArrayList<>();
+        private int splitEnd;
+        /** splitEnd가 예산보다 긴 문장의 중간(어절 시작)인지 */
+        private boolean midSentence;
+        private int flushAt = flushChars;
+        private int chunks;
+
+        private Session(Consumer<String> sink) {
+            this.sink = sink;
+        }
+
+        public void append(String text) {
+            buffer.append(text);
+            if (buffer.length() >= flushAt) {
+                drain();
+            }
+        }
+
+        /**
+         * 남은 텍스트를 모두 청크로 넘긴다.
+         *
+         * @return 지금까지 sink로 넘긴 청크 수
+         */
+        public int finish() {
+            String text = buffer.toString();
+            if (chunks == 0) {
+                // 아직 앞부분을 지우지 않았으므로 buffer가 전체 텍스트다
+                for (String chunk : chunk(text)) {
+                    sink.accept(chunk);
+                    chunks++;
+                }
+            } else {
+                split(text, splitEnd, text.length(), budget, midSentence, segments);
+                for (Span span : pack(segments, budget)) {
+                    emit(text, span);
+                }
+            }
+            buffer.setLength(0);
+            segments.clear();
+            splitEnd = 0;
+            midSentence = false;
+            return chunks;
+        }
+
+        private void drain() {
+            String text = buffer.toString();
+            Cut cut = cutPoint(text);
+            if (cut != null) {
+                int from = segments.size();
+                split(text, splitEnd, cut.position(), budget, midSentence, segments);
+                int end = cut.position();
+                if (cut.midSentence()) {
+                    // 문장 중간에서 잘랐으므로 마지막 어절 구간은 뒤에 올 어절과 합쳐질 수 있다. 거기부터 다음에 다시 나눈다
+                    int last = segments.size() - 1;
+                    while (last >= from && !isWordStart(text, segments.get(last).start())) {
+                        last--;
+                    }
+                    end = last >= from ? segments.get(last).start() : splitEnd;
+                    segments.subList(Math.max(last, from), segments.size()).clear();
+                }
+                if (end > splitEnd) {
+                    splitEnd = end;
+                    midSentence = cut.midSentence();
+                    emitCompleteChunks(text);
+                }
+            }
+            flushAt = buffer.length() + flushChars;
+        }
+
+        /**
+         * 마지막 청크를 뺀 청크를 넘기고, 마지막 청크가 시작하는 곳 앞의 텍스트와 문장 구간을 버린다.
+         */
+        private void emitCompleteChunks(String text) {
+            List<Span> spans = pack(segments, budget);
+            if (spans.size() <= 1) {
+                return;
+            }
+            for (Span span : spans.subList(0, spans.size() - 1)) {
+                emit(text, span);
+            }
+            int keep = spans.get(spans.size() - 1).first();
+            int offset = segments.get(keep).start();
+            segments.subList(0, keep).clear();
+            segments.replaceAll(segment -> new Segment(segment.start() - offset, segment.end() - offset,
+                    segment.tokens()));
+            buffer.delete(0, offset);
+            splitEnd -= offset;
+        }
+
+        private void emit(String text, Span span) {
+            sink.accept(text.substring(segments.get(span.first()).start(), segments.get(span.last()).end()).strip());
+            chunks++;
+        }
+
+        /**
+         * splitEnd 뒤에서 마지막으로 줄 또는 문장이 시작하는 위치. 그 앞은 더 받을 텍스트와 상관없이 문장 구간이 정해진다.
+         * 없는데 splitEnd 뒤가 flushChars의 4배를 넘고 그 문장이 예산보다 길면 마지막 어절의 시작 위치, 그것도 아니면 null.
+         */
+        private Cut cutPoint(String text) {
+            int wordStart = 0;
+            for (int i = text.length() - 1; i > splitEnd; i--) {
+                if (!isWordStart(text, i)) {
+                    continue;
+                }
+                int j = i - 1;
+                while (j >= splitEnd && isSpace(text.charAt(j)) && text.charAt(j) != '\n') {
+                    j--;
+                }
+                if (j >= splitEnd && (text.charAt(j) == '\n' || isSentenceEnd(text.charAt(j)))) {
+                    return new Cut(i, false);
+                }
+                if (wordStart == 0) {
+                    wordStart = i;
+                }
+            }
+            if (wordStart == 0 || text.length() - splitEnd < flushChars * 4) {
+                return null;
+            }
+            // 예산 안에 드는 문장은 나누지 않고 한 구간이 되므로 중간에서 자를 수 없다
+            if (!midSentence && counter.count(text.substring(splitEnd, wordStart)) <= budget) {
+                return null;
+            }
+            return new Cut(wordStart, true);
+        }
+    }
+
+    /**
+     * Session이 문장 구간을 확정하는 위치. midSentence면 예산보다 긴 문장의 어절 시작이다.
+     */
+    private record Cut(int position, boolean midSentence) {
+    }
+
+    /**
+     * 청크 하나가 되는 segments[first, last] 구간.
+     */
+    private record Span(int first, int last) {
+    }
+
+    /**
+     * 문장 구간을 순서대로 budget까지 채워 청크 구간을 만든다.
+     * 다음 청크는 이전 청크의 끝 문장들을 overlapTokens 이내로 다시 포함해서 시작한다.
+     */
+    private List<Span> pack(List<Segment> segments, int budget) {
+        List<Span> spans = new ArrayList<>();
+        int first = 0;
+        while (first < segments.size()) {
+            int last = first;
+            int tokens = segments.get(first).tokens();
+            while (last + 1 < segments.size() && tokens + segments.get(last + 1).tokens() <= budget) {
+                last++;
+                tokens += segments.get(last).tokens();
+            }
+            spans.add(new Span(first, last));
+            if (last + 1 >= segments.size()) {
+                break;
+            }
+
+            // 다음 청크는 이번 청크의 끝 문장들부터. 최소 한 문장은 앞으로 나아가야 한다
+            int next = last + 1;
+            int overlap = 0;
+            while (next - 1 > first && overlap + segments.get(next - 1).tokens() <= overlapTokens) {
+                next--;
+                overlap += segments.get(next).tokens();
+            }
+            first = next;
+        }
+        return spans;
+    }
+
+    /**
+     * text[start, end)와 그 토큰 수. 구간 끝의 공백은 구간에 포함된다.
+     */
+    private record Segment(int start, int end, int tokens) {
+    }
+
+    /**
+     * 본문을 이어 붙이면 원문이 되는 문장 구간들로 나눈다. 각 구간은 budget 토큰 이하다.
+     */
+    private List<Segment> split(String text, int budget) {
+        List<Segment> segments = new ArrayList<>();
+        split(text, 0, text.length(), budget, false, segments);
+        return segments;
+    }
+
+    /**
+     * text[from, to)를 문장 구간으로 나눠 segments에 더한다.
+     *
+     * @param midSentence from이 예산보다 긴 문장의 어절 시작이면 true. 첫 문장은 어절 단위로 나눈다
+     */
+    private void split(String text, int from, int to, int budget, boolean midSentence, List<Segment> segments) {
+        int start = from;
+        int i = from;
+        boolean whole = !midSentence;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (c == '\n' || (isSentenceEnd(c) && (i + 1 == to || isSpace(text.charAt(i + 1))))) {
+                int end = Math.min(skipSpaces(text, i + 1), to);
+                addSentence(text, start, end, budget, whole, segments);
+                whole = true;
+                start = end;
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        if (start < to) {
+            addSentence(text, start, to, budget, whole, segments);
+        }
+    }
+
+    /**
+     * @param whole false면 text[start, end)는 예산보다 긴 문장의 뒷부분이라 길이와 상관없이 어절 단위로 나눈다
+     */
+    private void addSentence(String text, int start, int end, int budget, boolean whole, List<Segment> segments) {
+        if (whole) {
+            int tokens = counter.count(text.substring(start, end));
+            if (tokens <= budget) {
+                segments.add(new Segment(start, end, tokens));
+                return;
+            }
+        }
+
+        // 예산보다 긴 문장: 어절 단위로 예산까지 채운다
+        int pieceStart = start;
+        int pieceTokens = 0;
+        int i = start;
+        while (i < end) {
+            int wordEnd = i;
+            while (wordEnd < end && !isSpace(text.charAt(wordEnd))) {
+                wordEnd++;
+            }
+            wordEnd = Math.min(skipSpaces(text, wordEnd), end);
+            int wordTokens = counter.count(text.substring(i, wordEnd));
+
+            if (wordTokens > budget) {
+                if (i > pieceStart) {
+                    segments.add(new Segment(pieceStart, i, pieceTokens));
+                }
+                splitWord(text, i, wordEnd, budget, segments);
+                pieceStart = wordEnd;
+                pieceTokens = 0;
+            } else if (pieceTokens + wordTokens > budget) {
+                segments.add(new Segment(pieceStart, i, pieceTokens));
+                pieceStart = i;
+                pieceTokens = wordTokens;
+            } else {
+                pieceTokens += wordTokens;
+            }
+            i = wordEnd;
+        }
+        if (pieceStart < end) {
+            segments.add(new Segment(pieceStart, end, pieceTokens));
+        }
+    }
+
+    /**
+     * 공백 없이 예산을 넘는 어절은 budget 글자씩 자른다.
+     * 어떤 토큰도 글자 하나보다 짧지 않으므로 budget 글자는 budget 토큰을 넘지 않는다.
+     */
+    private void splitWord(String text, int start, int end, int budget, List<Segment> segments) {
+        int i = start;
+        while (i < end) {
+            int pieceEnd = Math.min(i + budget, end);
+            if (pieceEnd < end && Character.isHighSurrogate(text.charAt(pieceEnd - 1))) {
+                pieceEnd--;
+            }
+            segments.add(new Segment(i, pieceEnd, counter.count(text.substring(i, pieceEnd))));
+            i = pieceEnd;
+        }
+    }
+
+    private static int skipSpaces(String text, int from) {
+        int i = from;
+        while (i < text.length() && isSpace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * pos가 어절의 첫 글자인지 (공백이 아니고 앞 글자가 공백).
+     */
+    private static boolean isWordStart(String text, int pos) {
+        return !isSpace(text.charAt(pos)) && (pos == 0 || isSpace(text.charAt(pos - 1)));
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '。' || c == '…' || c == '！' || c == '？';
+    }
+
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || c == '\u00A0';
+    }
+}
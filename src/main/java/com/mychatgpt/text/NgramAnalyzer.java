@@ -0,0 +1,124 @@
+package com.mychatgpt.text;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * 키워드 검색(Bm25Index)용 색인어 추출기.
+ *
+ * 한국어는 조사/어미가 붙어 어절이 그대로 일치하는 경우가 드물어서 ("로그인이", "로그인을")
+ * 형태소 분석기 없이 음절 bigram으로 색인한다. "로그인이" → 로그, 그인, 인이 이므로
+ * "로그인" 검색(로그, 그인)과 겹친다.
+ *
+ * - 한글/한자/가나: 이어진 글자를 2글자씩 겹쳐 자른다 (한 글자뿐이면 그 글자 하나)
+ * - 영문/숫자: 단어 하나가 색인어 하나 (소문자로). API 이름, 고객사 이름이 정확히 일치해야 찾히도록 자르지 않는다
+ * - '-', '_', '.', '/'로 이어진 영문/숫자("PATALK-123", "ERR_TIMEOUT", "v2.3.1")는 조각과 함께 이어진 전체도 색인한다
+ * - MAX_WORD_LENGTH보다 긴 영문/숫자(base64, 해시 등)는 색인하지 않는다
+ *
+ * 상태가 없어서 여러 스레드에서 같이 써도 된다.
+ */
+public final class NgramAnalyzer {
+
+    static final int MAX_WORD_LENGTH = 40;
+
+    private NgramAnalyzer() {
+    }
+
+    /**
+     * text의 색인어를 나온 순서대로 consumer에 넘긴다 (같은 색인어가 여러 번 나올 수 있음).
+     */
+    public static void analyze(String text, Consumer<String> consumer) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isSyllable(c)) {
+                int end = i + 1;
+                while (end < length && isSyllable(text.charAt(end))) {
+                    end++;
+                }
+                if (end - i == 1) {
+                    consumer.accept(String.valueOf(c));
+                } else {
+                    for (int j = i; j + 1 < end; j++) {
+                        consumer.accept(text.substring(j, j + 2));
+                    }
+                }
+                i = end;
+            } else if (isWordChar(c)) {
+                i = analyzeWord(text, i, consumer);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * text의 영문/숫자 색인어(에러 코드, API 이름, 버전 등 글자 그대로 일치해야 하는 것)만 모은다.
+     */
+    public static Set<String> wordTerms(String text) {
+        Set<String> terms = new TreeSet<>();
+        analyze(text, term -> {
+            if (isWordChar(term.charAt(0))) {
+                terms.add(term);
+            }
+        });
+        return terms;
+    }
+
+    /**
+     * start부터 이어진 영문/숫자 단어(와 연결 기호로 이어진 복합어)를 색인한다.
+     *
+     * @return 처리한 다음 위치
+     */
+    private static int analyzeWord(String text, int start, Consumer<String> consumer) {
+        int length = text.length();
+        int parts = 0;
+        int i = start;
+        int compoundEnd = start;
+        while (true) {
+            int end = i;
+            while (end < length && isWordChar(text.charAt(end))) {
+                end++;
+            }
+            emitWord(text, i, end, consumer);
+            parts++;
+            compoundEnd = end;
+            // 연결 기호 다음에 다시 영문/숫자가 오면 같은 복합어로 이어서 읽는다
+            if (end + 1 < length && isJoiner(text.charAt(end)) && isWordChar(text.charAt(end + 1))) {
+                i = end + 1;
+            } else {
+                break;
+            }
+        }
+        if (parts > 1) {
+            emitWord(text, start, compoundEnd, consumer);
+        }
+        return compoundEnd;
+    }
+
+    private static void emitWord(String text, int start, int end, Consumer<String> consumer) {
+        if (end - start <= MAX_WORD_LENGTH) {
+            consumer.accept(text.substring(start, end).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static boolean isSyllable(char c) {
+        return (c >= '가' && c <= '힣')
+                || (c >= '一' && c <= '鿿')
+                || (c >= '぀' && c <= 'ヿ');
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isJoiner(char c) {
+        return c == '-' || c == '_' || c == '.' || c == '/';
+    }
+}
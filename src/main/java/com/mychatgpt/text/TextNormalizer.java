@@ -0,0 +1,164 @@
+package com.mychatgpt.text;
+
+/**
+ * 파서들이 추출한 텍스트를 벡터DB에 넣기 전에 정리하는 정규화기.
+ *
+ * 규칙을 String.replaceAll로 하나씩 적용하면 규칙마다 정규식을 컴파일하고 문서 전체를 다시 복사한다.
+ * 여기서는 입력을 한 번만 훑으면서 모든 규칙을 적용하고 결과를 StringBuilder 하나에 쓴다.
+ *
+ * 규칙:
+ * - 공백 정리: 연속 공백을 하나로. keepLineBreaks면 줄바꿈은 남기되 빈 줄이 여러 개면 하나로
+ *   (문단 경계를 청킹에서 쓸 수 있도록), 아니면 줄바꿈도 공백 하나로. 앞뒤 공백은 제거
+ * - 빈 괄호 제거: "( )", "[]" 처럼 안이 공백뿐인 괄호
+ * - 구분선 정리: -, =, _ 가 3개 이상 이어지면 "---". keepLineBreaks면 그 줄 전체가 구분선일 때만
+ *   ("a === b", "FOO___BAR", "<!-----" 같은 코드/식별자 안의 연속 기호는 그대로 둔다)
+ * - Confluence 푸터 제거: "Document generated by Confluence"부터 그 줄 끝까지
+ *
+ * 인스턴스는 불변이라 여러 스레드에서 같이 써도 된다.
+ */
+public final class TextNormalizer {
+
+    /** Confluence export 본문. Jsoup text()가 이미 한 줄로 만든 텍스트에 기존 정제 규칙을 모두 적용 */
+    public static final TextNormalizer CONFLUENCE = new TextNormalizer(false, true, true, true);
+
+    /**
+     * Tika로 추출한 파일, YouTrack 본문/댓글. 줄 구조를 살리고,
+     * "getUser()" 같은 코드 표기가 깨지지 않도록 빈 괄호는 남긴다.
+     */
+    public static final TextNormalizer PLAIN = new TextNormalizer(true, false, true, false);
+
+    private static final String CONFLUENCE_FOOTER = "Document generated by Confluence";
+    private static final int MIN_RULE_LENGTH = 3;
+
+    private final boolean keepLineBreaks;
+    private final boolean stripEmptyBrackets;
+    private final boolean collapseRules;
+    private final boolean stripConfluenceFooter;
+
+    private TextNormalizer(boolean keepLineBreaks, boolean stripEmptyBrackets, boolean collapseRules,
+                           boolean stripConfluenceFooter) {
+        this.keepLineBreaks = keepLineBreaks;
+        this.stripEmptyBrackets = stripEmptyBrackets;
+        this.collapseRules = collapseRules;
+        this.stripConfluenceFooter = stripConfluenceFooter;
+    }
+
+    /**
+     * @return 정리된 텍스트. null이면 null
+     */
+    public String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        int length = text.length();
+        StringBuilder out = new StringBuilder(length);
+        // 공백은 바로 쓰지 않고 다음 글자가 나올 때 한 번에 쓴다 (연속 공백 정리 + 앞뒤 공백 제거)
+        boolean pendingSpace = false;
+        int pendingLineBreaks = 0;
+
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+
+            if (isSpace(c)) {
+                if (c == '\n' && keepLineBreaks) {
+                    pendingLineBreaks++;
+                } else if (c != '\r' || !keepLineBreaks) {
+                    pendingSpace = true;
+                }
+                i++;
+                continue;
+            }
+
+            if (stripEmptyBrackets && (c == '(' || c == '[')) {
+                int end = emptyBracketEnd(text, i, c == '(' ? ')' : ']');
+                if (end > 0) {
+                    // 괄호 안의 줄바꿈도 괄호와 함께 사라지고, 양옆 공백은 하나로 합쳐진다
+                    pendingSpace = true;
+                    i = end;
+                    continue;
+                }
+            }
+
+            if (stripConfluenceFooter && c == 'D' && text.startsWith(CONFLUENCE_FOOTER, i)) {
+                i = lineEnd(text, i);
+                continue;
+            }
+
+            if (out.length() > 0) {
+                if (pendingLineBreaks > 0) {
+                    out.append(pendingLineBreaks > 1 ? "\n\n" : "\n");
+                } else if (pendingSpace) {
+                    out.append(' ');
+                }
+            }
+            pendingSpace = false;
+            pendingLineBreaks = 0;
+
+            if (collapseRules && isRuleChar(c)) {
+                int end = i + 1;
+                while (end < length && isRuleChar(text.charAt(end))) {
+                    end++;
+                }
+                if (end - i >= MIN_RULE_LENGTH && (!keepLineBreaks || isWholeLine(text, out, end))) {
+                    out.append("---");
+                } else {
+                    out.append(text, i, end);
+                }
+                i = end;
+                continue;
+            }
+
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+
+    /**
+     * open 위치의 괄호가 공백만 감싸고 있으면 닫는 괄호 다음 위치, 아니면 -1.
+     */
+    private static int emptyBracketEnd(String text, int open, char close) {
+        int j = open + 1;
+        while (j < text.length() && isSpace(text.charAt(j))) {
+            j++;
+        }
+        return j < text.length() && text.charAt(j) == close ? j + 1 : -1;
+    }
+
+    /**
+     * 지금 쓰는 구분선이 줄 전체인지 (앞뒤에 공백 말고 다른 글자가 없는지).
+     *
+     * @param end 구분선 다음 위치
+     */
+    private static boolean isWholeLine(String text, StringBuilder out, int end) {
+        if (out.length() > 0 && out.charAt(out.length() - 1) != '\n') {
+            return false;
+        }
+        for (int j = end; j < text.length() && text.charAt(j) != '\n'; j++) {
+            if (!isSpace(text.charAt(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * from이 속한 줄의 끝(줄바꿈 위치, 없으면 텍스트 끝).
+     */
+    private static int lineEnd(String text, int from) {
+        int newline = text.indexOf('\n', from);
+        return newline < 0 ? text.length() : newline;
+    }
+
+    /**
+     * Jsoup은 nbsp 엔티티를 U+00A0으로 남기는데 Character.isWhitespace는 이를 공백으로 보지 않는다.
+     */
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || c == '\u00A0';
+    }
+
+    private static boolean isRuleChar(char c) {
+        return c == '-' || c == '=' || c == '_';
+    }
+}
@@ -0,0 +1,12 @@
+package com.mychatgpt.text;
+
+/**
+ * 임베딩 모델 기준 토큰 수를 센다.
+ *
+ * 반환값에는 <s>, </s> 같은 특수 토큰이 들어가지 않는다 (청커가 청크당 한 번만 더한다).
+ * 구현체는 여러 스레드에서 같이 써도 되어야 한다.
+ */
+public interface TokenCounter {
+
+    int count(String text);
+}
@@ -0,0 +1,177 @@
+package com.mychatgpt.text;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HuggingFace tokenizer.json의 Unigram 모델(bge-m3, XLM-R)로 토큰 수를 센다.
+ *
+ * 토큰 id는 필요 없으므로 토큰화 과정 중 개수에 영향을 주는 부분만 구현한다.
+ * - 정규화: NFKC (XLM-R의 precompiled charsmap은 NFKC 기반)
+ * - 사전 분할: Metaspace. 공백 단위로 나누고 각 단어 앞에 ▁를 붙인다
+ * - 모델: 단어마다 조각 점수 합이 최대인 분할을 Viterbi로 찾는다. 어휘에 없는 글자는 unk 한 개
+ *
+ * 같은 단어가 반복해서 나오므로 단어별 토큰 수를 캐시한다.
+ */
+public final class UnigramTokenizer implements TokenCounter {
+
+    private static final char METASPACE = '▁';
+    private static final double UNK_PENALTY = 10.0;
+    private static final int WORD_CACHE_SIZE = 100_000;
+
+    private final Map<String, Float> scores;
+    private final int maxPieceLength;
+    private final double unkScore;
+    private final Cache<String, Integer> wordCache = Caffeine.newBuilder()
+            .maximumSize(WORD_CACHE_SIZE)
+            .build();
+
+    private UnigramTokenizer(Map<String, Float> scores, int maxPieceLength, double unkScore) {
+        this.scores = scores;
+        this.maxPieceLength = maxPieceLength;
+        this.unkScore = unkScore;
+    }
+
+    /**
+     * tokenizer.json을 읽는다. 어휘(25만 개)만 스트리밍으로 읽고 나머지 항목은 건너뛴다.
+     *
+     * @throws IllegalArgumentException model.type이 Unigram이 아니거나 어휘가 없는 경우
+     */
+    public static UnigramTokenizer load(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path);
+             JsonParser parser = new JsonFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("tokenizer.json 형식이 아닙니다: " + path);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("model".equals(field)) {
+                    return readModel(parser, path);
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new IllegalArgumentException("tokenizer.json에 model 항목이 없습니다: " + path);
+    }
+
+    private static UnigramTokenizer readModel(JsonParser parser, Path path) throws IOException {
+        String type = null;
+        Map<String, Float> scores = new HashMap<>();
+        int maxPieceLength = 1;
+        float minScore = 0f;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("type".equals(field)) {
+                type = parser.getText();
+            } else if ("vocab".equals(field) && value == JsonToken.START_ARRAY) {
+                // [["<s>", 0.0], ["▁", -3.4], ...]
+                while (parser.nextToken() == JsonToken.START_ARRAY) {
+                    parser.nextToken();
+                    String piece = parser.getText();
+                    parser.nextToken();
+                    float score = parser.getFloatValue();
+                    parser.nextToken();
+                    scores.put(piece, score);
+                    maxPieceLength = Math.max(maxPieceLength, piece.length());
+                    minScore = Math.min(minScore, score);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (!"Unigram".equals(type) || scores.isEmpty()) {
+            throw new IllegalArgumentException("Unigram 모델 어휘를 찾지 못했습니다 (type=" + type + "): " + path);
+        }
+        return new UnigramTokenizer(scores, maxPieceLength, minScore - UNK_PENALTY);
+    }
+
+    public int getVocabSize() {
+        return scores.size();
+    }
+
+    @Override
+    public int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        int length = normalized.length();
+        int tokens = 0;
+        int i = 0;
+        while (i < length) {
+            while (i < length && isSpace(normalized.charAt(i))) {
+                i++;
+            }
+            int end = i;
+            while (end < length && !isSpace(normalized.charAt(end))) {
+                end++;
+            }
+            if (end > i) {
+                String word = normalized.substring(i, end);
+                tokens += wordCache.get(word, this::countWord);
+            }
+            i = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * "▁" + word를 점수 합이 최대가 되도록 나눴을 때의 조각 수.
+     */
+    private int countWord(String word) {
+        String piece = METASPACE + word;
+        int n = piece.length();
+        double[] best = new double[n + 1];
+        int[] pieces = new int[n + 1];
+        Arrays.fill(best, Double.NEGATIVE_INFINITY);
+        best[0] = 0.0;
+
+        for (int start = 0; start < n; start++) {
+            if (best[start] == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            boolean singleCharFound = false;
+            int maxEnd = Math.min(n, start + maxPieceLength);
+            for (int end = start + 1; end <= maxEnd; end++) {
+                Float score = scores.get(piece.substring(start, end));
+                if (score == null) {
+                    continue;
+                }
+                singleCharFound |= end == start + 1;
+                relax(best, pieces, start, end, score);
+            }
+            if (!singleCharFound) {
+                relax(best, pieces, start, start + 1, unkScore);
+            }
+        }
+        return pieces[n];
+    }
+
+    private static void relax(double[] best, int[] pieces, int start, int end, double score) {
+        double candidate = best[start] + score;
+        if (candidate > best[end]) {
+            best[end] = candidate;
+            pieces[end] = pieces[start] + 1;
+        }
+    }
+
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || c == METASPACE;
+    }
+}
@@ -1,6 +1,10 @@
 package com.mychatgpt.tool.impl;
 
+import com.mychatgpt.ai.QueryEmbeddingCache;
+import com.mychatgpt.service.KeywordSearchService;
 import com.mychatgpt.service.RerankService;
+import com.mychatgpt.service.SearchCacheScopes;
+import com.mychatgpt.service.SemanticSearchCache;
 import com.mychatgpt.service.VectorDbService;
 import com.mychatgpt.vectordb.VectorSearchResult;
 import lombok.RequiredArgsConstructor;
@@ -22,12 +26,17 @@ public class KnowledgeBaseSearchTools {
     private static final int DEFAULT_MAX_RESULTS = 10;
     private static final double SIMILARITY_THRESHOLD = 0.65;
     private static final int MAX_DOC_DISPLAY_CHARS = 1000;
+    private static final String NO_RESULTS = "검색 결과가 없습니다. Knowledge Base에 관련 정보가 없습니다.";
 
     /** YouTrack 이슈 ID 패턴: 대문자 프로젝트코드 + 하이픈 + 숫자 (예: PATALK-123, TOK-45) */
     private static final Pattern ISSUE_ID_PATTERN = Pattern.compile("[A-Z]+-\\d+");
 
     private final VectorDbService vectorDbService;
     private final RerankService rerankService;
+    private final KeywordSearchService keywordSearchService;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final SearchCacheScopes searchCacheScopes;
+    private final SemanticSearchCache semanticSearchCache;
 
     @Tool(description = "회사의 Knowledge Base (YouTrack 이슈, Confluence 문서)에서 관련 정보를 검색합니다. 업무 관련 질문, 기능 문의, 과거 이슈 조회, 문서 검색 등에 사용하세요.")
     public String knowledgeBaseSearch(
@@ -58,7 +67,17 @@ public class KnowledgeBaseSearchTools {
                 }
             }
 
-            List<VectorSearchResult> results = vectorDbService.searchKnowledgeBase(query, limit, source);
+            // 표현만 다른 비슷한 질문이면 이전에 합치고 재정렬한 결과를 그대로 쓴다 (영문/숫자 검색어는 같아야 함)
+            float[] queryEmbedding = queryEmbeddingCache.get(query);
+            String cacheScope = "kb-tool|" + source + "|" + limit;
+            String cacheStamp = searchCacheScopes.knowledgeBaseStamp(source);
+            List<VectorSearchResult> cached = semanticSearchCache.get(cacheScope, cacheStamp, query, queryEmbedding);
+            if (cached != null) {
+                return cached.isEmpty() ? NO_RESULTS : formatResults(cached);
+            }
+
+            int candidates = keywordSearchService.candidates(limit);
+            List<VectorSearchResult> results = vectorDbService.searchKnowledgeBase(query, candidates, source);
 
             results = results.stream()
                     .filter(r -> (1.0 - r.getDistance()) >= SIMILARITY_THRESHOLD)
@@ -70,11 +89,16 @@ public class KnowledgeBaseSearchTools {
                     })
                     .toList();
 
+            // API 이름, 에러 코드처럼 글자 그대로 일치해야 하는 검색어는 키워드(BM25) 검색 결과와 순위를 합쳐 보완한다
+            results = keywordSearchService.fuse(results, keywordSearchService.search(query, candidates, source), candidates);
+
             if (results.isEmpty()) {
-                return "검색 결과가 없습니다. Knowledge Base에 관련 정보가 없습니다.";
+                semanticSearchCache.put(cacheScope, cacheStamp, query, queryEmbedding, results);
+                return NO_RESULTS;
             }
 
-            results = rerankService.rerank(query, results);
+            results = rerankService.rerank(query, results, limit);
+            semanticSearchCache.put(cacheScope, cacheStamp, query, queryEmbedding, results);
 
             return formatResults(results);
         } catch (Exception e) {
@@ -119,8 +143,13 @@ public class KnowledgeBaseSearchTools {
             }
 
             sb.append("내용:\n").append(truncateDocument(result.getDocument())).append("\n");
-            double similarity = result.getDistance() == 0.0 ? 1.0 : (1.0 - result.getDistance());
-            sb.append("관련도 점수: ").append(String.format("%.4f", similarity)).append("\n\n");
+            if (Double.isNaN(result.getDistance())) {
+                // 키워드 검색으로만 찾은 결과 (벡터 거리 없음)
+                sb.append("관련도 점수: 키워드 일치\n\n");
+            } else {
+                double similarity = result.getDistance() == 0.0 ? 1.0 : (1.0 - result.getDistance());
+                sb.append("관련도 점수: ").append(String.format("%.4f", similarity)).append("\n\n");
+            }
         }
 
         return sb.toString();
@@ -0,0 +1,438 @@
+package com.mychatgpt.vectordb;
+
+import com.mychatgpt.text.NgramAnalyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * knowledge base 청크의 BM25 역색인 (프로세스 안의 키워드 검색).
+ *
+ * 벡터 검색은 의미가 비슷한 문서는 잘 찾지만 API 이름, 에러 코드, 고객사 이름처럼
+ * 글자 그대로 일치해야 하는 검색어는 놓치기 쉽다. 이 색인은 NgramAnalyzer의 색인어로 그런 문서를 찾는다.
+ *
+ * - 청크는 0부터 연속된 번호(doc)를 받고, 색인어마다 [doc 배열, 빈도 배열]의 posting을 int[]로 둔다
+ *   (객체 없이 배열만 쓰므로 posting 하나에 8바이트)
+ * - 청크를 지우면 표시만 해 두고 검색에서 건너뛴다. 지운 청크가 전체의 1/4을 넘으면 posting을 다시 만든다
+ * - 같은 청크 ID를 다시 넣으면 이전 것을 지우고 새로 넣는다
+ * - 지운 청크가 남아 있는 동안은 문서 빈도(df)에 그 청크도 포함된다 (IDF가 약간 낮아질 뿐 순위는 거의 같다)
+ *
+ * read/write lock으로 검색은 동시에, 변경은 하나씩 실행한다.
+ */
+public final class Bm25Index {
+
+    /** 검색 결과: 청크 ID와 BM25 점수 */
+    public record Hit(String chunkId, float score) {
+    }
+
+    private static final int MIN_COMPACT_DEAD = 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final float k1;
+    private final float b;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private int[][] postingDocs = new int[INITIAL_CAPACITY][];
+    private int[][] postingFreqs = new int[INITIAL_CAPACITY][];
+    private int[] postingSizes = new int[INITIAL_CAPACITY];
+    private long postingCount;
+
+    private String[] chunkIds = new String[INITIAL_CAPACITY];
+    private String[] itemKeys = new String[INITIAL_CAPACITY];
+    private byte[] sources = new byte[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private final BitSet dead = new BitSet();
+    private int docCount;
+    private int deadCount;
+    private long liveLength;
+
+    private final Map<String, Integer> docByChunk = new HashMap<>();
+    private final Map<String, List<Integer>> docsByItem = new HashMap<>();
+    private final List<String> sourceNames = new ArrayList<>();
+
+    public Bm25Index(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * 청크를 색인한다.
+     *
+     * @param itemId 청크가 속한 항목 (이슈 ID, 문서 ID). removeItems로 항목의 청크를 한 번에 지울 때 쓴다
+     */
+    public void add(String chunkId, String source, String itemId, String text) {
+        // 색인어 추출은 lock 밖에서
+        List<String> terms = new ArrayList<>();
+        NgramAnalyzer.analyze(text, terms::add);
+
+        lock.writeLock().lock();
+        try {
+            Integer previous = docByChunk.get(chunkId);
+            if (previous != null) {
+                remove(previous);
+            }
+            int doc = newDoc(chunkId, source, itemId, terms.size());
+
+            int[] ids = new int[terms.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = termId(terms.get(i));
+            }
+            Arrays.sort(ids);
+            int i = 0;
+            while (i < ids.length) {
+                int end = i + 1;
+                while (end < ids.length && ids[end] == ids[i]) {
+                    end++;
+                }
+                appendPosting(ids[i], doc, end - i);
+                i = end;
+            }
+            if (previous != null) {
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 항목들의 청크를 모두 지운다.
+     */
+    public void removeItems(String source, Collection<String> itemIds) {
+        lock.writeLock().lock();
+        try {
+            for (String itemId : itemIds) {
+                List<Integer> docs = docsByItem.get(itemKey(source, itemId));
+                if (docs != null) {
+                    List.copyOf(docs).forEach(this::remove);
+                }
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * source의 청크를 모두 지운다.
+     */
+    public void removeSource(String source) {
+        lock.writeLock().lock();
+        try {
+            int sourceId = sourceNames.indexOf(source);
+            if (sourceId < 0) {
+                return;
+            }
+            for (int doc = dead.nextClearBit(0); doc < docCount; doc = dead.nextClearBit(doc + 1)) {
+                if (sources[doc] == sourceId) {
+                    remove(doc);
+                }
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * BM25 점수가 높은 청크를 최대 limit개 찾는다.
+     *
+     * @param source null이면 모든 source
+     */
+    public List<Hit> search(String query, int limit, String source) {
+        Set<String> queryTerms = new HashSet<>();
+        NgramAnalyzer.analyze(query, queryTerms::add);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int live = docCount - deadCount;
+            int sourceId = source == null ? -1 : sourceNames.indexOf(source);
+            if (live == 0 || (source != null && sourceId < 0)) {
+                return List.of();
+            }
+            float avgLength = Math.max(1f, (float) liveLength / live);
+
+            float[] scores = new float[docCount];
+            int[] touched = new int[64];
+            int touchedCount = 0;
+            for (String term : queryTerms) {
+                Integer termId = termIds.get(term);
+                if (termId == null) {
+                    continue;
+                }
+                int df = Math.min(postingSizes[termId], live);
+                float idf = (float) Math.log(1 + (live - df + 0.5) / (df + 0.5));
+                int[] docs = postingDocs[termId];
+                int[] freqs = postingFreqs[termId];
+                for (int i = 0, n = postingSizes[termId]; i < n; i++) {
+                    int doc = docs[i];
+                    if ((sourceId >= 0 && sources[doc] != sourceId) || dead.get(doc)) {
+                        continue;
+                    }
+                    int tf = freqs[i];
+                    float norm = k1 * (1 - b + b * lengths[doc] / avgLength);
+                    if (scores[doc] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = doc;
+                    }
+                    scores[doc] += idf * tf * (k1 + 1) / (tf + norm);
+                }
+            }
+            return top(scores, touched, touchedCount, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 점수가 높은 limit개를 크기 limit의 최소 힙으로 고른다.
+     */
+    private List<Hit> top(float[] scores, int[] touched, int touchedCount, int limit) {
+        int[] heap = new int[Math.min(limit, touchedCount)];
+        int size = 0;
+        for (int t = 0; t < touchedCount; t++) {
+            int doc = touched[t];
+            if (size < heap.length) {
+                heap[size] = doc;
+                siftUp(heap, size++, scores);
+            } else if (scores[doc] > scores[heap[0]]) {
+                heap[0] = doc;
+                siftDown(heap, size, scores);
+            }
+        }
+        Hit[] hits = new Hit[size];
+        while (size > 0) {
+            int doc = heap[0];
+            hits[--size] = new Hit(chunkIds[doc], scores[doc]);
+            heap[0] = heap[size];
+            siftDown(heap, size, scores);
+        }
+        return Arrays.asList(hits);
+    }
+
+    private static void siftUp(int[] heap, int index, float[] scores) {
+        int doc = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (scores[heap[parent]] <= scores[doc]) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = doc;
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        if (size == 0) {
+            return;
+        }
+        int doc = heap[0];
+        int index = 0;
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && scores[heap[child + 1]] < scores[heap[child]]) {
+                child++;
+            }
+            if (scores[heap[child]] >= scores[doc]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = doc;
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            termIds.clear();
+            postingDocs = new int[INITIAL_CAPACITY][];
+            postingFreqs = new int[INITIAL_CAPACITY][];
+            postingSizes = new int[INITIAL_CAPACITY];
+            postingCount = 0;
+            chunkIds = new String[INITIAL_CAPACITY];
+            itemKeys = new String[INITIAL_CAPACITY];
+            sources = new byte[INITIAL_CAPACITY];
+            lengths = new int[INITIAL_CAPACITY];
+            dead.clear();
+            docCount = 0;
+            deadCount = 0;
+            liveLength = 0;
+            docByChunk.clear();
+            docsByItem.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("chunks", docCount - deadCount);
+            stats.put("items", docsByItem.size());
+            stats.put("deletedChunks", deadCount);
+            stats.put("terms", termIds.size());
+            stats.put("postings", postingCount);
+            stats.put("postingBytes", postingCount * 8);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int newDoc(String chunkId, String source, String itemId, int length) {
+        if (docCount == chunkIds.length) {
+            int capacity = docCount * 2;
+            chunkIds = Arrays.copyOf(chunkIds, capacity);
+            itemKeys = Arrays.copyOf(itemKeys, capacity);
+            sources = Arrays.copyOf(sources, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        int sourceId = sourceNames.indexOf(source);
+        if (sourceId < 0) {
+            if (sourceNames.size() == Byte.MAX_VALUE) {
+                throw new IllegalStateException("키워드 색인의 source 종류가 너무 많습니다: " + source);
+            }
+            sourceNames.add(source);
+            sourceId = sourceNames.size() - 1;
+        }
+        int doc = docCount++;
+        String itemKey = itemKey(source, itemId);
+        chunkIds[doc] = chunkId;
+        itemKeys[doc] = itemKey;
+        sources[doc] = (byte) sourceId;
+        lengths[doc] = length;
+        liveLength += length;
+        docByChunk.put(chunkId, doc);
+        docsByItem.computeIfAbsent(itemKey, key -> new ArrayList<>(2)).add(doc);
+        return doc;
+    }
+
+    private int termId(String term) {
+        Integer id = termIds.get(term);
+        if (id != null) {
+            return id;
+        }
+        int newId = termIds.size();
+        if (newId == postingSizes.length) {
+            int capacity = newId * 2;
+            postingDocs = Arrays.copyOf(postingDocs, capacity);
+            postingFreqs = Arrays.copyOf(postingFreqs, capacity);
+            postingSizes = Arrays.copyOf(postingSizes, capacity);
+        }
+        postingDocs[newId] = new int[2];
+        postingFreqs[newId] = new int[2];
+        termIds.put(term, newId);
+        return newId;
+    }
+
+    private void appendPosting(int termId, int doc, int freq) {
+        int size = postingSizes[termId];
+        if (size == postingDocs[termId].length) {
+            int capacity = size + (size >> 1) + 1;
+            postingDocs[termId] = Arrays.copyOf(postingDocs[termId], capacity);
+            postingFreqs[termId] = Arrays.copyOf(postingFreqs[termId], capacity);
+        }
+        postingDocs[termId][size] = doc;
+        postingFreqs[termId][size] = freq;
+        postingSizes[termId] = size + 1;
+        postingCount++;
+    }
+
+    private void remove(int doc) {
+        if (dead.get(doc)) {
+            return;
+        }
+        dead.set(doc);
+        deadCount++;
+        liveLength -= lengths[doc];
+        docByChunk.remove(chunkIds[doc]);
+        List<Integer> itemDocs = docsByItem.get(itemKeys[doc]);
+        if (itemDocs != null) {
+            itemDocs.remove(Integer.valueOf(doc));
+            if (itemDocs.isEmpty()) {
+                docsByItem.remove(itemKeys[doc]);
+            }
+        }
+    }
+
+    /**
+     * 지운 청크가 많으면 살아 있는 청크에 번호를 다시 매기고 posting에서 지운 청크를 뺀다.
+     */
+    private void compactIfNeeded() {
+        if (deadCount < MIN_COMPACT_DEAD || deadCount * 4 < docCount) {
+            return;
+        }
+        int[] remap = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (dead.get(doc)) {
+                remap[doc] = -1;
+                continue;
+            }
+            remap[doc] = live;
+            chunkIds[live] = chunkIds[doc];
+            itemKeys[live] = itemKeys[doc];
+            sources[live] = sources[doc];
+            lengths[live] = lengths[doc];
+            live++;
+        }
+        Arrays.fill(chunkIds, live, docCount, null);
+        Arrays.fill(itemKeys, live, docCount, null);
+
+        postingCount = 0;
+        for (int termId = 0; termId < termIds.size(); termId++) {
+            int[] docs = postingDocs[termId];
+            int[] freqs = postingFreqs[termId];
+            int kept = 0;
+            for (int i = 0; i < postingSizes[termId]; i++) {
+                int newDoc = remap[docs[i]];
+                if (newDoc >= 0) {
+                    docs[kept] = newDoc;
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            postingSizes[termId] = kept;
+            postingCount += kept;
+            if (kept < docs.length / 2) {
+                postingDocs[termId] = Arrays.copyOf(docs, Math.max(kept, 2));
+                postingFreqs[termId] = Arrays.copyOf(freqs, Math.max(kept, 2));
+            }
+        }
+
+        docCount = live;
+        deadCount = 0;
+        dead.clear();
+        docByChunk.clear();
+        docsByItem.clear();
+        for (int doc = 0; doc < docCount; doc++) {
+            docByChunk.put(chunkIds[doc], doc);
+            docsByItem.computeIfAbsent(itemKeys[doc], key -> new ArrayList<>(2)).add(doc);
+        }
+    }
+
+    private static String itemKey(String source, String itemId) {
+        return source + '\u0000' + itemId;
+    }
+}
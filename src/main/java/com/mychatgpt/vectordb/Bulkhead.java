@@ -0,0 +1,122 @@
+package com.mychatgpt.vectordb;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 동시 실행 수와 대기열 길이를 제한하는 reactive bulkhead.
+ *
+ * 허가(permit)를 얻은 요청만 실행되고, 나머지는 maxQueued개까지 대기한다.
+ * 대기열이 가득 찼거나 maxWait 안에 허가를 얻지 못하면 RejectedExecutionException으로 바로 실패한다.
+ * 스레드를 붙잡고 기다리지 않으므로 block() 호출자도 maxWait 이상 묶이지 않는다.
+ */
+final class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Duration maxWait;
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private int active;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private static final class Waiter {
+        final MonoSink<Boolean> sink;
+        boolean granted;
+
+        Waiter(MonoSink<Boolean> sink) {
+            this.sink = sink;
+        }
+    }
+
+    Bulkhead(String name, int maxConcurrent, int maxQueued, Duration maxWait) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * 허가를 얻은 뒤 call을 구독하고, 완료/에러/취소 시 허가를 반납한다.
+     */
+    <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        return Mono.usingWhen(
+                acquire().timeout(maxWait, Mono.error(() -> reject("대기 시간 초과"))),
+                permit -> call.get(),
+                permit -> Mono.fromRunnable(this::release));
+    }
+
+    private Mono<Boolean> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            boolean grantNow = false;
+            synchronized (this) {
+                if (active < maxConcurrent) {
+                    active++;
+                    waiter.granted = true;
+                    grantNow = true;
+                } else if (waiters.size() < maxQueued) {
+                    waiters.add(waiter);
+                } else {
+                    sink.error(reject("대기열 초과"));
+                    return;
+                }
+            }
+            sink.onCancel(() -> cancel(waiter));
+            if (grantNow) {
+                sink.success(Boolean.TRUE);
+            }
+        });
+    }
+
+    private void cancel(Waiter waiter) {
+        synchronized (this) {
+            if (!waiter.granted) {
+                waiters.remove(waiter);
+                return;
+            }
+        }
+        // 허가를 받은 직후(전달 전) 취소되었으면 받은 허가를 돌려준다
+        release();
+    }
+
+    private void release() {
+        Waiter next;
+        synchronized (this) {
+            next = waiters.poll();
+            if (next == null) {
+                active--;
+                return;
+            }
+            // 대기 중인 요청에 허가를 그대로 넘긴다 (active 수는 유지)
+            next.granted = true;
+        }
+        next.sink.success(Boolean.TRUE);
+    }
+
+    private RejectedExecutionException reject(String reason) {
+        rejected.increment();
+        return new RejectedExecutionException("ChromaDB " + name + " 요청 거부 (" + reason + ")");
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("active", active);
+            stats.put("queued", waiters.size());
+        }
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("maxQueued", maxQueued);
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
@@ -1,35 +1,54 @@
 package com.mychatgpt.vectordb;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.mychatgpt.config.ChromaDbConfig;
+import com.mychatgpt.vectordb.ChromaTransport.Lane;
+import io.netty.buffer.PooledByteBufAllocator;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
+/**
+ * ChromaDB HTTP API 기반 VectorStore 구현 (vectordb.backend=chroma, 기본값).
+ * 모든 요청은 ChromaTransport를 거친다: 검색은 QUERY lane, ingest 쓰기/삭제는 INGEST lane.
+ */
 @Component
+@ConditionalOnProperty(prefix = "vectordb", name = "backend", havingValue = "chroma", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
-public class ChromaDbClient {
+public class ChromaDbClient implements VectorStore {
 
     private final ChromaDbConfig config;
-    private final WebClient webClient;
+    private final ChromaTransport transport;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private String collectionId;
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    private volatile String collectionId;
 
     @PostConstruct
     public void init() {
         try {
-            ensureCollection();
+            resolveCollection().block();
             log.info("ChromaDB collection '{}' ready (id: {})", config.getCollectionName(), collectionId);
         } catch (Exception e) {
             log.warn("ChromaDB initialization deferred - will retry on first use: {}", e.getMessage());
@@ -40,150 +59,74 @@ public class ChromaDbClient {
      * Ensure the collection exists, create if not.
      * Uses get_or_create to handle both cases in a single request.
      */
-    private void ensureCollection() {
-        try {
-            ObjectNode body = objectMapper.createObjectNode();
-            body.put("name", config.getCollectionName());
-            body.put("get_or_create", true);
-            body.putObject("metadata").put("hnsw:space", "cosine");
-
-            String response = webClient.post()
-                    .uri(config.getBaseUrl() + "/api/v1/collections")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(body.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            JsonNode node = objectMapper.readTree(response);
-            collectionId = node.path("id").asText();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to connect to ChromaDB: " + e.getMessage(), e);
-        }
+    private Mono<String> resolveCollection() {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("name", config.getCollectionName());
+        body.put("get_or_create", true);
+        body.putObject("metadata").put("hnsw:space", "cosine");
+
+        return transport.read(Lane.QUERY, () -> transport.client(Lane.QUERY).post()
+                        .uri(config.getBaseUrl() + "/api/v1/collections")
+                        .header("Content-Type", "application/json")
+                        .bodyValue(body.toString())
+                        .retrieve()
+                        .bodyToMono(String.class))
+                .<String>handle((response, sink) -> {
+                    try {
+                        collectionId = objectMapper.readTree(response).path("id").asText();
+                        sink.next(collectionId);
+                    } catch (IOException e) {
+                        sink.error(e);
+                    }
+                })
+                .onErrorMap(e -> new RuntimeException("Failed to connect to ChromaDB: " + e.getMessage(), e));
     }
 
-    private void ensureReady() {
-        if (collectionId == null) {
-            ensureCollection();
-        }
+    /**
+     * 컬렉션 ID. 기동 때 ChromaDB에 연결하지 못했으면 구독될 때 조회한다.
+     * *Async 메서드는 Reactor 스레드에서 호출될 수 있으므로 여기서 block하지 않는다.
+     */
+    private Mono<String> collection() {
+        return Mono.defer(() -> collectionId != null ? Mono.just(collectionId) : resolveCollection());
+    }
+
+    private <T> Mono<T> read(Lane lane, Supplier<Mono<T>> request) {
+        return collection().then(Mono.defer(() -> transport.read(lane, request)));
     }
 
+    private <T> Mono<T> write(Lane lane, Supplier<Mono<T>> request) {
+        return collection().then(Mono.defer(() -> transport.write(lane, request)));
+    }
+
+    @Override
+    public String storeId() {
+        return "chroma:" + config.getBaseUrl() + "/" + config.getCollectionName();
+    }
+
+    // ========== Blocking API ==========
+    // 아래 메서드들은 Reactive API를 block()으로 감싼 것이다.
+    // 기존 호출부(배치 ingest 등)는 그대로 사용하고, 동시에 여러 쿼리를 보내야 하는 검색 경로는 *Async 메서드를 사용한다.
+
     /**
      * Add documents with embeddings to the collection.
      */
     public void addDocuments(List<String> ids, List<float[]> embeddings,
                              List<String> documents, List<Map<String, String>> metadatas) {
-        ensureReady();
-        try {
-            ObjectNode body = objectMapper.createObjectNode();
-
-            ArrayNode idsArray = body.putArray("ids");
-            ids.forEach(idsArray::add);
-
-            ArrayNode embeddingsArray = body.putArray("embeddings");
-            for (float[] emb : embeddings) {
-                ArrayNode embArray = embeddingsArray.addArray();
-                for (float v : emb) {
-                    embArray.add(v);
-                }
-            }
-
-            ArrayNode docsArray = body.putArray("documents");
-            documents.forEach(docsArray::add);
-
-            if (metadatas != null) {
-                ArrayNode metaArray = body.putArray("metadatas");
-                for (Map<String, String> meta : metadatas) {
-                    ObjectNode metaNode = metaArray.addObject();
-                    meta.forEach(metaNode::put);
-                }
-            }
-
-            webClient.post()
-                    .uri(config.getBaseUrl() + "/api/v1/collections/" + collectionId + "/add")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(body.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-        } catch (Exception e) {
-            log.error("Failed to add documents to ChromaDB", e);
-            throw new RuntimeException("VectorDB에 문서 추가 실패: " + e.getMessage(), e);
-        }
+        addDocumentsAsync(ids, embeddings, documents, metadatas).block();
     }
 
     /**
      * Query similar documents by embedding.
      */
     public List<VectorSearchResult> query(float[] queryEmbedding, int nResults, Map<String, String> whereFilter) {
-        ensureReady();
-        try {
-            ObjectNode body = objectMapper.createObjectNode();
-            ArrayNode queryEmbs = body.putArray("query_embeddings").addArray();
-            for (float v : queryEmbedding) {
-                queryEmbs.add(v);
-            }
-            body.put("n_results", nResults);
-            body.putArray("include").add("documents").add("metadatas").add("distances");
-
-            log.info("[ChromaDB] Query 시작: nResults={}, filter={}", nResults, whereFilter);
-
-            if (whereFilter != null && !whereFilter.isEmpty()) {
-                ObjectNode where = body.putObject("where");
-                whereFilter.forEach(where::put);
-            }
-
-            String responseStr = webClient.post()
-                    .uri(config.getBaseUrl() + "/api/v1/collections/" + collectionId + "/query")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(body.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            JsonNode response = objectMapper.readTree(responseStr);
-            List<VectorSearchResult> results = new ArrayList<>();
-
-            JsonNode idsNode = response.path("ids").get(0);
-            JsonNode docsNode = response.path("documents").get(0);
-            JsonNode distancesNode = response.path("distances").get(0);
-            JsonNode metadatasNode = response.path("metadatas").get(0);
-
-            if (idsNode != null) {
-                for (int i = 0; i < idsNode.size(); i++) {
-                    VectorSearchResult result = new VectorSearchResult();
-                    result.setId(idsNode.get(i).asText());
-                    result.setDocument(docsNode.get(i).asText());
-                    result.setDistance(distancesNode.get(i).asDouble());
-                    if (metadatasNode.get(i) != null) {
-                        Map<String, String> meta = new java.util.HashMap<>();
-                        metadatasNode.get(i).fields().forEachRemaining(
-                                entry -> meta.put(entry.getKey(), entry.getValue().asText())
-                        );
-                        result.setMetadata(meta);
-                    }
-                    results.add(result);
-                }
-            }
-
-            log.info("[ChromaDB] Query 완료: nResults={}, filter={} → {}건 반환, distances={}",
-                    nResults, whereFilter, results.size(),
-                    results.stream().map(r -> String.format("%.4f", r.getDistance())).toList());
-
-            return results;
-
-        } catch (Exception e) {
-            log.error("[ChromaDB] Query 실패: nResults={}, filter={}", nResults, whereFilter, e);
-            return new ArrayList<>();
-        }
+        return queryAsync(queryEmbedding, nResults, whereFilter).block();
     }
 
     /**
      * Upsert documents - 같은 ID가 있으면 업데이트, 없으면 추가.
      *
      * 기존 addDocuments()와의 차이:
-     * - addDocuments() → ChromaDB /add 엔드포인트 사용 → 이미 존재하는 ID를 넣으면 에러 발생
+     * - addDocuments() → 이미 존재하는 ID는 건너뜀 (ChromaDB /add는 에러를 내므로 먼저 조회해서 거른다)
      * - upsertDocuments() → ChromaDB /upsert 엔드포인트 사용 → ID 존재 여부에 관계없이 항상 성공
      *
      * YouTrack 이슈처럼 ID가 고정된 데이터를 반복 업로드할 때는 upsert가 필수.
@@ -192,44 +135,7 @@ public class ChromaDbClient {
      */
     public void upsertDocuments(List<String> ids, List<float[]> embeddings,
                                 List<String> documents, List<Map<String, String>> metadatas) {
-        ensureReady();
-        try {
-            ObjectNode body = objectMapper.createObjectNode();
-
-            ArrayNode idsArray = body.putArray("ids");
-            ids.forEach(idsArray::add);
-
-            ArrayNode embeddingsArray = body.putArray("embeddings");
-            for (float[] emb : embeddings) {
-                ArrayNode embArray = embeddingsArray.addArray();
-                for (float v : emb) {
-                    embArray.add(v);
-                }
-            }
-
-            ArrayNode docsArray = body.putArray("documents");
-            documents.forEach(docsArray::add);
-
-            if (metadatas != null) {
-                ArrayNode metaArray = body.putArray("metadatas");
-                for (Map<String, String> meta : metadatas) {
-                    ObjectNode metaNode = metaArray.addObject();
-                    meta.forEach(metaNode::put);
-                }
-            }
-
-            webClient.post()
-                    .uri(config.getBaseUrl() + "/api/v1/collections/" + collectionId + "/upsert")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(body.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-        } catch (Exception e) {
-            log.error("Failed to upsert documents to ChromaDB", e);
-            throw new RuntimeException("VectorDB 문서 upsert 실패: " + e.getMessage(), e);
-        }
+        upsertDocumentsAsync(ids, embeddings, documents, metadatas).block();
     }
 
     /**
@@ -238,135 +144,246 @@ public class ChromaDbClient {
      * 예: issueId="PATALK-123" 으로 정확히 해당 이슈만 조회.
      */
     public List<VectorSearchResult> getByMetadataFilter(Map<String, String> whereFilter, int limit) {
-        ensureReady();
-        try {
-            ObjectNode body = objectMapper.createObjectNode();
-            if (whereFilter != null && !whereFilter.isEmpty()) {
-                ObjectNode where = body.putObject("where");
-                whereFilter.forEach(where::put);
-            }
-            body.put("limit", limit);
-            body.putArray("include").add("documents").add("metadatas");
-
-            String responseStr = webClient.post()
-                    .uri(config.getBaseUrl() + "/api/v1/collections/" + collectionId + "/get")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(body.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            JsonNode response = objectMapper.readTree(responseStr);
-            List<VectorSearchResult> results = new ArrayList<>();
-
-            JsonNode idsNode = response.path("ids");
-            JsonNode docsNode = response.path("documents");
-            JsonNode metadatasNode = response.path("metadatas");
-
-            if (idsNode != null && idsNode.isArray()) {
-                for (int i = 0; i < idsNode.size(); i++) {
-                    VectorSearchResult result = new VectorSearchResult();
-                    result.setId(idsNode.get(i).asText());
-                    result.setDocument(docsNode.get(i).asText());
-                    result.setDistance(0.0); // 정확 매칭이므로 distance = 0
-                    if (metadatasNode.get(i) != null) {
-                        Map<String, String> meta = new java.util.HashMap<>();
-                        metadatasNode.get(i).fields().forEachRemaining(
-                                entry -> meta.put(entry.getKey(), entry.getValue().asText())
-                        );
-                        result.setMetadata(meta);
-                    }
-                    results.add(result);
-                }
-            }
+        return getByMetadataFilterAsync(whereFilter, limit).block();
+    }
 
-            log.info("[ChromaDB] Metadata filter 조회 완료: filter={} → {}건 반환", whereFilter, results.size());
-            return results;
+    /**
+     * 메타데이터 조건에 맞는 문서를 /get의 offset/limit으로 한 페이지씩 조회한다 (전체를 한 응답으로 받지 않도록).
+     */
+    public List<VectorSearchResult> scanByMetadataFilter(Map<String, String> whereFilter, int offset, int limit) {
+        return scanByMetadataFilterAsync(whereFilter, offset, limit).block();
+    }
 
-        } catch (Exception e) {
-            log.error("[ChromaDB] Metadata filter 조회 실패: filter={}", whereFilter, e);
-            return new ArrayList<>();
-        }
+    /**
+     * Get documents by IDs - 본문과 메타데이터까지 조회한다 (키워드 검색 결과를 채울 때 사용).
+     */
+    public List<VectorSearchResult> getByIds(List<String> ids) {
+        return getByIdsAsync(ids).block();
     }
 
     /**
      * Get documents by IDs - 특정 ID의 문서가 이미 존재하는지 확인할 때 사용.
      */
     public List<String> getExistingIds(List<String> ids) {
-        ensureReady();
-        try {
-            ObjectNode body = objectMapper.createObjectNode();
-            ArrayNode idsArray = body.putArray("ids");
-            ids.forEach(idsArray::add);
-
-            String responseStr = webClient.post()
-                    .uri(config.getBaseUrl() + "/api/v1/collections/" + collectionId + "/get")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(body.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            JsonNode response = objectMapper.readTree(responseStr);
-            JsonNode idsNode = response.path("ids");
-            List<String> existingIds = new ArrayList<>();
-            if (idsNode.isArray()) {
-                for (JsonNode idNode : idsNode) {
-                    existingIds.add(idNode.asText());
-                }
-            }
-            return existingIds;
-        } catch (Exception e) {
-            log.error("ChromaDB get by IDs failed", e);
-            return new ArrayList<>();
-        }
+        return getExistingIdsAsync(ids).block();
     }
 
     /**
      * Delete documents by IDs.
      */
     public void deleteByIds(List<String> ids) {
-        ensureReady();
-        try {
-            ObjectNode body = objectMapper.createObjectNode();
-            ArrayNode idsArray = body.putArray("ids");
-            ids.forEach(idsArray::add);
-
-            webClient.post()
-                    .uri(config.getBaseUrl() + "/api/v1/collections/" + collectionId + "/delete")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(body.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-        } catch (Exception e) {
-            log.error("ChromaDB delete failed", e);
-            throw new RuntimeException("VectorDB 문서 삭제 실패: " + e.getMessage(), e);
-        }
+        deleteByIdsAsync(ids).block();
     }
 
     /**
      * Delete documents by metadata filter.
      */
     public void deleteByFilter(Map<String, String> whereFilter) {
-        ensureReady();
-        try {
-            ObjectNode body = objectMapper.createObjectNode();
-            ObjectNode where = body.putObject("where");
-            whereFilter.forEach(where::put);
-
-            webClient.post()
-                    .uri(config.getBaseUrl() + "/api/v1/collections/" + collectionId + "/delete")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(body.toString())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
+        deleteByFilterAsync(whereFilter).block();
+    }
 
-        } catch (Exception e) {
-            log.error("ChromaDB delete by filter failed", e);
-            throw new RuntimeException("VectorDB 필터 삭제 실패: " + e.getMessage(), e);
+    /**
+     * 메타데이터 필드 값이 주어진 집합에 속하는 문서를 한 번의 요청으로 삭제한다.
+     * 예: issueId ∈ {PATALK-1, PATALK-2, ...} 인 청크를 배치 단위로 일괄 삭제.
+     */
+    public void deleteByMetadataIn(String field, Collection<String> values) {
+        deleteByMetadataInAsync(field, values).block();
+    }
+
+    // ========== Reactive API ==========
+    // 요청 스레드를 응답이 올 때까지 붙잡지 않는다. 여러 쿼리를 Mono.zip 등으로 묶으면 동시에 전송된다.
+    // 에러 처리 방식은 blocking API와 동일: 조회는 로그 후 빈 결과, 쓰기는 RuntimeException으로 전달.
+
+    /**
+     * /add는 이미 있는 ID나 한 요청 안의 중복 ID를 에러로 돌려주므로, VectorStore 계약(건너뜀)에 맞게
+     * 먼저 존재하는 ID를 조회해서 새 ID의 첫 번째 항목만 보낸다.
+     */
+    public Mono<Void> addDocumentsAsync(List<String> ids, List<float[]> embeddings,
+                                        List<String> documents, List<Map<String, String>> metadatas) {
+        return read(Lane.INGEST, () -> readBody(
+                        postJson(Lane.INGEST, "/get", gen -> ChromaJsonCodec.writeIds(gen, ids)),
+                        ChromaJsonCodec::readIds))
+                .flatMap(existing -> {
+                    Set<String> skip = new HashSet<>(existing);
+                    List<Integer> rows = new ArrayList<>();
+                    for (int i = 0; i < ids.size(); i++) {
+                        if (skip.add(ids.get(i))) {
+                            rows.add(i);
+                        }
+                    }
+                    if (rows.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    List<String> newIds = rows.stream().map(ids::get).toList();
+                    List<float[]> newEmbeddings = rows.stream().map(embeddings::get).toList();
+                    List<String> newDocuments = rows.stream().map(documents::get).toList();
+                    List<Map<String, String>> newMetadatas = metadatas == null ? null
+                            : rows.stream().map(metadatas::get).toList();
+                    return write(Lane.INGEST, () -> postJson(Lane.INGEST, "/add",
+                                    gen -> ChromaJsonCodec.writeDocuments(gen, newIds, newEmbeddings, newDocuments,
+                                            newMetadatas))
+                                    .toBodilessEntity());
+                })
+                .then()
+                .onErrorMap(e -> {
+                    log.error("Failed to add documents to ChromaDB", e);
+                    return new RuntimeException("VectorDB에 문서 추가 실패: " + e.getMessage(), e);
+                });
+    }
+
+    public Mono<List<VectorSearchResult>> queryAsync(float[] queryEmbedding, int nResults,
+                                                     Map<String, String> whereFilter) {
+        log.info("[ChromaDB] Query 시작: nResults={}, filter={}", nResults, whereFilter);
+        return read(Lane.QUERY, () -> readBody(
+                        postJson(Lane.QUERY, "/query",
+                                gen -> ChromaJsonCodec.writeQuery(gen, queryEmbedding, nResults, whereFilter)),
+                        ChromaJsonCodec::readQueryResponse))
+                .doOnNext(results -> log.info("[ChromaDB] Query 완료: nResults={}, filter={} → {}건 반환, distances={}",
+                        nResults, whereFilter, results.size(),
+                        results.stream().map(r -> String.format("%.4f", r.getDistance())).toList()))
+                .onErrorResume(e -> {
+                    log.error("[ChromaDB] Query 실패: nResults={}, filter={}", nResults, whereFilter, e);
+                    return Mono.just(new ArrayList<>());
+                });
+    }
+
+    public Mono<Void> upsertDocumentsAsync(List<String> ids, List<float[]> embeddings,
+                                           List<String> documents, List<Map<String, String>> metadatas) {
+        return write(Lane.INGEST, () -> postJson(Lane.INGEST, "/upsert",
+                        gen -> ChromaJsonCodec.writeDocuments(gen, ids, embeddings, documents, metadatas))
+                        .toBodilessEntity())
+                .then()
+                .onErrorMap(e -> {
+                    log.error("Failed to upsert documents to ChromaDB", e);
+                    return new RuntimeException("VectorDB 문서 upsert 실패: " + e.getMessage(), e);
+                });
+    }
+
+    public Mono<List<VectorSearchResult>> getByMetadataFilterAsync(Map<String, String> whereFilter, int limit) {
+        // 정확 매칭이므로 distance = 0
+        return read(Lane.QUERY, () -> readBody(
+                        postJson(Lane.QUERY, "/get", gen -> ChromaJsonCodec.writeGet(gen, whereFilter, limit)),
+                        ChromaJsonCodec::readGetResponse))
+                .doOnNext(results -> log.info("[ChromaDB] Metadata filter 조회 완료: filter={} → {}건 반환",
+                        whereFilter, results.size()))
+                .onErrorResume(e -> {
+                    log.error("[ChromaDB] Metadata filter 조회 실패: filter={}", whereFilter, e);
+                    return Mono.just(new ArrayList<>());
+                });
+    }
+
+    public Mono<List<VectorSearchResult>> scanByMetadataFilterAsync(Map<String, String> whereFilter, int offset,
+                                                                    int limit) {
+        // 빈 결과는 끝을 뜻하므로 다른 조회와 달리 실패를 빈 목록으로 바꾸지 않는다
+        return read(Lane.QUERY, () -> readBody(
+                        postJson(Lane.QUERY, "/get", gen -> ChromaJsonCodec.writeGet(gen, whereFilter, offset, limit)),
+                        ChromaJsonCodec::readGetResponse))
+                .onErrorMap(e -> new RuntimeException("VectorDB 문서 조회 실패: filter=" + whereFilter
+                        + ", offset=" + offset + " - " + e.getMessage(), e));
+    }
+
+    public Mono<List<VectorSearchResult>> getByIdsAsync(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(new ArrayList<>());
+        }
+        return read(Lane.QUERY, () -> readBody(
+                        postJson(Lane.QUERY, "/get", gen -> ChromaJsonCodec.writeGetByIds(gen, ids)),
+                        ChromaJsonCodec::readGetResponse))
+                .onErrorResume(e -> {
+                    log.error("[ChromaDB] ID 조회 실패: {}건", ids.size(), e);
+                    return Mono.just(new ArrayList<>());
+                });
+    }
+
+    public Mono<List<String>> getExistingIdsAsync(List<String> ids) {
+        // ingest 중의 존재 확인이므로 INGEST lane을 쓴다 (조회라서 재시도는 가능)
+        return read(Lane.INGEST, () -> readBody(
+                        postJson(Lane.INGEST, "/get", gen -> ChromaJsonCodec.writeIds(gen, ids)),
+                        ChromaJsonCodec::readIds))
+                .onErrorResume(e -> {
+                    log.error("ChromaDB get by IDs failed", e);
+                    return Mono.just(new ArrayList<>());
+                });
+    }
+
+    public Mono<Void> deleteByIdsAsync(List<String> ids) {
+        return write(Lane.INGEST, () -> postJson(Lane.INGEST, "/delete",
+                        gen -> ChromaJsonCodec.writeIds(gen, ids))
+                        .toBodilessEntity())
+                .then()
+                .onErrorMap(e -> {
+                    log.error("ChromaDB delete failed", e);
+                    return new RuntimeException("VectorDB 문서 삭제 실패: " + e.getMessage(), e);
+                });
+    }
+
+    public Mono<Void> deleteByFilterAsync(Map<String, String> whereFilter) {
+        return write(Lane.INGEST, () -> postJson(Lane.INGEST, "/delete",
+                        gen -> ChromaJsonCodec.writeWhere(gen, whereFilter))
+                        .toBodilessEntity())
+                .then()
+                .onErrorMap(e -> {
+                    log.error("ChromaDB delete by filter failed", e);
+                    return new RuntimeException("VectorDB 필터 삭제 실패: " + e.getMessage(), e);
+                });
+    }
+
+    public Mono<Void> deleteByMetadataInAsync(String field, Collection<String> values) {
+        if (values.isEmpty()) {
+            return Mono.empty();
         }
+        return write(Lane.INGEST, () -> postJson(Lane.INGEST, "/delete",
+                        gen -> ChromaJsonCodec.writeWhereIn(gen, field, values))
+                        .toBodilessEntity())
+                .then()
+                .doOnSuccess(v -> log.debug("[ChromaDB] 일괄 삭제 완료: {} $in {}건", field, values.size()))
+                .onErrorMap(e -> {
+                    log.error("ChromaDB delete by {} $in failed ({}건)", field, values.size(), e);
+                    return new RuntimeException("VectorDB 일괄 삭제 실패: " + e.getMessage(), e);
+                });
+    }
+
+    /**
+     * 컬렉션 엔드포인트에 JSON 요청을 보낸다. 실제 전송은 반환된 spec을 구독할 때 일어난다.
+     * 요청 본문은 JsonGenerator로 Netty DataBuffer에 직접 작성하므로 중간 JSON 트리/String이 생기지 않는다.
+     * 타임아웃/재시도/bulkhead는 호출하는 쪽에서 transport.read/write로 감싼다.
+     */
+    private WebClient.ResponseSpec postJson(Lane lane, String path, ChromaJsonCodec.BodyWriter writer) {
+        return transport.client(lane).post()
+                .uri(config.getBaseUrl() + "/api/v1/collections/" + collectionId + path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromDataBuffers(Mono.fromCallable(() -> writeBody(writer))))
+                .retrieve();
+    }
+
+    private DataBuffer writeBody(ChromaJsonCodec.BodyWriter writer) throws IOException {
+        DataBuffer buffer = bufferFactory.allocateBuffer(8192);
+        try {
+            ChromaJsonCodec.write(buffer.asOutputStream(), writer);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    /**
+     * 응답 본문을 DataBuffer로 받아 JsonParser로 바로 읽는다. 읽은 뒤 버퍼는 해제된다.
+     */
+    private <T> Mono<T> readBody(WebClient.ResponseSpec response, BodyReader<T> reader) {
+        return response.bodyToMono(DataBuffer.class)
+                .map(buffer -> {
+                    try (InputStream in = buffer.asInputStream(true)) {
+                        return reader.read(in);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .switchIfEmpty(Mono.fromCallable(() -> reader.read(InputStream.nullInputStream())));
     }
 }
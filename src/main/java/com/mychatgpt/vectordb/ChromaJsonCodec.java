@@ -0,0 +1,289 @@
+package com.mychatgpt.vectordb;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ChromaDB REST 요청/응답을 Jackson streaming API(JsonGenerator/JsonParser)로 직접 쓰고 읽는 코덱.
+ *
+ * ObjectNode 트리를 쓰지 않는 이유:
+ * - 1024차원 벡터 50건이면 DoubleNode 5만 개 이상 + 전체 JSON String이 한 번에 생성됨
+ * - streaming 방식은 벡터 값을 출력 버퍼에 바로 쓰고, 응답도 토큰 단위로 읽어
+ *   VectorSearchResult에 바로 채우므로 중간 객체가 거의 없음
+ *
+ * ChromaDB 응답은 컬럼 지향 구조(ids/documents/metadatas/distances 배열이 따로 존재)이므로
+ * 각 컬럼을 리스트로 읽은 뒤 인덱스 기준으로 합친다.
+ */
+final class ChromaJsonCodec {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ChromaJsonCodec() {
+    }
+
+    @FunctionalInterface
+    interface BodyWriter {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    static void write(OutputStream out, BodyWriter writer) throws IOException {
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(out)) {
+            gen.writeStartObject();
+            writer.write(gen);
+            gen.writeEndObject();
+        }
+    }
+
+    // ========== 요청 작성 ==========
+
+    static void writeDocuments(JsonGenerator gen, List<String> ids, List<float[]> embeddings,
+                               List<String> documents, List<Map<String, String>> metadatas) throws IOException {
+        writeIds(gen, ids);
+
+        gen.writeArrayFieldStart("embeddings");
+        for (float[] emb : embeddings) {
+            writeVector(gen, emb);
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("documents");
+        for (String doc : documents) {
+            gen.writeString(doc);
+        }
+        gen.writeEndArray();
+
+        if (metadatas != null) {
+            gen.writeArrayFieldStart("metadatas");
+            for (Map<String, String> meta : metadatas) {
+                gen.writeStartObject();
+                for (Map.Entry<String, String> entry : meta.entrySet()) {
+                    gen.writeStringField(entry.getKey(), entry.getValue());
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    static void writeQuery(JsonGenerator gen, float[] queryEmbedding, int nResults,
+                           Map<String, String> whereFilter) throws IOException {
+        gen.writeArrayFieldStart("query_embeddings");
+        writeVector(gen, queryEmbedding);
+        gen.writeEndArray();
+        gen.writeNumberField("n_results", nResults);
+        writeInclude(gen, true);
+        writeWhere(gen, whereFilter);
+    }
+
+    static void writeGet(JsonGenerator gen, Map<String, String> whereFilter, int limit) throws IOException {
+        writeWhere(gen, whereFilter);
+        gen.writeNumberField("limit", limit);
+        writeInclude(gen, false);
+    }
+
+    static void writeGet(JsonGenerator gen, Map<String, String> whereFilter, int offset, int limit) throws IOException {
+        writeWhere(gen, whereFilter);
+        gen.writeNumberField("offset", offset);
+        gen.writeNumberField("limit", limit);
+        writeInclude(gen, false);
+    }
+
+    static void writeGetByIds(JsonGenerator gen, List<String> ids) throws IOException {
+        writeIds(gen, ids);
+        writeInclude(gen, false);
+    }
+
+    static void writeIds(JsonGenerator gen, List<String> ids) throws IOException {
+        gen.writeArrayFieldStart("ids");
+        for (String id : ids) {
+            gen.writeString(id);
+        }
+        gen.writeEndArray();
+    }
+
+    static void writeWhere(JsonGenerator gen, Map<String, String> whereFilter) throws IOException {
+        if (whereFilter == null || whereFilter.isEmpty()) {
+            return;
+        }
+        gen.writeObjectFieldStart("where");
+        for (Map.Entry<String, String> entry : whereFilter.entrySet()) {
+            gen.writeStringField(entry.getKey(), entry.getValue());
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * where: {"field": {"$in": [values...]}} 형태의 집합 조건을 작성한다.
+     */
+    static void writeWhereIn(JsonGenerator gen, String field, Collection<String> values) throws IOException {
+        gen.writeObjectFieldStart("where");
+        gen.writeObjectFieldStart(field);
+        gen.writeArrayFieldStart("$in");
+        for (String value : values) {
+            gen.writeString(value);
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeEndObject();
+    }
+
+    private static void writeInclude(JsonGenerator gen, boolean withDistances) throws IOException {
+        gen.writeArrayFieldStart("include");
+        gen.writeString("documents");
+        gen.writeString("metadatas");
+        if (withDistances) {
+            gen.writeString("distances");
+        }
+        gen.writeEndArray();
+    }
+
+    private static void writeVector(JsonGenerator gen, float[] vector) throws IOException {
+        gen.writeStartArray();
+        for (float v : vector) {
+            gen.writeNumber(v);
+        }
+        gen.writeEndArray();
+    }
+
+    // ========== 응답 파싱 ==========
+
+    /**
+     * /query 응답을 파싱한다. 쿼리 임베딩이 하나이므로 각 컬럼의 첫 번째 내부 배열만 사용한다.
+     */
+    static List<VectorSearchResult> readQueryResponse(InputStream in) throws IOException {
+        return readResults(in, true);
+    }
+
+    /**
+     * /get 응답을 파싱한다. 정확 매칭이므로 distance는 0으로 채운다.
+     */
+    static List<VectorSearchResult> readGetResponse(InputStream in) throws IOException {
+        return readResults(in, false);
+    }
+
+    /**
+     * 응답의 ids 배열만 읽는다.
+     */
+    static List<String> readIds(InputStream in) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            List<String> ids = new ArrayList<>();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return ids;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("ids".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        ids.add(parser.getText());
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return ids;
+        }
+    }
+
+    private static List<VectorSearchResult> readResults(InputStream in, boolean nested) throws IOException {
+        List<String> ids = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        List<Double> distances = new ArrayList<>();
+        List<Map<String, String>> metadatas = new ArrayList<>();
+
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new ArrayList<>();
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "ids" -> readColumn(parser, nested, () -> ids.add(parser.getText()));
+                    case "documents" -> readColumn(parser, nested, () -> documents.add(
+                            parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getText()));
+                    case "distances" -> readColumn(parser, nested, () -> distances.add(parser.getValueAsDouble()));
+                    case "metadatas" -> readColumn(parser, nested, () -> metadatas.add(readMetadata(parser)));
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        List<VectorSearchResult> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            VectorSearchResult result = new VectorSearchResult();
+            result.setId(ids.get(i));
+            result.setDocument(i < documents.size() ? documents.get(i) : null);
+            result.setDistance(i < distances.size() ? distances.get(i) : 0.0);
+            if (i < metadatas.size()) {
+                result.setMetadata(metadatas.get(i));
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @FunctionalInterface
+    private interface ValueReader {
+        void read() throws IOException;
+    }
+
+    /**
+     * 컬럼 배열을 읽는다. nested면 [[...], [...]] 중 첫 번째 내부 배열만 읽고 나머지는 건너뛴다.
+     * 컬럼 값이 null(include에 포함되지 않은 경우)이면 아무것도 읽지 않는다.
+     */
+    private static void readColumn(JsonParser parser, boolean nested, ValueReader reader) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        if (nested) {
+            boolean first = true;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (first && parser.currentToken() == JsonToken.START_ARRAY) {
+                    readValues(parser, reader);
+                    first = false;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            readValues(parser, reader);
+        }
+    }
+
+    private static void readValues(JsonParser parser, ValueReader reader) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            reader.read();
+        }
+    }
+
+    private static Map<String, String> readMetadata(JsonParser parser) throws IOException {
+        Map<String, String> meta = new HashMap<>();
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return meta;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.currentName();
+            parser.nextToken();
+            if (parser.currentToken().isStructStart()) {
+                parser.skipChildren();
+            } else {
+                meta.put(key, parser.getText());
+            }
+        }
+        return meta;
+    }
+}
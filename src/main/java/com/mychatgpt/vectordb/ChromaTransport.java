@@ -0,0 +1,172 @@
+package com.mychatgpt.vectordb;
+
+import com.mychatgpt.config.ChromaDbConfig;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ChromaDbClient 전용 HTTP 전송 계층.
+ *
+ * 요청을 두 lane으로 나누고 lane마다 별도의 커넥션 풀과 bulkhead를 둔다.
+ * - QUERY: 채팅 중 검색/조회. 짧은 타임아웃, 멱등 요청이므로 jitter 백오프로 재시도
+ * - INGEST: 대량 ingest의 쓰기/삭제/존재 확인. 긴 타임아웃, 쓰기는 재시도하지 않음
+ * 대량 ingest가 INGEST lane을 가득 채워도 QUERY lane의 커넥션과 대기열은 그대로 남는다.
+ *
+ * 풀/대기열 상태와 요청 카운터는 getStats()로 조회한다 (GET /api/vectordb/transport/stats).
+ */
+@Component
+@ConditionalOnProperty(prefix = "vectordb", name = "backend", havingValue = "chroma", matchIfMissing = true)
+@Slf4j
+public class ChromaTransport {
+
+    public enum Lane { QUERY, INGEST }
+
+    private static final int MAX_IN_MEMORY_SIZE = 10 * 1024 * 1024;
+
+    private final ChromaDbConfig.Transport config;
+    private final Map<Lane, LaneClient> lanes = new EnumMap<>(Lane.class);
+
+    public ChromaTransport(ChromaDbConfig chromaDbConfig) {
+        this.config = chromaDbConfig.getTransport();
+        lanes.put(Lane.QUERY, new LaneClient("chroma-query", config.getQuery(), config.getQueryTimeout()));
+        lanes.put(Lane.INGEST, new LaneClient("chroma-ingest", config.getIngest(), config.getWriteTimeout()));
+        log.info("ChromaDB transport: query lane {}/{} (timeout {}), ingest lane {}/{} (timeout {})",
+                config.getQuery().getMaxConcurrent(), config.getQuery().getMaxQueued(), config.getQueryTimeout(),
+                config.getIngest().getMaxConcurrent(), config.getIngest().getMaxQueued(), config.getWriteTimeout());
+    }
+
+    public WebClient client(Lane lane) {
+        return lanes.get(lane).webClient;
+    }
+
+    /**
+     * 멱등 요청(검색/조회). 시도마다 bulkhead 허가를 얻고 타임아웃을 적용하며,
+     * 연결 실패/타임아웃/5xx는 maxRetries까지 재시도한다. bulkhead 거부와 4xx는 재시도하지 않는다.
+     * request는 구독할 때마다 요청을 새로 보내야 한다 (WebClient의 retrieve() 결과가 그렇다).
+     */
+    public <T> Mono<T> read(Lane lane, Supplier<Mono<T>> request) {
+        LaneClient client = lanes.get(lane);
+        return client.call(request)
+                .retryWhen(Retry.backoff(config.getMaxRetries(), config.getRetryBackoff())
+                        .jitter(0.5)
+                        .filter(ChromaTransport::isRetryable)
+                        .doBeforeRetry(signal -> {
+                            client.retries.increment();
+                            log.warn("[ChromaDB] {} 요청 재시도 {}/{}: {}", client.name,
+                                    signal.totalRetries() + 1, config.getMaxRetries(), signal.failure().toString());
+                        })
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /**
+     * 쓰기 요청. bulkhead와 타임아웃만 적용하고 재시도하지 않는다.
+     */
+    public <T> Mono<T> write(Lane lane, Supplier<Mono<T>> request) {
+        return lanes.get(lane).call(request);
+    }
+
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return e instanceof TimeoutException || e instanceof WebClientRequestException;
+    }
+
+    @PreDestroy
+    public void close() {
+        lanes.values().forEach(lane -> lane.provider.dispose());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lanes.forEach((lane, client) -> stats.put(lane.name().toLowerCase(), client.getStats()));
+        return stats;
+    }
+
+    private final class LaneClient {
+        final String name;
+        final Duration timeout;
+        final ConnectionProvider provider;
+        final WebClient webClient;
+        final Bulkhead bulkhead;
+        final AtomicReference<ConnectionPoolMetrics> poolMetrics = new AtomicReference<>();
+
+        final LongAdder requests = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder retries = new LongAdder();
+
+        LaneClient(String name, ChromaDbConfig.Lane lane, Duration timeout) {
+            this.name = name;
+            this.timeout = timeout;
+            // 동시 요청 수는 bulkhead가 제한하므로 풀 크기를 같게 맞춰 풀 자체의 대기열은 쓰이지 않게 한다
+            this.provider = ConnectionProvider.builder(name)
+                    .maxConnections(lane.getMaxConcurrent())
+                    .pendingAcquireMaxCount(lane.getMaxQueued())
+                    .pendingAcquireTimeout(lane.getMaxWait())
+                    .maxIdleTime(config.getMaxIdleTime())
+                    .evictInBackground(config.getMaxIdleTime())
+                    .metrics(true, () -> (poolName, id, remoteAddress, metrics) -> poolMetrics.set(metrics))
+                    .build();
+            HttpClient httpClient = HttpClient.create(provider)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) config.getConnectTimeout().toMillis());
+            this.webClient = WebClient.builder()
+                    .clientConnector(new ReactorClientHttpConnector(httpClient))
+                    .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_IN_MEMORY_SIZE))
+                    .build();
+            this.bulkhead = new Bulkhead(name, lane.getMaxConcurrent(), lane.getMaxQueued(), lane.getMaxWait());
+        }
+
+        <T> Mono<T> call(Supplier<Mono<T>> request) {
+            return bulkhead.execute(() -> {
+                        requests.increment();
+                        return request.get().timeout(timeout, Mono.error(() -> {
+                            timeouts.increment();
+                            return new TimeoutException("ChromaDB " + name + " 응답 시간 초과 (" + timeout + ")");
+                        }));
+                    })
+                    .doOnError(e -> failures.increment());
+        }
+
+        Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>(bulkhead.getStats());
+            stats.put("requests", requests.sum());
+            stats.put("failures", failures.sum());
+            stats.put("timeouts", timeouts.sum());
+            stats.put("retries", retries.sum());
+
+            ConnectionPoolMetrics metrics = poolMetrics.get();
+            Map<String, Object> pool = new LinkedHashMap<>();
+            if (metrics != null) {
+                pool.put("acquired", metrics.acquiredSize());
+                pool.put("idle", metrics.idleSize());
+                pool.put("allocated", metrics.allocatedSize());
+                pool.put("pending", metrics.pendingAcquireSize());
+                pool.put("maxConnections", metrics.maxAllocatedSize());
+            }
+            stats.put("pool", pool);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.mychatgpt.vectordb;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW(Hierarchical Navigable Small World) 그래프.
+ *
+ * - 노드는 0부터 연속된 번호이며 벡터는 MappedVectorStorage의 같은 슬롯에 있다
+ * - 상위 레벨일수록 노드가 드물어 멀리 점프하고, 레벨 0에서 ef개 후보를 유지하며 정밀 탐색한다
+ * - 삭제는 그래프에서 빼지 않는다. 탐색 경로로는 계속 쓰고 결과에서만 제외한다 (accept 조건)
+ *
+ * 동기화는 호출자(HnswVectorStore)의 read/write lock이 담당한다. 이 클래스 자체는 thread-safe하지 않다.
+ */
+final class HnswIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x484E5357; // "HNSW"
+
+    private final MappedVectorStorage vectors;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    /** links.get(node)[level] = [이웃 수, 이웃 노드...] */
+    private final List<int[][]> links = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    record Candidate(int node, float distance) {
+    }
+
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(Candidate::distance);
+    private static final Comparator<Candidate> FARTHEST_FIRST = NEAREST_FIRST.reversed();
+
+    HnswIndex(MappedVectorStorage vectors, int m, int efConstruction) {
+        this.vectors = vectors;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    int size() {
+        return links.size();
+    }
+
+    /**
+     * 다음 번호의 노드를 그래프에 연결한다. 벡터는 미리 저장되어 있어야 한다.
+     */
+    void insert(int node) {
+        if (node != links.size()) {
+            throw new IllegalStateException("HNSW 노드는 순서대로 추가해야 합니다: expected=" + links.size() + ", got=" + node);
+        }
+        int level = (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        links.add(nodeLinks);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        float[] query = vectors.get(node);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(query, current, l);
+        }
+
+        List<Candidate> entryPoints = List.of(new Candidate(current, vectors.distance(query, current)));
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PriorityQueue<Candidate> found = searchLayer(query, entryPoints, efConstruction, l, null);
+            List<Candidate> sorted = drainNearestFirst(found);
+            List<Candidate> selected = selectNeighbors(sorted, m);
+
+            for (Candidate neighbor : selected) {
+                addLink(node, neighbor.node(), l);
+                addLink(neighbor.node(), node, l);
+            }
+            entryPoints = sorted;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * query에 가장 가까운 노드를 최대 k개 찾는다.
+     *
+     * @param accept 결과에 포함할 노드 조건 (삭제 여부, 메타데이터 필터). 조건에 맞지 않는 노드도 탐색 경로로는 사용한다
+     */
+    List<Candidate> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        PriorityQueue<Candidate> found = searchLayer(query,
+                List.of(new Candidate(current, vectors.distance(query, current))), Math.max(ef, k), 0, accept);
+        List<Candidate> sorted = drainNearestFirst(found);
+        return sorted.size() > k ? sorted.subList(0, k) : sorted;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = vectors.distance(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links.get(current)[level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float d = vectors.distance(query, neighbors[i]);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbors[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 한 레벨에서 best-first 탐색. 결과 힙에는 accept를 통과한 노드만 담고, 탐색은 모든 노드를 거친다.
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, List<Candidate> entryPoints, int ef, int level,
+                                                 IntPredicate accept) {
+        BitSet visited = new BitSet(links.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(FARTHEST_FIRST);
+
+        for (Candidate entry : entryPoints) {
+            visited.set(entry.node());
+            candidates.add(entry);
+            if (accept == null || accept.test(entry.node())) {
+                offer(results, entry, ef);
+            }
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.distance() > results.peek().distance()) {
+                break;
+            }
+            int[] neighbors = links.get(closest.node())[level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = vectors.distance(query, neighbor);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    candidates.add(candidate);
+                    if (accept == null || accept.test(neighbor)) {
+                        offer(results, candidate, ef);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void offer(PriorityQueue<Candidate> results, Candidate candidate, int ef) {
+        results.add(candidate);
+        if (results.size() > ef) {
+            results.poll();
+        }
+    }
+
+    private static List<Candidate> drainNearestFirst(PriorityQueue<Candidate> farthestFirst) {
+        List<Candidate> sorted = new ArrayList<>(farthestFirst);
+        sorted.sort(NEAREST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * 이웃 선택 휴리스틱 (HNSW 논문 Algorithm 4).
+     * 이미 고른 이웃보다 기준점에 더 가까운 후보만 고르므로 이웃이 한쪽에 몰리지 않는다.
+     * 그래도 max개가 안 되면 남은 후보 중 가까운 순으로 채운다.
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> nearestFirst, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : nearestFirst) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (vectors.distance(candidate.node(), chosen.node()) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                skipped.add(candidate);
+            }
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < max; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private void addLink(int from, int to, int level) {
+        int[] neighbors = links.get(from)[level];
+        int max = neighbors.length - 1;
+        if (neighbors[0] < max) {
+            neighbors[++neighbors[0]] = to;
+            return;
+        }
+
+        // 이웃이 가득 찼으면 기존 이웃 + 새 노드 중에서 다시 고른다
+        List<Candidate> candidates = new ArrayList<>(max + 1);
+        for (int i = 1; i <= neighbors[0]; i++) {
+            candidates.add(new Candidate(neighbors[i], vectors.distance(from, neighbors[i])));
+        }
+        candidates.add(new Candidate(to, vectors.distance(from, to)));
+        candidates.sort(NEAREST_FIRST);
+
+        List<Candidate> selected = selectNeighbors(candidates, max);
+        neighbors[0] = selected.size();
+        for (int i = 0; i < selected.size(); i++) {
+            neighbors[i + 1] = selected.get(i).node();
+        }
+    }
+
+    // ========== 스냅샷 ==========
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(m);
+        out.writeInt(links.size());
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int[][] nodeLinks : links) {
+            out.writeByte(nodeLinks.length);
+            for (int[] neighbors : nodeLinks) {
+                out.writeShort(neighbors[0]);
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    out.writeInt(neighbors[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 스냅샷을 읽어 그래프를 복원한다. 비어 있는 인덱스에서만 호출한다.
+     *
+     * @return 복원한 노드 수, 스냅샷이 현재 설정과 맞지 않으면 -1
+     */
+    int readFrom(DataInputStream in, int maxNodes) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != m) {
+            return -1;
+        }
+        int nodeCount = in.readInt();
+        if (nodeCount > maxNodes) {
+            return -1;
+        }
+        int snapshotEntryPoint = in.readInt();
+        int snapshotMaxLevel = in.readInt();
+        for (int node = 0; node < nodeCount; node++) {
+            int levelCount = in.readByte();
+            int[][] nodeLinks = new int[levelCount][];
+            for (int l = 0; l < levelCount; l++) {
+                int[] neighbors = new int[(l == 0 ? maxM0 : m) + 1];
+                neighbors[0] = in.readShort();
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    neighbors[i] = in.readInt();
+                }
+                nodeLinks[l] = neighbors;
+            }
+            links.add(nodeLinks);
+        }
+        entryPoint = snapshotEntryPoint;
+        maxLevel = snapshotMaxLevel;
+        return nodeCount;
+    }
+}
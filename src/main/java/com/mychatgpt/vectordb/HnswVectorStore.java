@@ -0,0 +1,625 @@
+package com.mychatgpt.vectordb;
+
+import com.mychatgpt.config.VectorStoreConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * 애플리케이션 프로세스 안에서 동작하는 HNSW 벡터 저장소 (vectordb.backend=hnsw).
+ *
+ * ChromaDB 대비 장점:
+ * - 검색마다 발생하던 JSON 직렬화 + HTTP 왕복이 없음 (5만 청크 기준 top-k 검색이 1ms 이내)
+ * - 별도 컨테이너를 운영할 필요가 없음
+ *
+ * 저장 구조 (vectordb.hnsw.dir 아래):
+ * - wal.log: 모든 추가/삭제 기록. 내구성의 기준이며 기동 시 처음부터 재생한다
+ * - vectors.bin: 정규화된 벡터의 memory-mapped 저장소 (MappedVectorStorage)
+ * - graph.snapshot: HNSW 그래프 스냅샷. 스냅샷 이후에 추가된 노드만 기동 시 그래프에 다시 넣는다
+ *
+ * 메타데이터 필터:
+ * - INDEXED_FIELDS(source, userId, issueId, documentId, sessionId)는 값별 노드 집합(BitSet)을 유지한다
+ * - 필터에 맞는 문서 수가 exactSearchThreshold 이하면 그래프 대신 해당 문서만 전수 비교 (정확한 결과)
+ * - 그 외에는 그래프를 탐색하면서 필터에 맞는 노드만 결과에 담는다
+ *
+ * searchMode=quantized면 그래프를 만들지 않고, 양자화 사본(QuantizedVectors, int8 또는 binary)을
+ * 전수 비교해 rescoreCandidates개 후보를 고른 뒤 float 벡터로 다시 계산해 상위 k개를 반환한다.
+ * 힙에는 양자화 사본만 두므로(1024차원 기준 int8 1KB, binary 128B) 지식베이스 전체 전수 검색도 단일 코어에서 가능하다.
+ *
+ * 삭제/교체는 노드를 지우지 않고 삭제 표시만 한다. 삭제 비율이 높아지면 기동 시 WAL을 압축한다.
+ */
+@Component
+@ConditionalOnProperty(prefix = "vectordb", name = "backend", havingValue = "hnsw")
+@RequiredArgsConstructor
+@Slf4j
+public class HnswVectorStore implements VectorStore {
+
+    private static final Set<String> INDEXED_FIELDS = Set.of("source", "userId", "issueId", "documentId", "sessionId");
+    private static final String WAL_FILE = "wal.log";
+    private static final String VECTORS_FILE = "vectors.bin";
+    private static final String SNAPSHOT_FILE = "graph.snapshot";
+
+    private final VectorStoreConfig config;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Path dir;
+    private MappedVectorStorage storage;
+    private VectorStoreWal wal;
+    private HnswIndex index;
+    /** searchMode=quantized일 때만 사용. 이때는 그래프(index)를 만들지 않는다 */
+    private QuantizedVectors quantized;
+
+    // 노드 번호별 문서 정보. 삭제된 노드의 본문/메타데이터는 비워서 메모리를 돌려준다
+    private final List<String> nodeIds = new ArrayList<>();
+    private final List<String> documents = new ArrayList<>();
+    private final List<Map<String, String>> metadatas = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private final Map<String, Integer> idToNode = new HashMap<>();
+    private final Map<String, Map<String, BitSet>> postings = new HashMap<>();
+    private int insertsSinceSnapshot;
+
+    @PostConstruct
+    public void init() throws IOException {
+        dir = Path.of(config.getHnsw().getDir());
+        long start = System.currentTimeMillis();
+        int rebuilt = load();
+
+        int deletedCount = deleted.cardinality();
+        if (deletedCount > 0 && deletedCount > nodeIds.size() * config.getHnsw().getCompactDeletedRatio()) {
+            log.info("[HNSW] 삭제된 노드 {}건 / 전체 {}건 → WAL 압축", deletedCount, nodeIds.size());
+            compact();
+            rebuilt = load();
+        }
+        if (rebuilt > 0) {
+            writeSnapshot();
+        }
+        log.info("[HNSW] 내장 벡터 저장소 준비 완료: {} (문서 {}건, 삭제 표시 {}건, 그래프 재구성 {}건, {}ms)",
+                dir, idToNode.size(), deleted.cardinality(), rebuilt, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * WAL을 재생해 문서/벡터를 복원하고, 스냅샷으로 그래프를 복원한 뒤 스냅샷 이후 노드만 그래프에 넣는다.
+     *
+     * @return 그래프에 새로 넣은 노드 수
+     */
+    private int load() throws IOException {
+        VectorStoreConfig.Hnsw hnsw = config.getHnsw();
+        storage = new MappedVectorStorage(dir.resolve(VECTORS_FILE), config.getDimension());
+        wal = new VectorStoreWal(dir.resolve(WAL_FILE));
+        quantized = "quantized".equalsIgnoreCase(hnsw.getSearchMode())
+                ? new QuantizedVectors(QuantizedVectors.Mode.valueOf(hnsw.getQuantization().toUpperCase()), config.getDimension())
+                : null;
+
+        Path snapshotFile = dir.resolve(SNAPSHOT_FILE);
+        long snapshotOffset = -1;
+        if (Files.exists(snapshotFile)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshotFile))) {
+                snapshotOffset = in.readLong();
+            } catch (IOException e) {
+                log.warn("[HNSW] 그래프 스냅샷 헤더 읽기 실패 - 그래프를 새로 구성: {}", e.getMessage());
+            }
+        }
+
+        int[] snapshotNodes = {snapshotOffset == 0 ? 0 : -1};
+        long matchOffset = snapshotOffset;
+        wal.replay(new VectorStoreWal.Visitor() {
+            @Override
+            public void onAdd(int node, String id, String document, Map<String, String> metadata, float[] vector)
+                    throws IOException {
+                if (node != nodeIds.size() || vector.length != storage.dimension()) {
+                    throw new IOException("벡터 WAL 레코드가 올바르지 않습니다: node=" + node + ", dim=" + vector.length);
+                }
+                float[] normalized = MappedVectorStorage.normalize(vector);
+                storage.put(node, normalized);
+                if (quantized != null) {
+                    quantized.add(node, normalized);
+                }
+                register(node, id, document, metadata);
+            }
+
+            @Override
+            public void onDelete(int node) {
+                unregister(node);
+            }
+
+            @Override
+            public void onRecordEnd(long offset) {
+                if (offset == matchOffset) {
+                    snapshotNodes[0] = nodeIds.size();
+                }
+            }
+        });
+
+        if (quantized != null) {
+            return 0;
+        }
+        index = new HnswIndex(storage, hnsw.getM(), hnsw.getEfConstruction());
+        if (snapshotNodes[0] > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+                in.readLong();
+                if (index.readFrom(in, snapshotNodes[0]) != snapshotNodes[0]) {
+                    log.warn("[HNSW] 그래프 스냅샷이 WAL과 맞지 않음 - 그래프를 새로 구성");
+                    index = new HnswIndex(storage, hnsw.getM(), hnsw.getEfConstruction());
+                }
+            } catch (IOException e) {
+                log.warn("[HNSW] 그래프 스냅샷 읽기 실패 - 그래프를 새로 구성: {}", e.getMessage());
+                index = new HnswIndex(storage, hnsw.getM(), hnsw.getEfConstruction());
+            }
+        }
+
+        int rebuilt = 0;
+        for (int node = index.size(); node < nodeIds.size(); node++) {
+            index.insert(node);
+            rebuilt++;
+        }
+        return rebuilt;
+    }
+
+    /**
+     * 살아 있는 문서만 새 WAL에 다시 쓰고 교체한다. 노드 번호가 바뀌므로 벡터 파일과 스냅샷도 지운다.
+     */
+    private void compact() throws IOException {
+        Path compacted = dir.resolve(WAL_FILE + ".compact");
+        Files.deleteIfExists(compacted);
+        try (VectorStoreWal out = new VectorStoreWal(compacted)) {
+            int next = 0;
+            for (int node = 0; node < nodeIds.size(); node++) {
+                if (deleted.get(node)) {
+                    continue;
+                }
+                out.appendAdd(next++, nodeIds.get(node), documents.get(node), metadatas.get(node), storage.get(node));
+                if (next % 1000 == 0) {
+                    out.sync();
+                }
+            }
+        }
+
+        wal.close();
+        storage.close();
+        Files.move(compacted, dir.resolve(WAL_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(dir.resolve(SNAPSHOT_FILE));
+        Files.deleteIfExists(dir.resolve(VECTORS_FILE));
+
+        nodeIds.clear();
+        documents.clear();
+        metadatas.clear();
+        deleted.clear();
+        idToNode.clear();
+        postings.clear();
+    }
+
+    private void writeSnapshot() throws IOException {
+        Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeLong(wal.position());
+            index.writeTo(out);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        insertsSinceSnapshot = 0;
+        log.info("[HNSW] 그래프 스냅샷 저장: 노드 {}건", index.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (insertsSinceSnapshot > 0 && quantized == null) {
+                writeSnapshot();
+            }
+            wal.close();
+            storage.close();
+        } catch (IOException e) {
+            log.warn("[HNSW] 종료 처리 실패: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String storeId() {
+        return "hnsw:" + Path.of(config.getHnsw().getDir()).toAbsolutePath().normalize();
+    }
+
+    // ========== 쓰기 ==========
+
+    public void addDocuments(List<String> ids, List<float[]> embeddings,
+                             List<String> documents, List<Map<String, String>> metadatas) {
+        write(ids, embeddings, documents, metadatas, false);
+    }
+
+    public void upsertDocuments(List<String> ids, List<float[]> embeddings,
+                                List<String> documents, List<Map<String, String>> metadatas) {
+        write(ids, embeddings, documents, metadatas, true);
+    }
+
+    /**
+     * WAL에 기록하고 fsync한 뒤에 메모리 인덱스에 반영한다.
+     *
+     * @param replace true면 같은 ID의 기존 문서를 삭제 표시하고 새 노드로 추가, false면 기존 ID는 건너뜀
+     */
+    private void write(List<String> ids, List<float[]> embeddings,
+                       List<String> docs, List<Map<String, String>> metas, boolean replace) {
+        for (float[] embedding : embeddings) {
+            if (embedding.length != storage.dimension()) {
+                throw new IllegalArgumentException("임베딩 차원이 설정과 다릅니다: expected="
+                        + storage.dimension() + ", got=" + embedding.length);
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            // WAL에 쓴 순서 그대로 반영하기 위한 작업 목록: {노드 번호, 입력 인덱스(삭제면 -1)}
+            List<int[]> ops = new ArrayList<>();
+            Map<String, Integer> batchNodes = new HashMap<>();
+            int next = nodeIds.size();
+            try {
+                for (int i = 0; i < ids.size(); i++) {
+                    String id = ids.get(i);
+                    Integer existing = batchNodes.containsKey(id) ? batchNodes.get(id) : idToNode.get(id);
+                    if (existing != null) {
+                        if (!replace) {
+                            continue;
+                        }
+                        wal.appendDelete(existing);
+                        ops.add(new int[]{existing, -1});
+                    }
+                    wal.appendAdd(next, id, docs.get(i), metadataAt(metas, i), embeddings.get(i));
+                    ops.add(new int[]{next, i});
+                    batchNodes.put(id, next++);
+                }
+                wal.sync();
+            } catch (IOException e) {
+                wal.discardPending();
+                log.error("[HNSW] WAL 기록 실패", e);
+                throw new RuntimeException("VectorDB에 문서 추가 실패: " + e.getMessage(), e);
+            }
+
+            for (int[] op : ops) {
+                int node = op[0];
+                int source = op[1];
+                if (source < 0) {
+                    unregister(node);
+                    continue;
+                }
+                float[] normalized = MappedVectorStorage.normalize(embeddings.get(source));
+                try {
+                    storage.put(node, normalized);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                register(node, ids.get(source), docs.get(source), metadataAt(metas, source));
+                if (quantized != null) {
+                    quantized.add(node, normalized);
+                } else {
+                    index.insert(node);
+                    insertsSinceSnapshot++;
+                }
+            }
+
+            if (insertsSinceSnapshot >= config.getHnsw().getSnapshotInterval()) {
+                writeSnapshot();
+            }
+        } catch (IOException e) {
+            log.warn("[HNSW] 그래프 스냅샷 저장 실패 (다음 기동 시 WAL로 복구): {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteByIds(List<String> ids) {
+        delete(() -> {
+            BitSet nodes = new BitSet();
+            for (String id : ids) {
+                Integer node = idToNode.get(id);
+                if (node != null) {
+                    nodes.set(node);
+                }
+            }
+            return nodes;
+        });
+    }
+
+    public void deleteByFilter(Map<String, String> whereFilter) {
+        if (whereFilter == null || whereFilter.isEmpty()) {
+            return;
+        }
+        delete(() -> matchingNodes(whereFilter));
+    }
+
+    public void deleteByMetadataIn(String field, Collection<String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        delete(() -> {
+            BitSet nodes = new BitSet();
+            for (String value : values) {
+                nodes.or(matchingNodes(Map.of(field, value)));
+            }
+            return nodes;
+        });
+    }
+
+    private void delete(Supplier<BitSet> target) {
+        lock.writeLock().lock();
+        try {
+            BitSet nodes = target.get();
+            if (nodes.isEmpty()) {
+                return;
+            }
+            try {
+                for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+                    wal.appendDelete(node);
+                }
+                wal.sync();
+            } catch (IOException e) {
+                wal.discardPending();
+                log.error("[HNSW] WAL 기록 실패", e);
+                throw new RuntimeException("VectorDB 문서 삭제 실패: " + e.getMessage(), e);
+            }
+            nodes.stream().forEach(this::unregister);
+            log.debug("[HNSW] 삭제 완료: {}건", nodes.cardinality());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ========== 조회 ==========
+
+    public List<VectorSearchResult> query(float[] queryEmbedding, int nResults, Map<String, String> whereFilter) {
+        long start = System.nanoTime();
+        float[] query = MappedVectorStorage.normalize(queryEmbedding);
+
+        lock.readLock().lock();
+        try {
+            boolean filtered = whereFilter != null && !whereFilter.isEmpty();
+            IntPredicate accept = filtered
+                    ? node -> !deleted.get(node) && matches(node, whereFilter)
+                    : node -> !deleted.get(node);
+
+            List<HnswIndex.Candidate> found;
+            BitSet candidates = filtered ? indexedCandidates(whereFilter) : null;
+            if (candidates != null && candidates.cardinality() <= config.getHnsw().getExactSearchThreshold()) {
+                found = exactSearch(query, nResults, candidates.stream().filter(accept));
+            } else if (quantized != null) {
+                found = quantizedSearch(query, nResults, accept);
+            } else {
+                found = index.search(query, nResults, config.getHnsw().getEfSearch(), accept);
+                // 좁은 필터에서 그래프 탐색이 결과를 다 채우지 못하면 전수 비교로 보완
+                if (filtered && found.size() < nResults) {
+                    found = exactSearch(query, nResults, IntStream.range(0, nodeIds.size()).filter(accept));
+                }
+            }
+
+            List<VectorSearchResult> results = new ArrayList<>(found.size());
+            for (HnswIndex.Candidate candidate : found) {
+                results.add(toResult(candidate.node(), candidate.distance()));
+            }
+            log.info("[HNSW] Query 완료: nResults={}, filter={} → {}건 반환, {}us",
+                    nResults, whereFilter, results.size(), (System.nanoTime() - start) / 1000);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 프로세스 내부 호출이므로 별도 스레드로 넘기지 않고 구독 시점에 바로 실행한다.
+     */
+    public Mono<List<VectorSearchResult>> queryAsync(float[] queryEmbedding, int nResults,
+                                                     Map<String, String> whereFilter) {
+        return Mono.fromCallable(() -> query(queryEmbedding, nResults, whereFilter));
+    }
+
+    public List<VectorSearchResult> getByMetadataFilter(Map<String, String> whereFilter, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet nodes = matchingNodes(whereFilter);
+            List<VectorSearchResult> results = new ArrayList<>();
+            for (int node = nodes.nextSetBit(0); node >= 0 && results.size() < limit; node = nodes.nextSetBit(node + 1)) {
+                results.add(toResult(node, 0));
+            }
+            log.info("[HNSW] Metadata filter 조회 완료: filter={} → {}건 반환", whereFilter, results.size());
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<VectorSearchResult> scanByMetadataFilter(Map<String, String> whereFilter, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet nodes = matchingNodes(whereFilter);
+            List<VectorSearchResult> results = new ArrayList<>();
+            int skipped = 0;
+            for (int node = nodes.nextSetBit(0); node >= 0 && results.size() < limit; node = nodes.nextSetBit(node + 1)) {
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    results.add(toResult(node, 0));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<VectorSearchResult> getByIds(List<String> ids) {
+        lock.readLock().lock();
+        try {
+            List<VectorSearchResult> results = new ArrayList<>();
+            for (String id : ids) {
+                Integer node = idToNode.get(id);
+                if (node != null) {
+                    results.add(toResult(node, 0));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<String> getExistingIds(List<String> ids) {
+        lock.readLock().lock();
+        try {
+            return ids.stream().filter(idToNode::containsKey).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 양자화 사본 전수 비교로 후보를 고른 뒤, 후보만 float 벡터로 다시 계산해 상위 k개를 고른다.
+     */
+    private List<HnswIndex.Candidate> quantizedSearch(float[] query, int k, IntPredicate accept) {
+        int[] candidates = quantized.scan(query, Math.max(k, config.getHnsw().getRescoreCandidates()), accept);
+        return exactSearch(query, k, IntStream.of(candidates));
+    }
+
+    private List<HnswIndex.Candidate> exactSearch(float[] query, int k, IntStream nodes) {
+        PriorityQueue<HnswIndex.Candidate> top = new PriorityQueue<>(
+                (a, b) -> Float.compare(b.distance(), a.distance()));
+        nodes.forEach(node -> {
+            float d = storage.distance(query, node);
+            if (top.size() < k) {
+                top.add(new HnswIndex.Candidate(node, d));
+            } else if (d < top.peek().distance()) {
+                top.poll();
+                top.add(new HnswIndex.Candidate(node, d));
+            }
+        });
+        List<HnswIndex.Candidate> sorted = new ArrayList<>(top);
+        sorted.sort((a, b) -> Float.compare(a.distance(), b.distance()));
+        return sorted;
+    }
+
+    private VectorSearchResult toResult(int node, float distance) {
+        return new VectorSearchResult(nodeIds.get(node), documents.get(node), distance,
+                new HashMap<>(metadatas.get(node)));
+    }
+
+    // ========== 메타데이터 인덱스 ==========
+
+    private void register(int node, String id, String document, Map<String, String> metadata) {
+        nodeIds.add(id);
+        documents.add(document);
+        metadatas.add(metadata);
+        idToNode.put(id, node);
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            if (INDEXED_FIELDS.contains(entry.getKey())) {
+                postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                        .computeIfAbsent(entry.getValue(), v -> new BitSet())
+                        .set(node);
+            }
+        }
+    }
+
+    private void unregister(int node) {
+        if (node >= nodeIds.size() || deleted.get(node)) {
+            return;
+        }
+        deleted.set(node);
+        idToNode.remove(nodeIds.get(node), node);
+        for (Map.Entry<String, String> entry : metadatas.get(node).entrySet()) {
+            Map<String, BitSet> byValue = postings.get(entry.getKey());
+            if (byValue != null) {
+                BitSet nodes = byValue.get(entry.getValue());
+                if (nodes != null) {
+                    nodes.clear(node);
+                    if (nodes.isEmpty()) {
+                        byValue.remove(entry.getValue());
+                    }
+                }
+            }
+        }
+        documents.set(node, null);
+        metadatas.set(node, Map.of());
+    }
+
+    /**
+     * 필터 키가 모두 색인 필드면 값별 노드 집합의 교집합을 반환한다. 색인되지 않은 키가 있으면 null.
+     */
+    private BitSet indexedCandidates(Map<String, String> whereFilter) {
+        BitSet result = null;
+        for (Map.Entry<String, String> entry : whereFilter.entrySet()) {
+            if (!INDEXED_FIELDS.contains(entry.getKey())) {
+                return null;
+            }
+            BitSet nodes = postings.getOrDefault(entry.getKey(), Map.of()).get(entry.getValue());
+            if (nodes == null) {
+                return new BitSet();
+            }
+            if (result == null) {
+                result = (BitSet) nodes.clone();
+            } else {
+                result.and(nodes);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 필터에 맞는 살아 있는 노드 전체. 색인 필드면 집합 연산, 아니면 전체를 훑는다.
+     */
+    private BitSet matchingNodes(Map<String, String> whereFilter) {
+        if (whereFilter == null || whereFilter.isEmpty()) {
+            BitSet all = new BitSet();
+            all.set(0, nodeIds.size());
+            all.andNot(deleted);
+            return all;
+        }
+        BitSet candidates = indexedCandidates(whereFilter);
+        if (candidates != null) {
+            return candidates;
+        }
+        BitSet nodes = new BitSet();
+        for (int node = 0; node < nodeIds.size(); node++) {
+            if (!deleted.get(node) && matches(node, whereFilter)) {
+                nodes.set(node);
+            }
+        }
+        return nodes;
+    }
+
+    private boolean matches(int node, Map<String, String> whereFilter) {
+        Map<String, String> metadata = metadatas.get(node);
+        for (Map.Entry<String, String> entry : whereFilter.entrySet()) {
+            if (!entry.getValue().equals(metadata.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, String> metadataAt(List<Map<String, String>> metas, int i) {
+        return metas != null ? new LinkedHashMap<>(metas.get(i)) : new LinkedHashMap<>();
+    }
+}
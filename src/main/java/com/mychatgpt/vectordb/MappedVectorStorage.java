@@ -0,0 +1,138 @@
+package com.mychatgpt.vectordb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * HNSW 노드 번호 → 벡터를 memory-mapped 파일에 고정 길이로 저장한다.
+ *
+ * 벡터를 힙에 두지 않으므로 5만 건 x 1024차원(약 200MB)도 GC 대상이 되지 않고,
+ * 메모리가 부족하면 OS가 페이지 단위로 내려쓴다.
+ * 벡터는 저장 시 L2 정규화하므로 cosine similarity = 내적이다.
+ *
+ * 이 파일은 작업용 저장소일 뿐이며, 내구성은 WAL(VectorStoreWal)이 책임진다.
+ * 기동 시 WAL을 재생하면서 같은 슬롯에 다시 쓰므로 파일이 손상되어도 복구된다.
+ */
+final class MappedVectorStorage implements Closeable {
+
+    private static final int VECTORS_PER_SEGMENT = 4096;
+
+    private final int dimension;
+    private final long segmentBytes;
+    private final FileChannel channel;
+    private final List<FloatBuffer> segments = new CopyOnWriteArrayList<>();
+    private final List<MappedByteBuffer> mapped = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<float[][]> scratch;
+
+    MappedVectorStorage(Path file, int dimension) throws IOException {
+        this.dimension = dimension;
+        this.segmentBytes = (long) dimension * Float.BYTES * VECTORS_PER_SEGMENT;
+        this.scratch = ThreadLocal.withInitial(() -> new float[][]{new float[dimension], new float[dimension]});
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 정규화한 벡터를 노드 슬롯에 쓴다. 필요하면 세그먼트를 추가로 매핑한다.
+     */
+    void put(int node, float[] normalized) throws IOException {
+        int segmentIndex = node / VECTORS_PER_SEGMENT;
+        while (segments.size() <= segmentIndex) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                    segments.size() * segmentBytes, segmentBytes);
+            mapped.add(buffer);
+            // 기본 BIG_ENDIAN이면 float를 읽을 때마다 바이트 순서 변환이 들어가므로 native order로 읽는다
+            segments.add(buffer.order(ByteOrder.nativeOrder()).asFloatBuffer());
+        }
+        segments.get(segmentIndex).put((node % VECTORS_PER_SEGMENT) * dimension, normalized);
+    }
+
+    /**
+     * 정규화된 쿼리 벡터와 노드 벡터의 cosine distance.
+     *
+     * FloatBuffer에서 원소 단위로 읽으면 매번 범위 검사가 들어가 느리므로,
+     * 스레드별 작업 배열로 한 번에 복사(bulk get)한 뒤 배열끼리 내적한다.
+     */
+    float distance(float[] query, int node) {
+        float[] vector = scratch.get()[0];
+        read(node, vector);
+        return 1f - dot(query, vector);
+    }
+
+    /**
+     * 두 노드 벡터 사이의 cosine distance. 그래프 구성 시 이웃 선택에 사용한다.
+     */
+    float distance(int a, int b) {
+        float[][] buffers = scratch.get();
+        read(a, buffers[0]);
+        read(b, buffers[1]);
+        return 1f - dot(buffers[0], buffers[1]);
+    }
+
+    private void read(int node, float[] target) {
+        segments.get(node / VECTORS_PER_SEGMENT).get((node % VECTORS_PER_SEGMENT) * dimension, target);
+    }
+
+    /**
+     * 누산기 4개로 나눠 더해 루프 간 의존성을 줄인다 (JIT가 float 합산 순서를 바꾸지 못하므로 직접 펼친다).
+     */
+    private static float dot(float[] a, float[] b) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int bound = a.length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    float[] get(int node) {
+        float[] vector = new float[dimension];
+        read(node, vector);
+        return vector;
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * inv;
+        }
+        return normalized;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer buffer : mapped) {
+            buffer.force();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,389 @@
+package com.mychatgpt.vectordb;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mychatgpt.config.VectorStoreConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * PostgreSQL pgvector 기반 VectorStore 구현 (vectordb.backend=pgvector).
+ *
+ * 채팅 데이터와 같은 PostgreSQL을 사용하므로 ChromaDB 컨테이너 없이 운영할 수 있고,
+ * 세션 삭제처럼 두 저장소를 건드리던 작업도 한 DB 안에서 처리된다.
+ * (JdbcTemplate은 Spring 트랜잭션에 참여하므로 @Transactional 안에서 호출하면 같은 트랜잭션으로 묶인다)
+ *
+ * 테이블 구조: id TEXT PK, embedding vector(dimension), document TEXT, metadata JSONB
+ * - embedding: HNSW 인덱스 (vector_cosine_ops) → ChromaDB와 같은 cosine distance
+ * - metadata: GIN 인덱스 (jsonb_path_ops) → where 필터를 metadata @> '{"source":"youtrack"}' 로 처리
+ *
+ * 쓰기는 insertBatchSize 행씩 multi-row INSERT 한 문장으로 보낸다.
+ * upsert가 필요하므로 COPY 대신 INSERT ... ON CONFLICT를 사용한다.
+ */
+@Component
+@ConditionalOnProperty(prefix = "vectordb", name = "backend", havingValue = "pgvector")
+@RequiredArgsConstructor
+@Slf4j
+public class PgVectorStore implements VectorStore {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final TypeReference<Map<String, String>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final VectorStoreConfig config;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String table;
+    /** 검색 직전에 같은 커넥션에서 실행하는 세션 설정 (ef_search, iterative scan) */
+    private String searchSettings;
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        table = config.getPgvector().getTable();
+        if (!IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("pgvector 테이블 이름이 올바르지 않습니다: " + table);
+        }
+        try {
+            ensureSchema();
+        } catch (Exception e) {
+            log.warn("pgvector 초기화 지연 - 첫 사용 시 재시도: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void ensureSchema() {
+        if (ready) {
+            return;
+        }
+        VectorStoreConfig.PgVector pg = config.getPgvector();
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "embedding vector(" + config.getDimension() + ") NOT NULL, "
+                + "document TEXT, "
+                + "metadata JSONB NOT NULL DEFAULT '{}'::jsonb)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + table + "_embedding_hnsw ON " + table
+                + " USING hnsw (embedding vector_cosine_ops) WITH (m = " + pg.getM()
+                + ", ef_construction = " + pg.getEfConstruction() + ")");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + table + "_metadata_gin ON " + table
+                + " USING gin (metadata jsonb_path_ops)");
+
+        // pgvector 0.8부터는 필터 때문에 결과가 k개보다 적게 나오면 인덱스를 더 읽는 iterative scan을 지원한다
+        String version = jdbcTemplate.queryForObject(
+                "SELECT extversion FROM pg_extension WHERE extname = 'vector'", String.class);
+        searchSettings = "SET hnsw.ef_search = " + pg.getEfSearch();
+        if (supportsIterativeScan(version)) {
+            searchSettings += "; SET hnsw.iterative_scan = relaxed_order";
+        }
+        ready = true;
+        log.info("pgvector 테이블 '{}' 준비 완료 (pgvector {}, dimension {})", table, version, config.getDimension());
+    }
+
+    private static boolean supportsIterativeScan(String version) {
+        if (version == null) {
+            return false;
+        }
+        String[] parts = version.split("\\.");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return major > 0 || minor >= 8;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void ensureReady() {
+        if (!ready) {
+            ensureSchema();
+        }
+    }
+
+    @Override
+    public String storeId() {
+        return "pgvector:" + config.getPgvector().getTable();
+    }
+
+    // ========== 쓰기 ==========
+
+    public void addDocuments(List<String> ids, List<float[]> embeddings,
+                             List<String> documents, List<Map<String, String>> metadatas) {
+        try {
+            insert(ids, embeddings, documents, metadatas, false, " ON CONFLICT (id) DO NOTHING");
+        } catch (Exception e) {
+            log.error("Failed to add documents to pgvector", e);
+            throw new RuntimeException("VectorDB에 문서 추가 실패: " + e.getMessage(), e);
+        }
+    }
+
+    public void upsertDocuments(List<String> ids, List<float[]> embeddings,
+                                List<String> documents, List<Map<String, String>> metadatas) {
+        try {
+            insert(ids, embeddings, documents, metadatas, true, " ON CONFLICT (id) DO UPDATE SET "
+                    + "embedding = EXCLUDED.embedding, document = EXCLUDED.document, metadata = EXCLUDED.metadata");
+        } catch (Exception e) {
+            log.error("Failed to upsert documents to pgvector", e);
+            throw new RuntimeException("VectorDB 문서 upsert 실패: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * insertBatchSize 행씩 묶어 multi-row INSERT로 보낸다.
+     * 한 문장 안에 같은 ID가 두 번 있으면 ON CONFLICT DO UPDATE가 실패하므로 같은 ID는 한 행만 보낸다
+     * (VectorStore 계약대로 upsert는 마지막 값, add는 첫 값).
+     */
+    private void insert(List<String> ids, List<float[]> embeddings, List<String> documents,
+                        List<Map<String, String>> metadatas, boolean keepLast, String onConflict)
+            throws JsonProcessingException {
+        ensureReady();
+        Map<String, Integer> rowIndex = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (keepLast) {
+                rowIndex.remove(ids.get(i));
+                rowIndex.put(ids.get(i), i);
+            } else {
+                rowIndex.putIfAbsent(ids.get(i), i);
+            }
+        }
+        List<Integer> rows = new ArrayList<>(rowIndex.values());
+
+        int batchSize = config.getPgvector().getInsertBatchSize();
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<Integer> batch = rows.subList(from, Math.min(from + batchSize, rows.size()));
+
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                    .append(" (id, embedding, document, metadata) VALUES ");
+            List<Object> params = new ArrayList<>(batch.size() * 4);
+            for (int j = 0; j < batch.size(); j++) {
+                int i = batch.get(j);
+                sql.append(j == 0 ? "" : ", ").append("(?, ?::vector, ?, ?::jsonb)");
+                params.add(ids.get(i));
+                params.add(toVectorLiteral(embeddings.get(i)));
+                params.add(documents.get(i));
+                params.add(objectMapper.writeValueAsString(metadatas != null ? metadatas.get(i) : Map.of()));
+            }
+            sql.append(onConflict);
+            jdbcTemplate.update(sql.toString(), params.toArray());
+        }
+    }
+
+    public void deleteByIds(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        ensureReady();
+        try {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE id = ANY(?)", (Object) ids.toArray(new String[0]));
+        } catch (Exception e) {
+            log.error("pgvector delete failed", e);
+            throw new RuntimeException("VectorDB 문서 삭제 실패: " + e.getMessage(), e);
+        }
+    }
+
+    public void deleteByFilter(Map<String, String> whereFilter) {
+        if (whereFilter == null || whereFilter.isEmpty()) {
+            return;
+        }
+        ensureReady();
+        try {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE metadata @> ?::jsonb",
+                    objectMapper.writeValueAsString(whereFilter));
+        } catch (Exception e) {
+            log.error("pgvector delete by filter failed", e);
+            throw new RuntimeException("VectorDB 필터 삭제 실패: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * metadata @> 조건을 OR로 묶는다. 각 조건이 GIN 인덱스를 타고 BitmapOr로 합쳐진다.
+     * (metadata->>'field' = ANY(...)는 GIN 인덱스를 사용하지 못함)
+     */
+    public void deleteByMetadataIn(String field, Collection<String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        ensureReady();
+        try {
+            List<String> all = new ArrayList<>(values);
+            int batchSize = config.getPgvector().getInsertBatchSize();
+            for (int from = 0; from < all.size(); from += batchSize) {
+                List<String> batch = all.subList(from, Math.min(from + batchSize, all.size()));
+                StringBuilder sql = new StringBuilder("DELETE FROM ").append(table).append(" WHERE ");
+                List<Object> params = new ArrayList<>(batch.size());
+                for (int j = 0; j < batch.size(); j++) {
+                    sql.append(j == 0 ? "" : " OR ").append("metadata @> ?::jsonb");
+                    params.add(objectMapper.writeValueAsString(Map.of(field, batch.get(j))));
+                }
+                jdbcTemplate.update(sql.toString(), params.toArray());
+            }
+            log.debug("[pgvector] 일괄 삭제 완료: {} $in {}건", field, values.size());
+        } catch (Exception e) {
+            log.error("pgvector delete by {} $in failed ({}건)", field, values.size(), e);
+            throw new RuntimeException("VectorDB 일괄 삭제 실패: " + e.getMessage(), e);
+        }
+    }
+
+    // ========== 조회 ==========
+
+    public List<VectorSearchResult> query(float[] queryEmbedding, int nResults, Map<String, String> whereFilter) {
+        try {
+            ensureReady();
+            boolean filtered = whereFilter != null && !whereFilter.isEmpty();
+            String vector = toVectorLiteral(queryEmbedding);
+            String filterJson = filtered ? objectMapper.writeValueAsString(whereFilter) : null;
+            String sql = "SELECT id, document, metadata::text AS metadata, embedding <=> ?::vector AS distance"
+                    + " FROM " + table
+                    + (filtered ? " WHERE metadata @> ?::jsonb" : "")
+                    + " ORDER BY embedding <=> ?::vector LIMIT ?";
+
+            // SET과 SELECT가 같은 커넥션에서 실행되어야 하므로 ConnectionCallback으로 묶는다
+            List<VectorSearchResult> results = jdbcTemplate.execute((ConnectionCallback<List<VectorSearchResult>>) connection -> {
+                try (Statement settings = connection.createStatement()) {
+                    settings.execute(searchSettings);
+                }
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    int p = 1;
+                    ps.setString(p++, vector);
+                    if (filtered) {
+                        ps.setString(p++, filterJson);
+                    }
+                    ps.setString(p++, vector);
+                    ps.setInt(p, nResults);
+                    List<VectorSearchResult> rows = new ArrayList<>();
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            rows.add(resultMapper(true).mapRow(rs, rows.size()));
+                        }
+                    }
+                    return rows;
+                }
+            });
+            // iterative scan(relaxed_order)은 순서가 약간 어긋날 수 있으므로 거리순으로 다시 정렬
+            results.sort(Comparator.comparingDouble(VectorSearchResult::getDistance));
+            log.info("[pgvector] Query 완료: nResults={}, filter={} → {}건 반환", nResults, whereFilter, results.size());
+            return results;
+        } catch (Exception e) {
+            log.error("[pgvector] Query 실패: nResults={}, filter={}", nResults, whereFilter, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * JDBC는 blocking이므로 boundedElastic 스케줄러에서 실행한다.
+     */
+    public Mono<List<VectorSearchResult>> queryAsync(float[] queryEmbedding, int nResults,
+                                                     Map<String, String> whereFilter) {
+        return Mono.fromCallable(() -> query(queryEmbedding, nResults, whereFilter))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public List<VectorSearchResult> getByMetadataFilter(Map<String, String> whereFilter, int limit) {
+        try {
+            ensureReady();
+            boolean filtered = whereFilter != null && !whereFilter.isEmpty();
+            String sql = "SELECT id, document, metadata::text AS metadata FROM " + table
+                    + (filtered ? " WHERE metadata @> ?::jsonb" : "") + " LIMIT ?";
+            List<VectorSearchResult> results = filtered
+                    ? jdbcTemplate.query(sql, resultMapper(false), objectMapper.writeValueAsString(whereFilter), limit)
+                    : jdbcTemplate.query(sql, resultMapper(false), limit);
+            log.info("[pgvector] Metadata filter 조회 완료: filter={} → {}건 반환", whereFilter, results.size());
+            return results;
+        } catch (Exception e) {
+            log.error("[pgvector] Metadata filter 조회 실패: filter={}", whereFilter, e);
+            return new ArrayList<>();
+        }
+    }
+
+    public List<VectorSearchResult> scanByMetadataFilter(Map<String, String> whereFilter, int offset, int limit) {
+        ensureReady();
+        boolean filtered = whereFilter != null && !whereFilter.isEmpty();
+        String sql = "SELECT id, document, metadata::text AS metadata FROM " + table
+                + (filtered ? " WHERE metadata @> ?::jsonb" : "") + " ORDER BY id LIMIT ? OFFSET ?";
+        try {
+            return filtered
+                    ? jdbcTemplate.query(sql, resultMapper(false), objectMapper.writeValueAsString(whereFilter),
+                    limit, offset)
+                    : jdbcTemplate.query(sql, resultMapper(false), limit, offset);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("메타데이터 필터를 JSON으로 만들 수 없습니다: " + whereFilter, e);
+        }
+    }
+
+    public List<VectorSearchResult> getByIds(List<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            ensureReady();
+            return jdbcTemplate.query("SELECT id, document, metadata::text AS metadata FROM " + table
+                    + " WHERE id = ANY(?)", resultMapper(false), (Object) ids.toArray(new String[0]));
+        } catch (Exception e) {
+            log.error("[pgvector] ID 조회 실패: {}건", ids.size(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    public List<String> getExistingIds(List<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            ensureReady();
+            return jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE id = ANY(?)",
+                    String.class, (Object) ids.toArray(new String[0]));
+        } catch (Exception e) {
+            log.error("pgvector get by IDs failed", e);
+            return new ArrayList<>();
+        }
+    }
+
+    private RowMapper<VectorSearchResult> resultMapper(boolean withDistance) {
+        return (rs, rowNum) -> {
+            VectorSearchResult result = new VectorSearchResult();
+            result.setId(rs.getString("id"));
+            result.setDocument(rs.getString("document"));
+            result.setDistance(withDistance ? rs.getDouble("distance") : 0.0);
+            try {
+                result.setMetadata(objectMapper.readValue(rs.getString("metadata"), METADATA_TYPE));
+            } catch (JsonProcessingException e) {
+                result.setMetadata(Map.of());
+            }
+            return result;
+        };
+    }
+
+    /**
+     * pgvector 텍스트 표현 '[0.1,0.2,...]'. ?::vector 캐스트로 전달한다.
+     */
+    private static String toVectorLiteral(float[] vector) {
+        StringBuilder sb = new StringBuilder(vector.length * 12).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,163 @@
+package com.mychatgpt.vectordb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * 정규화된 벡터의 양자화 사본. 전수 비교(brute-force)로 후보를 빠르게 고르는 데만 쓰고,
+ * 최종 순위는 MappedVectorStorage의 float 벡터로 다시 계산한다 (re-scoring).
+ *
+ * - INT8: 벡터마다 최대 절댓값을 127로 맞추는 scalar quantization. 1024차원 = 1KB (float 대비 1/4)
+ * - BINARY: 부호 비트만 저장. 1024차원 = 128바이트 (float 대비 1/32), 유사도는 해밍 거리로 추정
+ *
+ * 노드 번호 순서대로 추가해야 하며, 삭제 여부는 scan의 accept 조건으로 거른다.
+ * 동기화는 호출자(HnswVectorStore)의 read/write lock이 담당한다.
+ */
+final class QuantizedVectors {
+
+    enum Mode { INT8, BINARY }
+
+    private static final int VECTORS_PER_CHUNK = 4096;
+
+    private final Mode mode;
+    private final int dimension;
+    private final int words;
+    private final List<byte[]> int8Chunks = new ArrayList<>();
+    private final List<long[]> binaryChunks = new ArrayList<>();
+    private float[] scales = new float[VECTORS_PER_CHUNK];
+    private int size;
+
+    QuantizedVectors(Mode mode, int dimension) {
+        this.mode = mode;
+        this.dimension = dimension;
+        this.words = (dimension + 63) / 64;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(int node, float[] normalized) {
+        if (node != size) {
+            throw new IllegalStateException("양자화 벡터는 순서대로 추가해야 합니다: expected=" + size + ", got=" + node);
+        }
+        int chunk = node / VECTORS_PER_CHUNK;
+        int slot = node % VECTORS_PER_CHUNK;
+        if (mode == Mode.INT8) {
+            if (int8Chunks.size() <= chunk) {
+                int8Chunks.add(new byte[VECTORS_PER_CHUNK * dimension]);
+            }
+            if (scales.length <= node) {
+                scales = Arrays.copyOf(scales, scales.length * 2);
+            }
+            scales[node] = quantizeInt8(normalized, int8Chunks.get(chunk), slot * dimension);
+        } else {
+            if (binaryChunks.size() <= chunk) {
+                binaryChunks.add(new long[VECTORS_PER_CHUNK * words]);
+            }
+            binarize(normalized, binaryChunks.get(chunk), slot * words);
+        }
+        size++;
+    }
+
+    /**
+     * 양자화 유사도 기준 상위 candidates개 노드를 반환한다 (순서 없음).
+     */
+    int[] scan(float[] normalizedQuery, int candidates, IntPredicate accept) {
+        // 점수가 낮은 후보가 먼저 나오는 min-heap: {점수, 노드}
+        PriorityQueue<long[]> top = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        if (mode == Mode.INT8) {
+            byte[] query = new byte[dimension];
+            quantizeInt8(normalizedQuery, query, 0);
+            for (int node = 0; node < size; node++) {
+                if (!accept.test(node)) {
+                    continue;
+                }
+                // 쿼리 scale은 모든 후보에 같으므로 생략하고, 후보 scale로만 나눠 순위를 맞춘다
+                long score = (long) (dotInt8(query, int8Chunks.get(node / VECTORS_PER_CHUNK),
+                        (node % VECTORS_PER_CHUNK) * dimension) / scales[node] * 1024);
+                offer(top, score, node, candidates);
+            }
+        } else {
+            long[] query = new long[words];
+            binarize(normalizedQuery, query, 0);
+            for (int node = 0; node < size; node++) {
+                if (!accept.test(node)) {
+                    continue;
+                }
+                long score = -hamming(query, binaryChunks.get(node / VECTORS_PER_CHUNK),
+                        (node % VECTORS_PER_CHUNK) * words);
+                offer(top, score, node, candidates);
+            }
+        }
+
+        int[] nodes = new int[top.size()];
+        int i = 0;
+        for (long[] entry : top) {
+            nodes[i++] = (int) entry[1];
+        }
+        return nodes;
+    }
+
+    private static void offer(PriorityQueue<long[]> top, long score, int node, int capacity) {
+        if (top.size() < capacity) {
+            top.add(new long[]{score, node});
+        } else if (score > top.peek()[0]) {
+            top.poll();
+            top.add(new long[]{score, node});
+        }
+    }
+
+    /**
+     * @return 복원용 scale (원래 값 ≈ code / scale)
+     */
+    private float quantizeInt8(float[] vector, byte[] target, int offset) {
+        float maxAbs = 0f;
+        for (float v : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        float scale = maxAbs == 0f ? 1f : 127f / maxAbs;
+        for (int i = 0; i < dimension; i++) {
+            target[offset + i] = (byte) Math.round(vector[i] * scale);
+        }
+        return scale;
+    }
+
+    private void binarize(float[] vector, long[] target, int offset) {
+        for (int w = 0; w < words; w++) {
+            target[offset + w] = 0L;
+        }
+        for (int i = 0; i < dimension; i++) {
+            if (vector[i] > 0f) {
+                target[offset + (i >>> 6)] |= 1L << (i & 63);
+            }
+        }
+    }
+
+    private int dotInt8(byte[] query, byte[] codes, int offset) {
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int bound = dimension & ~3;
+        for (; i < bound; i += 4) {
+            s0 += query[i] * codes[offset + i];
+            s1 += query[i + 1] * codes[offset + i + 1];
+            s2 += query[i + 2] * codes[offset + i + 2];
+            s3 += query[i + 3] * codes[offset + i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += query[i] * codes[offset + i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    private int hamming(long[] query, long[] codes, int offset) {
+        int distance = 0;
+        for (int w = 0; w < words; w++) {
+            distance += Long.bitCount(query[w] ^ codes[offset + w]);
+        }
+        return distance;
+    }
+}
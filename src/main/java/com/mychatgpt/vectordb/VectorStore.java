@@ -0,0 +1,71 @@
+package com.mychatgpt.vectordb;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 벡터 저장소 추상화. VectorDbService / KnowledgeBaseService는 이 인터페이스만 사용한다.
+ *
+ * 구현체는 vectordb.backend 설정으로 선택한다.
+ * - chroma (기본값): ChromaDbClient — 별도 ChromaDB 컨테이너에 HTTP로 요청
+ * - hnsw: HnswVectorStore — 애플리케이션 프로세스 안의 HNSW 인덱스 (네트워크/직렬화 없음)
+ * - pgvector: PgVectorStore — 채팅 데이터와 같은 PostgreSQL의 pgvector 테이블 (별도 컨테이너 없음)
+ *
+ * 메타데이터 필터(whereFilter)는 모든 키/값이 일치하는 문서만 대상으로 한다.
+ * 거리(distance)는 cosine distance(1 - cosine similarity)로, 작을수록 유사하다.
+ */
+public interface VectorStore {
+
+    /**
+     * 이 저장소를 가리키는 이름 (백엔드 + 주소/컬렉션, 테이블, 디렉토리).
+     * knowledge base manifest가 어느 저장소에 저장한 내용인지 구분하는 데 쓴다.
+     */
+    String storeId();
+
+    /**
+     * 문서를 추가한다. 저장소에 이미 있는 ID와 같은 호출 안에서 앞에 나온 ID는 건너뛴다 (에러 없이, 먼저 나온 것이 남음).
+     * 기존 문서를 바꾸려면 upsertDocuments를 쓴다.
+     */
+    void addDocuments(List<String> ids, List<float[]> embeddings,
+                      List<String> documents, List<Map<String, String>> metadatas);
+
+    /**
+     * 같은 ID가 있으면 교체하고, 없으면 추가한다. 같은 호출 안에 같은 ID가 여러 번 있으면 마지막 것이 남는다.
+     */
+    void upsertDocuments(List<String> ids, List<float[]> embeddings,
+                         List<String> documents, List<Map<String, String>> metadatas);
+
+    List<VectorSearchResult> query(float[] queryEmbedding, int nResults, Map<String, String> whereFilter);
+
+    Mono<List<VectorSearchResult>> queryAsync(float[] queryEmbedding, int nResults, Map<String, String> whereFilter);
+
+    /**
+     * 벡터 유사도 없이 메타데이터 조건으로 정확히 조회한다. distance는 0으로 채운다.
+     */
+    List<VectorSearchResult> getByMetadataFilter(Map<String, String> whereFilter, int limit);
+
+    /**
+     * 메타데이터 조건에 맞는 문서를 offset번째부터 최대 limit개 조회한다. 많은 문서를 나눠 읽을 때 쓴다.
+     * 호출 사이에 쓰기가 없으면 순서가 바뀌지 않는다. 조회에 실패하면 빈 목록(= 끝) 대신 예외를 던진다.
+     */
+    List<VectorSearchResult> scanByMetadataFilter(Map<String, String> whereFilter, int offset, int limit);
+
+    /**
+     * ID로 문서를 조회한다 (없는 ID는 빠지고 순서는 보장하지 않음). distance는 0으로 채운다.
+     */
+    List<VectorSearchResult> getByIds(List<String> ids);
+
+    List<String> getExistingIds(List<String> ids);
+
+    void deleteByIds(List<String> ids);
+
+    void deleteByFilter(Map<String, String> whereFilter);
+
+    /**
+     * 메타데이터 필드 값이 주어진 집합에 속하는 문서를 일괄 삭제한다.
+     */
+    void deleteByMetadataIn(String field, Collection<String> values);
+}
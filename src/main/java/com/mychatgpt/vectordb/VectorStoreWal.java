@@ -0,0 +1,236 @@
+package com.mychatgpt.vectordb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 내장 벡터 저장소의 write-ahead log. 모든 추가/삭제를 여기에 먼저 기록하고 fsync한 뒤에 반영 완료로 본다.
+ *
+ * 레코드 구조: [int payload 길이][byte 타입][payload][int CRC32(타입+payload)]
+ * - ADD: 노드 번호, 문서 ID, 본문, 메타데이터, 원본 벡터
+ * - DELETE: 노드 번호
+ *
+ * 쓰는 도중 프로세스가 죽어 마지막 레코드가 잘리거나 CRC가 맞지 않으면,
+ * 재생 시 그 지점에서 멈추고 파일을 잘라낸다.
+ */
+@Slf4j
+final class VectorStoreWal implements Closeable {
+
+    private static final byte TYPE_ADD = 1;
+    private static final byte TYPE_DELETE = 2;
+
+    interface Visitor {
+        void onAdd(int node, String id, String document, Map<String, String> metadata, float[] vector)
+                throws IOException;
+
+        void onDelete(int node);
+
+        /** 레코드 하나를 다 읽은 직후의 파일 위치 */
+        default void onRecordEnd(long offset) {
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    private final DataOutputStream payloadOut = new DataOutputStream(payload);
+    /** 실패한 sync가 남긴 바이트의 시작 위치 (잘라내지 못했을 때만, 없으면 -1) */
+    private long tornAt = -1;
+
+    VectorStoreWal(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * 처음부터 끝까지 재생한다. 손상된 꼬리는 잘라내고 쓰기 위치를 유효한 끝으로 옮긴다.
+     */
+    void replay(Visitor visitor) throws IOException {
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        long offset = 0;
+        long size = channel.size();
+        CRC32 crc = new CRC32();
+
+        while (offset < size) {
+            byte[] body;
+            try {
+                int length = in.readInt();
+                if (length < 0 || offset + Integer.BYTES + 1 + length + Integer.BYTES > size) {
+                    break;
+                }
+                body = new byte[1 + length];
+                in.readFully(body);
+                int expected = in.readInt();
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != expected) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(body, 1, body.length - 1));
+            if (body[0] == TYPE_ADD) {
+                int node = record.readInt();
+                String id = readString(record);
+                String document = readString(record);
+                int metaCount = record.readInt();
+                Map<String, String> metadata = new LinkedHashMap<>();
+                for (int i = 0; i < metaCount; i++) {
+                    metadata.put(readString(record), readString(record));
+                }
+                float[] vector = new float[record.readInt()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = record.readFloat();
+                }
+                visitor.onAdd(node, id, document, metadata, vector);
+            } else if (body[0] == TYPE_DELETE) {
+                visitor.onDelete(record.readInt());
+            } else {
+                break;
+            }
+            offset += Integer.BYTES + body.length + Integer.BYTES;
+            visitor.onRecordEnd(offset);
+        }
+
+        if (offset < size) {
+            log.warn("벡터 WAL 손상된 꼬리 제거: {} ({} → {} bytes)", file, size, offset);
+            channel.truncate(offset);
+        }
+        channel.position(offset);
+    }
+
+    void appendAdd(int node, String id, String document, Map<String, String> metadata, float[] vector)
+            throws IOException {
+        payload.reset();
+        payloadOut.writeInt(node);
+        writeString(payloadOut, id);
+        writeString(payloadOut, document);
+        payloadOut.writeInt(metadata.size());
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            writeString(payloadOut, entry.getKey());
+            writeString(payloadOut, entry.getValue());
+        }
+        payloadOut.writeInt(vector.length);
+        for (float v : vector) {
+            payloadOut.writeFloat(v);
+        }
+        appendRecord(TYPE_ADD);
+    }
+
+    void appendDelete(int node) throws IOException {
+        payload.reset();
+        payloadOut.writeInt(node);
+        appendRecord(TYPE_DELETE);
+    }
+
+    private void appendRecord(byte type) throws IOException {
+        payloadOut.flush();
+        byte[] body = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(body);
+
+        DataOutputStream out = new DataOutputStream(pending);
+        out.writeInt(body.length);
+        out.writeByte(type);
+        out.write(body);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * 쌓인 레코드를 파일에 쓰고 디스크에 fsync한다. 배치 단위 쓰기 작업의 끝에서 호출한다.
+     *
+     * 쓰거나 fsync하다 실패하면(디스크 부족 등) 이번에 쓴 바이트를 잘라내고 예외를 던진다.
+     * 잘린 레코드가 남으면 재생이 거기서 멈춰서, 그 뒤에 성공한 배치까지 모두 잃기 때문이다.
+     * 잘라내지도 못했으면 다음 sync에서 먼저 다시 잘라낸다.
+     */
+    void sync() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        if (tornAt >= 0) {
+            rollback(tornAt);
+        }
+        long start = channel.position();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            tornAt = start;
+            try {
+                rollback(start);
+            } catch (IOException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        }
+        pending.reset();
+    }
+
+    private void rollback(long start) throws IOException {
+        channel.truncate(start);
+        channel.position(start);
+        channel.force(false);
+        tornAt = -1;
+    }
+
+    /**
+     * 아직 sync되지 않은 레코드를 버린다. 배치 도중 실패했을 때 사용.
+     */
+    void discardPending() {
+        pending.reset();
+    }
+
+    long position() throws IOException {
+        return channel.position();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+}
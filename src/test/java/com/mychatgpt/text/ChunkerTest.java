@@ -0,0 +1,158 @@
+package com.mychatgpt.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chunker.Session이 텍스트를 나눠 받아도 전체를 한 번에 chunk(text)한 것과 같은 청크를 내는지 확인한다.
+ */
+class ChunkerTest {
+
+    private static final int MAX_TOKENS = 64;
+    private static final int OVERLAP_TOKENS = 16;
+    /** Session.flushChars (maxTokens × 8) */
+    private static final int FLUSH_CHARS = MAX_TOKENS * 8;
+
+    private static final String[] WORDS = {
+            "로그인", "오류가", "발생합니다", "배너", "적용", "설정을", "확인하세요", "API", "token", "PATALK-123",
+            "v2.3.1", "ERR_TIMEOUT", "사용자", "권한", "https://example.com/path?q=1", "20240101", "서버", "응답"
+    };
+
+    private final Chunker chunker = new Chunker(EstimatingTokenCounter.INSTANCE, MAX_TOKENS, OVERLAP_TOKENS);
+
+    @Test
+    void multiLineTextMatchesChunk() {
+        String text = text(new Random(1), FLUSH_CHARS * 20, true, true);
+        assertStreamedEqualsChunk(text, 97);
+        assertStreamedEqualsChunk(text, 1);
+        assertStreamedEqualsChunk(text, FLUSH_CHARS * 3);
+    }
+
+    @Test
+    void newlineLessSentencesOverFourFlushesMatchChunk() {
+        String text = text(new Random(2), FLUSH_CHARS * 12, false, true);
+        assertTrue(text.indexOf('\n') < 0);
+        assertStreamedEqualsChunk(text, 113);
+        assertStreamedEqualsChunk(text, 7);
+    }
+
+    @Test
+    void newlineLessTextWithoutSentenceEndsMatchesChunk() {
+        // 문장 하나가 예산보다 훨씬 길어 어절 단위 조각으로만 나뉜다
+        String text = text(new Random(3), FLUSH_CHARS * 12, false, false);
+        assertStreamedEqualsChunk(text, 131);
+        assertStreamedEqualsChunk(text, 1);
+    }
+
+    @Test
+    void overlapAcrossDrainsMatchesChunk() {
+        // 짧은 줄이 많아서 청크마다 앞 청크의 끝 문장들이 겹쳐 들어간다
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(4);
+        while (text.length() < FLUSH_CHARS * 10) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ')
+                    .append(WORDS[random.nextInt(WORDS.length)]).append(".\n");
+        }
+        List<String> expected = chunker.chunk(text.toString());
+        assertTrue(hasOverlap(expected), "겹치는 청크가 있어야 하는 입력");
+        assertStreamedEqualsChunk(text.toString(), 53);
+    }
+
+    @Test
+    void longWordWithoutSpacesMatchesChunk() {
+        // 자를 곳이 없어서 끝까지 모았다가 finish()에서 나눈다
+        String text = "a".repeat(FLUSH_CHARS * 5) + " 끝.\n다음 줄";
+        assertEquals(chunker.chunk(text), streamed(text, 100));
+    }
+
+    @Test
+    void wordsLongerThanBudgetBetweenLinesMatchChunk() {
+        // 예산보다 긴 URL이 글자 단위로 잘린 구간에서 청크가 끝나도 다음 청크가 같은 곳에서 시작해야 한다
+        Random random = new Random(5);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < FLUSH_CHARS * 12) {
+            String word = random.nextInt(6) == 0
+                    ? "https://example.com/path?q=" + "z".repeat(200)
+                    : WORDS[random.nextInt(WORDS.length)];
+            text.append(word).append(random.nextInt(8) == 0 ? ".\n" : " ");
+        }
+        assertStreamedEqualsChunk(text.toString(), 205);
+        assertStreamedEqualsChunk(text.toString(), 11);
+    }
+
+    @Test
+    void shortTextIsOneChunk() {
+        assertStreamedEqualsChunk("짧은 본문입니다.", 3);
+        assertStreamedEqualsChunk("", 3);
+    }
+
+    /**
+     * text를 pieceLength 글자씩 Session에 넣은 결과가 chunk(text)와 같고, finish() 전에 이미 청크를 넘겼는지 확인한다.
+     */
+    private void assertStreamedEqualsChunk(String text, int pieceLength) {
+        List<String> streamed = new ArrayList<>();
+        Chunker.Session session = chunker.open(streamed::add);
+        for (int i = 0; i < text.length(); i += pieceLength) {
+            session.append(text.substring(i, Math.min(i + pieceLength, text.length())));
+        }
+        int beforeFinish = streamed.size();
+        int count = session.finish();
+
+        List<String> expected = chunker.chunk(text);
+        assertEquals(expected, streamed, "pieceLength=" + pieceLength);
+        assertEquals(expected.size(), count);
+        if (text.length() > FLUSH_CHARS * 2) {
+            assertTrue(beforeFinish > 0, "finish() 전에 확정된 청크를 넘겨야 한다 (pieceLength=" + pieceLength + ")");
+        }
+    }
+
+    private List<String> streamed(String text, int pieceLength) {
+        List<String> streamed = new ArrayList<>();
+        Chunker.Session session = chunker.open(streamed::add);
+        for (int i = 0; i < text.length(); i += pieceLength) {
+            session.append(text.substring(i, Math.min(i + pieceLength, text.length())));
+        }
+        session.finish();
+        return streamed;
+    }
+
+    private static boolean hasOverlap(List<String> chunks) {
+        for (int i = 1; i < chunks.size(); i++) {
+            String previous = chunks.get(i - 1);
+            String current = chunks.get(i);
+            String head = current.substring(0, Math.min(10, current.length()));
+            if (previous.contains(head) && !previous.endsWith(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param lineBreaks     문장 사이에 줄바꿈을 넣을지
+     * @param sentenceEnds   문장 끝에 마침표를 넣을지
+     */
+    private static String text(Random random, int length, boolean lineBreaks, boolean sentenceEnds) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            int words = 3 + random.nextInt(12);
+            for (int i = 0; i < words; i++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            if (sentenceEnds) {
+                text.setLength(text.length() - 1);
+                text.append(random.nextBoolean() ? ". " : "? ");
+            }
+            if (lineBreaks && random.nextInt(4) == 0) {
+                text.append(random.nextBoolean() ? "\n" : "\n\n");
+            }
+        }
+        return text.toString();
+    }
+}